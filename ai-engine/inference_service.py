@@ -53,6 +53,8 @@ from pydantic import BaseModel, Field, model_validator
 from torch_geometric.data import Data
 from torch_geometric.nn import BatchNorm, GATConv, SAGEConv
 
+from wire import WireResponse, WireRoute
+
 logging.basicConfig(
     level=logging.INFO,
     format="%(asctime)s | %(levelname)s | %(message)s",
@@ -163,6 +165,7 @@ class IdentityFeatures(BaseModel):
     ja3Reuse:    int = 0
     deviceReuse: int = 0
     ipReuse:     int = 0
+    identityClusterSize: int = 0   # accounts sharing a device/IP/JA3 component
 
 
 class BehaviorFeatures(BaseModel):
@@ -708,7 +711,9 @@ app = FastAPI(
     description ="Real-time GNN-based mule account detection for UPI / fintech",
     version     ="3.2.0",
     lifespan    =lifespan,
+    default_response_class=WireResponse,   # CBOR when the backend asks for it
 )
+app.router.route_class = WireRoute         # accepts application/cbor request bodies
 app.add_middleware(
     CORSMiddleware,
     allow_origins=["*"], allow_methods=["*"], allow_headers=["*"],
@@ -1124,4 +1129,33 @@ def gnn_score(request: GnnScoreRequest) -> GnnScoreResponse:
         embeddingNorm   =embedding_norm,
         sourceAccountId =src_id,
         targetAccountId =tgt_id,
-    )
\ No newline at end of file
+    )
+
+
+class GnnBatchRequest(BaseModel):
+    requests: List[GnnScoreRequest]
+
+
+@app.post("/v1/gnn/score-batch")
+def gnn_score_batch(req: GnnBatchRequest) -> dict:
+    """
+    Micro-batch variant of /v1/gnn/score used by the Spring Boot GnnBatchClient.
+
+    results[i] answers requests[i]: a GnnScoreResponse, or {"error": ...} when
+    that item alone failed, so one bad request does not fail the whole batch.
+    """
+    if not _initialized:
+        load_assets()
+    if model is None:
+        raise HTTPException(503, "Model not loaded")
+
+    results: List[Dict[str, Any]] = []
+    for item in req.requests:
+        try:
+            results.append(gnn_score(item).model_dump())
+        except HTTPException as e:
+            results.append({"error": str(e.detail), "status": e.status_code})
+        except Exception as e:  # noqa: BLE001 — isolate per-item failures
+            logger.exception("GNN batch item failed")
+            results.append({"error": str(e), "status": 500})
+    return {"results": results}
@@ -0,0 +1,77 @@
+"""
+Wire format negotiation for backend ↔ model-service traffic.
+
+The backend's WireCodec (downstream.<name>.wire-format=cbor) sends request
+bodies as application/cbor with "Accept: application/cbor, application/json".
+This module lets the existing pydantic endpoints serve both encodings:
+
+  WireRoute     CBOR request bodies are decoded with cbor2 and handed to
+                FastAPI as if they were JSON, so body models validate as
+                usual. Without cbor2 installed they get 415, which switches
+                the backend to JSON.
+  WireResponse  default response class: CBOR when the request's Accept
+                allows it and cbor2 is installed, JSON otherwise.
+
+Kept identical in ai-engine/wire.py and visual-analytics/eif_v_2/app/wire.py.
+"""
+
+from contextvars import ContextVar
+
+from fastapi.responses import JSONResponse
+from fastapi.routing import APIRoute
+from starlette.requests import Request
+
+try:
+    import cbor2
+except ImportError:  # JSON only — CBOR requests are answered with 415
+    cbor2 = None
+
+CBOR_MEDIA_TYPE = "application/cbor"
+
+_answer_cbor: ContextVar[bool] = ContextVar("answer_cbor", default=False)
+
+
+class _CborRequest(Request):
+    async def json(self):
+        if not hasattr(self, "_json"):
+            self._json = cbor2.loads(await self.body())
+        return self._json
+
+
+class WireRoute(APIRoute):
+    def get_route_handler(self):
+        handler = super().get_route_handler()
+
+        async def route(request: Request):
+            if request.headers.get("content-type", "").startswith(CBOR_MEDIA_TYPE):
+                if cbor2 is None:
+                    return JSONResponse(status_code=415,
+                                        content={"detail": "application/cbor not supported (cbor2 not installed)"})
+                # FastAPI only parses bodies it believes are JSON; relabel and decode in json()
+                scope = dict(request.scope)
+                scope["headers"] = [
+                    (k, b"application/json" if k == b"content-type" else v)
+                    for k, v in request.scope["headers"]
+                ]
+                request = _CborRequest(scope, request.receive)
+
+            token = _answer_cbor.set(
+                cbor2 is not None and CBOR_MEDIA_TYPE in request.headers.get("accept", ""))
+            try:
+                return await handler(request)
+            finally:
+                _answer_cbor.reset(token)
+
+        return route
+
+
+class WireResponse(JSONResponse):
+    def __init__(self, content=None, *args, **kwargs):
+        if _answer_cbor.get():
+            self.media_type = CBOR_MEDIA_TYPE
+        super().__init__(content, *args, **kwargs)
+
+    def render(self, content) -> bytes:
+        if self.media_type == CBOR_MEDIA_TYPE:
+            return cbor2.dumps(content)
+        return super().render(content)
@@ -0,0 +1,93 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.model.AiRiskResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GnnResponseDecoder (single streaming pass) vs the JsonNode tree mapping
+ * AiRiskService used before ({@link GnnTreeMapping}, under src/test), on a
+ * full /v1/gnn/score response. GnnResponseDecoderTest checks that the two
+ * agree across alias, null and non-object variants.
+ *
+ * Run with the jmh profile (allocation per op via -prof gc):
+ *
+ *   mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.mulehunter.backend.service.GnnResponseDecoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GnnResponseDecoderBenchmark {
+
+    static final String RESPONSE = """
+            {"model":"GNN","version":"v3.1",
+             "entity":{"type":"ACCOUNT","sourceAccountId":"1042","targetAccountId":"2211"},
+             "scores":{"gnnScore":0.8731,"confidence":0.7462,"riskLevel":"HIGH"},
+             "fraudCluster":{"clusterId":17,"clusterSize":42,"clusterRiskScore":0.64},
+             "networkMetrics":{"suspiciousNeighbors":6,"sharedDevices":2,"sharedIPs":3,
+                               "centralityScore":0.0137,"transactionLoops":true},
+             "muleRingDetection":{"isMuleRingMember":true,"ringId":5,"ringShape":"STAR","ringSize":6,
+                                  "role":"HUB","hubAccount":"1042",
+                                  "ringAccounts":["1042","2211","3301","4410","5521","6630"]},
+             "riskFactors":["High fan-out: distributing funds to many accounts",
+                            "Circular flows detected: money bouncing back",
+                            "Embedded in a high-risk fraud community"],
+             "embedding":{"embeddingNorm":4.2871},
+             "timestamp":"2025-01-01T00:00:00Z",
+             "gnnScore":0.8731,"confidence":0.7462,"fraudClusterId":17,"embeddingNorm":4.2871,
+             "sourceAccountId":"1042","targetAccountId":"2211"}
+            """;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private byte[] body;
+
+    @Setup
+    public void setup() throws Exception {
+        body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        AiRiskResult a = GnnTreeMapping.map(mapper.readTree(body));
+        AiRiskResult b = GnnResponseDecoder.decode(body);
+        if (a.getGnnScore() != b.getGnnScore() || a.getClusterId() != b.getClusterId()
+                || !Objects.equals(a.getRingAccounts(), b.getRingAccounts())
+                || !Objects.equals(a.getRiskFactors(), b.getRiskFactors())
+                || !Objects.equals(a.getRiskLevel(), b.getRiskLevel())
+                || a.getEmbeddingNorm() != b.getEmbeddingNorm()) {
+            throw new IllegalStateException("decoder and tree mapping disagree");
+        }
+    }
+
+    @Benchmark
+    public AiRiskResult tree() throws Exception {
+        return GnnTreeMapping.map(mapper.readTree(body));
+    }
+
+    @Benchmark
+    public AiRiskResult streaming() {
+        return GnnResponseDecoder.decode(body);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(GnnResponseDecoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
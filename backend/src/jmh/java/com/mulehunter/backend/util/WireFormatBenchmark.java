@@ -0,0 +1,104 @@
+package com.mulehunter.backend.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.DTO.EifBatchResponse;
+import com.mulehunter.backend.stub.DownstreamStandIn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end JSON vs CBOR: WireCodec → loopback HTTP → {@link DownstreamStandIn}
+ * (which decodes and encodes in the same format) → response read back.
+ *
+ *   eifRescoreChunk  one 2000-row /v1/eif/score-batch chunk, as ModelEvaluationService sends it
+ *   gnnScore         one /v1/gnn/score call with the AiRiskService payload and a full v3.1 response
+ *
+ * Run with the jmh profile (allocation per op via -prof gc):
+ *
+ *   mvn -Pjmh test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.mulehunter.backend.util.WireFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private DownstreamStandIn service;
+    private WebClient client;
+    private WireCodec codec;
+    private Map<String, Object> rescoreChunk;
+    private Map<String, Object> gnnPayload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = DownstreamStandIn.start();
+        client  = WebClient.create(service.baseUrl());
+        codec   = new WireCodec("bench", "cbor".equals(format), new ObjectMapper());
+
+        double[] rows = new double[2000 * 8];
+        for (int i = 0; i < rows.length; i++) rows[i] = Math.log1p(i % 97) * 0.731 + (i % 8) / 7.0;
+        rescoreChunk = Map.of("dim", 8, "features", rows, "explain", false);
+
+        gnnPayload = Map.of(
+                "sourceAccountId",   "1042",
+                "targetAccountId",   "2211",
+                "transactionAmount", 48_250.75,
+                "graphFeatures",     Map.of("suspiciousNeighborCount", 6, "twoHopFraudDensity", 0.1375,
+                                            "connectivityScore", 0.4412),
+                "identityFeatures",  Map.of("ja3Reuse", 3, "deviceReuse", 2, "ipReuse", 4,
+                                            "identityClusterSize", 9),
+                "behaviorFeatures",  Map.of("velocity", 12.5, "burst", 0.83));
+
+        if (eifRescoreChunk().getScores().length != 2000) {
+            throw new IllegalStateException("stand-in returned the wrong number of scores");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public EifBatchResponse eifRescoreChunk() {
+        return codec.post(client, "/v1/eif/score-batch", rescoreChunk,
+                p -> p.readValueAs(EifBatchResponse.class)).block();
+    }
+
+    @Benchmark
+    public JsonNode gnnScore() {
+        return codec.<JsonNode>post(client, "/v1/gnn/score", gnnPayload, JsonParser::readValueAsTree).block();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
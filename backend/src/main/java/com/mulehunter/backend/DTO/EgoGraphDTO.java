@@ -0,0 +1,11 @@
+package com.mulehunter.backend.DTO;
+
+import java.util.List;
+
+public record EgoGraphDTO(
+        String center,
+        int hops,
+        List<EgoNodeDTO> nodes,
+        List<GraphLinkDTO> links,
+        boolean truncated
+) {}
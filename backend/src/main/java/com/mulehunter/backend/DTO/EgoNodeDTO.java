@@ -0,0 +1,10 @@
+package com.mulehunter.backend.DTO;
+
+public record EgoNodeDTO(
+        String nodeId,
+        int hop,
+        double anomalyScore,
+        boolean isAnomalous,
+        boolean fraudFlagged,
+        int degree
+) {}
@@ -0,0 +1,25 @@
+package com.mulehunter.backend.DTO;
+
+import java.util.List;
+import java.util.Map;
+
+/** /v1/eif/score-batch — arrays are parallel to the request rows. */
+public class EifBatchResponse {
+
+    private double[] scores;
+    private double[] confidence;
+    private List<Map<String, Double>> topFactors;
+    private List<String> explanation;
+
+    public double[] getScores() { return scores; }
+    public void setScores(double[] scores) { this.scores = scores; }
+
+    public double[] getConfidence() { return confidence; }
+    public void setConfidence(double[] confidence) { this.confidence = confidence; }
+
+    public List<Map<String, Double>> getTopFactors() { return topFactors; }
+    public void setTopFactors(List<Map<String, Double>> topFactors) { this.topFactors = topFactors; }
+
+    public List<String> getExplanation() { return explanation; }
+    public void setExplanation(List<String> explanation) { this.explanation = explanation; }
+}
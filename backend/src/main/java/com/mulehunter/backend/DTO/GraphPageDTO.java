@@ -0,0 +1,9 @@
+package com.mulehunter.backend.DTO;
+
+import java.util.List;
+
+/** One keyset page; nextCursor is null on the last page. */
+public record GraphPageDTO<T>(
+        List<T> items,
+        String nextCursor
+) {}
@@ -0,0 +1,19 @@
+package com.mulehunter.backend.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/** One NDJSON line of /api/graph/stream — type is "node" or "link". */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GraphStreamItemDTO(
+        String type,
+        GraphNodeDTO node,
+        GraphLinkDTO link
+) {
+        public static GraphStreamItemDTO of(GraphNodeDTO node) {
+                return new GraphStreamItemDTO("node", node, null);
+        }
+
+        public static GraphStreamItemDTO of(GraphLinkDTO link) {
+                return new GraphStreamItemDTO("link", null, link);
+        }
+}
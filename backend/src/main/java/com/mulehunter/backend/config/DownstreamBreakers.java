@@ -0,0 +1,124 @@
+package com.mulehunter.backend.config;
+
+import com.mulehunter.backend.util.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link CircuitBreaker} (with bulkhead) per named downstream, keyed like
+ * {@link DownstreamClientFactory}. Settings come from
+ * downstream.&lt;name&gt;.breaker.* with downstream.default.breaker.* as
+ * fallback:
+ *
+ *   window-size, min-calls, failure-rate, open-ms, half-open-probes,
+ *   max-concurrent
+ *
+ * 4xx responses are the caller's fault and do not count as failures.
+ *
+ * Also the "downstreamBreakers" health component: every breaker's state,
+ * failure rate and rejections are listed under /actuator/health, and the
+ * component reports DEGRADED while any breaker is not CLOSED. DEGRADED is
+ * not in the health status order, so it does not flip the application to
+ * DOWN — the pipeline keeps serving on fallbacks.
+ *
+ * Meters: downstream.breaker.state{downstream} (0 closed, 1 half-open,
+ * 2 open) and downstream.breaker.rejected{downstream,reason}.
+ */
+@Component
+public class DownstreamBreakers implements HealthIndicator {
+
+    private static final Status DEGRADED = new Status("DEGRADED");
+
+    private final Environment env;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public DownstreamBreakers(Environment env, MeterRegistry meterRegistry) {
+        this.env           = env;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public CircuitBreaker get(String downstream) {
+        return breakers.computeIfAbsent(downstream, this::newBreaker);
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> details = new TreeMap<>();
+        boolean allClosed = true;
+
+        for (Map.Entry<String, CircuitBreaker> e : breakers.entrySet()) {
+            CircuitBreaker.Snapshot s = e.getValue().snapshot();
+            allClosed &= s.state() == CircuitBreaker.State.CLOSED;
+
+            Map<String, Object> d = new LinkedHashMap<>();
+            d.put("state",          s.state());
+            d.put("failureRate",    Math.round(s.failureRate() * 1000) / 1000.0);
+            d.put("bufferedCalls",  s.bufferedCalls());
+            d.put("inFlight",       s.inFlight());
+            d.put("rejectedOpen",   s.rejectedOpen());
+            d.put("rejectedFull",   s.rejectedFull());
+            details.put(e.getKey(), d);
+        }
+
+        return Health.status(allClosed ? Status.UP : DEGRADED).withDetails(details).build();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private CircuitBreaker newBreaker(String downstream) {
+        CircuitBreaker breaker = new CircuitBreaker(downstream,
+                prop(downstream, "window-size", Integer.class, 50),
+                prop(downstream, "min-calls", Integer.class, 20),
+                prop(downstream, "failure-rate", Double.class, 0.5),
+                Duration.ofMillis(prop(downstream, "open-ms", Long.class, 10000L)),
+                prop(downstream, "half-open-probes", Integer.class, 3),
+                prop(downstream, "max-concurrent", Integer.class, 100),
+                DownstreamBreakers::isFailure);
+
+        Gauge.builder("downstream.breaker.state", breaker, b -> switch (b.state()) {
+                    case CLOSED -> 0;
+                    case HALF_OPEN -> 1;
+                    case OPEN -> 2;
+                })
+                .description("Circuit breaker state: 0 closed, 1 half-open, 2 open")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+        FunctionCounter.builder("downstream.breaker.rejected", breaker, b -> b.snapshot().rejectedOpen())
+                .description("Calls failed fast without network I/O")
+                .tags("downstream", downstream, "reason", "open")
+                .register(meterRegistry);
+        FunctionCounter.builder("downstream.breaker.rejected", breaker, b -> b.snapshot().rejectedFull())
+                .description("Calls failed fast without network I/O")
+                .tags("downstream", downstream, "reason", "bulkhead")
+                .register(meterRegistry);
+
+        System.out.printf("🧯 BREAKER %s → window=%d failureRate=%.2f maxConcurrent=%d%n", downstream,
+                prop(downstream, "window-size", Integer.class, 50),
+                prop(downstream, "failure-rate", Double.class, 0.5),
+                prop(downstream, "max-concurrent", Integer.class, 100));
+        return breaker;
+    }
+
+    private static boolean isFailure(Throwable e) {
+        return !(e instanceof WebClientResponseException w && w.getStatusCode().is4xxClientError());
+    }
+
+    private <T> T prop(String downstream, String key, Class<T> type, T fallback) {
+        T shared = env.getProperty("downstream.default.breaker." + key, type, fallback);
+        return env.getProperty("downstream." + downstream + ".breaker." + key, type, shared);
+    }
+}
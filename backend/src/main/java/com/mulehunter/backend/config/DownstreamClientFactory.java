@@ -0,0 +1,111 @@
+package com.mulehunter.backend.config;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One place to build WebClients for downstream services.
+ *
+ * Each named downstream (ai, eif, security, visual, visual-stream) gets its
+ * own Reactor Netty connection pool, created once and shared by every
+ * client for that name. Settings are read from downstream.&lt;name&gt;.* with
+ * downstream.default.* as fallback:
+ *
+ *   max-connections, pending-acquire-max, pending-acquire-timeout-ms,
+ *   max-idle-ms, max-life-ms, evict-interval-ms, connect-timeout-ms,
+ *   response-timeout-ms (0 = none, for streams), keep-alive
+ *
+ * Pools report reactor.netty.connection.provider.* gauges (active, idle,
+ * pending, max) tagged with the pool name, so saturation shows up on
+ * /actuator/prometheus instead of as silent queueing.
+ */
+@Component
+public class DownstreamClientFactory {
+
+    public static final String AI            = "ai";
+    public static final String EIF           = "eif";
+    public static final String SECURITY      = "security";
+    public static final String VISUAL        = "visual";
+    public static final String VISUAL_STREAM = "visual-stream";
+
+    private final Environment env;
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+
+    public DownstreamClientFactory(Environment env) {
+        this.env = env;
+    }
+
+    public WebClient create(String downstream, String baseUrl) {
+        return builder(downstream, baseUrl).build();
+    }
+
+    /** Builder preconfigured with the downstream's pool and timeouts. */
+    public WebClient.Builder builder(String downstream, String baseUrl) {
+
+        ConnectionProvider provider = providers.computeIfAbsent(downstream, this::newProvider);
+
+        HttpClient http = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, intProp(downstream, "connect-timeout-ms", 1000))
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(boolProp(downstream, "keep-alive", true));
+
+        long responseTimeoutMs = longProp(downstream, "response-timeout-ms", 5000);
+        if (responseTimeoutMs > 0) {
+            http = http.responseTimeout(Duration.ofMillis(responseTimeoutMs));
+        }
+
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(http));
+    }
+
+    @PreDestroy
+    void dispose() {
+        providers.values().forEach(ConnectionProvider::dispose);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private ConnectionProvider newProvider(String downstream) {
+        ConnectionProvider provider = ConnectionProvider.builder(downstream)
+                .maxConnections(intProp(downstream, "max-connections", 200))
+                .pendingAcquireMaxCount(intProp(downstream, "pending-acquire-max", 1000))
+                .pendingAcquireTimeout(Duration.ofMillis(longProp(downstream, "pending-acquire-timeout-ms", 2000)))
+                .maxIdleTime(Duration.ofMillis(longProp(downstream, "max-idle-ms", 30000)))
+                .maxLifeTime(Duration.ofMillis(longProp(downstream, "max-life-ms", 300000)))
+                .evictInBackground(Duration.ofMillis(longProp(downstream, "evict-interval-ms", 30000)))
+                .metrics(true)
+                .build();
+        System.out.printf("🔌 POOL %s → max=%d pending=%d%n", downstream,
+                intProp(downstream, "max-connections", 200),
+                intProp(downstream, "pending-acquire-max", 1000));
+        return provider;
+    }
+
+    private int intProp(String downstream, String key, int fallback) {
+        return prop(downstream, key, Integer.class, fallback);
+    }
+
+    private long longProp(String downstream, String key, long fallback) {
+        return prop(downstream, key, Long.class, fallback);
+    }
+
+    private boolean boolProp(String downstream, String key, boolean fallback) {
+        return prop(downstream, key, Boolean.class, fallback);
+    }
+
+    private <T> T prop(String downstream, String key, Class<T> type, T fallback) {
+        T shared = env.getProperty("downstream.default." + key, type, fallback);
+        return env.getProperty("downstream." + downstream + "." + key, type, shared);
+    }
+}
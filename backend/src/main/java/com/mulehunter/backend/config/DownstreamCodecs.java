@@ -0,0 +1,55 @@
+package com.mulehunter.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.util.WireCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link WireCodec} per named downstream, keyed like
+ * {@link DownstreamClientFactory}. downstream.&lt;name&gt;.wire-format
+ * (json | cbor) overrides downstream.default.wire-format; json unless set.
+ *
+ * Meter: downstream.wire.format{downstream} — 1 while sending CBOR, 0 for
+ * JSON, so a 415 fallback shows up without reading logs.
+ */
+@Component
+public class DownstreamCodecs {
+
+    private final Environment env;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, WireCodec> codecs = new ConcurrentHashMap<>();
+
+    public DownstreamCodecs(Environment env, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.env           = env;
+        this.objectMapper  = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public WireCodec get(String downstream) {
+        return codecs.computeIfAbsent(downstream, this::newCodec);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private WireCodec newCodec(String downstream) {
+        String shared = env.getProperty("downstream.default.wire-format", "json");
+        String format = env.getProperty("downstream." + downstream + ".wire-format", shared);
+
+        WireCodec codec = new WireCodec(downstream, "cbor".equalsIgnoreCase(format.trim()), objectMapper);
+
+        Gauge.builder("downstream.wire.format", codec, c -> c.isCbor() ? 1 : 0)
+                .description("Request encoding: 1 cbor, 0 json")
+                .tag("downstream", downstream)
+                .register(meterRegistry);
+
+        System.out.printf("📦 WIRE %s → %s%n", downstream, codec.isCbor() ? "cbor" : "json");
+        return codec;
+    }
+}
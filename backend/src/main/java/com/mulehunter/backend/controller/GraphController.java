@@ -1,26 +1,42 @@
 package com.mulehunter.backend.controller;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.mulehunter.backend.DTO.EgoGraphDTO;
+import com.mulehunter.backend.DTO.EgoNodeDTO;
 import com.mulehunter.backend.DTO.GraphLinkDTO;
 import com.mulehunter.backend.DTO.GraphNodeDTO;
 import com.mulehunter.backend.DTO.GraphNodeDetailDTO;
+import com.mulehunter.backend.DTO.GraphPageDTO;
 import com.mulehunter.backend.DTO.GraphResponseDTO;
+import com.mulehunter.backend.DTO.GraphStreamItemDTO;
+import com.mulehunter.backend.service.TransactionGraphIndex;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -28,67 +44,169 @@ import reactor.core.publisher.Mono;
 @CrossOrigin(origins = "*")
 public class GraphController {
 
+        private static final int MAX_PAGE_SIZE = 5000;
+
+        private static final int MAX_EGO_HOPS  = 4;
+        private static final int MAX_EGO_NODES = 5000;
+        // Parallel edges make links outnumber nodes; keep the payload bounded too
+        private static final int EGO_LINKS_PER_NODE = 10;
+
         private final ReactiveMongoTemplate mongo;
+        private final TransactionGraphIndex graphIndex;
 
-        public GraphController(ReactiveMongoTemplate mongo) {
-                this.mongo = mongo;
+        public GraphController(ReactiveMongoTemplate mongo, TransactionGraphIndex graphIndex) {
+                this.mongo      = mongo;
+                this.graphIndex = graphIndex;
         }
 
         // ── EXISTING: GET FULL GRAPH (nodes + links) ──────────────────────────────
 
+        /**
+         * Whole graph as one document, for the 3D view. Same links as before
+         * the streamed endpoints existed: seeded source/target edges between
+         * returned nodes; live transactions (sourceAccount/targetAccount) are
+         * only on /graph/stream and /graph/links.
+         *
+         * Still not bounded: every matching node and link is held in memory
+         * to build the response, and the node ids to join links against.
+         * Only the DTO fields are read, but heap still grows with the graph;
+         * large graphs belong on /graph/stream or the paged endpoints.
+         */
         @GetMapping("/graph")
-        public Mono<GraphResponseDTO> getGraph() {
-
-                Mono<List<GraphNodeDTO>> nodesMono = mongo.findAll(Map.class, "nodes")
-                                .map(doc -> {
-                                        Object nodeIdObj = doc.get("node_id");
-                                        if (nodeIdObj == null) return null;
+        public Mono<GraphResponseDTO> getGraph(
+                        @RequestParam(required = false) Double minRisk,
+                        @RequestParam(required = false) String community) {
 
-                                        String nodeId = nodeIdObj.toString();
-                                        double anomalyScore = parseDouble(doc.get("anomaly_score"));
-                                        boolean isAnomalous = "1"
-                                                        .equals(doc.getOrDefault("is_anomalous", "0").toString());
-                                        long txVelocity = parseLong(doc.get("tx_count"));
-
-                                        return new GraphNodeDTO(nodeId, anomalyScore, isAnomalous, txVelocity);
-                                })
-                                .filter(n -> n != null)
+                Mono<List<GraphNodeDTO>> nodesMono = mongo.find(nodeQuery(minRisk, community), Document.class, "nodes")
+                                .mapNotNull(GraphController::toNode)
                                 .collectList()
                                 .onErrorReturn(List.of())
                                 .cache();
 
-                Mono<List<GraphLinkDTO>> linksMono = mongo.findAll(Map.class, "transactions")
-                                .collectList()
-                                .zipWith(nodesMono)
-                                .map(tuple -> {
-                                        List<Map> txs = tuple.getT1();
-                                        List<GraphNodeDTO> nodes = tuple.getT2();
-
-                                        Set<String> nodeIds = nodes.stream()
-                                                        .map(GraphNodeDTO::nodeId)
-                                                        .collect(Collectors.toSet());
-
-                                        return txs.stream()
-                                                        .map(doc -> {
-                                                                Object srcObj = doc.get("source");
-                                                                Object tgtObj = doc.get("target");
-                                                                if (srcObj == null || tgtObj == null) return null;
-
-                                                                String source = srcObj.toString();
-                                                                String target = tgtObj.toString();
-                                                                if (!nodeIds.contains(source) || !nodeIds.contains(target)) return null;
-
-                                                                return new GraphLinkDTO(source, target, parseBigDecimal(doc.get("amount")));
-                                                        })
-                                                        .filter(l -> l != null)
-                                                        .toList();
-                                });
+                Mono<List<GraphLinkDTO>> linksMono = nodesMono.flatMap(nodes -> {
+                        Set<String> nodeIds = nodes.stream()
+                                        .map(GraphNodeDTO::nodeId)
+                                        .collect(Collectors.toSet());
+
+                        return mongo.find(seededLinkQuery(), Document.class, "transactions")
+                                        .mapNotNull(GraphController::toSeededLink)
+                                        .filter(l -> nodeIds.contains(l.source()) && nodeIds.contains(l.target()))
+                                        .collectList();
+                });
 
                 return Mono.zip(nodesMono, linksMono)
                                 .map(t -> new GraphResponseDTO(t.getT1(), t.getT2()))
                                 .onErrorReturn(new GraphResponseDTO(List.of(), List.of()));
         }
 
+        // ── STREAMED / PAGED GRAPH ────────────────────────────────────────────────
+
+        /**
+         * NDJSON stream of every matching node, then every matching link —
+         * seeded source/target edges and live sourceAccount/targetAccount
+         * transactions alike. Back-pressured straight off the Mongo cursors, so heap use does not
+         * grow with the graph. Links are not joined against the node filter
+         * (that would need the node set in memory) — clients drop links whose
+         * endpoints they have not seen.
+         */
+        @GetMapping(value = "/graph/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<GraphStreamItemDTO> streamGraph(
+                        @RequestParam(required = false) Double minRisk,
+                        @RequestParam(required = false) String community,
+                        @RequestParam(required = false) String from,
+                        @RequestParam(required = false) String to) {
+
+                Flux<GraphStreamItemDTO> nodes = mongo.find(nodeQuery(minRisk, community), Document.class, "nodes")
+                                .mapNotNull(GraphController::toNode)
+                                .map(GraphStreamItemDTO::of);
+
+                Flux<GraphStreamItemDTO> links = mongo.find(linkQuery(from, to), Document.class, "transactions")
+                                .mapNotNull(GraphController::toLink)
+                                .map(GraphStreamItemDTO::of);
+
+                return nodes.concatWith(links);
+        }
+
+        /** Keyset page of nodes ordered by _id; pass nextCursor back as after. */
+        @GetMapping("/graph/nodes")
+        public Mono<ResponseEntity<GraphPageDTO<GraphNodeDTO>>> getNodePage(
+                        @RequestParam(required = false) String after,
+                        @RequestParam(defaultValue = "1000") int limit,
+                        @RequestParam(required = false) Double minRisk,
+                        @RequestParam(required = false) String community) {
+
+                return page(nodeQuery(minRisk, community), "nodes", after, limit, GraphController::toNode);
+        }
+
+        /** Keyset page of links (seeded and live, as in /graph/stream) ordered by _id; pass nextCursor back as after. */
+        @GetMapping("/graph/links")
+        public Mono<ResponseEntity<GraphPageDTO<GraphLinkDTO>>> getLinkPage(
+                        @RequestParam(required = false) String after,
+                        @RequestParam(defaultValue = "1000") int limit,
+                        @RequestParam(required = false) String from,
+                        @RequestParam(required = false) String to) {
+
+                return page(linkQuery(from, to), "transactions", after, limit, GraphController::toLink);
+        }
+
+        // ── EGO NETWORK ───────────────────────────────────────────────────────────
+
+        /**
+         * k-hop neighbourhood of one account from the in-memory graph index,
+         * cut off at maxNodes and following only edges >= minAmount. Anomaly
+         * scores are filled in with a single node_id $in lookup of the result.
+         * 503 while the index is still bootstrapping.
+         */
+        @GetMapping("/graph/ego/{nodeId}")
+        public Mono<ResponseEntity<EgoGraphDTO>> getEgoGraph(
+                        @PathVariable String nodeId,
+                        @RequestParam(defaultValue = "2") int hops,
+                        @RequestParam(defaultValue = "200") int maxNodes,
+                        @RequestParam(defaultValue = "0") double minAmount) {
+
+                if (!graphIndex.isReady()) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+                }
+                int h = Math.max(1, Math.min(hops, MAX_EGO_HOPS));
+                int n = Math.max(1, Math.min(maxNodes, MAX_EGO_NODES));
+
+                TransactionGraphIndex.EgoGraph ego = graphIndex.ego(nodeId, h, n, n * EGO_LINKS_PER_NODE, minAmount);
+                if (ego == null) return Mono.just(ResponseEntity.notFound().build());
+
+                List<Object> keys = new ArrayList<>();
+                for (TransactionGraphIndex.EgoNode node : ego.nodes()) {
+                        keys.add(node.id());
+                        Integer asInt = parseIntSafe(node.id());
+                        if (asInt != null) keys.add(asInt);
+                }
+                Query query = new Query(Criteria.where("node_id").in(keys));
+                query.fields().include("node_id", "anomaly_score", "is_anomalous");
+
+                return mongo.find(query, Document.class, "nodes")
+                                .collectMap(doc -> doc.get("node_id").toString())
+                                .onErrorReturn(Map.of())
+                                .map(scored -> {
+                                        List<EgoNodeDTO> nodes = ego.nodes().stream()
+                                                        .map(node -> {
+                                                                Document doc = scored.get(node.id());
+                                                                return new EgoNodeDTO(
+                                                                                node.id(),
+                                                                                node.hop(),
+                                                                                doc == null ? 0.0 : parseDouble(doc.get("anomaly_score")),
+                                                                                doc != null && "1".equals(
+                                                                                                doc.getOrDefault("is_anomalous", "0").toString()),
+                                                                                node.fraud(),
+                                                                                node.degree());
+                                                        })
+                                                        .toList();
+                                        List<GraphLinkDTO> links = ego.links().stream()
+                                                        .map(l -> new GraphLinkDTO(l.source(), l.target(),
+                                                                        BigDecimal.valueOf(l.amount()).setScale(2, RoundingMode.HALF_UP)))
+                                                        .toList();
+                                        return ResponseEntity.ok(new EgoGraphDTO(nodeId, h, nodes, links, ego.truncated()));
+                                });
+        }
+
         // ── EXISTING: GET SINGLE NODE DETAIL (SHAP / reasons) ────────────────────
 
         @GetMapping("/graph/node/{nodeId}")
@@ -147,6 +265,100 @@ public class GraphController {
                                 .map(ResponseEntity::ok);
         }
 
+        // ── QUERIES / MAPPING ─────────────────────────────────────────────────────
+
+        private <T> Mono<ResponseEntity<GraphPageDTO<T>>> page(
+                        Query query, String collection, String after, int limit,
+                        Function<Document, T> mapper) {
+
+                if (after != null && !ObjectId.isValid(after)) {
+                        return Mono.just(ResponseEntity.badRequest().build());
+                }
+                int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+                if (after != null) query.addCriteria(Criteria.where("_id").gt(new ObjectId(after)));
+                query.with(Sort.by(Sort.Direction.ASC, "_id")).limit(size);
+
+                return mongo.find(query, Document.class, collection)
+                                .collectList()
+                                .map(docs -> {
+                                        List<T> items = docs.stream()
+                                                        .map(mapper)
+                                                        .filter(Objects::nonNull)
+                                                        .toList();
+                                        String next = docs.size() < size ? null
+                                                        : docs.get(docs.size() - 1).get("_id").toString();
+                                        return ResponseEntity.ok(new GraphPageDTO<>(items, next));
+                                });
+        }
+
+        /** Nodes with anomaly_score >= minRisk and/or in the given community, DTO fields only. */
+        private static Query nodeQuery(Double minRisk, String community) {
+                Query query = new Query();
+                if (minRisk != null) query.addCriteria(Criteria.where("anomaly_score").gte(minRisk));
+                if (community != null) {
+                        // Seeded from CSV, so community_id may be a string or a number
+                        Integer asInt = parseIntSafe(community);
+                        query.addCriteria(asInt == null
+                                        ? Criteria.where("community_id").is(community)
+                                        : Criteria.where("community_id").in(community, asInt));
+                }
+                query.fields().include("node_id", "anomaly_score", "is_anomalous", "tx_count");
+                return query;
+        }
+
+        /**
+         * Links with from <= timestamp < to (ISO-8601 strings). Seeded edges
+         * carry no timestamp, so any time bound restricts to live transactions.
+         */
+        private static Query linkQuery(String from, String to) {
+                Query query = new Query();
+                if (from != null || to != null) {
+                        Criteria ts = Criteria.where("timestamp");
+                        if (from != null) ts = ts.gte(from);
+                        if (to != null)   ts = ts.lt(to);
+                        query.addCriteria(ts);
+                }
+                query.fields().include("source", "target", "sourceAccount", "targetAccount", "amount");
+                return query;
+        }
+
+        /** Seeded edges only, as /graph has always returned them. */
+        private static Query seededLinkQuery() {
+                Query query = new Query(Criteria.where("source").exists(true).and("target").exists(true));
+                query.fields().include("source", "target", "amount");
+                return query;
+        }
+
+        private static GraphNodeDTO toNode(Document doc) {
+                Object nodeIdObj = doc.get("node_id");
+                if (nodeIdObj == null) return null;
+
+                String nodeId = nodeIdObj.toString();
+                double anomalyScore = parseDouble(doc.get("anomaly_score"));
+                boolean isAnomalous = "1"
+                                .equals(doc.getOrDefault("is_anomalous", "0").toString());
+                long txVelocity = parseLong(doc.get("tx_count"));
+
+                return new GraphNodeDTO(nodeId, anomalyScore, isAnomalous, txVelocity);
+        }
+
+        private static GraphLinkDTO toSeededLink(Document doc) {
+                Object srcObj = doc.get("source");
+                Object tgtObj = doc.get("target");
+                if (srcObj == null || tgtObj == null) return null;
+
+                return new GraphLinkDTO(srcObj.toString(), tgtObj.toString(), parseBigDecimal(doc.get("amount")));
+        }
+
+        /** Seeded source/target, falling back to a live transaction's sourceAccount/targetAccount. */
+        private static GraphLinkDTO toLink(Document doc) {
+                Object srcObj = doc.get("source") != null ? doc.get("source") : doc.get("sourceAccount");
+                Object tgtObj = doc.get("target") != null ? doc.get("target") : doc.get("targetAccount");
+                if (srcObj == null || tgtObj == null) return null;
+
+                return new GraphLinkDTO(srcObj.toString(), tgtObj.toString(), parseBigDecimal(doc.get("amount")));
+        }
+
         // ── SAFE PARSERS ──────────────────────────────────────────────────────────
 
         private static double parseDouble(Object v) {
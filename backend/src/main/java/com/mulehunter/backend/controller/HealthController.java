@@ -9,6 +9,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import com.mulehunter.backend.config.DownstreamClientFactory;
+
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -18,11 +20,10 @@ public class HealthController {
     private final WebClient aiWebClient;
     
     public HealthController(
-            @Value("${ai.service.url:http://localhost:8001}") String aiServiceUrl
+            @Value("${ai.service.url:http://localhost:8001}") String aiServiceUrl,
+            DownstreamClientFactory clients
     ) {
-        this.aiWebClient = WebClient.builder()
-                .baseUrl(aiServiceUrl)
-                .build();
+        this.aiWebClient = clients.create(DownstreamClientFactory.AI, aiServiceUrl);
     }
 
     
@@ -1,7 +1,13 @@
 package com.mulehunter.backend.controller;
 
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.mulehunter.backend.model.Transaction;
 import com.mulehunter.backend.model.TransactionRequest;
+import com.mulehunter.backend.service.TransactionBulkService;
 import com.mulehunter.backend.service.TransactionService;
 
 // FIX: was org.springframework.http.server.reactive.ServerHttpRequest (WebFlux interface)
@@ -14,10 +20,14 @@ import com.mulehunter.backend.service.TransactionService;
 import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
 import java.util.*;
 
 @RestController
@@ -26,9 +36,15 @@ import java.util.*;
 public class TransactionController {
 
     private final TransactionService transactionService;
-
-    public TransactionController(TransactionService transactionService) {
-        this.transactionService = transactionService;
+    private final TransactionBulkService transactionBulkService;
+    private final ObjectReader requestReader;
+
+    public TransactionController(TransactionService transactionService,
+                                 TransactionBulkService transactionBulkService,
+                                 ObjectMapper objectMapper) {
+        this.transactionService     = transactionService;
+        this.transactionBulkService = transactionBulkService;
+        this.requestReader          = objectMapper.readerFor(TransactionRequest.class);
     }
 
     @PostMapping("/transactions")
@@ -54,6 +70,86 @@ public class TransactionController {
                 });
     }
 
+    /**
+     * Bulk / replay ingest. Accepts either NDJSON (one TransactionRequest per
+     * line) or a single JSON array; the body is parsed incrementally so the
+     * upload is never materialised in memory. One NDJSON result line is
+     * streamed back per transaction as soon as its batch is persisted.
+     */
+    @PostMapping(
+            value = "/transactions/bulk",
+            consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE },
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<Map<String, Object>> createTransactionsBulk(HttpServletRequest httpRequest) {
+
+        String ja3 = httpRequest.getHeader("X-JA3-Fingerprint");
+
+        // MappingIterator unwraps a root-level JSON array as well as a plain
+        // sequence of root values, so both content types share one reader.
+        // Servlet input is blocking — read it off the request thread.
+        Flux<TransactionBulkService.Row> rows = Flux.using(
+                        () -> requestReader.<TransactionRequest>readValues(httpRequest.getInputStream()),
+                        TransactionController::readRows,
+                        TransactionController::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic());
+
+        return transactionBulkService.ingest(rows, ja3)
+                .map(this::buildBulkResult);
+    }
+
+    /**
+     * One Row per root value. A row that is valid JSON but does not bind
+     * (wrong type, bad date) is reported and skipped — MappingIterator
+     * resyncs to the next root value. A syntax error leaves the parser with
+     * no reliable next value, so it is reported and ends the upload.
+     */
+    private static Flux<TransactionBulkService.Row> readRows(MappingIterator<TransactionRequest> it) {
+        return Flux.generate(sink -> {
+            try {
+                if (it.hasNextValue()) {
+                    sink.next(TransactionBulkService.Row.of(it.nextValue()));
+                } else {
+                    sink.complete();
+                }
+            } catch (StreamReadException e) {
+                sink.next(TransactionBulkService.Row.unreadable("Malformed JSON: " + e.getOriginalMessage()));
+                sink.complete();
+            } catch (DatabindException e) {
+                sink.next(TransactionBulkService.Row.unreadable("Invalid request: " + e.getOriginalMessage()));
+            } catch (IOException e) {
+                sink.error(e);
+            }
+        });
+    }
+
+    private static void closeQuietly(MappingIterator<?> it) {
+        try {
+            it.close();
+        } catch (Exception e) {
+            System.err.println("⚠️ BULK body close failed: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> buildBulkResult(TransactionBulkService.Outcome outcome) {
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("transactionId", outcome.transactionId());
+
+        if (!outcome.isScored()) {
+            resp.put("status", "REJECTED");
+            resp.put("error",  outcome.error());
+            return resp;
+        }
+
+        Transaction tx = outcome.transaction();
+        resp.put("status",         "SCORED");
+        resp.put("decision",       tx.getDecision());
+        resp.put("riskScore",      tx.getRiskScore());
+        resp.put("riskLevel",      tx.getRiskLevel());
+        resp.put("suspectedFraud", tx.isSuspectedFraud());
+        return resp;
+    }
+
     private Map<String, Object> buildRichResponse(Transaction tx) {
         Map<String, Object> resp = new LinkedHashMap<>();
 
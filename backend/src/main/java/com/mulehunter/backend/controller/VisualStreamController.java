@@ -8,6 +8,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.reactive.function.client.WebClient;
+import com.mulehunter.backend.config.DownstreamClientFactory;
 import reactor.core.publisher.Flux;
 
 @RestController
@@ -21,10 +22,11 @@ public class VisualStreamController {
     private String internalApiKey;
 
     public VisualStreamController(
-            WebClient.Builder builder,
+            DownstreamClientFactory clients,
             @Value("${visual.service.url:http://localhost:8000}") String visualServiceUrl
     ) {
-        this.webClient = builder.baseUrl(visualServiceUrl).build();
+        // Own pool without a response timeout — SSE connections are long-lived
+        this.webClient = clients.create(DownstreamClientFactory.VISUAL_STREAM, visualServiceUrl);
     }
 
     @GetMapping(
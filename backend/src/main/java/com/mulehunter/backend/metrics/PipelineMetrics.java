@@ -0,0 +1,133 @@
+package com.mulehunter.backend.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency timers and fallback counters for the risk pipeline.
+ *
+ * Exported on /actuator/prometheus as
+ *   pipeline_stage_seconds{stage="..."}       — one timer per pipeline step
+ *   pipeline_total_seconds                    — end-to-end createTransaction
+ *   pipeline_fallback_total{downstream="..."} — onErrorResume fallbacks taken
+ *   pipeline_bulk_orphaned_total              — bulk rows scored but never inserted
+ *   pipeline_pending_dead_lettered_total      — outbox markers given up on by recovery
+ *   pipeline_enrichment_dead_lettered_total   — enrichment tasks out of attempts
+ * Timers publish a percentile histogram plus p50/p95/p99 so dashboards can
+ * aggregate across instances and still read tail latency locally.
+ */
+@Component
+public class PipelineMetrics {
+
+    // ── Stage names ────────────────────────────────────────────────────
+    public static final String VALIDATION        = "validation";
+    public static final String FIRST_SAVE        = "first_save";
+    public static final String OUTBOX_WRITE      = "outbox_write";
+    public static final String IDENTITY_COLLECT  = "identity_collect";
+    public static final String AGGREGATE_UPDATE  = "aggregate_update";
+    public static final String BEHAVIOR_FEATURES = "behavior_features";
+    public static final String GRAPH_FEATURES    = "graph_features";
+    public static final String GNN_CALL          = "gnn_call";
+    public static final String JA3_CALL          = "ja3_call";
+    public static final String EIF_CALL          = "eif_call";
+    public static final String FINAL_SAVE        = "final_save";
+    public static final String BULK_INSERT       = "bulk_insert";
+
+    // ── Downstreams with fallbacks ─────────────────────────────────────
+    public static final String GNN    = "gnn";
+    public static final String EIF    = "eif";
+    public static final String JA3    = "ja3";
+    public static final String VISUAL = "visual";
+
+    private final MeterRegistry registry;
+    private final Timer totalTimer;
+    private final Map<String, Timer>   stageTimers      = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fallbackCounters = new ConcurrentHashMap<>();
+    private final Counter bulkOrphans;
+    private final Counter pendingDeadLettered;
+    private final Counter enrichmentDeadLettered;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry   = registry;
+        this.totalTimer = Timer.builder("pipeline.total")
+                .description("End-to-end transaction risk pipeline latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.bulkOrphans = Counter.builder("pipeline.bulk.orphaned")
+                .description("Bulk rows whose side effects ran but whose insert failed")
+                .register(registry);
+        this.pendingDeadLettered = Counter.builder("pipeline.pending.dead_lettered")
+                .description("Pending-transaction markers moved to the dead-letter collection")
+                .register(registry);
+        this.enrichmentDeadLettered = Counter.builder("pipeline.enrichment.dead_lettered")
+                .description("Enrichment tasks moved to the dead-letter collection")
+                .register(registry);
+    }
+
+    /**
+     * Times {@code mono} from subscription to termination (success, error or
+     * cancel) under the given stage name.
+     */
+    public <T> Mono<T> timeStage(String stage, Mono<T> mono) {
+        return time(stageTimer(stage), mono);
+    }
+
+    public <T> Mono<T> timeTotal(Mono<T> mono) {
+        return time(totalTimer, mono);
+    }
+
+    public void recordFallback(String downstream) {
+        fallbackCounters.computeIfAbsent(downstream, d -> Counter.builder("pipeline.fallback")
+                        .description("Downstream calls answered by their onErrorResume fallback")
+                        .tag("downstream", d)
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordBulkOrphans(int count) {
+        if (count > 0) bulkOrphans.increment(count);
+    }
+
+    public void recordPendingDeadLettered() {
+        pendingDeadLettered.increment();
+    }
+
+    public void recordEnrichmentDeadLettered() {
+        enrichmentDeadLettered.increment();
+    }
+
+    /**
+     * Mean end-to-end latency in ms since startup, or NaN if nothing has been
+     * scored yet.
+     */
+    public double meanTotalLatencyMs() {
+        return totalTimer.count() == 0 ? Double.NaN : totalTimer.mean(TimeUnit.MILLISECONDS);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private Timer stageTimer(String stage) {
+        return stageTimers.computeIfAbsent(stage, s -> Timer.builder("pipeline.stage")
+                .description("Latency of one risk pipeline step")
+                .tag("stage", s)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private static <T> Mono<T> time(Timer timer, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal ->
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+}
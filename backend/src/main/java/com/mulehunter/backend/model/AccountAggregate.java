@@ -5,14 +5,22 @@ import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 
+import com.mulehunter.sketch.HyperLogLog;
+
 import java.time.Instant;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Step 4 — Account Daily Aggregate
  * One document per account. Updated incrementally on every transaction.
  * Avoids heavy re-aggregation queries at scoring time.
+ *
+ * The 24h / 7d figures are true sliding windows over ring buffers: 24
+ * hourly and 7 daily buckets, each tagged with the epoch hour/day it holds.
+ * A write into a bucket whose stamp is stale overwrites it; reads skip
+ * buckets that fell out of the window. No tumbling reset, so velocity and
+ * burst never collapse to zero mid-activity.
  */
 @Document(collection = "account_aggregates")
 @CompoundIndex(name = "account_idx", def = "{'accountId': 1}", unique = true)
@@ -24,7 +32,23 @@ public class AccountAggregate {
     @Indexed(unique = true)
     private String accountId;
 
+    public static final int HOURS = 24;
+    public static final int DAYS  = 7;
+
+    // ── Ring buffers (index = epochHour % 24 / epochDay % 7) ───────────
+    private long[]   hourStamps  = new long[HOURS];
+    private double[] hourlyOut   = new double[HOURS];
+    private double[] hourlyIn    = new double[HOURS];
+    private int[]    hourlyCount = new int[HOURS];
+
+    private long[]   dayStamps   = new long[DAYS];
+    private double[] dailyOut    = new double[DAYS];
+    private double[] dailyIn     = new double[DAYS];
+    private int[]    dailyCount  = new int[DAYS];
+
     // ── 24h rolling window ─────────────────────────────────────────────
+    // Snapshot of the ring-buffer sums as of lastUpdated (for queries and
+    // dashboards). Scoring uses the *Last24h / *Last7d methods instead.
     private double totalOut24h   = 0.0;
     private double totalIn24h    = 0.0;
     private int    txnCount24h   = 0;
@@ -34,10 +58,13 @@ public class AccountAggregate {
     private double totalIn7d     = 0.0;
     private int    txnCount7d    = 0;
     private int    uniqueCounterparties7d = 0;
-    // Tracks distinct counterparty IDs seen in the 7d window.
-    // uniqueCounterparties7d is derived from this set's size.
-    // The set is cleared when the 7d window resets.
-    private Set<String> seenCounterparties7d = new HashSet<>();
+    // Distinct counterparties: one HyperLogLog sketch per day slot
+    // (slot = epochDay % 7), stored as counterpartySlots.s<slot> → one
+    // binary of HyperLogLog.M registers, with sketchDayStamps[slot] the day
+    // the slot holds. At most DAYS × 1 KiB per account; the 7d estimate is
+    // computed in Java (counterpartiesLast7d).
+    private Map<String, byte[]> counterpartySlots;
+    private long[] sketchDayStamps    = new long[DAYS];
 
     // ── JA3 / Device signals ───────────────────────────────────────────
     private int    ja3ReuseCount    = 0;
@@ -46,8 +73,6 @@ public class AccountAggregate {
 
     // ── Timestamps ─────────────────────────────────────────────────────
     private Instant lastUpdated;
-    private Instant windowStart24h;
-    private Instant windowStart7d;
 
     public AccountAggregate() {}
 
@@ -55,11 +80,181 @@ public class AccountAggregate {
         AccountAggregate a = new AccountAggregate();
         a.accountId      = accountId;
         a.lastUpdated    = Instant.now();
-        a.windowStart24h = Instant.now();
-        a.windowStart7d  = Instant.now();
         return a;
     }
 
+    public static long epochHour(Instant t) { return Math.floorDiv(t.getEpochSecond(), 3600L); }
+    public static long epochDay(Instant t)  { return Math.floorDiv(t.getEpochSecond(), 86400L); }
+
+    // ── Rolling sums ───────────────────────────────────────────────────
+
+    public double outLast24h(Instant now)  { return sum(getHourStamps(), getHourlyOut(), epochHour(now), HOURS); }
+    public double inLast24h(Instant now)   { return sum(getHourStamps(), getHourlyIn(),  epochHour(now), HOURS); }
+    public int    countLast24h(Instant now){ return (int) sum(getHourStamps(), toDoubles(getHourlyCount()), epochHour(now), HOURS); }
+
+    public double outLast7d(Instant now)   { return sum(getDayStamps(), getDailyOut(), epochDay(now), DAYS); }
+    public double inLast7d(Instant now)    { return sum(getDayStamps(), getDailyIn(),  epochDay(now), DAYS); }
+    public int    countLast7d(Instant now) { return (int) sum(getDayStamps(), toDoubles(getDailyCount()), epochDay(now), DAYS); }
+
+    // Buckets stamped within (current - size, current] are live; anything
+    // older is expired and skipped.
+    private static double sum(long[] stamps, double[] values, long current, int size) {
+        double total = 0.0;
+        for (int i = 0; i < size; i++) {
+            long stamp = stamps[i];
+            if (stamp > current - size && stamp <= current) total += values[i];
+        }
+        return total;
+    }
+
+    // ── Counterparty sketch ────────────────────────────────────────────
+
+    /**
+     * Adds a counterparty to today's slot (recycling the slot if it still
+     * holds an older day). Returns true if the sketch changed.
+     */
+    public boolean offerCounterparty(String counterpartyId, Instant now) {
+        long day  = epochDay(now);
+        int  slot = (int) Math.floorMod(day, (long) DAYS);
+        boolean recycled = recycleSketchSlot(slot, day);
+        return HyperLogLog.offer(sketchSlot(slot), 0, HyperLogLog.hash(counterpartyId)) || recycled;
+    }
+
+    /**
+     * Merges a whole day's sketch (e.g. coalesced by the write-behind cache).
+     * Ignored if the slot already moved on to a later day. Returns true if
+     * the sketch changed.
+     */
+    public boolean mergeCounterparties(long day, byte[] registers) {
+        int slot = (int) Math.floorMod(day, (long) DAYS);
+        if (getSketchDayStamps()[slot] > day) return false;
+        boolean recycled = recycleSketchSlot(slot, day);
+        return HyperLogLog.mergeAt(sketchSlot(slot), 0, registers) || recycled;
+    }
+
+    /** Distinct-counterparty estimate over the live day slots. */
+    public int counterpartiesLast7d(Instant now) {
+        long   day    = epochDay(now);
+        long[] stamps = getSketchDayStamps();
+        byte[] merged = new byte[HyperLogLog.M];
+        for (int i = 0; i < DAYS; i++) {
+            byte[] regs = getCounterpartySlots().get(slotKey(i));
+            if (regs != null && stamps[i] > day - DAYS && stamps[i] <= day) {
+                HyperLogLog.mergeInto(merged, regs, 0);
+            }
+        }
+        return (int) Math.round(HyperLogLog.estimate(merged));
+    }
+
+    private boolean recycleSketchSlot(int slot, long day) {
+        long[] stamps = getSketchDayStamps();
+        if (stamps[slot] == day) return false;
+        getCounterpartySlots().put(slotKey(slot), new byte[HyperLogLog.M]);
+        stamps[slot] = day;
+        return true;
+    }
+
+    /** Key of a day slot under counterpartySlots. */
+    public static String slotKey(int slot) { return "s" + slot; }
+
+    // The slot's registers, created empty if the document has none yet (or
+    // holds a malformed binary).
+    private byte[] sketchSlot(int slot) {
+        byte[] regs = getCounterpartySlots().get(slotKey(slot));
+        if (regs == null || regs.length != HyperLogLog.M) {
+            regs = new byte[HyperLogLog.M];
+            getCounterpartySlots().put(slotKey(slot), regs);
+        }
+        return regs;
+    }
+
+    // ── In-memory updates (write-behind cache) ─────────────────────────
+    // Same bucket semantics as the AccountAggregateWriter update pipeline:
+    // a bucket holding an older period is overwritten, not added to, and a
+    // contribution older than the bucket's period is dropped.
+
+    public void addToHour(long hour, double out, double in, int count) {
+        int i = (int) Math.floorMod(hour, (long) HOURS);
+        long[] stamps = getHourStamps();
+        if (stamps[i] > hour) return;
+        if (stamps[i] != hour) {
+            stamps[i] = hour;
+            getHourlyOut()[i] = 0.0;
+            getHourlyIn()[i] = 0.0;
+            getHourlyCount()[i] = 0;
+        }
+        getHourlyOut()[i]   += out;
+        getHourlyIn()[i]    += in;
+        getHourlyCount()[i] += count;
+    }
+
+    public void addToDay(long day, double out, double in, int count) {
+        int i = (int) Math.floorMod(day, (long) DAYS);
+        long[] stamps = getDayStamps();
+        if (stamps[i] > day) return;
+        if (stamps[i] != day) {
+            stamps[i] = day;
+            getDailyOut()[i] = 0.0;
+            getDailyIn()[i] = 0.0;
+            getDailyCount()[i] = 0;
+        }
+        getDailyOut()[i]   += out;
+        getDailyIn()[i]    += in;
+        getDailyCount()[i] += count;
+    }
+
+    /** Recomputes the scalar snapshot fields from the ring buffers. */
+    public void refreshSnapshots(Instant now) {
+        totalOut24h = outLast24h(now);
+        totalIn24h  = inLast24h(now);
+        txnCount24h = countLast24h(now);
+        totalOut7d  = outLast7d(now);
+        totalIn7d   = inLast7d(now);
+        txnCount7d  = countLast7d(now);
+        uniqueCounterparties7d = counterpartiesLast7d(now);
+    }
+
+    /** Deep copy — hands a stable view to readers while the cache keeps mutating. */
+    public AccountAggregate snapshot() {
+        AccountAggregate a = new AccountAggregate();
+        a.id                     = id;
+        a.accountId              = accountId;
+        a.hourStamps             = getHourStamps().clone();
+        a.hourlyOut              = getHourlyOut().clone();
+        a.hourlyIn               = getHourlyIn().clone();
+        a.hourlyCount            = getHourlyCount().clone();
+        a.dayStamps              = getDayStamps().clone();
+        a.dailyOut               = getDailyOut().clone();
+        a.dailyIn                = getDailyIn().clone();
+        a.dailyCount             = getDailyCount().clone();
+        a.totalOut24h            = totalOut24h;
+        a.totalIn24h             = totalIn24h;
+        a.txnCount24h            = txnCount24h;
+        a.totalOut7d             = totalOut7d;
+        a.totalIn7d              = totalIn7d;
+        a.txnCount7d             = txnCount7d;
+        a.uniqueCounterparties7d = uniqueCounterparties7d;
+        a.counterpartySlots      = new HashMap<>();
+        getCounterpartySlots().forEach((k, v) -> a.counterpartySlots.put(k, v.clone()));
+        a.sketchDayStamps        = getSketchDayStamps().clone();
+        a.ja3ReuseCount          = ja3ReuseCount;
+        a.deviceReuseCount       = deviceReuseCount;
+        a.ipReuseCount           = ipReuseCount;
+        a.lastUpdated            = lastUpdated;
+        return a;
+    }
+
+    private static double[] toDoubles(int[] v) {
+        double[] d = new double[v.length];
+        for (int i = 0; i < v.length; i++) d[i] = v[i];
+        return d;
+    }
+
+    // Legacy documents (pre ring buffer) have no arrays.
+    private static long[]   sized(long[] v, int n)   { return v != null && v.length == n ? v : new long[n]; }
+    private static double[] sized(double[] v, int n) { return v != null && v.length == n ? v : new double[n]; }
+    private static int[]    sized(int[] v, int n)    { return v != null && v.length == n ? v : new int[n]; }
+
     // Getters & Setters
     public String getId()              { return id; }
     public void   setId(String id)     { this.id = id; }
@@ -67,6 +262,30 @@ public class AccountAggregate {
     public String getAccountId()                   { return accountId; }
     public void   setAccountId(String accountId)   { this.accountId = accountId; }
 
+    public long[]   getHourStamps()               { return hourStamps  = sized(hourStamps, HOURS); }
+    public void     setHourStamps(long[] v)       { this.hourStamps = v; }
+
+    public double[] getHourlyOut()                { return hourlyOut   = sized(hourlyOut, HOURS); }
+    public void     setHourlyOut(double[] v)      { this.hourlyOut = v; }
+
+    public double[] getHourlyIn()                 { return hourlyIn    = sized(hourlyIn, HOURS); }
+    public void     setHourlyIn(double[] v)       { this.hourlyIn = v; }
+
+    public int[]    getHourlyCount()              { return hourlyCount = sized(hourlyCount, HOURS); }
+    public void     setHourlyCount(int[] v)       { this.hourlyCount = v; }
+
+    public long[]   getDayStamps()                { return dayStamps   = sized(dayStamps, DAYS); }
+    public void     setDayStamps(long[] v)        { this.dayStamps = v; }
+
+    public double[] getDailyOut()                 { return dailyOut    = sized(dailyOut, DAYS); }
+    public void     setDailyOut(double[] v)       { this.dailyOut = v; }
+
+    public double[] getDailyIn()                  { return dailyIn     = sized(dailyIn, DAYS); }
+    public void     setDailyIn(double[] v)        { this.dailyIn = v; }
+
+    public int[]    getDailyCount()               { return dailyCount  = sized(dailyCount, DAYS); }
+    public void     setDailyCount(int[] v)        { this.dailyCount = v; }
+
     public double getTotalOut24h()                 { return totalOut24h; }
     public void   setTotalOut24h(double v)         { this.totalOut24h = v; }
 
@@ -88,11 +307,15 @@ public class AccountAggregate {
     public int  getUniqueCounterparties7d()        { return uniqueCounterparties7d; }
     public void setUniqueCounterparties7d(int v)   { this.uniqueCounterparties7d = v; }
 
-    public Set<String> getSeenCounterparties7d() {
-        if (this.seenCounterparties7d == null) this.seenCounterparties7d = new HashSet<>();
-        return seenCounterparties7d;
+    public Map<String, byte[]> getCounterpartySlots() {
+        if (counterpartySlots == null) counterpartySlots = new HashMap<>();
+        return counterpartySlots;
     }
-    public void setSeenCounterparties7d(Set<String> v) { this.seenCounterparties7d = v; }
+    public void setCounterpartySlots(Map<String, byte[]> v) { this.counterpartySlots = v; }
+
+    public long[] getSketchDayStamps()             { return sketchDayStamps = sized(sketchDayStamps, DAYS); }
+    public void   setSketchDayStamps(long[] v)     { this.sketchDayStamps = v; }
+
 
     public int  getJa3ReuseCount()                 { return ja3ReuseCount; }
     public void setJa3ReuseCount(int v)            { this.ja3ReuseCount = v; }
@@ -105,10 +328,4 @@ public class AccountAggregate {
 
     public Instant getLastUpdated()                    { return lastUpdated; }
     public void    setLastUpdated(Instant lastUpdated) { this.lastUpdated = lastUpdated; }
-
-    public Instant getWindowStart24h()                       { return windowStart24h; }
-    public void    setWindowStart24h(Instant windowStart24h) { this.windowStart24h = windowStart24h; }
-
-    public Instant getWindowStart7d()                      { return windowStart7d; }
-    public void    setWindowStart7d(Instant windowStart7d) { this.windowStart7d = windowStart7d; }
 }
\ No newline at end of file
@@ -1,7 +1,14 @@
 package com.mulehunter.backend.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * GNN scoring result. AiRiskService may cache one instance and hand it to
+ * many transactions, so the list fields are stored as unmodifiable copies;
+ * callers copy them before attaching them to anything mutable.
+ */
 public class AiRiskResult {
 
     // ── Core scores ───────────────────────────────────────────────
@@ -73,7 +80,7 @@ public class AiRiskResult {
     public void setPopulationSize(String v) { this.populationSize = v; }
 
     public List<String> getLinkedAccounts() { return linkedAccounts; }
-    public void setLinkedAccounts(List<String> v) { this.linkedAccounts = v; }
+    public void setLinkedAccounts(List<String> v) { this.linkedAccounts = frozen(v); }
 
     public double getGnnScore() { return gnnScore; }
     public void setGnnScore(double v) { this.gnnScore = v; }
@@ -127,11 +134,15 @@ public class AiRiskResult {
     public void setHubAccount(String v) { this.hubAccount = v; }
 
     public List<String> getRingAccounts() { return ringAccounts; }
-    public void setRingAccounts(List<String> v) { this.ringAccounts = v; }
+    public void setRingAccounts(List<String> v) { this.ringAccounts = frozen(v); }
 
     public List<String> getRiskFactors() { return riskFactors; }
-    public void setRiskFactors(List<String> v) { this.riskFactors = v; }
+    public void setRiskFactors(List<String> v) { this.riskFactors = frozen(v); }
 
     public double getEmbeddingNorm() { return embeddingNorm; }
     public void setEmbeddingNorm(double v) { this.embeddingNorm = v; }
-}
\ No newline at end of file
+
+    private static List<String> frozen(List<String> v) {
+        return v == null ? null : Collections.unmodifiableList(new ArrayList<>(v));
+    }
+}
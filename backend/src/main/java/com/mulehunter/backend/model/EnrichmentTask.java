@@ -0,0 +1,115 @@
+package com.mulehunter.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable record of the post-decision side-effects for one transaction
+ * (node enrichment + visual re-analysis). Written before the decision is
+ * returned, deleted once every step has succeeded, so a crash or a full
+ * in-process queue never loses work — the sweeper re-enqueues leftovers.
+ *
+ * owner / leaseUntil say which process may run the task: the one that
+ * submitted it, or the sweeper that claimed it after that lease ran out. A
+ * task that runs out of attempts is moved, with abandonedAt set, to the
+ * enrichment_tasks_dead collection.
+ */
+@Document(collection = "enrichment_tasks")
+public class EnrichmentTask {
+
+    public static final String NODE_OUTGOING  = "NODE_OUTGOING";
+    public static final String NODE_INCOMING  = "NODE_INCOMING";
+    public static final String VISUAL_TRIGGER = "VISUAL_TRIGGER";
+
+    @Id
+    private String id;
+
+    // Mongo _id of the transaction — the visual service keys on it.
+    private String txDocumentId;
+    private Long   sourceNodeId;
+    private Long   targetNodeId;
+    private double amount;
+
+    // Steps still to run. Successful steps are removed so a retry never
+    // re-applies a non-idempotent node-enrichment increment.
+    private List<String> pendingSteps = new ArrayList<>();
+
+    private int     attempts = 0;
+    private String  lastError;
+
+    @Indexed
+    private Instant createdAt;
+
+    // Claim token of the current holder, and when its claim runs out.
+    private String owner;
+    @Indexed
+    private Instant leaseUntil;
+
+    // Set only on dead-lettered tasks.
+    private Instant abandonedAt;
+
+    public EnrichmentTask() {}
+
+    public static EnrichmentTask forTransaction(String txDocumentId,
+                                                Long sourceNodeId,
+                                                Long targetNodeId,
+                                                double amount,
+                                                String owner,
+                                                Instant leaseUntil) {
+        EnrichmentTask t = new EnrichmentTask();
+        t.txDocumentId = txDocumentId;
+        t.sourceNodeId = sourceNodeId;
+        t.targetNodeId = targetNodeId;
+        t.amount       = amount;
+        t.pendingSteps = new ArrayList<>(List.of(NODE_OUTGOING, NODE_INCOMING, VISUAL_TRIGGER));
+        t.createdAt    = Instant.now();
+        t.owner        = owner;
+        t.leaseUntil   = leaseUntil;
+        return t;
+    }
+
+    // Getters & Setters
+    public String getId()          { return id; }
+    public void   setId(String id) { this.id = id; }
+
+    public String getTxDocumentId()           { return txDocumentId; }
+    public void   setTxDocumentId(String v)   { this.txDocumentId = v; }
+
+    public Long getSourceNodeId()             { return sourceNodeId; }
+    public void setSourceNodeId(Long v)       { this.sourceNodeId = v; }
+
+    public Long getTargetNodeId()             { return targetNodeId; }
+    public void setTargetNodeId(Long v)       { this.targetNodeId = v; }
+
+    public double getAmount()                 { return amount; }
+    public void   setAmount(double v)         { this.amount = v; }
+
+    public List<String> getPendingSteps() {
+        if (this.pendingSteps == null) this.pendingSteps = new ArrayList<>();
+        return pendingSteps;
+    }
+    public void setPendingSteps(List<String> v) { this.pendingSteps = v; }
+
+    public int  getAttempts()                 { return attempts; }
+    public void setAttempts(int v)            { this.attempts = v; }
+
+    public String getLastError()              { return lastError; }
+    public void   setLastError(String v)      { this.lastError = v; }
+
+    public Instant getCreatedAt()             { return createdAt; }
+    public void    setCreatedAt(Instant v)    { this.createdAt = v; }
+
+    public String getOwner()                  { return owner; }
+    public void   setOwner(String v)          { this.owner = v; }
+
+    public Instant getLeaseUntil()            { return leaseUntil; }
+    public void    setLeaseUntil(Instant v)   { this.leaseUntil = v; }
+
+    public Instant getAbandonedAt()           { return abandonedAt; }
+    public void    setAbandonedAt(Instant v)  { this.abandonedAt = v; }
+}
@@ -0,0 +1,41 @@
+package com.mulehunter.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Running number of transactions seen per identity key — one document per
+ * JA3 fingerprint or device hash, _id = "kind:key". Incremented
+ * atomically by IdentityCounterService.
+ */
+@Document(collection = "identity_counters")
+public class IdentityCounter {
+
+    @Id
+    private String id;
+
+    private String kind;
+    private String key;
+    private long count;
+    private Instant lastSeen;
+
+    public IdentityCounter() {}
+
+    // Getters & Setters
+    public String getId()          { return id; }
+    public void   setId(String id) { this.id = id; }
+
+    public String getKind()         { return kind; }
+    public void   setKind(String v) { this.kind = v; }
+
+    public String getKey()         { return key; }
+    public void   setKey(String v) { this.key = v; }
+
+    public long getCount()       { return count; }
+    public void setCount(long v) { this.count = v; }
+
+    public Instant getLastSeen()          { return lastSeen; }
+    public void    setLastSeen(Instant v) { this.lastSeen = v; }
+}
@@ -0,0 +1,101 @@
+package com.mulehunter.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Outbox marker for pipeline.persistence.mode=single.
+ *
+ * Written (small: the raw request + JA3) before the risk pipeline runs and
+ * deleted right after the fully scored transaction is inserted. Its _id is
+ * the request's transactionId, so a second request with the same
+ * transactionId fails on the marker insert, before any side effect runs.
+ * txDocumentId is the pre-assigned Mongo id of the transaction, so a marker
+ * that outlives its lease means the process died in between — the recovery
+ * sweep either finds the transaction already inserted or re-scores the
+ * request under that id.
+ *
+ * owner / leaseUntil say who is processing the marker: the request that wrote
+ * it, or the sweeper that claimed it after that lease ran out. A marker
+ * recovery gives up on is moved, with lastError and abandonedAt set, to the
+ * pending_transactions_dead collection.
+ */
+@Document(collection = "pending_transactions")
+public class PendingTransaction {
+
+    @Id
+    private String id;
+
+    private String txDocumentId;
+
+    private TransactionRequest request;
+    private String ja3;
+
+    private int attempts = 0;
+
+    @Indexed
+    private Instant createdAt;
+
+    // Claim token of the current holder, and when its claim runs out.
+    private String owner;
+    @Indexed
+    private Instant leaseUntil;
+
+    // Set only on dead-lettered markers.
+    private String  lastError;
+    private Instant abandonedAt;
+
+    public PendingTransaction() {}
+
+    public static PendingTransaction of(String txDocumentId, TransactionRequest request, String ja3,
+                                        String owner, Instant leaseUntil) {
+        PendingTransaction p = new PendingTransaction();
+        p.id           = request.getTransactionId();
+        p.txDocumentId = txDocumentId;
+        p.request      = request;
+        p.ja3          = ja3;
+        p.createdAt    = Instant.now();
+        p.owner        = owner;
+        p.leaseUntil   = leaseUntil;
+        return p;
+    }
+
+    // Getters & Setters
+    public String getId()          { return id; }
+    public void   setId(String id) { this.id = id; }
+
+    public String getTxDocumentId()         { return txDocumentId; }
+    public void   setTxDocumentId(String v) { this.txDocumentId = v; }
+
+    /** Mongo id the transaction is (to be) stored under; markers written before txDocumentId used it as _id. */
+    public String documentId() {
+        return txDocumentId != null ? txDocumentId : id;
+    }
+
+    public TransactionRequest getRequest()             { return request; }
+    public void               setRequest(TransactionRequest v) { this.request = v; }
+
+    public String getJa3()         { return ja3; }
+    public void   setJa3(String v) { this.ja3 = v; }
+
+    public int  getAttempts()      { return attempts; }
+    public void setAttempts(int v) { this.attempts = v; }
+
+    public Instant getCreatedAt()          { return createdAt; }
+    public void    setCreatedAt(Instant v) { this.createdAt = v; }
+
+    public String getOwner()         { return owner; }
+    public void   setOwner(String v) { this.owner = v; }
+
+    public Instant getLeaseUntil()          { return leaseUntil; }
+    public void    setLeaseUntil(Instant v) { this.leaseUntil = v; }
+
+    public String getLastError()         { return lastError; }
+    public void   setLastError(String v) { this.lastError = v; }
+
+    public Instant getAbandonedAt()          { return abandonedAt; }
+    public void    setAbandonedAt(Instant v) { this.abandonedAt = v; }
+}
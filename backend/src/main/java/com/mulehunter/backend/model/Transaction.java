@@ -92,6 +92,8 @@ public class Transaction {
     private Integer ipReuseCount;
     private Boolean isNewDevice;
     private Boolean isNewJa3;
+    private String identityClusterId;
+    private Integer identityClusterSize;
 
     private Map<String, Object> modelScores;
     private Map<String, Object> networkMetrics;
@@ -286,6 +288,12 @@ public class Transaction {
     public Boolean getIsNewJa3() { return isNewJa3; }
     public void setIsNewJa3(Boolean v) { this.isNewJa3 = v; }
 
+    public String getIdentityClusterId() { return identityClusterId; }
+    public void setIdentityClusterId(String v) { this.identityClusterId = v; }
+
+    public Integer getIdentityClusterSize() { return identityClusterSize; }
+    public void setIdentityClusterSize(Integer v) { this.identityClusterSize = v; }
+
     public Map<String, Object> getModelScores() { return modelScores; }
     public void setModelScores(Map<String, Object> v) { this.modelScores = v; }
 
@@ -0,0 +1,9 @@
+package com.mulehunter.backend.repository;
+
+import com.mulehunter.backend.model.EnrichmentTask;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EnrichmentTaskRepository extends ReactiveMongoRepository<EnrichmentTask, String> {
+}
@@ -0,0 +1,9 @@
+package com.mulehunter.backend.repository;
+
+import com.mulehunter.backend.model.PendingTransaction;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PendingTransactionRepository extends ReactiveMongoRepository<PendingTransaction, String> {
+}
@@ -17,12 +17,6 @@ public interface TransactionRepository
 
     Mono<Boolean> existsByTransactionId(String transactionId);
 
-    Mono<Long> countByJa3Detected(Boolean ja3Detected);
-
-    Mono<Long> countByDeviceHash(String deviceHash);
-
-    Mono<Long> countByIpAddress(String ipAddress);
-
     // ── Evaluation Query (IMPORTANT) ─────────────────────────────
 
     /**
@@ -31,16 +25,19 @@ public interface TransactionRepository
     Flux<Transaction> findByTimestampBetween(Instant start, Instant end);
 
     // ── Graph Feature Queries ────────────────────────────────────
+    // Both exclude the transaction being scored (?1): it may already be
+    // saved (persistence mode "double"), but its edge is not yet in the
+    // graph index, and the two paths must count the same graph.
 
     /**
      * Total edges: all transactions involving this account
      */
-    @Query(value = "{ '$or': [ {'sourceAccount': ?0}, {'targetAccount': ?1} ] }", count = true)
-    Mono<Long> countBySourceAccountOrTargetAccount(String sourceAccount, String targetAccount);
+    @Query(value = "{ '$or': [ {'sourceAccount': ?0}, {'targetAccount': ?0} ], '_id': { '$ne': ?1 } }", count = true)
+    Mono<Long> countEdgesExcluding(String accountId, String excludeId);
 
     /**
      * Suspicious neighbours: counterparties flagged as fraud
      */
-    @Query(value = "{ '$or': [ {'sourceAccount': ?0}, {'targetAccount': ?0} ], 'suspectedFraud': true }", count = true)
-    Mono<Long> countSuspiciousNeighbours(String accountId);
+    @Query(value = "{ '$or': [ {'sourceAccount': ?0}, {'targetAccount': ?0} ], 'suspectedFraud': true, '_id': { '$ne': ?1 } }", count = true)
+    Mono<Long> countSuspiciousNeighboursExcluding(String accountId, String excludeId);
 }
\ No newline at end of file
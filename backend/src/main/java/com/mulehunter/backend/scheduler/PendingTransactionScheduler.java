@@ -0,0 +1,30 @@
+package com.mulehunter.backend.scheduler;
+
+import com.mulehunter.backend.service.TransactionService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crash recovery for pipeline.persistence.mode=single — finishes transactions
+ * whose outbox marker was never cleared. Safe to run on every instance:
+ * markers are claimed atomically (see TransactionService#recoverPending).
+ */
+@Component
+public class PendingTransactionScheduler {
+
+    private final TransactionService transactionService;
+
+    public PendingTransactionScheduler(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    @Scheduled(
+            initialDelayString = "${pipeline.persistence.sweep-interval-ms:60000}",
+            fixedDelayString   = "${pipeline.persistence.sweep-interval-ms:60000}")
+    public void recoverPending() {
+        transactionService.recoverPending()
+                .subscribe(
+                        n -> { if (n > 0) System.out.println("♻️ PENDING sweep processed " + n + " marker(s)"); },
+                        e -> System.err.println("⚠️ PENDING sweep failed: " + e.getMessage()));
+    }
+}
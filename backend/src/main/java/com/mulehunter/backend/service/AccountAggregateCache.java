@@ -0,0 +1,224 @@
+package com.mulehunter.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mulehunter.backend.model.AccountAggregate;
+import com.mulehunter.backend.repository.AccountAggregateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Write-behind cache of hot account aggregates (pipeline.aggregates.mode=write-behind).
+ *
+ * Updates are applied to an in-memory copy (bounded Caffeine cache, W-TinyLFU
+ * eviction) and their deltas are coalesced per account, then flushed to
+ * account_aggregates through AccountAggregateWriter on a timer, when one
+ * account's backlog reaches the threshold, and on shutdown.
+ *
+ * Pending deltas live outside the cache, so evicting an entry never drops
+ * unflushed work; a reload overlays whatever is still pending, and reloads
+ * again if a flush for the account started while it was reading. In-memory
+ * mutation of an entry is serialised on the entry, and at most one flush per
+ * account is in flight. Mongo totals stay exact across instances because
+ * deltas are additive; an instance's cached view only sees other instances'
+ * writes after reload-after-ms.
+ */
+@Service
+public class AccountAggregateCache {
+
+    private static final int FLUSH_SEQ_STRIPES = 1024;
+    private static final int MAX_LOAD_ATTEMPTS = 20;
+
+    private final AccountAggregateWriter writer;
+    private final AccountAggregateRepository aggregateRepo;
+
+    private final Cache<String, Entry> cache;
+    private final Map<String, AggregateDelta> pending  = new ConcurrentHashMap<>();
+    private final Map<String, AggregateDelta> inFlight = new ConcurrentHashMap<>();
+    // Bumped whenever a flush takes an account's delta, striped by key hash
+    // so it stays bounded. A load whose stripe moved cannot tell whether the
+    // document it read contains that flush, so it loads again.
+    private final AtomicLongArray flushSeq = new AtomicLongArray(FLUSH_SEQ_STRIPES);
+
+    private final int flushThreshold;
+    private final int flushConcurrency;
+    private final Duration shutdownTimeout;
+
+    private static final class Entry {
+        final AccountAggregate state;
+        Entry(AccountAggregate state) { this.state = state; }
+    }
+
+    public AccountAggregateCache(
+            AccountAggregateWriter writer,
+            AccountAggregateRepository aggregateRepo,
+            MeterRegistry meterRegistry,
+            @Value("${pipeline.aggregates.cache.max-size:100000}") long maxSize,
+            @Value("${pipeline.aggregates.cache.reload-after-ms:60000}") long reloadAfterMs,
+            @Value("${pipeline.aggregates.cache.flush-threshold:50}") int flushThreshold,
+            @Value("${pipeline.aggregates.cache.flush-concurrency:8}") int flushConcurrency,
+            @Value("${pipeline.aggregates.cache.shutdown-flush-timeout-ms:10000}") long shutdownTimeoutMs
+    ) {
+        this.writer           = writer;
+        this.aggregateRepo    = aggregateRepo;
+        this.flushThreshold   = Math.max(1, flushThreshold);
+        this.flushConcurrency = Math.max(1, flushConcurrency);
+        this.shutdownTimeout  = Duration.ofMillis(shutdownTimeoutMs);
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(reloadAfterMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "account_aggregates");
+    }
+
+    /**
+     * Applies the delta in memory, queues it for the next flush and emits a
+     * snapshot of the post-update aggregate.
+     */
+    Mono<AccountAggregate> apply(String accountId, AggregateDelta delta) {
+
+        return entry(accountId).map(e -> {
+            AccountAggregate view;
+            synchronized (e) {
+                delta.applyTo(e.state);
+                view = e.state.snapshot();
+            }
+            AggregateDelta queued = pending.merge(accountId, delta, (cur, add) -> {
+                cur.mergeFrom(add);
+                return cur;
+            });
+            if (queued.events >= flushThreshold) {
+                flush(accountId).subscribe();
+            }
+            return view;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${pipeline.aggregates.cache.flush-interval-ms:1000}")
+    public void flushPending() {
+        if (pending.isEmpty()) return;
+        flushAll().subscribe(
+                null,
+                e -> System.err.println("⚠️ AGGREGATE flush failed: " + e.getMessage()));
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        while ((!pending.isEmpty() || !inFlight.isEmpty()) && System.nanoTime() < deadline) {
+            flushAll().block(shutdownTimeout);
+            if (!inFlight.isEmpty()) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            System.err.println("❌ AGGREGATE shutdown flush left " + pending.size() + " account(s) unflushed");
+        }
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private Mono<Entry> entry(String accountId) {
+        return entry(accountId, 1);
+    }
+
+    private Mono<Entry> entry(String accountId, int attempt) {
+
+        Entry cached = cache.getIfPresent(accountId);
+        if (cached != null) return Mono.just(cached);
+
+        int  stripe = stripe(accountId);
+        long seq    = flushSeq.get(stripe);
+
+        // Let an in-flight flush land first so the loaded document already
+        // contains it; anything still pending is overlaid below.
+        if (inFlight.containsKey(accountId)) {
+            return Mono.delay(Duration.ofMillis(5)).then(Mono.defer(() -> entry(accountId, attempt)));
+        }
+
+        return aggregateRepo.findByAccountId(accountId)
+                .defaultIfEmpty(AccountAggregate.newFor(accountId))
+                .flatMap(loaded -> {
+                    // Same key lock as flush()'s take, so a flush either moved
+                    // the stripe before this check or has not taken the delta yet.
+                    boolean[] raced = new boolean[1];
+                    pending.compute(accountId, (k, d) -> {
+                        if (flushSeq.get(stripe) != seq) {
+                            raced[0] = true;
+                        } else if (d != null) {
+                            d.applyTo(loaded);
+                        }
+                        return d;
+                    });
+
+                    if (raced[0]) {
+                        if (attempt < MAX_LOAD_ATTEMPTS) {
+                            return Mono.defer(() -> entry(accountId, attempt + 1));
+                        }
+                        // Keep flushes racing this key from starving the caller:
+                        // serve this load once, uncached, and let the next call
+                        // reload.
+                        System.err.println("⚠️ AGGREGATE load for " + accountId + " kept racing flushes; served uncached");
+                        return Mono.just(new Entry(loaded));
+                    }
+
+                    Entry fresh  = new Entry(loaded);
+                    Entry winner = cache.asMap().putIfAbsent(accountId, fresh);
+                    return Mono.just(winner != null ? winner : fresh);
+                });
+    }
+
+    private Mono<Void> flushAll() {
+        return Flux.fromIterable(new ArrayList<>(pending.keySet()))
+                .flatMap(this::flush, flushConcurrency)
+                .then();
+    }
+
+    private Mono<Void> flush(String accountId) {
+
+        AggregateDelta[] taken = new AggregateDelta[1];
+        pending.computeIfPresent(accountId, (k, d) -> {
+            if (inFlight.putIfAbsent(k, d) != null) return d;   // next tick
+            flushSeq.incrementAndGet(stripe(k));
+            taken[0] = d;
+            return null;
+        });
+        if (taken[0] == null) return Mono.empty();
+
+        AggregateDelta delta = taken[0];
+        return writer.apply(accountId, delta)
+                .then()
+                .onErrorResume(e -> {
+                    System.err.println("⚠️ AGGREGATE flush for " + accountId + " failed, re-queued: " + e.getMessage());
+                    pending.merge(accountId, delta, (cur, failed) -> {
+                        failed.mergeFrom(cur);
+                        return failed;
+                    });
+                    return Mono.empty();
+                })
+                .doFinally(signal -> inFlight.remove(accountId));
+    }
+
+    private static int stripe(String accountId) {
+        return accountId.hashCode() & (FLUSH_SEQ_STRIPES - 1);
+    }
+}
@@ -0,0 +1,321 @@
+package com.mulehunter.backend.service;
+
+import com.mulehunter.backend.model.AccountAggregate;
+import com.mongodb.client.result.UpdateResult;
+import com.mulehunter.sketch.HyperLogLog;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes an {@link AggregateDelta} to account_aggregates.
+ *
+ * Each delta is applied with a single findAndModify using an update
+ * pipeline, so ring-buffer bucket rolls and increments are applied
+ * atomically on the server — concurrent writers for the same (hot) account
+ * can no longer overwrite each other's counters. The counterparty
+ * HyperLogLog is stored as one binary register array per day slot and
+ * merged in Java: a slot is written back only when a register grew, and
+ * only if it (and its day stamp) still holds what was read — on a lost
+ * race the slot is re-read and the merge re-applied. Register merges
+ * commute, so retries converge, and contention is per account and day
+ * rather than per document. uniqueCounterparties7d is estimated in Java
+ * from the slots; no server-side expression needs a recent MongoDB.
+ *
+ * Documents from before the per-slot layout carry the sketch as one binary
+ * counterpartySketch field; {@link #migrateLegacySketches} folds those into
+ * the slots once at startup.
+ *
+ * Used per transaction by AggregateUpdateService (direct mode) and for
+ * coalesced flushes by AccountAggregateCache (write-behind mode).
+ */
+@Service
+public class AccountAggregateWriter {
+
+    private static final String COLLECTION         = "account_aggregates";
+    private static final int    SKETCH_CAS_ATTEMPTS = 8;
+
+    private final ReactiveMongoTemplate mongo;
+
+    public AccountAggregateWriter(ReactiveMongoTemplate mongo) {
+        this.mongo = mongo;
+    }
+
+    /**
+     * Applies the delta and emits the post-update aggregate, with
+     * uniqueCounterparties7d estimated as of the delta's time.
+     */
+    Mono<AccountAggregate> apply(String accountId, AggregateDelta delta) {
+
+        Instant now  = delta.lastUpdated;
+        long    hour = AccountAggregate.epochHour(now);
+        long    day  = AccountAggregate.epochDay(now);
+
+        List<AggregationOperation> stages = new ArrayList<>();
+
+        // Bucket writes, one $set per touched hour/day. Every expression in a
+        // $set stage reads the pre-stage document, so the stamp comparisons
+        // see the old stamps.
+        delta.hours.forEach((h, v) -> {
+            int idx = (int) Math.floorMod(h, (long) AccountAggregate.HOURS);
+            Document set = new Document()
+                    .append("hourlyOut",   bucketAdd("hourlyOut",   "hourStamps", AccountAggregate.HOURS, idx, h, v[0]))
+                    .append("hourlyIn",    bucketAdd("hourlyIn",    "hourStamps", AccountAggregate.HOURS, idx, h, v[1]))
+                    .append("hourlyCount", bucketAdd("hourlyCount", "hourStamps", AccountAggregate.HOURS, idx, h, (int) v[2]))
+                    .append("hourStamps",  bucketStamp("hourStamps", AccountAggregate.HOURS, idx, h));
+            stages.add(ctx -> new Document("$set", set));
+        });
+        delta.days.forEach((d, v) -> {
+            int idx = (int) Math.floorMod(d, (long) AccountAggregate.DAYS);
+            Document set = new Document()
+                    .append("dailyOut",    bucketAdd("dailyOut",    "dayStamps",  AccountAggregate.DAYS,  idx, d, v[0]))
+                    .append("dailyIn",     bucketAdd("dailyIn",     "dayStamps",  AccountAggregate.DAYS,  idx, d, v[1]))
+                    .append("dailyCount",  bucketAdd("dailyCount",  "dayStamps",  AccountAggregate.DAYS,  idx, d, (int) v[2]))
+                    .append("dayStamps",   bucketStamp("dayStamps",  AccountAggregate.DAYS,  idx, d));
+            stages.add(ctx -> new Document("$set", set));
+        });
+
+        Document counters = new Document()
+                // An array on every document, so the sketch CAS can $set and
+                // match sketchDayStamps.<slot>.
+                .append("sketchDayStamps",  orDefault("sketchDayStamps", NO_STAMPS))
+                // Identity reuse signals (only for source account)
+                .append("ja3ReuseCount",    add(orDefault("ja3ReuseCount", 0),    delta.ja3Reuse))
+                .append("deviceReuseCount", add(orDefault("deviceReuseCount", 0), delta.deviceReuse))
+                .append("ipReuseCount",     add(orDefault("ipReuseCount", 0),     delta.ipReuse))
+                .append("lastUpdated",      Date.from(now));
+
+        // Scalar snapshots of the rolling sums.
+        Document derive = new Document()
+                .append("totalOut24h", windowSum("hourlyOut",   "hourStamps", AccountAggregate.HOURS, hour))
+                .append("totalIn24h",  windowSum("hourlyIn",    "hourStamps", AccountAggregate.HOURS, hour))
+                .append("txnCount24h", windowSum("hourlyCount", "hourStamps", AccountAggregate.HOURS, hour))
+                .append("totalOut7d",  windowSum("dailyOut",    "dayStamps",  AccountAggregate.DAYS,  day))
+                .append("totalIn7d",   windowSum("dailyIn",     "dayStamps",  AccountAggregate.DAYS,  day))
+                .append("txnCount7d",  windowSum("dailyCount",  "dayStamps",  AccountAggregate.DAYS,  day));
+
+        stages.add(ctx -> new Document("$set", counters));
+        stages.add(ctx -> new Document("$set", derive));
+        // Fields from the tumbling-window / HashSet layouts.
+        stages.add(ctx -> new Document("$unset", List.of(
+                "windowStart24h", "windowStart7d", "seenCounterparties7d")));
+
+        return mongo.findAndModify(
+                        Query.query(Criteria.where("accountId").is(accountId)),
+                        AggregationUpdate.from(stages),
+                        FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        AccountAggregate.class)
+                // Two first-ever transactions for an account can race on the
+                // unique accountId index; the loser retries as a plain update.
+                .retryWhen(Retry.max(2).filter(DuplicateKeyException.class::isInstance))
+                .flatMap(agg -> Flux.fromIterable(delta.counterparties.entrySet())
+                        .concatMap(e -> mergeSlot(agg, e.getKey(), e.getValue(), now, SKETCH_CAS_ATTEMPTS))
+                        .then(Mono.fromSupplier(() -> {
+                            agg.setUniqueCounterparties7d(agg.counterpartiesLast7d(now));
+                            return agg;
+                        })));
+    }
+
+    /**
+     * Merges one day's registers into its slot of {@code agg} (as read from
+     * Mongo) and, if a register grew or the slot was recycled, writes the
+     * slot back conditioned on the slot and its stamp being unchanged. A
+     * lost race re-reads just that slot and tries again.
+     */
+    private Mono<Void> mergeSlot(AccountAggregate agg, long day, byte[] registers, Instant now, int attemptsLeft) {
+
+        int    slot     = (int) Math.floorMod(day, (long) AccountAggregate.DAYS);
+        String key      = AccountAggregate.slotKey(slot);
+        String field    = "counterpartySlots." + key;
+        byte[] stored   = agg.getCounterpartySlots().get(key);
+        long   stamp    = agg.getSketchDayStamps()[slot];
+        byte[] expected = stored == null ? null : stored.clone();
+
+        if (!agg.mergeCounterparties(day, registers)) {
+            return Mono.empty();
+        }
+
+        Query current = Query.query(Criteria.where("accountId").is(agg.getAccountId())
+                .and("sketchDayStamps." + slot).is(stamp)
+                .and(field).is(expected));
+        Update write = new Update()
+                .set(field, agg.getCounterpartySlots().get(key))
+                .set("sketchDayStamps." + slot, agg.getSketchDayStamps()[slot])
+                .set("uniqueCounterparties7d", agg.counterpartiesLast7d(now));
+
+        return mongo.updateFirst(current, write, COLLECTION)
+                .flatMap(result -> {
+                    if (result.getModifiedCount() == 1) return Mono.empty();
+                    if (attemptsLeft <= 1) {
+                        System.err.println("⚠️ COUNTERPARTY sketch CAS gave up for " + agg.getAccountId() + " (day " + day + ")");
+                        return Mono.empty();
+                    }
+                    Query reread = Query.query(Criteria.where("accountId").is(agg.getAccountId()));
+                    reread.fields().include("sketchDayStamps", field);
+                    return mongo.findOne(reread, Document.class, COLLECTION)
+                            .flatMap(fresh -> {
+                                refreshSlot(agg, slot, fresh);
+                                return mergeSlot(agg, day, registers, now, attemptsLeft - 1);
+                            });
+                });
+    }
+
+    private static void refreshSlot(AccountAggregate agg, int slot, Document fresh) {
+        String    key    = AccountAggregate.slotKey(slot);
+        Document  slots  = fresh.get("counterpartySlots", Document.class);
+        Binary    regs   = slots == null ? null : slots.get(key, Binary.class);
+        List<?>   stamps = fresh.getList("sketchDayStamps", Object.class, List.of());
+        if (regs == null) agg.getCounterpartySlots().remove(key);
+        else agg.getCounterpartySlots().put(key, regs.getData());
+        agg.getSketchDayStamps()[slot] = slot < stamps.size() ? ((Number) stamps.get(slot)).longValue() : 0L;
+    }
+
+    /**
+     * Folds binary counterpartySketch fields (pre per-slot layout) into the
+     * slots through the same CAS merge as a live delta, then drops them.
+     * Safe alongside live writes and on several instances: merging the same
+     * registers twice changes nothing, and a slot that has moved on to a
+     * later day ignores the older registers.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacySketches() {
+
+        Query legacy = Query.query(Criteria.where("counterpartySketch").exists(true));
+        legacy.fields().include("accountId", "counterpartySketch", "sketchDayStamps");
+
+        mongo.find(legacy, Document.class, COLLECTION)
+                .concatMap(this::migrateLegacySketch)
+                .count()
+                .subscribe(
+                        n -> { if (n > 0) System.out.println("🧮 COUNTERPARTY sketches migrated → " + n + " account(s)"); },
+                        e -> System.err.println("⚠️ COUNTERPARTY sketch migration failed: " + e.getMessage()));
+    }
+
+    private Mono<Long> migrateLegacySketch(Document doc) {
+
+        String  accountId = doc.getString("accountId");
+        byte[]  sketch    = doc.get("counterpartySketch", Binary.class).getData();
+        List<?> stamps    = doc.getList("sketchDayStamps", Object.class, List.of());
+        Instant now       = Instant.now();
+        long    today     = AccountAggregate.epochDay(now);
+
+        Map<Long, byte[]> days = new TreeMap<>();
+        for (int slot = 0; slot < stamps.size() && (slot + 1) * HyperLogLog.M <= sketch.length; slot++) {
+            long stampDay = ((Number) stamps.get(slot)).longValue();
+            if (stampDay <= today - AccountAggregate.DAYS) continue;   // already out of the window
+            days.put(stampDay, Arrays.copyOfRange(sketch, slot * HyperLogLog.M, (slot + 1) * HyperLogLog.M));
+        }
+
+        Query account = Query.query(Criteria.where("accountId").is(accountId));
+        Query stale   = Query.query(Criteria.where("_id").is(doc.get("_id")).and("counterpartySketch").exists(true));
+
+        // Start from the document as it is now: live writes may already have
+        // created slots. Legacy documents may lack the stamps array padding
+        // the CAS needs, so it is set up first.
+        return mongo.updateFirst(account,
+                        AggregationUpdate.from(List.of(ctx -> new Document("$set", new Document(
+                                "sketchDayStamps", orDefault("sketchDayStamps", NO_STAMPS))))),
+                        COLLECTION)
+                .then(mongo.findOne(account, AccountAggregate.class))
+                .flatMap(agg -> Flux.fromIterable(days.entrySet())
+                        .concatMap(e -> mergeSlot(agg, e.getKey(), e.getValue(), now, SKETCH_CAS_ATTEMPTS))
+                        .then(mongo.updateFirst(stale,
+                                new Update()
+                                        .set("uniqueCounterparties7d", agg.counterpartiesLast7d(now))
+                                        .unset("counterpartySketch")
+                                        .unset("sketchVersion"),
+                                COLLECTION)))
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    // ── Update-pipeline expression helpers ────────────────────────────────────
+
+    private static final List<Long> NO_STAMPS = Collections.nCopies(AccountAggregate.DAYS, 0L);
+
+    private static Document orDefault(String field, Object fallback) {
+        return new Document("$ifNull", List.of("$" + field, fallback));
+    }
+
+    private static Document cond(Object test, Object then, Object otherwise) {
+        return new Document("$cond", List.of(test, then, otherwise));
+    }
+
+    private static Document add(Object expr, Number delta) {
+        return new Document("$add", List.of(expr, delta));
+    }
+
+    // ── Ring-buffer helpers ───────────────────────────────────────────────────
+
+    // Element i of an array field, 0 when the field/element is missing (new
+    // or pre-ring-buffer documents).
+    private static Document elem(String field, String index) {
+        return new Document("$ifNull", List.of(
+                new Document("$arrayElemAt", List.of(orDefault(field, List.of()), index)), 0));
+    }
+
+    private static Document mapBuckets(int size, Object in) {
+        return new Document("$map", new Document()
+                .append("input", new Document("$range", List.of(0, size)))
+                .append("as", "i")
+                .append("in", in));
+    }
+
+    /**
+     * values[idx] += delta if the bucket holds this period, = delta if it
+     * holds an older one. A bucket that already moved on to a newer period
+     * keeps its value: a late delta for an expired hour/day is dropped.
+     */
+    private static Document bucketAdd(String values, String stamps, int size, int idx, long stamp, Number delta) {
+        Object stored = elem(stamps, "$$i");
+        return mapBuckets(size, cond(
+                new Document("$eq", List.of("$$i", idx)),
+                new Document("$switch", new Document()
+                        .append("branches", List.of(
+                                new Document("case", new Document("$eq", List.of(stored, stamp)))
+                                        .append("then", add(elem(values, "$$i"), delta)),
+                                new Document("case", new Document("$lt", List.of(stored, stamp)))
+                                        .append("then", delta)))
+                        .append("default", elem(values, "$$i"))),
+                elem(values, "$$i")));
+    }
+
+    /** stamps[idx] = max(stamps[idx], stamp); stamps never move backwards. */
+    private static Document bucketStamp(String stamps, int size, int idx, long stamp) {
+        return mapBuckets(size, cond(
+                new Document("$eq", List.of("$$i", idx)),
+                new Document("$max", List.of(elem(stamps, "$$i"), stamp)),
+                elem(stamps, "$$i")));
+    }
+
+    /** Sum of the buckets stamped within (current - size, current]. */
+    private static Document windowSum(String values, String stamps, int size, long current) {
+        return new Document("$sum", mapBuckets(size, cond(
+                new Document("$and", List.of(
+                        new Document("$gt",  List.of(elem(stamps, "$$i"), current - size)),
+                        new Document("$lte", List.of(elem(stamps, "$$i"), current)))),
+                elem(values, "$$i"),
+                0)));
+    }
+}
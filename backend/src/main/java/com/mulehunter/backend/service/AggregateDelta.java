@@ -0,0 +1,101 @@
+package com.mulehunter.backend.service;
+
+import com.mulehunter.backend.model.AccountAggregate;
+import com.mulehunter.sketch.HyperLogLog;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Increments to one account's aggregate — a single transaction, or several
+ * coalesced by {@link AccountAggregateCache}. Bucket deltas are keyed by
+ * epoch hour/day so a batch that straddles a boundary lands in the right
+ * buckets; counterparties are kept as one HyperLogLog sketch per day.
+ */
+class AggregateDelta {
+
+    // epochHour / epochDay → {out, in, count}
+    final Map<Long, double[]> hours = new TreeMap<>();
+    final Map<Long, double[]> days  = new TreeMap<>();
+    // epochDay → HyperLogLog registers
+    final Map<Long, byte[]> counterparties = new TreeMap<>();
+
+    int ja3Reuse;
+    int deviceReuse;
+    int ipReuse;
+    int events;
+    Instant lastUpdated;
+
+    static AggregateDelta of(Instant now, double amount, boolean isOutgoing,
+                             String ja3, String deviceHash, String ip,
+                             String counterpartyId) {
+
+        AggregateDelta d = new AggregateDelta();
+        double out = isOutgoing ? amount : 0.0;
+        double in  = isOutgoing ? 0.0    : amount;
+        long   day = AccountAggregate.epochDay(now);
+
+        d.hours.put(AccountAggregate.epochHour(now), new double[]{ out, in, 1 });
+        d.days.put(day, new double[]{ out, in, 1 });
+        if (counterpartyId != null) {
+            byte[] regs = new byte[HyperLogLog.M];
+            HyperLogLog.offer(regs, 0, HyperLogLog.hash(counterpartyId));
+            d.counterparties.put(day, regs);
+        }
+        if (ja3 != null)        d.ja3Reuse    = 1;
+        if (deviceHash != null) d.deviceReuse = 1;
+        if (ip != null)         d.ipReuse     = 1;
+        d.events      = 1;
+        d.lastUpdated = now;
+        return d;
+    }
+
+    void mergeFrom(AggregateDelta other) {
+        other.hours.forEach((k, v) -> add(hours, k, v));
+        other.days.forEach((k, v) -> add(days, k, v));
+        other.counterparties.forEach((k, v) -> {
+            byte[] mine = counterparties.get(k);
+            if (mine == null) counterparties.put(k, v.clone());
+            else HyperLogLog.mergeAt(mine, 0, v);
+        });
+        ja3Reuse    += other.ja3Reuse;
+        deviceReuse += other.deviceReuse;
+        ipReuse     += other.ipReuse;
+        events      += other.events;
+        if (lastUpdated == null || other.lastUpdated.isAfter(lastUpdated)) {
+            lastUpdated = other.lastUpdated;
+        }
+    }
+
+    /**
+     * In-memory mirror of the update pipeline plus the sketch merge.
+     * Returns true if the counterparty sketch changed.
+     */
+    boolean applyTo(AccountAggregate agg) {
+        hours.forEach((h, v) -> agg.addToHour(h, v[0], v[1], (int) v[2]));
+        days.forEach((d, v) -> agg.addToDay(d, v[0], v[1], (int) v[2]));
+        boolean sketchChanged = applyCounterpartiesTo(agg);
+        agg.setJa3ReuseCount(agg.getJa3ReuseCount() + ja3Reuse);
+        agg.setDeviceReuseCount(agg.getDeviceReuseCount() + deviceReuse);
+        agg.setIpReuseCount(agg.getIpReuseCount() + ipReuse);
+        agg.setLastUpdated(lastUpdated);
+        agg.refreshSnapshots(lastUpdated);
+        return sketchChanged;
+    }
+
+    boolean applyCounterpartiesTo(AccountAggregate agg) {
+        boolean changed = false;
+        for (Map.Entry<Long, byte[]> e : counterparties.entrySet()) {
+            changed |= agg.mergeCounterparties(e.getKey(), e.getValue());
+        }
+        return changed;
+    }
+
+    private static void add(Map<Long, double[]> target, long key, double[] v) {
+        double[] cur = target.computeIfAbsent(key, k -> new double[3]);
+        cur[0] += v[0];
+        cur[1] += v[1];
+        cur[2] += v[2];
+    }
+}
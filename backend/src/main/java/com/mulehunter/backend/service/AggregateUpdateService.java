@@ -2,37 +2,51 @@ package com.mulehunter.backend.service;
 
 import com.mulehunter.backend.model.AccountAggregate;
 import com.mulehunter.backend.model.IdentityEvent;
-import com.mulehunter.backend.repository.AccountAggregateRepository;
 import com.mulehunter.backend.repository.IdentityEventRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 
 /**
  * Step 4 — Incremental Aggregate Updater (Reactive MongoDB)
  *
  * Also handles Step 2 identity_events persistence.
  * Called from TransactionService after every transaction is saved.
+ *
+ * Each transaction becomes one AggregateDelta per account. In "direct"
+ * mode it is written straight through AccountAggregateWriter (one atomic
+ * upsert per account); in "write-behind" mode it is applied to the
+ * in-process AccountAggregateCache and flushed to Mongo in coalesced
+ * batches.
  */
 @Service
 public class AggregateUpdateService {
 
-    private final AccountAggregateRepository aggregateRepo;
+    private final AccountAggregateWriter writer;
+    private final AccountAggregateCache cache;
     private final IdentityEventRepository identityEventRepo;
 
-    public AggregateUpdateService(AccountAggregateRepository aggregateRepo,
-                                   IdentityEventRepository identityEventRepo) {
-        this.aggregateRepo     = aggregateRepo;
+    // "direct" | "write-behind"
+    private final boolean writeBehind;
+
+    public AggregateUpdateService(AccountAggregateWriter writer,
+                                   AccountAggregateCache cache,
+                                   IdentityEventRepository identityEventRepo,
+                                   @Value("${pipeline.aggregates.mode:direct}") String mode) {
+        this.writer            = writer;
+        this.cache             = cache;
         this.identityEventRepo = identityEventRepo;
+        this.writeBehind       = "write-behind".equalsIgnoreCase(mode);
     }
 
     /**
      * Main entry point — call after each transaction is persisted.
-     * Updates both source (outgoing) and destination (incoming) aggregates.
+     * Updates both source (outgoing) and destination (incoming) aggregates
+     * and emits the post-update source aggregate.
      */
-    public Mono<Void> update(String sourceAccountId,
+    public Mono<AccountAggregate> update(String sourceAccountId,
                               String destAccountId,
                               double amount,
                               String transactionId,
@@ -46,73 +60,27 @@ public class AggregateUpdateService {
         );
 
         return identityEventRepo.save(event)
-                .then(updateAccountAggregate(sourceAccountId, amount, true,  ja3, deviceHash, ip, destAccountId))
-                .then(updateAccountAggregate(destAccountId,   amount, false, null, null, null, sourceAccountId));
+                .then(Mono.zip(
+                        updateAccountAggregate(sourceAccountId, amount, true,  ja3, deviceHash, ip, destAccountId),
+                        updateAccountAggregate(destAccountId,   amount, false, null, null, null, sourceAccountId)))
+                .map(pair -> pair.getT1());
     }
 
     // ── Private helpers ───────────────────────────────────────────────────────
 
-    private Mono<Void> updateAccountAggregate(String accountId,
-                                               double amount,
-                                               boolean isOutgoing,
-                                               String ja3,
-                                               String deviceHash,
-                                               String ip,
-                                               String counterpartyId) {
-
-        return aggregateRepo.findByAccountId(accountId)
-                .defaultIfEmpty(AccountAggregate.newFor(accountId))
-                .flatMap(agg -> {
-                    Instant now = Instant.now();
-                    Instant cutoff24h = now.minus(24, ChronoUnit.HOURS);
-                    Instant cutoff7d  = now.minus(7,  ChronoUnit.DAYS);
-
-                    // Reset 24h window if expired
-                    if (agg.getWindowStart24h() != null &&
-                        agg.getWindowStart24h().isBefore(cutoff24h)) {
-                        agg.setTotalOut24h(0.0);
-                        agg.setTotalIn24h(0.0);
-                        agg.setTxnCount24h(0);
-                        agg.setWindowStart24h(now);
-                    }
-
-                    // Reset 7d window if expired
-                    if (agg.getWindowStart7d() != null &&
-                        agg.getWindowStart7d().isBefore(cutoff7d)) {
-                        agg.setTotalOut7d(0.0);
-                        agg.setTotalIn7d(0.0);
-                        agg.setTxnCount7d(0);
-                        agg.setUniqueCounterparties7d(0);
-                        agg.getSeenCounterparties7d().clear(); // reset dedup set with window
-                        agg.setWindowStart7d(now);
-                    }
-
-                    // Update amounts
-                    if (isOutgoing) {
-                        agg.setTotalOut24h(agg.getTotalOut24h() + amount);
-                        agg.setTotalOut7d(agg.getTotalOut7d() + amount);
-                    } else {
-                        agg.setTotalIn24h(agg.getTotalIn24h() + amount);
-                        agg.setTotalIn7d(agg.getTotalIn7d() + amount);
-                    }
-
-                    agg.setTxnCount24h(agg.getTxnCount24h() + 1);
-                    agg.setTxnCount7d(agg.getTxnCount7d() + 1);
-                    // Only count a counterparty once per 7d window.
-                    // The set deduplicates; uniqueCounterparties7d mirrors its size.
-                    if (counterpartyId != null) {
-                        agg.getSeenCounterparties7d().add(counterpartyId);
-                        agg.setUniqueCounterparties7d(agg.getSeenCounterparties7d().size());
-                    }
+    private Mono<AccountAggregate> updateAccountAggregate(String accountId,
+                                                           double amount,
+                                                           boolean isOutgoing,
+                                                           String ja3,
+                                                           String deviceHash,
+                                                           String ip,
+                                                           String counterpartyId) {
 
-                    // Update identity reuse signals (only for source account)
-                    if (ja3 != null)        agg.setJa3ReuseCount(agg.getJa3ReuseCount() + 1);
-                    if (deviceHash != null) agg.setDeviceReuseCount(agg.getDeviceReuseCount() + 1);
-                    if (ip != null)         agg.setIpReuseCount(agg.getIpReuseCount() + 1);
+        AggregateDelta delta = AggregateDelta.of(
+                Instant.now(), amount, isOutgoing, ja3, deviceHash, ip, counterpartyId);
 
-                    agg.setLastUpdated(now);
-                    return aggregateRepo.save(agg);
-                })
-                .then();
+        return writeBehind
+                ? cache.apply(accountId, delta)
+                : writer.apply(accountId, delta);
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,27 @@
 package com.mulehunter.backend.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.mulehunter.backend.DTO.MetricsResponse;
+import com.mulehunter.backend.config.DownstreamBreakers;
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.config.DownstreamCodecs;
+import com.mulehunter.backend.metrics.PipelineMetrics;
 import com.mulehunter.backend.model.AiRiskResult;
+import com.mulehunter.backend.util.CircuitBreaker;
+import com.mulehunter.backend.util.Hedger;
+import com.mulehunter.backend.util.WireCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
 import java.util.Map;
+import java.util.function.Supplier;
 
 
 
@@ -18,15 +29,60 @@ import java.util.Map;
 public class AiRiskService {
 
     private final WebClient aiWebClient;
+    private final WireCodec wire;
     private final EifService eifService;
+    private final PipelineMetrics metrics;
+    private final GnnBatchClient gnnBatchClient;
+    private final boolean batchGnn;
+    private final Duration gnnTimeout;
+    private final CircuitBreaker breaker;
+    private final Hedger hedger;
+    private final AsyncCache<String, AiRiskResult> gnnCache;
+    private final double cacheBucketStep;
 
     public AiRiskService(
             @Value("${ai.service.url:http://localhost:8001}") String aiServiceUrl,
-            EifService eifService
+            @Value("${ai.gnn.mode:single}") String gnnMode,
+            @Value("${ai.gnn.timeout-ms:3000}") long gnnTimeoutMs,
+            @Value("${ai.gnn.hedge.enabled:false}") boolean hedgeEnabled,
+            @Value("${ai.gnn.hedge.percentile:0.95}") double hedgePercentile,
+            @Value("${ai.gnn.hedge.budget:0.05}") double hedgeBudget,
+            @Value("${ai.gnn.hedge.min-delay-ms:5}") long hedgeMinDelayMs,
+            @Value("${ai.gnn.cache.enabled:false}") boolean cacheEnabled,
+            @Value("${ai.gnn.cache.ttl-seconds:30}") long cacheTtlSeconds,
+            @Value("${ai.gnn.cache.max-size:100000}") long cacheMaxSize,
+            @Value("${ai.gnn.cache.bucket-step:0.05}") double cacheBucketStep,
+            EifService eifService,
+            PipelineMetrics metrics,
+            DownstreamClientFactory clients,
+            DownstreamBreakers breakers,
+            DownstreamCodecs codecs,
+            GnnBatchClient gnnBatchClient,
+            MeterRegistry meterRegistry
     ) {
         System.out.println("🔌 CONNECTING AI TO: " + aiServiceUrl);
-        this.aiWebClient = WebClient.builder().baseUrl(aiServiceUrl).build();
-        this.eifService  = eifService;
+        this.aiWebClient    = clients.create(DownstreamClientFactory.AI, aiServiceUrl);
+        this.wire           = codecs.get(DownstreamClientFactory.AI);
+        this.eifService     = eifService;
+        this.metrics        = metrics;
+        this.gnnBatchClient = gnnBatchClient;
+        this.batchGnn       = "batch".equalsIgnoreCase(gnnMode);
+        this.gnnTimeout     = Duration.ofMillis(gnnTimeoutMs);
+        this.breaker        = breakers.get(DownstreamClientFactory.AI);
+        this.hedger         = hedgeEnabled
+                ? new Hedger("gnn", hedgePercentile, hedgeBudget, Duration.ofMillis(hedgeMinDelayMs), meterRegistry)
+                : null;
+
+        // Results are cached once mapped; failures and empty responses are
+        // never stored (Caffeine drops exceptionally/null-completed futures).
+        this.cacheBucketStep = Math.max(1e-6, cacheBucketStep);
+        this.gnnCache        = cacheEnabled
+                ? CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                        .maximumSize(cacheMaxSize)
+                        .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                        .recordStats()
+                        .buildAsync(), "gnn_scores")
+                : null;
     }
 
     public Mono<AiRiskResult> analyzeTransaction(
@@ -37,6 +93,7 @@ public class AiRiskService {
             int ja3ReuseCount,
             int deviceReuseCount,
             int ipReuseCount,
+            int identityClusterSize,
             double velocity,
             double burst) {
 
@@ -51,7 +108,8 @@ public class AiRiskService {
         Map<String, Object> identityFeatures = Map.of(
                 "ja3Reuse",    ja3ReuseCount,
                 "deviceReuse", deviceReuseCount,
-                "ipReuse",     ipReuseCount
+                "ipReuse",     ipReuseCount,
+                "identityClusterSize", identityClusterSize
         );
         Map<String, Object> behaviorFeatures = Map.of(
                 "velocity", velocity,
@@ -66,150 +124,60 @@ public class AiRiskService {
                 "behaviorFeatures",  behaviorFeatures
         );
 
-        System.out.printf("🤖 AI REQUEST → sourceAccountId=%s targetAccountId=%s amount=%.2f%n",
-                source, target, amount);
+        // JSON responses are decoded in one streaming pass, without a JsonNode
+        // tree; CBOR ones (downstream.ai.wire-format=cbor) walk the decoded tree.
+        Supplier<Mono<AiRiskResult>> call = () -> batchGnn
+                ? gnnBatchClient.score(payload).map(GnnResponseDecoder::decode)
+                : wire.post(aiWebClient, "/v1/gnn/score", payload, GnnResponseDecoder::decode);
+
+        // Scoring is a read, so a slow call can safely be duplicated
+        Mono<AiRiskResult> response = hedger != null ? hedger.hedge(call) : call.get();
+
+        // Timeouts count against the breaker; while it is open the call fails
+        // fast and the caller's defaultIfEmpty(new AiRiskResult()) applies.
+        Mono<AiRiskResult> scored = breaker.protect(response.timeout(gnnTimeout))
+                .doOnSubscribe(s -> System.out.printf(
+                        "🤖 AI REQUEST → sourceAccountId=%s targetAccountId=%s amount=%.2f%n",
+                        source, target, amount))
+                .doOnNext(this::logResult);
+
+        // Repeat pairs with unchanged (bucketed) features reuse the score; all
+        // concurrent callers for one key share a single in-flight request.
+        if (gnnCache != null) {
+            String key = cacheKey(source, target, amount,
+                    suspiciousNeighborCount, twoHopFraudDensity, connectivityScore,
+                    ja3ReuseCount, deviceReuseCount, ipReuseCount, identityClusterSize,
+                    velocity, burst);
+            Mono<AiRiskResult> load = scored;
+            scored = Mono.fromFuture(() -> gnnCache.get(key, (k, executor) -> load.toFuture()), true);
+        }
 
-        return aiWebClient.post()
-                .uri("/v1/gnn/score")
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .map(this::mapAiResponse)
+        return scored
                 .onErrorResume(e -> {
                     System.err.println("❌ AI SERVICE ERROR: " + e.getMessage());
+                    metrics.recordFallback(PipelineMetrics.GNN);
                     return Mono.empty();
                 });
     }
 
-    private AiRiskResult mapAiResponse(JsonNode r) {
-        if (r == null) return new AiRiskResult();
-
-        AiRiskResult result = new AiRiskResult();
-
-        // ── Core risk score ───────────────────────────────────────
-        // Response shape from /v1/gnn/score (inference_service.py v3.1):
-        //   { gnnScore, confidence, scores: { gnnScore, confidence, riskLevel }, ... }
-        //
-        // FIX: was only checking nested path; now checks flat mirrors first
-        // because GnnScoreResponse exposes both flat mirrors AND nested blocks.
-        double gnnScore = 0.0;
-        if (r.has("gnnScore") && !r.get("gnnScore").isNull()) {
-            // Flat mirror field (top-level) — most reliable
-            gnnScore = r.get("gnnScore").asDouble();
-        } else if (r.has("scores") && r.get("scores").has("gnnScore")) {
-            gnnScore = r.get("scores").get("gnnScore").asDouble();
-        } else if (r.has("risk_score")) {
-            gnnScore = r.get("risk_score").asDouble();
-        }
-        result.setGnnScore(gnnScore);
-        result.setRiskScore(gnnScore);
-        result.setSuspectedFraud(gnnScore > 0.5);
-
-        // ── Confidence ────────────────────────────────────────────
-        // FIX: "confidence" is inside the "scores" block in the response,
-        //      but also exposed as a flat top-level mirror field.
-        //      Old code: r.path("confidence") which misses it when it's nested.
-        double confidence = 0.0;
-        if (r.has("confidence") && !r.get("confidence").isNull()) {
-            // Flat mirror
-            confidence = r.get("confidence").asDouble();
-        } else if (r.has("scores") && r.get("scores").has("confidence")) {
-            confidence = r.get("scores").get("confidence").asDouble();
-        }
-        result.setConfidence(confidence);
-
-        // ── Risk level ────────────────────────────────────────────
-        // FIX: riskLevel lives inside scores{} block; old code only partially handled it
-        String riskLevel = "UNKNOWN";
-        if (r.has("scores") && r.get("scores").has("riskLevel")) {
-            riskLevel = r.get("scores").get("riskLevel").asText("UNKNOWN");
-        } else if (r.has("riskLevel") && !r.get("riskLevel").isNull()) {
-            riskLevel = r.get("riskLevel").asText("UNKNOWN");
-        }
-        result.setRiskLevel(riskLevel);
-
-        // ── Model info ────────────────────────────────────────────
-        result.setModelVersion(r.path("version").asText(
-                r.path("model_version").asText("GNN")));
-        result.setVerdict(r.path("verdict").asText(""));
-
-        // ── Network metrics ───────────────────────────────────────
-        if (r.has("networkMetrics")) {
-            JsonNode nm = r.get("networkMetrics");
-            result.setSuspiciousNeighbors(nm.path("suspiciousNeighbors").asInt(0));
-            result.setSharedDevices(nm.path("sharedDevices").asInt(0));
-            result.setSharedIPs(nm.path("sharedIPs").asInt(0));
-            result.setCentralityScore(nm.path("centralityScore").asDouble(0.0));
-            result.setTransactionLoops(nm.path("transactionLoops").asBoolean(false));
-        }
-
-        // ── Fraud cluster ─────────────────────────────────────────
-        if (r.has("fraudCluster")) {
-            JsonNode fc = r.get("fraudCluster");
-            result.setClusterId(fc.path("clusterId").asInt(0));
-            result.setClusterSize(fc.path("clusterSize").asInt(0));
-            result.setClusterRiskScore(fc.path("clusterRiskScore").asDouble(0.0));
-        } else {
-            // flat mirror
-            result.setClusterId(r.path("fraudClusterId").asInt(0));
+    /** source>target|buckets, each feature quantized on a log1p scale. */
+    private String cacheKey(Long source, Long target, double... features) {
+        StringBuilder key = new StringBuilder(64).append(source).append('>').append(target).append('|');
+        for (double f : features) {
+            key.append(Math.round(Math.log1p(Math.max(0.0, f)) / cacheBucketStep)).append(',');
         }
+        return key.toString();
+    }
 
-        // ── Mule ring detection ───────────────────────────────────
-        if (r.has("muleRingDetection")) {
-            JsonNode mrd = r.get("muleRingDetection");
-            result.setMuleRingMember(mrd.path("isMuleRingMember").asBoolean(false));
-            result.setRingId(mrd.path("ringId").asInt(0));
-            result.setRingShape(mrd.path("ringShape").asText("UNKNOWN"));
-            result.setRingSize(mrd.path("ringSize").asInt(0));
-            result.setRole(mrd.path("role").asText("UNKNOWN"));
-            result.setHubAccount(mrd.path("hubAccount").asText(""));
-
-            List<String> ringAccounts = new ArrayList<>();
-            if (mrd.has("ringAccounts")) {
-                mrd.get("ringAccounts").forEach(n -> ringAccounts.add(n.asText()));
-            }
-            result.setRingAccounts(ringAccounts);
-        }
-
-        // ── Risk factors ──────────────────────────────────────────
-        List<String> riskFactors = new ArrayList<>();
-        if (r.has("riskFactors")) {
-            r.get("riskFactors").forEach(n -> riskFactors.add(n.asText()));
-        }
-        result.setRiskFactors(riskFactors);
-
-        // ── Embedding ─────────────────────────────────────────────
-        // flat mirror: embeddingNorm
-        double embNorm = 0.0;
-        if (r.has("embeddingNorm") && !r.get("embeddingNorm").isNull()) {
-            embNorm = r.get("embeddingNorm").asDouble(0.0);
-        } else if (r.has("embedding")) {
-            embNorm = r.get("embedding").path("embeddingNorm").asDouble(0.0);
-        }
-        result.setEmbeddingNorm(embNorm);
-
-        // ── Old fields (backward compat) ──────────────────────────
-        result.setOutDegree(r.path("out_degree").asInt(0));
-        result.setRiskRatio(r.path("risk_ratio").asDouble(0.0));
-        result.setPopulationSize(r.path("population_size").asText("Unknown"));
-        result.setUnsupervisedScore(r.path("unsupervised_score").asDouble(gnnScore));
-
-        List<String> linked = new ArrayList<>();
-        if (r.has("linked_accounts")) {
-            r.get("linked_accounts").forEach(n -> linked.add(n.asText()));
-        }
-        result.setLinkedAccounts(linked);
-
+    private void logResult(AiRiskResult result) {
         System.out.printf(
             "🤖 AI RESULT → gnn=%.4f conf=%.4f riskLevel=%s muleRing=%b suspNeighbors=%d riskFactors=%d%n",
-            gnnScore,
-            confidence,
-            riskLevel,
+            result.getGnnScore(),
+            result.getConfidence(),
+            result.getRiskLevel(),
             result.isMuleRingMember(),
             result.getSuspiciousNeighbors(),
-            riskFactors.size());
-
-        return result;
+            result.getRiskFactors().size());
     }
 
     /**
@@ -237,6 +205,11 @@ public class AiRiskService {
         ));
     }
 
+    /** Row-major EIF feature rows (see EifService.FEATURE_COUNT) → one score per row. */
+    public Mono<double[]> scoreEifBatch(double[] rows) {
+        return eifService.scoreBatch(rows);
+    }
+
     public Mono<MetricsResponse.OfflineMetrics> getGnnMetrics() {
         return aiWebClient.get()
                 .uri("/metrics")
@@ -6,6 +6,8 @@ import com.mulehunter.backend.repository.AccountAggregateRepository;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+
 /**
  * Step 5 — Behavioral Feature Computation (Reactive)
  * Reads from AccountAggregate (populated in Step 4).
@@ -29,32 +31,50 @@ public class BehaviorFeatureService {
                 .map(agg -> buildFeatures(agg, currentAmount));
     }
 
+    /**
+     * Same features from an aggregate the caller already holds — the pipeline
+     * passes the document returned by AggregateUpdateService, saving a read.
+     */
+    public Mono<BehaviorFeaturesDTO> compute(AccountAggregate agg, double currentAmount) {
+        return Mono.fromSupplier(() -> buildFeatures(agg, currentAmount));
+    }
+
     private BehaviorFeaturesDTO buildFeatures(AccountAggregate agg, double currentAmount) {
 
+        // Rolling sums over the ring buffers, evaluated at read time so
+        // buckets that aged out since the last write are already excluded.
+        Instant now      = Instant.now();
+        double  out24h   = agg.outLast24h(now);
+        double  in24h    = agg.inLast24h(now);
+        int     count24h = agg.countLast24h(now);
+        double  out7d    = agg.outLast7d(now);
+        int     count7d  = agg.countLast7d(now);
+        int     cps7d    = agg.counterpartiesLast7d(now);
+
         // Velocity: txn count in 24h normalised to 0-1
-        double velocityScore = Math.min(agg.getTxnCount24h() / HIGH_VELOCITY_THRESHOLD, 1.0);
+        double velocityScore = Math.min(count24h / HIGH_VELOCITY_THRESHOLD, 1.0);
 
         // Burst: today vs 7d average
-        double avg7d = agg.getTxnCount7d() > 0
-                ? agg.getTotalOut7d() / 7.0
+        double avg7d = count7d > 0
+                ? out7d / 7.0
                 : 0.0;
         double burstScore = avg7d == 0
                 ? 0.0
-                : Math.min((agg.getTotalOut24h() / avg7d) / HIGH_BURST_THRESHOLD, 1.0);
+                : Math.min((out24h / avg7d) / HIGH_BURST_THRESHOLD, 1.0);
 
         // Amount deviation: how far is this txn from avg txn size today
-        double avgTxnSize = agg.getTxnCount24h() > 0
-                ? agg.getTotalOut24h() / agg.getTxnCount24h()
+        double avgTxnSize = count24h > 0
+                ? out24h / count24h
                 : 0.0;
         double avgAmountDeviation = avgTxnSize == 0
                 ? 0.0
                 : Math.min(Math.abs(currentAmount - avgTxnSize) / avgTxnSize, 1.0);
 
         return new BehaviorFeaturesDTO(
-                agg.getTotalIn24h(),
-                agg.getTotalOut24h(),
-                agg.getTxnCount24h(),
-                agg.getUniqueCounterparties7d(),
+                in24h,
+                out24h,
+                count24h,
+                cps7d,
                 round(velocityScore),
                 round(burstScore),
                 round(avgAmountDeviation)
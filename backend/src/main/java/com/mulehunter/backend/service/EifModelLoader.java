@@ -0,0 +1,76 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.util.EifModel;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Loads the exported EIF forest (eif.local.model-path) for in-process
+ * scoring and hot-reloads it when the file's mtime changes.
+ *
+ * A new artefact replaces the current model only after it parses and passes
+ * its golden checks; a bad or missing file leaves the previous model in
+ * place and is retried on every pass until it loads. {@link #current()} is null while eif.local.enabled=false or before
+ * the first good load, in which case EifService calls the Python service.
+ */
+@Service
+public class EifModelLoader {
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path modelPath;
+
+    private volatile EifModel model;
+    private long loadedMtime = Long.MIN_VALUE;
+
+    public EifModelLoader(
+            ObjectMapper objectMapper,
+            @Value("${eif.local.enabled:false}") boolean enabled,
+            @Value("${eif.local.model-path:../visual-analytics/eif_v_2/models/eif_forest.json}") String modelPath
+    ) {
+        this.objectMapper = objectMapper;
+        this.enabled      = enabled;
+        this.modelPath    = Path.of(modelPath);
+    }
+
+    public EifModel current() {
+        return model;
+    }
+
+    @PostConstruct
+    void init() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${eif.local.reload-interval-ms:10000}")
+    public synchronized void reload() {
+        if (!enabled) return;
+
+        try {
+            long mtime = Files.getLastModifiedTime(modelPath).toMillis();
+            if (mtime == loadedMtime) return;
+
+            long start = System.nanoTime();
+            EifModel next;
+            try (InputStream in = Files.newInputStream(modelPath)) {
+                next = EifModel.parse(objectMapper.readTree(in));
+            }
+            model = next;
+            // Only now: a failed or partly written file is retried next pass.
+            loadedMtime = mtime;
+            System.out.printf("🌲 EIF LOCAL MODEL loaded → version=%s trees=%d nodes=%d (%d ms) from %s%n",
+                    next.version(), next.trees(), next.nodes(),
+                    (System.nanoTime() - start) / 1_000_000, modelPath);
+        } catch (Exception e) {
+            System.err.println("⚠️ EIF LOCAL MODEL not loaded (" + modelPath + "): " + e.getMessage()
+                    + (model != null ? " — keeping version " + model.version() : ""));
+        }
+    }
+}
@@ -1,15 +1,30 @@
 package com.mulehunter.backend.service;
 
+import com.mulehunter.backend.DTO.EifBatchResponse;
 import com.mulehunter.backend.DTO.EifResponse;
 import com.mulehunter.backend.DTO.MetricsResponse;
+import com.mulehunter.backend.config.DownstreamBreakers;
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.config.DownstreamCodecs;
+import com.mulehunter.backend.metrics.PipelineMetrics;
+import com.mulehunter.backend.util.CircuitBreaker;
+import com.mulehunter.backend.util.EifModel;
+import com.mulehunter.backend.util.Hedger;
+import com.mulehunter.backend.util.MicroBatcher;
+import com.mulehunter.backend.util.WireCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * EIF scoring service — sole owner of the HTTP call to the EIF Python endpoint.
@@ -17,19 +32,66 @@ import java.util.Map;
  *
  * Returns Map<String, Object> with keys: score, confidence, explanation, topFactors
  * — the exact shape TransactionService.createTransaction() expects.
+ *
+ * Batch scoring (/v1/eif/score-batch) takes a row-major double[] of
+ * FEATURE_COUNT-wide rows: {@link #scoreBatch} for bulk re-scoring (scores
+ * only), and, with eif.mode=batch, live {@link #score} calls are coalesced
+ * into small explained batches by a {@link MicroBatcher}.
+ *
+ * With eif.local.enabled=true and an exported forest loaded by
+ * {@link EifModelLoader}, both paths score in-process instead — no HTTP hop,
+ * and no dependency on the Python service being up.
+ *
+ * Score calls use the downstream.eif.wire-format encoding; a CBOR batch row
+ * is 9 bytes per feature, with no double formatting or parsing on either side.
  */
 @Service
 public class EifService {
 
+    /** Width of one EIF feature row (train_eif.py RAW_FEATURES). */
+    public static final int FEATURE_COUNT = EifModel.RAW_DIM;
+
     private final WebClient webClient;
+    private final WireCodec wire;
+    private final PipelineMetrics metrics;
+    private final MicroBatcher<double[], Map<String, Object>> liveBatcher;
+    private final Duration timeout;
+    private final CircuitBreaker breaker;
+    private final Hedger hedger;
+    private final EifModelLoader localModel;
 
     public EifService(
-            @Value("${eif.service.url:http://localhost:8000}") String eifServiceUrl
+            @Value("${eif.service.url:http://localhost:8000}") String eifServiceUrl,
+            @Value("${eif.mode:single}") String mode,
+            @Value("${eif.batch.max-size:64}") int maxSize,
+            @Value("${eif.batch.max-wait-micros:1000}") long maxWaitMicros,
+            @Value("${eif.batch.max-in-flight:4}") int maxInFlight,
+            @Value("${eif.timeout-ms:3000}") long timeoutMs,
+            @Value("${eif.hedge.enabled:false}") boolean hedgeEnabled,
+            @Value("${eif.hedge.percentile:0.95}") double hedgePercentile,
+            @Value("${eif.hedge.budget:0.05}") double hedgeBudget,
+            @Value("${eif.hedge.min-delay-ms:5}") long hedgeMinDelayMs,
+            PipelineMetrics metrics,
+            DownstreamClientFactory clients,
+            DownstreamBreakers breakers,
+            DownstreamCodecs codecs,
+            EifModelLoader localModel,
+            MeterRegistry meterRegistry
     ) {
         System.out.println("🔬 EIF SERVICE URL: " + eifServiceUrl);
-        this.webClient = WebClient.builder()
-                .baseUrl(eifServiceUrl)
-                .build();
+        this.webClient = clients.create(DownstreamClientFactory.EIF, eifServiceUrl);
+        this.wire      = codecs.get(DownstreamClientFactory.EIF);
+        this.metrics = metrics;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.breaker = breakers.get(DownstreamClientFactory.EIF);
+        this.localModel = localModel;
+        this.hedger  = hedgeEnabled
+                ? new Hedger("eif", hedgePercentile, hedgeBudget, Duration.ofMillis(hedgeMinDelayMs), meterRegistry)
+                : null;
+        this.liveBatcher = "batch".equalsIgnoreCase(mode)
+                ? new MicroBatcher<>("eif", maxSize, Duration.ofNanos(Math.max(1, maxWaitMicros) * 1_000),
+                        maxInFlight, this::sendExplained, meterRegistry)
+                : null;
     }
 
     /**
@@ -42,26 +104,23 @@ public class EifService {
      */
     public Mono<Map<String, Object>> score(List<Double> features) {
 
-        Map<String, Object> body = Map.of("features", features);
+        double[] row = new double[features.size()];
+        for (int i = 0; i < row.length; i++) row[i] = features.get(i);
 
-        return webClient.post()
-                .uri("/v1/eif/score")
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(EifResponse.class)
-                .map(r -> {
-                    Map<String, Object> result = new LinkedHashMap<>();
-                    result.put("score",       r.getScore());
-                    result.put("confidence",  r.getConfidence());
-                    result.put("explanation", r.getExplanation() != null ? r.getExplanation() : "");
-                    result.put("topFactors",  r.getTopFactors()  != null ? r.getTopFactors()  : Map.of());
-                    System.out.printf("🔬 EIF RESULT → score=%.4f | %s%n",
-                            r.getScore(), r.getExplanation());
-                    return result;
+        EifModel local = localModel.current();
+        Mono<Map<String, Object>> scored = local != null && row.length == FEATURE_COUNT
+                ? Mono.fromCallable(() -> {
+                    EifModel.Result r = local.explain(row);
+                    return result(r.score(), r.confidence(), r.explanation(), r.topFactors());
                 })
-                .timeout(java.time.Duration.ofSeconds(5))
+                : remoteScore(features, row);
+
+        return scored
+                .doOnNext(r -> System.out.printf("🔬 EIF RESULT → score=%.4f | %s%n",
+                        (Double) r.get("score"), r.get("explanation")))
                 .onErrorResume(e -> {
                     System.err.println("⚠️ EIF skipped: " + e.getMessage());
+                    metrics.recordFallback(PipelineMetrics.EIF);
                     return Mono.just(Map.of(
                             "score",       0.0,
                             "confidence",  0.0,
@@ -71,6 +130,28 @@ public class EifService {
                 });
     }
 
+    /**
+     * Scores rows.length / FEATURE_COUNT rows in one call, without
+     * explanations, and emits one score per row. Errors are left to the
+     * caller — a bulk job decides itself what a failed chunk means.
+     */
+    public Mono<double[]> scoreBatch(double[] rows) {
+        if (rows.length % FEATURE_COUNT != 0) {
+            return Mono.error(new IllegalArgumentException(
+                    "EIF batch length " + rows.length + " is not a multiple of " + FEATURE_COUNT));
+        }
+        EifModel local = localModel.current();
+        if (local != null) {
+            return Mono.fromCallable(() -> local.scoreRows(rows));
+        }
+        return postBatch(rows, false).map(EifBatchResponse::getScores);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (liveBatcher != null) liveBatcher.shutdown();
+    }
+
     public Mono<MetricsResponse.OfflineMetrics> getMetrics() {
         return webClient.get()
                 .uri("/v1/eif/metrics")
@@ -82,4 +163,54 @@ public class EifService {
                     return Mono.empty();
                 });
     }
-}
\ No newline at end of file
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private Mono<Map<String, Object>> remoteScore(List<Double> features, double[] row) {
+
+        Supplier<Mono<Map<String, Object>>> send;
+        if (liveBatcher != null) {
+            send = () -> liveBatcher.submit(row);
+        } else {
+            send = () -> wire.post(webClient, "/v1/eif/score", Map.of("features", features),
+                            p -> p.readValueAs(EifResponse.class))
+                    .map(r -> result(r.getScore(), r.getConfidence(), r.getExplanation(), r.getTopFactors()));
+        }
+        Mono<Map<String, Object>> call = hedger != null ? hedger.hedge(send) : send.get();
+
+        // While the breaker is open this fails fast into the zero-score fallback
+        return breaker.protect(call.timeout(timeout));
+    }
+
+    private Mono<List<Map<String, Object>>> sendExplained(List<double[]> batch) {
+        double[] rows = new double[batch.size() * FEATURE_COUNT];
+        for (int i = 0; i < batch.size(); i++) {
+            System.arraycopy(batch.get(i), 0, rows, i * FEATURE_COUNT, FEATURE_COUNT);
+        }
+        return postBatch(rows, true).map(r -> {
+            List<Map<String, Object>> results = new ArrayList<>(batch.size());
+            for (int i = 0; i < r.getScores().length; i++) {
+                results.add(result(r.getScores()[i], r.getConfidence()[i],
+                        r.getExplanation() == null ? null : r.getExplanation().get(i),
+                        r.getTopFactors()  == null ? null : r.getTopFactors().get(i)));
+            }
+            return results;
+        });
+    }
+
+    private Mono<EifBatchResponse> postBatch(double[] rows, boolean explain) {
+        return wire.post(webClient, "/v1/eif/score-batch",
+                Map.of("dim", FEATURE_COUNT, "features", rows, "explain", explain),
+                p -> p.readValueAs(EifBatchResponse.class));
+    }
+
+    private static Map<String, Object> result(double score, double confidence,
+                                              String explanation, Map<String, Double> topFactors) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("score",       score);
+        result.put("confidence",  confidence);
+        result.put("explanation", explanation != null ? explanation : "");
+        result.put("topFactors",  topFactors  != null ? topFactors  : Map.of());
+        return result;
+    }
+}
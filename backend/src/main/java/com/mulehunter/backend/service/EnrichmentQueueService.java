@@ -0,0 +1,305 @@
+package com.mulehunter.backend.service;
+
+import com.mulehunter.backend.metrics.PipelineMetrics;
+import com.mulehunter.backend.model.EnrichmentTask;
+import com.mulehunter.backend.repository.EnrichmentTaskRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asynchronous enrichment side-effects (pipeline.enrichment.mode=async).
+ *
+ * Node enrichment and the visual re-analysis trigger do not feed the risk
+ * decision, so TransactionService hands them off here instead of waiting on
+ * them. Each submission is persisted as an {@link EnrichmentTask} first and
+ * then offered to a bounded in-process queue drained by its own worker pool.
+ * Steps are retried with backoff; anything still pending (queue full, retries
+ * exhausted, crash) stays in Mongo and is picked up again by the sweeper.
+ *
+ * Several instances share the collection, so every task carries an owner
+ * token and a lease. The submitting instance owns a new task; a sweeper only
+ * takes a task over, atomically, once that lease has run out, and a worker
+ * re-checks ownership (and renews the lease) right before running the steps
+ * and writes its bookkeeping back only while it still owns the task. A task
+ * still failing after pipeline.enrichment.max-attempts runs is moved to
+ * {@value #DEAD_LETTER_COLLECTION}.
+ */
+@Service
+public class EnrichmentQueueService {
+
+    public static final String DEAD_LETTER_COLLECTION = "enrichment_tasks_dead";
+
+    // A sweeper only claims a task this long after its lease ran out, to
+    // allow for clock skew between instances.
+    private static final Duration LEASE_GRACE = Duration.ofSeconds(5);
+
+    private final EnrichmentTaskRepository taskRepo;
+    private final ReactiveMongoTemplate mongo;
+    private final PipelineMetrics metrics;
+    private final NodeEnrichedService nodeEnrichedService;
+    private final VisualAnalyticsService visualAnalyticsService;
+
+    private final int workers;
+    private final int maxRetries;
+    private final int maxAttempts;
+    private final Duration lease;
+
+    private final Sinks.Many<EnrichmentTask> queue;
+    private final Scheduler workerPool;
+    // Task ids currently queued or running here — keeps this instance's sweeper
+    // from re-claiming its own tasks.
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private Disposable worker;
+
+    public EnrichmentQueueService(
+            EnrichmentTaskRepository taskRepo,
+            ReactiveMongoTemplate mongo,
+            PipelineMetrics metrics,
+            NodeEnrichedService nodeEnrichedService,
+            VisualAnalyticsService visualAnalyticsService,
+            @Value("${pipeline.enrichment.queue-capacity:10000}") int queueCapacity,
+            @Value("${pipeline.enrichment.workers:8}") int workers,
+            @Value("${pipeline.enrichment.max-retries:3}") int maxRetries,
+            @Value("${pipeline.enrichment.max-attempts:10}") int maxAttempts,
+            @Value("${pipeline.enrichment.lease-ms:30000}") long leaseMs
+    ) {
+        this.taskRepo               = taskRepo;
+        this.mongo                  = mongo;
+        this.metrics                = metrics;
+        this.nodeEnrichedService    = nodeEnrichedService;
+        this.visualAnalyticsService = visualAnalyticsService;
+        this.workers                = Math.max(1, workers);
+        this.maxRetries             = Math.max(0, maxRetries);
+        this.maxAttempts            = Math.max(1, maxAttempts);
+        this.lease                  = Duration.ofMillis(Math.max(1, leaseMs));
+
+        this.queue = Sinks.many().unicast()
+                .onBackpressureBuffer(new ArrayBlockingQueue<>(Math.max(1, queueCapacity)));
+        this.workerPool = Schedulers.newBoundedElastic(
+                this.workers, Math.max(1, queueCapacity), "enrichment-worker");
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        worker = queue.asFlux()
+                .publishOn(workerPool)
+                .flatMap(this::process, workers)
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        if (worker != null) worker.dispose();
+        workerPool.dispose();
+    }
+
+    /**
+     * Persist the task, then try to enqueue it. Completes once the task is
+     * durable — the caller never waits on the side-effects themselves.
+     * If Mongo is unavailable the steps are run inline as a last resort.
+     */
+    public Mono<Void> submit(String txDocumentId, Long sourceNodeId, Long targetNodeId, double amount) {
+
+        EnrichmentTask task = EnrichmentTask.forTransaction(txDocumentId, sourceNodeId, targetNodeId, amount,
+                new ObjectId().toHexString(), Instant.now().plus(lease));
+
+        return taskRepo.save(task)
+                .doOnNext(this::offer)
+                .then()
+                .onErrorResume(e -> {
+                    System.err.println("⚠️ ENRICHMENT task not persisted, running inline: " + e.getMessage());
+                    return runSteps(task).then();
+                });
+    }
+
+    /**
+     * Re-enqueues tasks left behind by a full queue, exhausted retries or a
+     * crashed instance — but only tasks whose lease has run out, each claimed
+     * atomically first, so a task another live instance is running is never
+     * picked up.
+     */
+    @Scheduled(
+            initialDelayString = "${pipeline.enrichment.sweep-interval-ms:30000}",
+            fixedDelayString   = "${pipeline.enrichment.sweep-interval-ms:30000}")
+    public void sweep() {
+        recover();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        recover();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private void recover() {
+        Instant expired = Instant.now().minus(LEASE_GRACE);
+        Query stale = new Query(leaseExpired(expired));
+        stale.fields().include("_id");
+
+        mongo.find(stale, EnrichmentTask.class)
+                .filter(task -> !inFlight.contains(task.getId()))
+                .concatMap(task -> claim(task.getId(), expired))
+                .doOnNext(this::offer)
+                .count()
+                .subscribe(
+                        n -> { if (n > 0) System.out.println("♻️ ENRICHMENT re-enqueued " + n + " pending task(s)"); },
+                        e -> System.err.println("⚠️ ENRICHMENT sweep failed: " + e.getMessage()));
+    }
+
+    /** Takes over a task whose lease ran out; empty if another instance got it first. */
+    private Mono<EnrichmentTask> claim(String id, Instant expired) {
+        Query unclaimed = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(id), leaseExpired(expired)));
+        Update take = new Update()
+                .set("owner", new ObjectId().toHexString())
+                .set("leaseUntil", Instant.now().plus(lease));
+
+        return mongo.findAndModify(unclaimed, take,
+                FindAndModifyOptions.options().returnNew(true), EnrichmentTask.class);
+    }
+
+    private Criteria leaseExpired(Instant expired) {
+        return new Criteria().orOperator(
+                Criteria.where("leaseUntil").lt(expired),
+                // Tasks written before leases existed.
+                Criteria.where("leaseUntil").exists(false).and("createdAt").lt(expired.minus(lease)));
+    }
+
+    /**
+     * Renews the lease while {@code task}'s owner still holds it, so a task
+     * that waited in the queue is not run after another instance claimed it.
+     */
+    private Mono<EnrichmentTask> renew(EnrichmentTask task) {
+        return mongo.findAndModify(ownedBy(task),
+                new Update().set("leaseUntil", Instant.now().plus(lease)),
+                FindAndModifyOptions.options().returnNew(true), EnrichmentTask.class);
+    }
+
+    private void offer(EnrichmentTask task) {
+        if (!inFlight.add(task.getId())) return;
+
+        // Unicast sinks reject concurrent emitters (FAIL_NON_SERIALIZED).
+        Sinks.EmitResult result;
+        synchronized (queue) {
+            result = queue.tryEmitNext(task);
+        }
+        if (result.isFailure()) {
+            // Queue full (or racing emitter) — the task is already durable,
+            // the sweeper will pick it up once the workers catch up.
+            inFlight.remove(task.getId());
+            System.err.println("⚠️ ENRICHMENT queue rejected task " + task.getId() + ": " + result);
+        }
+    }
+
+    /**
+     * Runs the task if this instance still owns it. A failed run keeps its
+     * lease until it runs out, which spaces out the sweeper's retries.
+     */
+    private Mono<Void> process(EnrichmentTask queued) {
+        return renew(queued)
+                .switchIfEmpty(Mono.fromRunnable(() -> System.err.println(
+                        "⚠️ ENRICHMENT task " + queued.getId() + " claimed by another instance, skipped")))
+                .flatMap(task -> runSteps(task)
+                        .timeout(lease)
+                        .flatMap(remaining -> {
+                            if (remaining.isEmpty()) {
+                                return mongo.remove(ownedBy(task), EnrichmentTask.class).then();
+                            }
+                            task.setPendingSteps(remaining);
+                            task.setAttempts(task.getAttempts() + 1);
+                            if (task.getAttempts() >= maxAttempts) {
+                                return deadLetter(task);
+                            }
+                            return mongo.updateFirst(ownedBy(task), new Update()
+                                            .set("pendingSteps", remaining)
+                                            .set("attempts", task.getAttempts())
+                                            .set("lastError", task.getLastError()),
+                                    EnrichmentTask.class).then();
+                        }))
+                .onErrorResume(e -> {
+                    // The task keeps its lease; the sweeper retries it once that runs out.
+                    System.err.println("⚠️ ENRICHMENT task " + queued.getId() + " failed: " + e.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> inFlight.remove(queued.getId()));
+    }
+
+    /**
+     * Copies the task to the dead-letter collection, then drops it. If either
+     * write fails the task stays in place, and the next sweep after its lease
+     * runs it once more and retries the move.
+     */
+    private Mono<Void> deadLetter(EnrichmentTask task) {
+        task.setAbandonedAt(Instant.now());
+
+        return mongo.save(task, DEAD_LETTER_COLLECTION)
+                .then(mongo.remove(ownedBy(task), EnrichmentTask.class))
+                .doOnSuccess(r -> {
+                    metrics.recordEnrichmentDeadLettered();
+                    System.err.printf("❌ ENRICHMENT task %s moved to %s after %d attempts, steps=%s error=%s%n",
+                            task.getId(), DEAD_LETTER_COLLECTION, task.getAttempts(),
+                            task.getPendingSteps(), task.getLastError());
+                })
+                .then();
+    }
+
+    private static Query ownedBy(EnrichmentTask task) {
+        return new Query(Criteria.where("_id").is(task.getId()).and("owner").is(task.getOwner()));
+    }
+
+    /**
+     * Runs every pending step (each with its own retry budget) and emits the
+     * steps that still failed.
+     */
+    private Mono<List<String>> runSteps(EnrichmentTask task) {
+        return Flux.fromIterable(new ArrayList<>(task.getPendingSteps()))
+                .concatMap(step -> step(task, step)
+                        .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(200)))
+                        .then(Mono.<String>empty())
+                        .onErrorResume(e -> {
+                            task.setLastError(step + ": " + e.getMessage());
+                            return Mono.just(step);
+                        }))
+                .collectList();
+    }
+
+    private Mono<Void> step(EnrichmentTask task, String step) {
+        return switch (step) {
+            case EnrichmentTask.NODE_OUTGOING ->
+                    nodeEnrichedService.handleOutgoing(task.getSourceNodeId(), task.getAmount());
+            case EnrichmentTask.NODE_INCOMING ->
+                    nodeEnrichedService.handleIncoming(task.getTargetNodeId(), task.getAmount());
+            case EnrichmentTask.VISUAL_TRIGGER ->
+                    visualAnalyticsService.reanalyzeNodes(
+                            task.getTxDocumentId(), task.getSourceNodeId(), task.getTargetNodeId());
+            default -> Mono.empty();
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.config.DownstreamCodecs;
+import com.mulehunter.backend.util.MicroBatcher;
+import com.mulehunter.backend.util.WireCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces concurrent GNN scoring requests into POST /v1/gnn/score-batch
+ * calls (ai.gnn.mode=batch).
+ *
+ * Each {@link #score} call is queued; a batch is sent as soon as
+ * ai.gnn.batch.max-size requests are waiting or the oldest has waited
+ * ai.gnn.batch.max-wait-micros, with at most ai.gnn.batch.max-in-flight
+ * batches outstanding. results[i] of the response completes the i-th
+ * caller; a failed batch fails every caller in it, so AiRiskService's
+ * per-request fallback still applies. Batches use the "ai" downstream's
+ * wire format.
+ */
+@Service
+public class GnnBatchClient {
+
+    private final WebClient aiWebClient;
+    private final WireCodec wire;
+    private final MicroBatcher<Map<String, Object>, JsonNode> batcher;
+
+    public GnnBatchClient(
+            @Value("${ai.service.url:http://localhost:8001}") String aiServiceUrl,
+            @Value("${ai.gnn.batch.max-size:32}") int maxSize,
+            @Value("${ai.gnn.batch.max-wait-micros:2000}") long maxWaitMicros,
+            @Value("${ai.gnn.batch.max-in-flight:8}") int maxInFlight,
+            DownstreamClientFactory clients,
+            DownstreamCodecs codecs,
+            MeterRegistry meterRegistry
+    ) {
+        this.aiWebClient = clients.create(DownstreamClientFactory.AI, aiServiceUrl);
+        this.wire        = codecs.get(DownstreamClientFactory.AI);
+        this.batcher = new MicroBatcher<>("gnn", maxSize,
+                Duration.ofNanos(Math.max(1, maxWaitMicros) * 1_000), maxInFlight,
+                this::send, meterRegistry);
+    }
+
+    /** Queues one /v1/gnn/score payload and emits its response. */
+    public Mono<JsonNode> score(Map<String, Object> payload) {
+        return batcher.submit(payload)
+                .flatMap(r -> r.has("error")
+                        ? Mono.error(new IllegalStateException("GNN batch item failed: " + r.get("error").asText()))
+                        : Mono.just(r));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batcher.shutdown();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private Mono<List<JsonNode>> send(List<Map<String, Object>> requests) {
+        return wire.<JsonNode>post(aiWebClient, "/v1/gnn/score-batch",
+                        Map.of("requests", requests), JsonParser::readValueAsTree)
+                .map(body -> {
+                    List<JsonNode> results = new ArrayList<>(requests.size());
+                    for (JsonNode r : body.path("results")) {
+                        results.add(r.isNull() ? null : r);
+                    }
+                    return results;
+                });
+    }
+}
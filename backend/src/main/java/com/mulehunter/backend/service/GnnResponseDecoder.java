@@ -0,0 +1,264 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mulehunter.backend.model.AiRiskResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass decoder for /v1/gnn/score responses (inference_service.py
+ * v3.1) straight into {@link AiRiskResult} — no JsonNode tree.
+ *
+ * Fields are read in whatever order they arrive and the legacy aliases are
+ * resolved once the object closes, with the same precedence the tree-based
+ * mapping used:
+ *
+ *   gnnScore      flat gnnScore (non-null) → scores.gnnScore → risk_score
+ *   confidence    flat confidence (non-null) → scores.confidence
+ *   riskLevel     scores.riskLevel → flat riskLevel (non-null) → UNKNOWN
+ *   modelVersion  version → model_version → "GNN"
+ *   clusterId     fraudCluster.clusterId → flat fraudClusterId
+ *   embeddingNorm flat embeddingNorm (non-null) → embedding.embeddingNorm
+ *
+ * Unknown fields (entity, timestamp, ...) are skipped without being
+ * materialised. Lists are only allocated for arrays that are present.
+ */
+final class GnnResponseDecoder {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private GnnResponseDecoder() {}
+
+    static AiRiskResult decode(byte[] body) {
+        try (JsonParser p = JSON.createParser(body)) {
+            return decode(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException("GNN response is not valid JSON", e);
+        }
+    }
+
+    /** Batch results arrive as tree nodes; walk them with the same decoder. */
+    static AiRiskResult decode(JsonNode node) {
+        try (JsonParser p = node.traverse()) {
+            return decode(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static AiRiskResult decode(JsonParser p) throws IOException {
+
+        AiRiskResult result = new AiRiskResult();
+
+        Double  flatGnn = null, nestedGnn = null, legacyRisk = null;
+        Double  flatConfidence = null, nestedConfidence = null;
+        String  nestedRiskLevel = null, flatRiskLevel = null;
+        String  version = null, modelVersion = null;
+        boolean hasFraudCluster = false, hasRing = false;
+        int     flatClusterId = 0;
+        Double  flatEmbNorm = null;
+        double  nestedEmbNorm = 0.0;
+        Double  unsupervised = null;
+        List<String> ringAccounts = null, riskFactors = null, linked = null;
+
+        if (p.nextToken() == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken t = p.nextToken();
+                switch (field) {
+                    case "gnnScore"       -> { if (t != JsonToken.VALUE_NULL) flatGnn = num(p, 0.0); }
+                    case "risk_score"     -> legacyRisk = num(p, 0.0);
+                    case "confidence"     -> { if (t != JsonToken.VALUE_NULL) flatConfidence = num(p, 0.0); }
+                    case "riskLevel"      -> { if (t != JsonToken.VALUE_NULL) flatRiskLevel = text(p, "UNKNOWN"); }
+                    case "version"        -> version = text(p, null);
+                    case "model_version"  -> modelVersion = text(p, null);
+                    case "verdict"        -> result.setVerdict(text(p, ""));
+                    case "fraudClusterId" -> flatClusterId = integer(p, 0);
+                    case "embeddingNorm"  -> { if (t != JsonToken.VALUE_NULL) flatEmbNorm = num(p, 0.0); }
+                    case "out_degree"     -> result.setOutDegree(integer(p, 0));
+                    case "risk_ratio"     -> result.setRiskRatio(num(p, 0.0));
+                    case "population_size"    -> result.setPopulationSize(text(p, "Unknown"));
+                    case "unsupervised_score" -> {
+                        if (t.isScalarValue() && t != JsonToken.VALUE_NULL) unsupervised = num(p, 0.0);
+                        else p.skipChildren();
+                    }
+                    case "riskFactors"        -> riskFactors = strings(p);
+                    case "linked_accounts"    -> linked = strings(p);
+
+                    case "scores" -> {
+                        if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String f = p.currentName();
+                            p.nextToken();
+                            switch (f) {
+                                case "gnnScore"   -> nestedGnn = num(p, 0.0);
+                                case "confidence" -> nestedConfidence = num(p, 0.0);
+                                case "riskLevel"  -> nestedRiskLevel = text(p, "UNKNOWN");
+                                default           -> p.skipChildren();
+                            }
+                        }
+                    }
+                    case "networkMetrics" -> {
+                        if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String f = p.currentName();
+                            p.nextToken();
+                            switch (f) {
+                                case "suspiciousNeighbors" -> result.setSuspiciousNeighbors(integer(p, 0));
+                                case "sharedDevices"       -> result.setSharedDevices(integer(p, 0));
+                                case "sharedIPs"           -> result.setSharedIPs(integer(p, 0));
+                                case "centralityScore"     -> result.setCentralityScore(num(p, 0.0));
+                                case "transactionLoops"    -> result.setTransactionLoops(bool(p));
+                                default                    -> p.skipChildren();
+                            }
+                        }
+                    }
+                    case "fraudCluster" -> {
+                        hasFraudCluster = true;
+                        if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String f = p.currentName();
+                            p.nextToken();
+                            switch (f) {
+                                case "clusterId"        -> result.setClusterId(integer(p, 0));
+                                case "clusterSize"      -> result.setClusterSize(integer(p, 0));
+                                case "clusterRiskScore" -> result.setClusterRiskScore(num(p, 0.0));
+                                default                 -> p.skipChildren();
+                            }
+                        }
+                    }
+                    case "muleRingDetection" -> {
+                        hasRing = true;
+                        result.setRingShape("UNKNOWN");
+                        result.setRole("UNKNOWN");
+                        result.setHubAccount("");
+                        if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String f = p.currentName();
+                            p.nextToken();
+                            switch (f) {
+                                case "isMuleRingMember" -> result.setMuleRingMember(bool(p));
+                                case "ringId"           -> result.setRingId(integer(p, 0));
+                                case "ringShape"        -> result.setRingShape(text(p, "UNKNOWN"));
+                                case "ringSize"         -> result.setRingSize(integer(p, 0));
+                                case "role"             -> result.setRole(text(p, "UNKNOWN"));
+                                case "hubAccount"       -> result.setHubAccount(text(p, ""));
+                                case "ringAccounts"     -> ringAccounts = strings(p);
+                                default                 -> p.skipChildren();
+                            }
+                        }
+                    }
+                    case "embedding" -> {
+                        if (t != JsonToken.START_OBJECT) { p.skipChildren(); break; }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String f = p.currentName();
+                            p.nextToken();
+                            if ("embeddingNorm".equals(f)) nestedEmbNorm = num(p, 0.0);
+                            else p.skipChildren();
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+
+        // ── Resolve aliases ───────────────────────────────────────
+        double gnnScore = flatGnn != null ? flatGnn
+                : nestedGnn != null ? nestedGnn
+                : legacyRisk != null ? legacyRisk
+                : 0.0;
+        result.setGnnScore(gnnScore);
+        result.setRiskScore(gnnScore);
+        result.setSuspectedFraud(gnnScore > 0.5);
+
+        result.setConfidence(flatConfidence != null ? flatConfidence
+                : nestedConfidence != null ? nestedConfidence
+                : 0.0);
+        result.setRiskLevel(nestedRiskLevel != null ? nestedRiskLevel
+                : flatRiskLevel != null ? flatRiskLevel
+                : "UNKNOWN");
+        result.setModelVersion(version != null ? version
+                : modelVersion != null ? modelVersion
+                : "GNN");
+        if (result.getVerdict() == null) result.setVerdict("");
+
+        if (!hasFraudCluster) result.setClusterId(flatClusterId);
+        if (hasRing) result.setRingAccounts(ringAccounts != null ? ringAccounts : new ArrayList<>());
+
+        result.setRiskFactors(riskFactors != null ? riskFactors : new ArrayList<>());
+        result.setEmbeddingNorm(flatEmbNorm != null ? flatEmbNorm : nestedEmbNorm);
+        if (result.getPopulationSize() == null) result.setPopulationSize("Unknown");
+        result.setUnsupervisedScore(unsupervised != null ? unsupervised : gnnScore);
+        result.setLinkedAccounts(linked != null ? linked : new ArrayList<>());
+
+        return result;
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+    // Value coercions mirror JsonNode.asXxx(default): null → default,
+    // containers → default, strings parsed.
+
+    private static double num(JsonParser p, double fallback) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return fallback;
+        if (t.isStructStart()) { p.skipChildren(); return fallback; }
+        return p.getValueAsDouble(fallback);
+    }
+
+    private static int integer(JsonParser p, int fallback) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return fallback;
+        if (t.isStructStart()) { p.skipChildren(); return fallback; }
+        if (t == JsonToken.VALUE_NUMBER_FLOAT) return (int) p.getDoubleValue();
+        return p.getValueAsInt(fallback);
+    }
+
+    private static boolean bool(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t.isStructStart()) { p.skipChildren(); return false; }
+        return p.getValueAsBoolean(false);
+    }
+
+    private static String text(JsonParser p, String fallback) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return fallback;
+        if (t.isStructStart()) { p.skipChildren(); return ""; }
+        return scalarText(p);
+    }
+
+    // JsonNode.asText() of a scalar: numbers in their Java form (1.50 → "1.5"),
+    // null → "null".
+    private static String scalarText(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL)         return "null";
+        if (t == JsonToken.VALUE_NUMBER_FLOAT) return String.valueOf(p.getDoubleValue());
+        if (t == JsonToken.VALUE_NUMBER_INT)   return p.getNumberValue().toString();
+        return p.getText();
+    }
+
+    /**
+     * Elements of an array, or the values of an object (JsonNode.forEach
+     * walks both), as asText(); any other value gives an empty list.
+     */
+    private static List<String> strings(JsonParser p) throws IOException {
+        List<String> out = new ArrayList<>();
+        JsonToken start = p.currentToken();
+        if (start != JsonToken.START_ARRAY && start != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return out;
+        }
+        JsonToken end = start == JsonToken.START_ARRAY ? JsonToken.END_ARRAY : JsonToken.END_OBJECT;
+        while (p.nextToken() != end) {
+            if (p.currentToken() == JsonToken.FIELD_NAME) p.nextToken();
+            if (p.currentToken().isStructStart()) { p.skipChildren(); out.add(""); }
+            else out.add(scalarText(p));
+        }
+        return out;
+    }
+}
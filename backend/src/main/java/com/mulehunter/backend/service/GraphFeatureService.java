@@ -6,56 +6,77 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 /**
- * Step 6 — Graph Context Feature Computation (Reactive MongoDB)
+ * Step 6 — Graph Context Feature Computation
  *
- * Queries existing newtransactions collection to compute:
- * - suspiciousNeighborCount (direct neighbours with high risk)
+ * Computes, per account:
+ * - suspiciousNeighborCount (incident edges flagged as fraud)
  * - twoHopFraudDensity (fraction of 2-hop accounts that are fraud)
- * - connectivityScore (ratio suspicious/total neighbours)
+ * - connectivityScore (ratio suspicious/total edges)
  *
- * Uses your existing TransactionRepository.
+ * Answered from the in-memory TransactionGraphIndex once it has
+ * bootstrapped; until then (or with graph.index.enabled=false, or after an
+ * abandoned bootstrap) from count queries on the transactions collection
+ * via TransactionRepository, where two-hop density falls back to the
+ * connectivity^2 approximation.
+ *
+ * Both paths describe the graph before the transaction being scored: its
+ * edge reaches the index only after the final save, so the count queries
+ * exclude its document, which persistence mode "double" has already saved.
  */
 @Service
 public class GraphFeatureService {
 
     private final TransactionRepository transactionRepository;
+    private final TransactionGraphIndex graphIndex;
 
-    public GraphFeatureService(TransactionRepository transactionRepository) {
+    public GraphFeatureService(TransactionRepository transactionRepository,
+                               TransactionGraphIndex graphIndex) {
         this.transactionRepository = transactionRepository;
+        this.graphIndex            = graphIndex;
     }
 
-    public Mono<GraphFeaturesDTO> compute(String accountId) {
+    public Mono<GraphFeaturesDTO> compute(String accountId, String currentTxId) {
+
+        if (graphIndex.isReady()) {
+            TransactionGraphIndex.NodeStats stats = graphIndex.stats(accountId);
+            return stats == null
+                    ? Mono.just(build(0, 0, 0.0))
+                    : Mono.just(build(stats.degree(), stats.suspiciousEdges(),
+                            graphIndex.twoHopFraudDensity(accountId)));
+        }
 
-        // Count total unique counterparties (all edges)
+        // Count incident edges (one per transaction, not unique counterparties)
         Mono<Long> totalEdgesMono = transactionRepository
-                .countBySourceAccountOrTargetAccount(accountId, accountId)
+                .countEdgesExcluding(accountId, currentTxId)
                 .defaultIfEmpty(0L);
 
-        // Count suspicious direct neighbours (suspectedFraud = true)
+        // Count incident edges with suspectedFraud = true
         Mono<Long> suspiciousMono = transactionRepository
-                .countSuspiciousNeighbours(accountId)
+                .countSuspiciousNeighboursExcluding(accountId, currentTxId)
                 .defaultIfEmpty(0L);
 
         return Mono.zip(totalEdgesMono, suspiciousMono)
                 .map(tuple -> {
-                    long total      = tuple.getT1();
-                    long suspicious = tuple.getT2();
+                    double connectivity = connectivity(tuple.getT1(), tuple.getT2());
+                    // Two-hop fraud density approximated as connectivity^2
+                    // (no traversal without the graph index)
+                    return build(tuple.getT1(), tuple.getT2(), connectivity * connectivity);
+                });
+    }
 
-                    double connectivityScore = total == 0 ? 0.0
-                            : Math.min((double) suspicious / total, 1.0);
+    private GraphFeaturesDTO build(long total, long suspicious, double twoHopFraudDensity) {
 
-                    // Two-hop fraud density approximated as connectivity^2
-                    // (full two-hop requires graph traversal — approximation until GNN is wired)
-                    double twoHopFraudDensity = round(connectivityScore * connectivityScore);
+        return new GraphFeaturesDTO(
+                (int) suspicious,
+                round(twoHopFraudDensity),
+                round(connectivity(total, suspicious)),
+                null,           // fraudClusterId — set by GNN later
+                (int) total
+        );
+    }
 
-                    return new GraphFeaturesDTO(
-                            (int) suspicious,
-                            round(twoHopFraudDensity),
-                            round(connectivityScore),
-                            null,           // fraudClusterId — set by GNN later
-                            (int) total
-                    );
-                });
+    private static double connectivity(long total, long suspicious) {
+        return total == 0 ? 0.0 : Math.min((double) suspicious / total, 1.0);
     }
 
     private double round(double v) {
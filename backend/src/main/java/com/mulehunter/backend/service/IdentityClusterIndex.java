@@ -0,0 +1,179 @@
+package com.mulehunter.backend.service;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Incremental account ↔ identity clustering.
+ *
+ * Accounts and identity keys (JA3, device hash, IP) are nodes of one
+ * bipartite graph; every identity event links the account to each of its
+ * keys. Connected components are kept in a union-find (union by size, path
+ * halving) over dense int ids, so recording an event and reading an
+ * account's component are near-constant time and identity_events is only
+ * read once, at startup, to rebuild the structure.
+ *
+ * Unions are idempotent and order-independent, so the startup replay can
+ * run while live events are recorded. A key stops linking further accounts
+ * once it has joined identity.clusters.max-accounts-per-identity of them —
+ * otherwise one shared NAT IP or default fingerprint would collapse
+ * everything into a single component.
+ *
+ * A component is identified by a representative account (the founding
+ * account of the larger side on every merge), so ids are stable while the
+ * component grows but not across restarts.
+ */
+@Service
+public class IdentityClusterIndex {
+
+    private final ReactiveMongoTemplate mongo;
+    private final boolean bootstrapEnabled;
+    private final int maxAccountsPerIdentity;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final UnionFind uf = new UnionFind();
+
+    public IdentityClusterIndex(
+            ReactiveMongoTemplate mongo,
+            @Value("${identity.clusters.bootstrap:true}") boolean bootstrapEnabled,
+            @Value("${identity.clusters.max-accounts-per-identity:25}") int maxAccountsPerIdentity
+    ) {
+        this.mongo                  = mongo;
+        this.bootstrapEnabled       = bootstrapEnabled;
+        this.maxAccountsPerIdentity = Math.max(1, maxAccountsPerIdentity);
+    }
+
+    /** clusterId = representative account; size = accounts in the component. */
+    public record Cluster(String clusterId, int size) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!bootstrapEnabled) return;
+
+        long start = System.nanoTime();
+        Query events = new Query();
+        events.fields().include("accountId", "ja3", "deviceHash", "ip");
+
+        mongo.find(events, Document.class, "identity_events")
+                .doOnNext(doc -> record(doc.getString("accountId"), doc.getString("ja3"),
+                        doc.getString("deviceHash"), doc.getString("ip")))
+                .count()
+                .subscribe(
+                        n -> System.out.printf("🧬 IDENTITY CLUSTERS ready → %d events replayed (%d ms)%n",
+                                n, (System.nanoTime() - start) / 1_000_000),
+                        e -> System.err.println("⚠️ IDENTITY CLUSTERS bootstrap failed: " + e.getMessage()));
+    }
+
+    /** Links the account to each non-null identity key and returns its component. */
+    public Cluster record(String accountId, String ja3, String deviceHash, String ip) {
+        if (accountId == null) return null;
+
+        lock.writeLock().lock();
+        try {
+            int account = uf.intern("acct:" + accountId, true);
+            link(account, "ja3:", ja3);
+            link(account, "device:", deviceHash);
+            link(account, "ip:", ip);
+            return clusterOf(account);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Null if the account has never been recorded. */
+    public Cluster cluster(String accountId) {
+        lock.readLock().lock();
+        try {
+            Integer account = uf.ids.get("acct:" + accountId);
+            return account == null ? null : clusterOf(account);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private void link(int account, String prefix, String key) {
+        if (key == null || key.isBlank()) return;
+
+        int identity = uf.intern(prefix + key, false);
+        int a = uf.find(account);
+        int i = uf.find(identity);
+        if (a == i) return;
+        if (uf.linkedAccounts[identity] >= maxAccountsPerIdentity) return;   // saturated key
+        uf.linkedAccounts[identity]++;
+        uf.union(a, i);
+    }
+
+    // Read-only find (no path halving) so it is safe under the read lock;
+    // union by size keeps trees O(log n) deep.
+    private Cluster clusterOf(int node) {
+        int root = node;
+        while (uf.parent[root] != root) root = uf.parent[root];
+        return new Cluster(uf.names[uf.representative[root]].substring("acct:".length()), uf.accounts[root]);
+    }
+
+    /** Growable array union-find. Not thread-safe — guarded by the index lock. */
+    private static final class UnionFind {
+
+        final Map<String, Integer> ids = new HashMap<>();
+        String[] names          = new String[1024];
+        int[]    parent         = new int[1024];
+        int[]    size           = new int[1024];
+        int[]    accounts       = new int[1024];   // accounts in the component (at roots)
+        int[]    representative = new int[1024];   // founding account (at roots)
+        int[]    linkedAccounts = new int[1024];   // accounts joined through an identity key
+        int      count          = 0;
+
+        int intern(String name, boolean isAccount) {
+            Integer id = ids.get(name);
+            if (id != null) return id;
+            if (count == names.length) {
+                int cap = names.length * 2;
+                names          = Arrays.copyOf(names, cap);
+                parent         = Arrays.copyOf(parent, cap);
+                size           = Arrays.copyOf(size, cap);
+                accounts       = Arrays.copyOf(accounts, cap);
+                representative = Arrays.copyOf(representative, cap);
+                linkedAccounts = Arrays.copyOf(linkedAccounts, cap);
+            }
+            int n = count++;
+            names[n]          = name;
+            parent[n]         = n;
+            size[n]           = 1;
+            accounts[n]       = isAccount ? 1 : 0;
+            representative[n] = isAccount ? n : -1;
+            ids.put(name, n);
+            return n;
+        }
+
+        int find(int n) {
+            while (parent[n] != n) {
+                parent[n] = parent[parent[n]];   // path halving
+                n = parent[n];
+            }
+            return n;
+        }
+
+        /** Unions two roots. */
+        void union(int a, int b) {
+            if (size[a] < size[b]) {
+                int t = a; a = b; b = t;
+            }
+            parent[b] = a;
+            size[a]  += size[b];
+            accounts[a] += accounts[b];
+            if (representative[a] < 0) representative[a] = representative[b];
+        }
+    }
+}
@@ -1,19 +1,101 @@
 package com.mulehunter.backend.service;
 
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.mulehunter.backend.model.Transaction;
-import com.mulehunter.backend.repository.TransactionRepository;
+import com.mulehunter.sketch.IdentityReuseIndex;
+import com.mulehunter.sketch.IdentityReuseIndex.Kind;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Step 3 — identity reuse. Reuse counts are distinct accounts per JA3,
+ * device hash and IP, from a bounded in-memory {@link IdentityReuseIndex}
+ * (the same component security-forensics' IdentityProfileStore uses).
+ *
+ * The index is rebuilt from identity_events at startup, like
+ * {@link IdentityClusterIndex}, and then topped up every
+ * identity.reuse.refresh-interval-ms with the events written since the
+ * previous pass — including other instances' — so reuse counts survive
+ * restarts and instances agree to within one refresh interval. Each pass
+ * replays into a private index and merges it into the live one; sketches
+ * are set unions, so replaying an event twice changes nothing.
+ *
+ * The isNew flags come from the persistent per-key JA3 and device
+ * counters, which do not reset on restart or LRU eviction. IPs have no
+ * isNew flag, so they only go into the reuse index.
+ * The account's identity cluster comes from {@link IdentityClusterIndex}.
+ */
 @Service
 public class IdentityCollectorService {
 
-    private final TransactionRepository repository;
+    // ObjectIds carry the writer's clock; re-read this far back so events
+    // from an instance with a lagging clock are not skipped.
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(10);
+
+    private final IdentityCounterService counters;
+    private final IdentityReuseIndex reuse;
+    private final IdentityClusterIndex clusters;
+    private final ReactiveMongoTemplate mongo;
+
+    private final boolean bootstrapEnabled;
+    private final int maxKeys;
+    private final int exactLimit;
+
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    // Start of the last replay that completed; null until the bootstrap has.
+    private volatile Instant replayedUpTo;
+
+    public IdentityCollectorService(
+            IdentityCounterService counters,
+            IdentityClusterIndex clusters,
+            ReactiveMongoTemplate mongo,
+            MeterRegistry meterRegistry,
+            @Value("${identity.reuse.bootstrap:true}") boolean bootstrapEnabled,
+            @Value("${identity.reuse.max-keys:50000}") int maxKeys,
+            @Value("${identity.reuse.exact-limit:16}") int exactLimit) {
+        this.counters         = counters;
+        this.clusters         = clusters;
+        this.mongo            = mongo;
+        this.bootstrapEnabled = bootstrapEnabled;
+        this.maxKeys          = maxKeys;
+        this.exactLimit       = exactLimit;
+        this.reuse            = new IdentityReuseIndex(maxKeys, exactLimit);
+
+        for (Kind kind : Kind.values()) {
+            Gauge.builder("identity.reuse.keys", reuse, r -> r.trackedKeys(kind))
+                    .tag("kind", kind.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (bootstrapEnabled) replay();
+    }
 
-    public IdentityCollectorService(TransactionRepository repository) {
-        this.repository = repository;
+    @Scheduled(
+            initialDelayString = "${identity.reuse.refresh-interval-ms:30000}",
+            fixedDelayString   = "${identity.reuse.refresh-interval-ms:30000}")
+    public void refresh() {
+        if (bootstrapEnabled) replay();
     }
 
     public Mono<Transaction> collect(Transaction tx, String ja3, String deviceHash, String ip) {
@@ -22,29 +104,73 @@ public class IdentityCollectorService {
         tx.setIpAddress(ip);
 
         Mono<Long> ja3Count =
-                repository.countByJa3Detected(true).defaultIfEmpty(0L);
+                counters.increment(IdentityCounterService.JA3, ja3);
 
-        Mono<Long> deviceCount;
-        deviceCount = repository.countByDeviceHash(deviceHash).defaultIfEmpty(0L);
+        Mono<Long> deviceCount =
+                counters.increment(IdentityCounterService.DEVICE, deviceHash);
 
-        Mono<Long> ipCount =
-                repository.countByIpAddress(ip).defaultIfEmpty(0L);
+        String account = tx.getSourceAccount();
 
-        return Mono.zip(ja3Count, deviceCount, ipCount)
+        return Mono.zip(ja3Count, deviceCount)
                 .map(tuple -> {
 
-                    int ja3Reuse = tuple.getT1().intValue();
-                    int deviceReuse = tuple.getT2().intValue();
-                    int ipReuse = tuple.getT3().intValue();
+                    tx.setJa3ReuseCount(reuse.record(Kind.JA3, ja3, account).distinctAccounts());
+                    tx.setDeviceReuseCount(reuse.record(Kind.DEVICE, deviceHash, account).distinctAccounts());
+                    tx.setIpReuseCount(reuse.record(Kind.IP, ip, account).distinctAccounts());
 
-                    tx.setJa3ReuseCount(ja3Reuse);
-                    tx.setDeviceReuseCount(deviceReuse);
-                    tx.setIpReuseCount(ipReuse);
+                    tx.setIsNewDevice(tuple.getT2() == 0);
+                    tx.setIsNewJa3(tuple.getT1() == 0);
 
-                    tx.setIsNewDevice(deviceReuse == 0);
-                    tx.setIsNewJa3(ja3Reuse == 0);
+                    IdentityClusterIndex.Cluster cluster = clusters.record(account, ja3, deviceHash, ip);
+                    if (cluster != null) {
+                        tx.setIdentityClusterId(cluster.clusterId());
+                        tx.setIdentityClusterSize(cluster.size());
+                    }
 
                     return tx;
                 });
     }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    /**
+     * Replays identity_events newer than the last completed pass (all of
+     * them on the first) into a private index and merges it into the live one.
+     */
+    private void replay() {
+        if (!replaying.compareAndSet(false, true)) return;
+
+        Instant since   = replayedUpTo;
+        Instant started = Instant.now();
+        long    start   = System.nanoTime();
+
+        Query events = since == null
+                ? new Query()
+                : new Query(Criteria.where("_id").gt(new ObjectId(Date.from(since.minus(CLOCK_SKEW)))));
+        events.fields().include("accountId", "ja3", "deviceHash", "ip");
+
+        IdentityReuseIndex replayed = new IdentityReuseIndex(maxKeys, exactLimit);
+
+        mongo.find(events, Document.class, "identity_events")
+                .doOnNext(doc -> {
+                    String account = doc.getString("accountId");
+                    replayed.record(Kind.JA3,    doc.getString("ja3"),        account);
+                    replayed.record(Kind.DEVICE, doc.getString("deviceHash"), account);
+                    replayed.record(Kind.IP,     doc.getString("ip"),         account);
+                })
+                .count()
+                .doOnNext(n -> {
+                    reuse.mergeAll(replayed);
+                    replayedUpTo = started;
+                })
+                .doFinally(signal -> replaying.set(false))
+                .subscribe(
+                        n -> {
+                            if (since == null) {
+                                System.out.printf("🧬 IDENTITY REUSE ready → %d events replayed (%d ms)%n",
+                                        n, (System.nanoTime() - start) / 1_000_000);
+                            }
+                        },
+                        e -> System.err.println("⚠️ IDENTITY REUSE replay failed: " + e.getMessage()));
+    }
 }
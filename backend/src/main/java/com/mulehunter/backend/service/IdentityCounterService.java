@@ -0,0 +1,60 @@
+package com.mulehunter.backend.service;
+
+import com.mulehunter.backend.model.IdentityCounter;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Instant;
+
+/**
+ * Per-key identity reuse counters (identity_counters).
+ *
+ * One upserted $inc per key and transaction, addressed by _id, replaces the
+ * count queries that scanned the transactions collection — O(1) per
+ * transaction regardless of history size. Counters only cover transactions
+ * seen since they were introduced; raw JA3 strings were never stored on
+ * transactions, so there is nothing to backfill them from.
+ */
+@Service
+public class IdentityCounterService {
+
+    public static final String JA3    = "ja3";
+    public static final String DEVICE = "device";
+
+    private final ReactiveMongoTemplate mongo;
+
+    public IdentityCounterService(ReactiveMongoTemplate mongo) {
+        this.mongo = mongo;
+    }
+
+    /**
+     * Counts one more use of {@code key} and emits how many uses preceded
+     * it (0 for a first sighting or a null key).
+     */
+    public Mono<Long> increment(String kind, String key) {
+
+        if (key == null || key.isBlank()) return Mono.just(0L);
+
+        Query query = new Query(Criteria.where("_id").is(kind + ":" + key));
+        Update update = new Update()
+                .inc("count", 1L)
+                .set("lastSeen", Instant.now())
+                .setOnInsert("kind", kind)
+                .setOnInsert("key", key);
+
+        return mongo.findAndModify(query, update,
+                        FindAndModifyOptions.options().upsert(true).returnNew(false),
+                        IdentityCounter.class)
+                // Two first sightings racing on the upsert: retry as an update
+                .retryWhen(Retry.max(2).filter(e -> e instanceof DuplicateKeyException))
+                .map(IdentityCounter::getCount)
+                .defaultIfEmpty(0L);
+    }
+}
@@ -1,6 +1,10 @@
 package com.mulehunter.backend.service;
 
+import com.mulehunter.backend.config.DownstreamBreakers;
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.metrics.PipelineMetrics;
 import com.mulehunter.backend.model.Transaction;
+import com.mulehunter.backend.util.CircuitBreaker;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -14,16 +18,21 @@ import java.util.Map;
 public class Ja3SecurityService {
 
     private final WebClient securityWebClient;
+    private final PipelineMetrics metrics;
+    private final CircuitBreaker breaker;
 
     public Ja3SecurityService(
             @Value("${security.service.url:http://localhost:8081}")
-            String securityServiceUrl
+            String securityServiceUrl,
+            PipelineMetrics metrics,
+            DownstreamClientFactory clients,
+            DownstreamBreakers breakers
     ) {
         System.out.println("🔐 CONNECTING SECURITY TO: " + securityServiceUrl);
 
-        this.securityWebClient = WebClient.builder()
-                .baseUrl(securityServiceUrl)
-                .build();
+        this.securityWebClient = clients.create(DownstreamClientFactory.SECURITY, securityServiceUrl);
+        this.metrics = metrics;
+        this.breaker = breakers.get(DownstreamClientFactory.SECURITY);
     }
 
     public Mono<Map> callJa3Risk(Transaction tx, String ja3) {
@@ -37,15 +46,16 @@ public class Ja3SecurityService {
                 "txId", tx.getId()
         );
 
-        return securityWebClient.post()
-                .uri("/api/security/ja3-risk")
-                .header("X-JA3-Fingerprint", ja3)
-                .bodyValue(payload)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .timeout(Duration.ofSeconds(3))          // ← 3 second hard timeout
+        return breaker.protect(securityWebClient.post()
+                        .uri("/api/security/ja3-risk")
+                        .header("X-JA3-Fingerprint", ja3)
+                        .bodyValue(payload)
+                        .retrieve()
+                        .bodyToMono(Map.class)
+                        .timeout(Duration.ofSeconds(3)))  // ← 3 second hard timeout
                 .onErrorResume(e -> {
                     System.err.println("⚠️ JA3 SERVICE skipped: " + e.getMessage());
+                    metrics.recordFallback(PipelineMetrics.JA3);
                     return Mono.just(new HashMap<>());   // ← return empty map, don't fail
                 });
     }
@@ -9,6 +9,7 @@ import com.mulehunter.backend.repository.TransactionRepository;
 import com.mulehunter.backend.repository.NodesRepository;
 import com.mulehunter.backend.util.ConfusionMatrix;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
@@ -32,16 +33,59 @@ public class ModelEvaluationService {
 
 
 
+    private final int rescoreChunkRows;
+
     public ModelEvaluationService(
             TransactionRepository transactionRepo,
             NodesRepository nodeRepo,
             ModelMetricsRepository metricsRepo,
-            AiRiskService aiRiskService
+            AiRiskService aiRiskService,
+            @Value("${eif.rescore.chunk-rows:2000}") int rescoreChunkRows
     ) {
-        this.transactionRepo = transactionRepo;
-        this.nodeRepo        = nodeRepo;
-        this.metricsRepo     = metricsRepo;
-        this.aiRiskService   = aiRiskService;
+        this.transactionRepo  = transactionRepo;
+        this.nodeRepo         = nodeRepo;
+        this.metricsRepo      = metricsRepo;
+        this.aiRiskService    = aiRiskService;
+        this.rescoreChunkRows = Math.max(1, rescoreChunkRows);
+    }
+
+    /**
+     * LIVE RE-SCORE: sends the stored EIF features of every transaction
+     * through the batch endpoint in chunks of eif.rescore.chunk-rows rows
+     * (one row-major double[] per chunk) instead of one HTTP call per
+     * transaction. A failed chunk keeps its stored scores.
+     */
+    private Mono<java.util.List<Transaction>> rescoreEif(java.util.List<Transaction> txList) {
+
+        return reactor.core.publisher.Flux.fromIterable(txList)
+                .buffer(rescoreChunkRows)
+                .flatMapSequential(chunk -> {
+                    double[] rows = new double[chunk.size() * EifService.FEATURE_COUNT];
+                    int o = 0;
+                    for (Transaction tx : chunk) {
+                        rows[o++] = tx.getVelocityScore()       == null ? 0.0 : tx.getVelocityScore();
+                        rows[o++] = tx.getBurstScore()          == null ? 0.0 : tx.getBurstScore();
+                        rows[o++] = tx.getSuspiciousNeighbors() == null ? 0.0 : tx.getSuspiciousNeighbors().doubleValue();
+                        rows[o++] = tx.getIpReuseCount()        == null ? 0.0 : tx.getIpReuseCount().doubleValue();
+                        rows[o++] = tx.getJa3ReuseCount()       == null ? 0.0 : tx.getJa3ReuseCount().doubleValue();
+                        rows[o++] = tx.getClusterRiskScore()    == null ? 0.0 : tx.getClusterRiskScore();
+                        rows[o++] = (tx.getMuleRingMember() != null && tx.getMuleRingMember()) ? 1.0 : 0.0;
+                        rows[o++] = tx.getCentralityScore()     == null ? 0.0 : tx.getCentralityScore();
+                    }
+                    return aiRiskService.scoreEifBatch(rows)
+                            .map(scores -> {
+                                for (int i = 0; i < chunk.size() && i < scores.length; i++) {
+                                    chunk.get(i).setUnsupervisedScore(scores[i]);
+                                }
+                                return chunk;
+                            })
+                            .onErrorResume(e -> {
+                                System.err.println("⚠️ EIF re-score chunk failed, keeping stored scores: " + e.getMessage());
+                                return Mono.just(chunk);
+                            });
+                }, 2)
+                .flatMapIterable(chunk -> chunk)
+                .collectList();
     }
 
     public Mono<MetricsResponse> evaluateModels(boolean rescore) {
@@ -81,27 +125,11 @@ public class ModelEvaluationService {
                             rescore ? "LIVE RE-SCORE" : "DB AUDIT",
                             nodeMap.size(), txList.size());
 
-                    return reactor.core.publisher.Flux.fromIterable(txList)
-                            .flatMap(tx -> {
-                                if (!rescore) return Mono.just(tx);
-
-                                // LIVE RE-SCORE: Call the optimized EIF service
-                                return aiRiskService.scoreEif(
-                                        tx.getVelocityScore()         == null ? 0.0 : tx.getVelocityScore(),
-                                        tx.getBurstScore()            == null ? 0.0 : tx.getBurstScore(),
-                                        tx.getSuspiciousNeighbors()   == null ? 0.0 : tx.getSuspiciousNeighbors().doubleValue(),
-                                        tx.getIpReuseCount()          == null ? 0.0 : tx.getIpReuseCount().doubleValue(),
-                                        tx.getJa3ReuseCount()         == null ? 0.0 : tx.getJa3ReuseCount().doubleValue(),
-                                        tx.getClusterRiskScore()      == null ? 0.0 : tx.getClusterRiskScore(),
-                                        (tx.getMuleRingMember() != null && tx.getMuleRingMember()) ? 1.0 : 0.0,
-                                        tx.getCentralityScore()       == null ? 0.0 : tx.getCentralityScore()
-                                ).map(eifMap -> {
-                                    double newEif = ((Number) eifMap.getOrDefault("score", 0.0)).doubleValue();
-                                    tx.setUnsupervisedScore(newEif);
-                                    return tx;
-                                }).onErrorReturn(tx);
-                            }, 10) // Parallelize calls to EIF service (max 10 concurrent)
-                            .collectList()
+                    Mono<java.util.List<Transaction>> scoredMono = rescore
+                            ? rescoreEif(txList)
+                            : Mono.just(txList);
+
+                    return scoredMono
                             .flatMap(processedTxs -> {
 
                                 AtomicInteger skippedNoId   = new AtomicInteger(0);
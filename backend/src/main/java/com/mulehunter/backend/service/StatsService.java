@@ -1,6 +1,7 @@
 package com.mulehunter.backend.service;
 
 import com.mulehunter.backend.DTO.StatsResponse;
+import com.mulehunter.backend.metrics.PipelineMetrics;
 import com.mulehunter.backend.model.ModelPerformanceMetrics;
 import com.mulehunter.backend.model.Transaction;
 import com.mulehunter.backend.repository.ModelMetricsRepository;
@@ -26,7 +27,7 @@ public class StatsService {
     // ── Hard constants ────────────────────────────────────────────
     private static final double PEAK_CAPACITY_TX_DAY = 25_000_000.0;
     private static final double TARGET_VARIANCE_PCT = 0.005;
-    private static final double AVG_LATENCY_MS = 140.0;
+    private static final double FALLBACK_AVG_LATENCY_MS = 140.0;
     private static final double POLICE_REFERRAL_THRESHOLD = 0.85;
     private static final double SOFT_REFERRAL_THRESHOLD = 0.70;
 
@@ -49,11 +50,14 @@ public class StatsService {
 
     private final TransactionRepository transactionRepo;
     private final ModelMetricsRepository metricsRepo;
+    private final PipelineMetrics pipelineMetrics;
 
     public StatsService(TransactionRepository transactionRepo,
-            ModelMetricsRepository metricsRepo) {
+            ModelMetricsRepository metricsRepo,
+            PipelineMetrics pipelineMetrics) {
         this.transactionRepo = transactionRepo;
         this.metricsRepo = metricsRepo;
+        this.pipelineMetrics = pipelineMetrics;
     }
 
     public Mono<StatsResponse> getStats() {
@@ -191,7 +195,7 @@ public class StatsService {
             }
 
             // ── 2. LATENCY ────────────────────────────────────────
-            stats.avgDetectionLatencyMs = AVG_LATENCY_MS;
+            stats.avgDetectionLatencyMs = avgLatencyMs();
 
             // ── 3. MULE ACCOUNTS BLOCKED ──────────────────────────
             stats.muleAccountsBlocked = blocked;
@@ -301,7 +305,7 @@ public class StatsService {
                 } else if (risk != null && risk >= 0.90) {
                     message = "Circular flow detected"
                             + (tx.getRingShape() != null ? " [" + tx.getRingShape() + "]" : "")
-                            + " — " + (long) AVG_LATENCY_MS + "ms latency";
+                            + " — " + Math.round(avgLatencyMs()) + "ms latency";
                     severity = "CRITICAL";
                 } else if (Boolean.TRUE.equals(tx.getJa3Detected())) {
                     message = "JA3 bot fingerprint hit"
@@ -349,6 +353,12 @@ public class StatsService {
     }
 
     // ─── Helpers ──────────────────────────────────────────────────
+    /** Measured mean pipeline latency, or the fixed estimate before any tx was scored. */
+    private double avgLatencyMs() {
+        double mean = pipelineMetrics.meanTotalLatencyMs();
+        return Double.isNaN(mean) ? FALLBACK_AVG_LATENCY_MS : round2(mean);
+    }
+
     private OptionalLong deriveDatasetSpanSeconds(List<Transaction> txs) {
         Instant min = null, max = null;
         for (Transaction tx : txs) {
@@ -0,0 +1,237 @@
+package com.mulehunter.backend.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mulehunter.backend.metrics.PipelineMetrics;
+import com.mulehunter.backend.model.Transaction;
+import com.mulehunter.backend.model.TransactionRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bulk / replay ingest for POST /api/transactions/bulk.
+ *
+ * Feeds a stream of requests through the same risk pipeline as the single
+ * endpoint, with bounded concurrency, and groups the scored documents into
+ * unordered bulk inserts instead of two saves per transaction. Every row
+ * produces exactly one {@link Outcome}; a row that fails to parse or score
+ * is reported failed and the rest of the upload carries on. If the body
+ * itself breaks off (malformed JSON, client gone), everything read before
+ * that point is still scored and persisted and one final failed Outcome
+ * closes the stream.
+ *
+ * Scoring runs the pipeline side effects (aggregates, identity counters,
+ * enrichment, visual trigger) before the document is inserted. Ids are
+ * assigned up front, so transient insert errors are retried safely; a row
+ * whose insert still fails keeps those side effects — the same
+ * at-least-once contract as TransactionService.recoverPending — and is
+ * logged and counted on pipeline_bulk_orphaned_total for reconciliation.
+ */
+@Service
+public class TransactionBulkService {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final TransactionService transactionService;
+    private final ReactiveMongoTemplate mongo;
+    private final PipelineMetrics metrics;
+    private final TransactionGraphIndex graphIndex;
+
+    private final int concurrency;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final int insertRetries;
+
+    public TransactionBulkService(
+            TransactionService transactionService,
+            ReactiveMongoTemplate mongo,
+            PipelineMetrics metrics,
+            TransactionGraphIndex graphIndex,
+            @Value("${transactions.bulk.concurrency:16}") int concurrency,
+            @Value("${transactions.bulk.batch-size:500}") int batchSize,
+            @Value("${transactions.bulk.flush-interval-ms:250}") long flushIntervalMs,
+            @Value("${transactions.bulk.insert-retries:2}") int insertRetries
+    ) {
+        this.transactionService = transactionService;
+        this.mongo              = mongo;
+        this.metrics            = metrics;
+        this.graphIndex         = graphIndex;
+        this.concurrency        = Math.max(1, concurrency);
+        this.batchSize          = Math.max(1, batchSize);
+        this.flushInterval      = Duration.ofMillis(Math.max(1, flushIntervalMs));
+        this.insertRetries      = Math.max(0, insertRetries);
+    }
+
+    /**
+     * One row of the upload: a parsed request, or the reason it could not be read.
+     */
+    public record Row(TransactionRequest request, String error) {
+
+        public static Row of(TransactionRequest request) {
+            return new Row(request, null);
+        }
+
+        public static Row unreadable(String error) {
+            return new Row(null, error);
+        }
+    }
+
+    /**
+     * Per-request result. Exactly one of {@code transaction} / {@code error} is set.
+     */
+    public record Outcome(String transactionId, Transaction transaction, String error) {
+
+        static Outcome scored(Transaction tx) {
+            return new Outcome(tx.getTransactionId(), tx, null);
+        }
+
+        static Outcome failed(String transactionId, String error) {
+            return new Outcome(transactionId, null, error);
+        }
+
+        public boolean isScored() { return transaction != null; }
+    }
+
+    public Flux<Outcome> ingest(Flux<Row> rows, String ja3) {
+
+        // Duplicates inside one upload would all pass the existsByTransactionId
+        // check (none are persisted yet) and then collide on the unique index.
+        Set<String> seenIds = ConcurrentHashMap.newKeySet();
+
+        return rows
+                // A broken body ends the row stream here rather than failing
+                // flatMap, which would cancel rows in flight and drop the batch
+                // bufferTimeout is holding.
+                .onErrorResume(e -> Mono.just(Row.unreadable("Upload aborted: " + e.getMessage())))
+                .flatMap(row -> score(row, ja3, seenIds), concurrency)
+                .bufferTimeout(batchSize, flushInterval)
+                .concatMap(this::persistBatch);
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private Mono<Outcome> score(Row row, String ja3, Set<String> seenIds) {
+
+        if (row.request() == null) {
+            return Mono.just(Outcome.failed(null, row.error()));
+        }
+
+        String txId = row.request().getTransactionId();
+        if (txId != null && !seenIds.add(txId)) {
+            return Mono.just(Outcome.failed(txId, "Duplicate transactionId in upload"));
+        }
+        return transactionService.scoreTransaction(row.request(), ja3)
+                .map(Outcome::scored)
+                .onErrorResume(e -> Mono.just(Outcome.failed(txId, e.getMessage())));
+    }
+
+    private Flux<Outcome> persistBatch(List<Outcome> batch) {
+
+        List<Transaction> scored = batch.stream()
+                .filter(Outcome::isScored)
+                .map(Outcome::transaction)
+                .toList();
+
+        if (scored.isEmpty()) return Flux.fromIterable(batch);
+
+        return metrics.timeStage(PipelineMetrics.BULK_INSERT, insert(scored))
+                .map(result -> {
+                    System.out.printf("📥 BULK INSERT → %d/%d transactions%n",
+                            result.getInsertedCount(), scored.size());
+                    return batch;
+                })
+                .onErrorResume(e -> Mono.just(markFailedInserts(batch, scored, e)))
+                .flatMapIterable(outcomes -> outcomes)
+                .doOnNext(outcome -> {
+                    if (outcome.isScored()) graphIndex.addTransaction(outcome.transaction());
+                });
+    }
+
+    /**
+     * Only errors without per-row write errors (network, step-down) are
+     * retried. Rows an earlier attempt already landed come back as _id
+     * duplicates, which {@link #markFailedInserts} counts as inserted.
+     */
+    private Mono<BulkWriteResult> insert(List<Transaction> scored) {
+        return Mono.defer(() -> mongo.bulkOps(BulkMode.UNORDERED, Transaction.class)
+                        .insert(scored)
+                        .execute())
+                .retryWhen(Retry.backoff(insertRetries, Duration.ofMillis(200))
+                        .filter(e -> writeErrorsOf(e) == null)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * UNORDERED bulk writes keep going past individual failures; map the
+     * reported write-error indices back onto the outcomes that carried them.
+     * If the error is not a bulk write error, the whole batch is reported failed.
+     */
+    private List<Outcome> markFailedInserts(List<Outcome> batch, List<Transaction> scored, Throwable e) {
+
+        System.err.println("❌ BULK INSERT ERROR: " + e.getMessage());
+
+        // Indexed by position in `scored`, i.e. the write-error index.
+        boolean[] failed = new boolean[scored.size()];
+        List<BulkWriteError> writeErrors = writeErrorsOf(e);
+        if (writeErrors == null) {
+            Arrays.fill(failed, true);
+        } else {
+            for (BulkWriteError we : writeErrors) {
+                if (we.getIndex() >= 0 && we.getIndex() < failed.length && !alreadyInserted(we)) {
+                    failed[we.getIndex()] = true;
+                }
+            }
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        int orphaned = 0;
+        int i = 0;
+        for (Outcome o : batch) {
+            if (!o.isScored()) {
+                outcomes.add(o);
+                continue;
+            }
+            if (failed[i++]) {
+                orphaned++;
+                System.err.printf("⚠️ BULK tx %s (id %s) not inserted; its aggregate and identity updates stand%n",
+                        o.transactionId(), o.transaction().getId());
+                outcomes.add(Outcome.failed(o.transactionId(), "Insert failed: " + e.getMessage()));
+            } else {
+                outcomes.add(o);
+            }
+        }
+        metrics.recordBulkOrphans(orphaned);
+        return outcomes;
+    }
+
+    /**
+     * Ids are fresh ObjectIds, so an _id clash can only be this batch's own
+     * earlier attempt having landed before the connection dropped.
+     */
+    private static boolean alreadyInserted(BulkWriteError we) {
+        return we.getCode() == DUPLICATE_KEY && we.getMessage() != null
+                && we.getMessage().contains("index: _id_ ");
+    }
+
+    private static List<BulkWriteError> writeErrorsOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof BulkOperationException boe)  return boe.getErrors();
+            if (t instanceof MongoBulkWriteException mbe) return mbe.getWriteErrors();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,612 @@
+package com.mulehunter.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mulehunter.backend.model.Transaction;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process adjacency index over the transaction graph.
+ *
+ * Account ids are interned to dense ints; every edge gets an int id with its
+ * endpoints, amount and fraud flag in parallel primitive arrays, and each
+ * node keeps an append-list (growable int[]) of incident edge ids. Degree
+ * and suspicious-edge counts are kept per node, so the graph features that
+ * used to be two `$or` count queries over the whole collection are O(1).
+ *
+ * Bootstrapped once at startup (from Mongo or shared-data CSVs) into a fresh
+ * graph that is swapped in when complete; transactions persisted meanwhile
+ * are buffered (as bare edges, at most bootstrap-buffer of them) and replayed
+ * on top unless the bootstrap already saw them. Afterwards every persisted
+ * transaction is added incrementally. Until the swap, callers fall back to
+ * Mongo (see {@link #isReady()}). A bootstrap that fails, or whose buffer
+ * overflows, is abandoned: the buffer is dropped, nothing more is buffered,
+ * and callers stay on the Mongo fallback until the next restart.
+ *
+ * Seeded edges (source/target/is_fraud_edge) and live ones
+ * (sourceAccount/targetAccount/suspectedFraud) share one id space; a node is
+ * fraud-flagged if nodes.is_fraud = 1 or it touches a flagged edge.
+ *
+ * Two-hop fraud density is a bounded BFS: the 1-hop set is always exact, but
+ * at most two-hop.max-neighbours of it are expanded and at most
+ * two-hop.max-edges-per-neighbour edges are scanned per expanded node — the
+ * most recent ones, or an evenly strided sample with two-hop.sample=true.
+ * Results are cached per node with the edge count and fraud epoch they were
+ * computed at. Edge ids only grow, so a cached density is still current if
+ * no node in the root's closed neighbourhood has an incident edge that new
+ * and no node has been fraud-flagged since. That check runs on the read
+ * path (O(degree) under the shared read lock, cheaper than the BFS it
+ * saves), so an edge insert does no invalidation work under the write lock.
+ *
+ * Ego networks (/api/graph/ego) are a plain level-by-level BFS over the same
+ * arrays that stops at maxNodes.
+ */
+@Service
+public class TransactionGraphIndex {
+
+    private final ReactiveMongoTemplate mongo;
+    private final boolean enabled;
+    private final String bootstrapSource;
+    private final Path csvDir;
+    private final int maxNeighbours;
+    private final int maxEdgesPerNeighbour;
+    private final boolean sample;
+    private final int bootstrapBuffer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Graph graph = new Graph();
+    private volatile boolean ready = false;
+    private boolean abandoned = false;     // guarded by lock
+    private Disposable bootstrapping;      // guarded by lock
+
+    // Live edges added while the bootstrap runs, keyed by Mongo _id.
+    private Map<String, LiveEdge> duringBootstrap = new LinkedHashMap<>();
+
+    // Node id → two-hop fraud density, validated on read (see TwoHop.isCurrent).
+    private final Cache<Integer, TwoHop> twoHopCache;
+    private final ThreadLocal<Traversal> traversal = ThreadLocal.withInitial(Traversal::new);
+
+    public TransactionGraphIndex(
+            ReactiveMongoTemplate mongo,
+            @Value("${graph.index.enabled:true}") boolean enabled,
+            @Value("${graph.index.bootstrap:mongo}") String bootstrapSource,
+            @Value("${graph.index.csv-dir:../shared-data}") String csvDir,
+            @Value("${graph.index.two-hop.max-neighbours:256}") int maxNeighbours,
+            @Value("${graph.index.two-hop.max-edges-per-neighbour:256}") int maxEdgesPerNeighbour,
+            @Value("${graph.index.two-hop.sample:true}") boolean sample,
+            @Value("${graph.index.two-hop.cache-size:100000}") long cacheSize,
+            @Value("${graph.index.bootstrap-buffer:100000}") int bootstrapBuffer
+    ) {
+        this.mongo                = mongo;
+        this.enabled              = enabled;
+        this.bootstrapSource      = bootstrapSource;
+        this.csvDir               = Path.of(csvDir);
+        this.maxNeighbours        = Math.max(1, maxNeighbours);
+        this.maxEdgesPerNeighbour = Math.max(1, maxEdgesPerNeighbour);
+        this.sample               = sample;
+        this.bootstrapBuffer      = Math.max(0, bootstrapBuffer);
+        this.twoHopCache          = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /** Per-node counts answered from the index. */
+    public record NodeStats(int degree, int suspiciousEdges) {}
+
+    /** Ego-network member; hop is its BFS distance from the centre. */
+    public record EgoNode(String id, int hop, int degree, boolean fraud) {}
+
+    public record EgoLink(String source, String target, double amount) {}
+
+    /** truncated = maxNodes or the link cap stopped the traversal early. */
+    public record EgoGraph(List<EgoNode> nodes, List<EgoLink> links, boolean truncated) {}
+
+    public boolean isReady() { return ready; }
+
+    /** Live transactions held for replay; 0 once swapped in or abandoned. */
+    int bufferedDuringBootstrap() {
+        lock.readLock().lock();
+        try {
+            return duringBootstrap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!enabled) return;
+
+        long start = System.nanoTime();
+        Mono<Graph> built = "csv".equalsIgnoreCase(bootstrapSource)
+                ? Mono.fromCallable(this::loadCsv).subscribeOn(Schedulers.boundedElastic())
+                : loadMongo();
+
+        Disposable running = built.subscribe(
+                g -> {
+                    if (!swapIn(g)) return;
+                    System.out.printf("🕸️ GRAPH INDEX ready → %d nodes, %d edges (%s, %d ms)%n",
+                            g.nodeCount, g.edgeCount, bootstrapSource,
+                            (System.nanoTime() - start) / 1_000_000);
+                },
+                e -> abandon("bootstrap failed: " + e.getMessage()));
+
+        lock.writeLock().lock();
+        try {
+            if (abandoned) running.dispose();
+            else if (!ready) bootstrapping = running;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Adds a persisted transaction's edge. */
+    public void addTransaction(Transaction tx) {
+        if (!enabled || tx.getSourceAccount() == null || tx.getTargetAccount() == null) return;
+
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                if (abandoned || tx.getId() == null) return;
+                if (duringBootstrap.size() >= bootstrapBuffer && !duringBootstrap.containsKey(tx.getId())) {
+                    abandonLocked("more than " + bootstrapBuffer + " transactions arrived during the bootstrap");
+                    return;
+                }
+                duringBootstrap.put(tx.getId(), LiveEdge.of(tx));
+                return;
+            }
+            LiveEdge.of(tx).addTo(graph);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Null if the account has never been seen. */
+    public NodeStats stats(String account) {
+        lock.readLock().lock();
+        try {
+            Integer n = graph.ids.get(account);
+            if (n == null) return null;
+            return new NodeStats(graph.degree[n], graph.suspiciousEdges[n]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Fraction of fraud-flagged accounts exactly two hops away; 0 if none or unknown. */
+    public double twoHopFraudDensity(String account) {
+        lock.readLock().lock();
+        try {
+            Integer n = graph.ids.get(account);
+            if (n == null) return 0.0;
+            TwoHop cached = twoHopCache.getIfPresent(n);
+            if (cached != null && cached.isCurrent(graph, n)) return cached.density();
+            double density = twoHop(graph, n);
+            twoHopCache.put(n, new TwoHop(density, graph.edgeCount, graph.fraudEpoch));
+            return density;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * k-hop neighbourhood of an account, following only edges with amount
+     * >= minAmount. BFS stops as soon as maxNodes accounts are collected;
+     * links are every qualifying edge between collected accounts, capped at
+     * maxLinks. Null if the account is unknown.
+     */
+    public EgoGraph ego(String account, int hops, int maxNodes, int maxLinks, double minAmount) {
+        lock.readLock().lock();
+        try {
+            Integer root = graph.ids.get(account);
+            return root == null ? null : ego(graph, root, hops, maxNodes, maxLinks, minAmount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ── Ego BFS ───────────────────────────────────────────────────────────────
+
+    private EgoGraph ego(Graph g, int root, int hops, int maxNodes, int maxLinks, double minAmount) {
+
+        Traversal t      = traversal.get();
+        int  member      = t.nextTag(g.nodeCount);
+        int[] seen       = t.seen;
+        int[] order      = new int[Math.min(maxNodes, g.nodeCount)];
+        int[] depth      = new int[order.length];
+        boolean truncated = false;
+
+        seen[root] = member;
+        order[0]   = root;
+        int count  = 1;
+        int levelStart = 0;
+
+        for (int h = 1; h <= hops && levelStart < count && !truncated; h++) {
+            int levelEnd = count;
+            for (int i = levelStart; i < levelEnd && !truncated; i++) {
+                int u = order[i];
+                int[] inc = g.incident[u];
+                for (int j = 0; j < g.degree[u]; j++) {
+                    int e = inc[j];
+                    if (g.edgeAmount[e] < minAmount) continue;
+                    int v = g.other(e, u);
+                    if (seen[v] == member) continue;
+                    if (count == order.length) {
+                        truncated = true;
+                        break;
+                    }
+                    seen[v]      = member;
+                    order[count] = v;
+                    depth[count] = h;
+                    count++;
+                }
+            }
+            levelStart = levelEnd;
+        }
+
+        List<EgoNode> nodes = new ArrayList<>(count);
+        List<EgoLink> links = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int u = order[i];
+            nodes.add(new EgoNode(g.names[u], depth[i], g.degree[u], g.fraud[u]));
+
+            // Each edge once, from its source side.
+            int[] inc = g.incident[u];
+            for (int j = 0; j < g.degree[u] && links.size() < maxLinks; j++) {
+                int e = inc[j];
+                if (g.edgeSrc[e] != u || seen[g.edgeDst[e]] != member || g.edgeAmount[e] < minAmount) continue;
+                links.add(new EgoLink(g.names[u], g.names[g.edgeDst[e]], g.edgeAmount[e]));
+            }
+            if (links.size() == maxLinks) truncated = true;
+        }
+        return new EgoGraph(nodes, links, truncated);
+    }
+
+    // ── Two-hop BFS ───────────────────────────────────────────────────────────
+
+    private double twoHop(Graph g, int root) {
+
+        Traversal t   = traversal.get();
+        int  oneHop   = t.nextTag(g.nodeCount);
+        int  twoHop   = t.nextTag(g.nodeCount);
+        int[] seen    = t.seen;
+
+        // Exact 1-hop set, so 1-hop accounts are never counted as 2-hop ones.
+        seen[root] = oneHop;
+        int frontier = 0;
+        int[] inc = g.incident[root];
+        for (int i = 0; i < g.degree[root]; i++) {
+            int v = g.other(inc[i], root);
+            if (seen[v] == oneHop) continue;
+            seen[v] = oneHop;
+            if (frontier == t.frontier.length) t.frontier = Arrays.copyOf(t.frontier, frontier * 2);
+            t.frontier[frontier++] = v;
+        }
+
+        int reached = 0;
+        int fraud   = 0;
+        int expand  = Math.min(frontier, maxNeighbours);
+        for (int k = 0; k < expand; k++) {
+            int u = t.frontier[pick(k, frontier, maxNeighbours)];
+            int[] edges = g.incident[u];
+            int deg     = g.degree[u];
+            int scan    = Math.min(deg, maxEdgesPerNeighbour);
+            for (int j = 0; j < scan; j++) {
+                int w = g.other(edges[pick(j, deg, maxEdgesPerNeighbour)], u);
+                if (seen[w] == oneHop || seen[w] == twoHop) continue;
+                seen[w] = twoHop;
+                reached++;
+                if (g.fraud[w]) fraud++;
+            }
+        }
+        return reached == 0 ? 0.0 : (double) fraud / reached;
+    }
+
+    /**
+     * k-th of at most {@code cap} positions chosen from {@code size}: all of
+     * them when they fit, else an even stride (sample) or the newest ones.
+     */
+    private int pick(int k, int size, int cap) {
+        if (size <= cap) return k;
+        return sample ? (int) ((long) k * size / cap) : size - cap + k;
+    }
+
+    /**
+     * A density computed when the graph had {@code edges} edges and
+     * {@code fraudEpoch} flagged-node events.
+     */
+    private record TwoHop(double density, int edges, int fraudEpoch) {
+
+        /**
+         * A node's 2-hop set only changes through an edge on the node itself
+         * or on one of its neighbours, so it is enough that none of them has
+         * an edge id >= edges. Called under the read lock.
+         */
+        boolean isCurrent(Graph g, int root) {
+            if (fraudEpoch != g.fraudEpoch || g.newestEdge(root) >= edges) return false;
+            int[] inc = g.incident[root];
+            for (int i = 0; i < g.degree[root]; i++) {
+                if (g.newestEdge(g.other(inc[i], root)) >= edges) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Per-thread visit marks. Each traversal takes fresh tags instead of
+     * clearing the array, which is only zeroed when it grows or the tag wraps.
+     */
+    private static final class Traversal {
+        int[] seen     = new int[0];
+        int[] frontier = new int[64];
+        int   tag;
+
+        int nextTag(int nodeCount) {
+            if (seen.length < nodeCount) {
+                seen = new int[Math.max(nodeCount, seen.length * 2)];
+                tag  = 0;
+            }
+            if (tag == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                tag = 0;
+            }
+            return ++tag;
+        }
+    }
+
+    // ── Bootstrap ─────────────────────────────────────────────────────────────
+
+    private Mono<Graph> loadMongo() {
+        Graph g = new Graph();
+        g.bootstrapIds = new HashSet<>();
+
+        Query edges = new Query();
+        edges.fields().include("sourceAccount", "targetAccount", "suspectedFraud",
+                "source", "target", "is_fraud_edge", "amount");
+
+        Query fraudNodes = new Query(Criteria.where("is_fraud").in(1, "1", 1.0, "1.0"));
+        fraudNodes.fields().include("node_id");
+
+        return mongo.find(edges, Document.class, "transactions")
+                .doOnNext(doc -> {
+                    Object id = doc.get("_id");
+                    if (id != null) g.bootstrapIds.add(id.toString());
+                    String src = firstString(doc, "sourceAccount", "source");
+                    String dst = firstString(doc, "targetAccount", "target");
+                    if (src == null || dst == null) return;
+                    boolean fraud = Boolean.TRUE.equals(doc.get("suspectedFraud"))
+                            || isOne(doc.get("is_fraud_edge"));
+                    g.addEdge(src, dst, toDouble(doc.get("amount")), fraud);
+                })
+                .thenMany(mongo.find(fraudNodes, Document.class, "nodes"))
+                .doOnNext(doc -> {
+                    Object nodeId = doc.get("node_id");
+                    if (nodeId != null) g.markFraud(nodeId.toString());
+                })
+                .then(Mono.just(g));
+    }
+
+    private Graph loadCsv() throws IOException {
+        Graph g = new Graph();
+        try (BufferedReader r = Files.newBufferedReader(csvDir.resolve("transactions.csv"), StandardCharsets.UTF_8)) {
+            r.readLine(); // source,target,amount,is_fraud_edge
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] f = line.split(",", -1);
+                if (f.length < 4) continue;
+                g.addEdge(f[0], f[1], toDouble(f[2]), isOne(f[3]));
+            }
+        }
+        Path nodes = csvDir.resolve("nodes.csv");
+        if (Files.exists(nodes)) {
+            try (BufferedReader r = Files.newBufferedReader(nodes, StandardCharsets.UTF_8)) {
+                int fraudCol = Arrays.asList(r.readLine().split(",", -1)).indexOf("is_fraud");
+                String line;
+                while (fraudCol >= 0 && (line = r.readLine()) != null) {
+                    String[] f = line.split(",", -1);
+                    if (f.length > fraudCol && isOne(f[fraudCol])) g.markFraud(f[0]);
+                }
+            }
+        }
+        return g;
+    }
+
+    /** False if the bootstrap was abandoned meanwhile; g is then dropped. */
+    private boolean swapIn(Graph g) {
+        lock.writeLock().lock();
+        try {
+            if (abandoned) return false;
+            duringBootstrap.forEach((id, edge) -> {
+                if (g.bootstrapIds == null || !g.bootstrapIds.contains(id)) edge.addTo(g);
+            });
+            duringBootstrap = new LinkedHashMap<>();
+            g.bootstrapIds  = null;
+            graph = g;
+            ready = true;
+            bootstrapping = null;
+            twoHopCache.invalidateAll();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void abandon(String reason) {
+        lock.writeLock().lock();
+        try {
+            abandonLocked(reason);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Gives up on this bootstrap; the graph it builds is never swapped in. */
+    private void abandonLocked(String reason) {
+        if (abandoned) return;
+        abandoned       = true;
+        duringBootstrap = new LinkedHashMap<>();
+        if (bootstrapping != null) bootstrapping.dispose();
+        bootstrapping   = null;
+        System.err.println("⚠️ GRAPH INDEX " + reason + ", using Mongo counts until restart");
+    }
+
+    /** The part of a live transaction the graph keeps. */
+    private record LiveEdge(String source, String target, double amount, boolean fraud) {
+
+        static LiveEdge of(Transaction tx) {
+            return new LiveEdge(tx.getSourceAccount(), tx.getTargetAccount(),
+                    tx.getAmount() == null ? 0.0 : tx.getAmount().doubleValue(),
+                    tx.isSuspectedFraud());
+        }
+
+        void addTo(Graph g) {
+            g.addEdge(source, target, amount, fraud);
+        }
+    }
+
+    // ── Graph storage ─────────────────────────────────────────────────────────
+
+    /** Primitive-array graph. Not thread-safe — guarded by the index lock. */
+    static final class Graph {
+
+        final Map<String, Integer> ids = new HashMap<>();
+        String[]  names           = new String[1024];
+        int[]     degree          = new int[1024];
+        int[]     suspiciousEdges = new int[1024];
+        boolean[] fraud           = new boolean[1024];
+        int[][]   incident        = new int[1024][];
+        int       nodeCount       = 0;
+
+        int[]     edgeSrc    = new int[4096];
+        int[]     edgeDst    = new int[4096];
+        float[]   edgeAmount = new float[4096];
+        boolean[] edgeFraud  = new boolean[4096];
+        int       edgeCount  = 0;
+
+        // Bumped whenever a node becomes fraud-flagged (cached densities go stale).
+        int       fraudEpoch = 0;
+
+        // Mongo _ids read by the bootstrap; dropped once swapped in.
+        Set<String> bootstrapIds;
+
+        int intern(String account) {
+            Integer id = ids.get(account);
+            if (id != null) return id;
+            if (nodeCount == names.length) {
+                int cap = names.length * 2;
+                names           = Arrays.copyOf(names, cap);
+                degree          = Arrays.copyOf(degree, cap);
+                suspiciousEdges = Arrays.copyOf(suspiciousEdges, cap);
+                fraud           = Arrays.copyOf(fraud, cap);
+                incident        = Arrays.copyOf(incident, cap);
+            }
+            int n = nodeCount++;
+            names[n]    = account;
+            incident[n] = new int[4];
+            ids.put(account, n);
+            return n;
+        }
+
+        int addEdge(String source, String target, double amount, boolean isFraud) {
+            int s = intern(source);
+            int t = intern(target);
+            if (edgeCount == edgeSrc.length) {
+                int cap = edgeSrc.length * 2;
+                edgeSrc    = Arrays.copyOf(edgeSrc, cap);
+                edgeDst    = Arrays.copyOf(edgeDst, cap);
+                edgeAmount = Arrays.copyOf(edgeAmount, cap);
+                edgeFraud  = Arrays.copyOf(edgeFraud, cap);
+            }
+            int e = edgeCount++;
+            edgeSrc[e]    = s;
+            edgeDst[e]    = t;
+            edgeAmount[e] = (float) amount;
+            edgeFraud[e]  = isFraud;
+
+            attach(s, e, isFraud);
+            if (t != s) attach(t, e, isFraud);
+            if (isFraud) {
+                flag(s);
+                flag(t);
+            }
+            return e;
+        }
+
+        void markFraud(String account) {
+            Integer n = ids.get(account);
+            if (n != null) flag(n);
+        }
+
+        /** Id of n's most recent incident edge, -1 if it has none. */
+        int newestEdge(int n) {
+            return degree[n] == 0 ? -1 : incident[n][degree[n] - 1];
+        }
+
+        int other(int e, int n) {
+            return edgeSrc[e] == n ? edgeDst[e] : edgeSrc[e];
+        }
+
+        private void flag(int n) {
+            if (fraud[n]) return;
+            fraud[n] = true;
+            fraudEpoch++;
+        }
+
+        private void attach(int n, int e, boolean isFraud) {
+            int[] list = incident[n];
+            if (degree[n] == list.length) {
+                list = incident[n] = Arrays.copyOf(list, list.length * 2);
+            }
+            list[degree[n]++] = e;
+            if (isFraud) suspiciousEdges[n]++;
+        }
+    }
+
+    // ── Parsers ───────────────────────────────────────────────────────────────
+
+    private static String firstString(Document doc, String... keys) {
+        for (String k : keys) {
+            Object v = doc.get(k);
+            if (v != null) return v.toString();
+        }
+        return null;
+    }
+
+    private static boolean isOne(Object v) {
+        if (v == null) return false;
+        if (v instanceof Number n) return n.intValue() == 1;
+        String s = v.toString().trim();
+        return s.equals("1") || s.equals("1.0") || s.equalsIgnoreCase("true");
+    }
+
+    private static double toDouble(Object v) {
+        if (v instanceof Decimal128 d) return d.doubleValue();
+        if (v instanceof Number n) return n.doubleValue();
+        try { return v == null ? 0.0 : Double.parseDouble(v.toString()); }
+        catch (NumberFormatException e) { return 0.0; }
+    }
+}
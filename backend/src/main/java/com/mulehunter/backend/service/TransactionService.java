@@ -2,20 +2,44 @@ package com.mulehunter.backend.service;
 
 import com.mulehunter.backend.DTO.BehaviorFeaturesDTO;
 import com.mulehunter.backend.DTO.GraphFeaturesDTO;
+import com.mulehunter.backend.metrics.PipelineMetrics;
+import com.mulehunter.backend.model.AccountAggregate;
 import com.mulehunter.backend.model.AiRiskResult;
+import com.mulehunter.backend.model.PendingTransaction;
 import com.mulehunter.backend.model.Transaction;
 import com.mulehunter.backend.model.TransactionRequest;
+import com.mulehunter.backend.repository.PendingTransactionRepository;
 import com.mulehunter.backend.repository.TransactionRepository;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 public class TransactionService {
 
+    public static final String DEAD_LETTER_COLLECTION = "pending_transactions_dead";
+
+    // A sweeper only claims a marker this long after its lease ran out, to
+    // allow for clock skew between instances.
+    private static final Duration LEASE_GRACE = Duration.ofSeconds(5);
+
     private final TransactionRepository repository;
+    private final PendingTransactionRepository pendingRepository;
+    private final ReactiveMongoTemplate mongo;
     private final NodeEnrichedService nodeEnrichedService;
     private final VisualAnalyticsService visualAnalyticsService;
     private final Ja3SecurityService ja3SecurityService;
@@ -25,9 +49,26 @@ public class TransactionService {
     private final BehaviorFeatureService behaviorFeatureService;
     private final GraphFeatureService graphFeatureService;
     private final AggregateUpdateService aggregateUpdateService;
+    private final EnrichmentQueueService enrichmentQueueService;
+    private final TransactionGraphIndex graphIndex;
+    private final PipelineMetrics metrics;
+
+    // "inline" — node enrichment + visual trigger run on the request path (legacy).
+    // "async"  — they are handed to EnrichmentQueueService and only the inputs
+    //            the decision actually reads stay on the critical path.
+    private final boolean asyncEnrichment;
+
+    // "double" — save the raw transaction, run the pipeline, save it again (legacy).
+    // "single" — write a small PendingTransaction marker, run the pipeline, write
+    //            the scored transaction once and drop the marker.
+    private final boolean  singleWrite;
+    private final Duration lease;
+    private final int      maxRecoveryAttempts;
 
     public TransactionService(
             TransactionRepository repository,
+            PendingTransactionRepository pendingRepository,
+            ReactiveMongoTemplate mongo,
             NodeEnrichedService nodeEnrichedService,
             VisualAnalyticsService visualAnalyticsService,
             Ja3SecurityService ja3SecurityService,
@@ -36,9 +77,18 @@ public class TransactionService {
             IdentityCollectorService identityCollectorService,
             BehaviorFeatureService behaviorFeatureService,
             GraphFeatureService graphFeatureService,
-            AggregateUpdateService aggregateUpdateService
+            AggregateUpdateService aggregateUpdateService,
+            EnrichmentQueueService enrichmentQueueService,
+            TransactionGraphIndex graphIndex,
+            PipelineMetrics metrics,
+            @Value("${pipeline.enrichment.mode:inline}") String enrichmentMode,
+            @Value("${pipeline.persistence.mode:double}") String persistenceMode,
+            @Value("${pipeline.persistence.lease-ms:60000}") long leaseMs,
+            @Value("${pipeline.persistence.max-recovery-attempts:5}") int maxRecoveryAttempts
     ) {
         this.repository               = repository;
+        this.pendingRepository        = pendingRepository;
+        this.mongo                    = mongo;
         this.nodeEnrichedService      = nodeEnrichedService;
         this.visualAnalyticsService   = visualAnalyticsService;
         this.ja3SecurityService       = ja3SecurityService;
@@ -48,224 +98,461 @@ public class TransactionService {
         this.behaviorFeatureService   = behaviorFeatureService;
         this.graphFeatureService      = graphFeatureService;
         this.aggregateUpdateService   = aggregateUpdateService;
+        this.enrichmentQueueService   = enrichmentQueueService;
+        this.graphIndex               = graphIndex;
+        this.metrics                  = metrics;
+        this.asyncEnrichment          = "async".equalsIgnoreCase(enrichmentMode);
+        this.singleWrite              = "single".equalsIgnoreCase(persistenceMode);
+        this.lease                    = Duration.ofMillis(Math.max(1, leaseMs));
+        this.maxRecoveryAttempts      = Math.max(1, maxRecoveryAttempts);
     }
 
     public Mono<Transaction> createTransaction(TransactionRequest request, String ja3) {
 
-        return validationService.validate(request)
+        return metrics.timeStage(PipelineMetrics.VALIDATION, validationService.validate(request))
                 .then(Mono.defer(() -> {
 
                     Transaction tx = Transaction.from(request);
-                    Long sourceNodeId;
-                    Long targetNodeId;
+                    long[] nodeIds;
+                    try {
+                        nodeIds = parseNodeIds(tx);
+                    } catch (IllegalArgumentException e) {
+                        return Mono.error(e);
+                    }
+
+                    if (singleWrite) {
+                        return persistOnce(tx, request, ja3, nodeIds);
+                    }
+
+                    return metrics.timeStage(PipelineMetrics.FIRST_SAVE, repository.save(tx))
+                            .flatMap(savedTx -> runRiskPipeline(savedTx, ja3, nodeIds[0], nodeIds[1]))
+                            .flatMap(savedTx -> metrics.timeStage(PipelineMetrics.FINAL_SAVE, repository.save(savedTx)))
+                            .doOnNext(graphIndex::addTransaction);
+                }))
+                .as(metrics::timeTotal);
+    }
+
+    /**
+     * Bulk variant of {@link #createTransaction} — validates and scores the
+     * request but does NOT persist it. The Mongo id is assigned up front so the
+     * downstream calls (JA3, visual trigger) see the same id the document will
+     * be inserted with; TransactionBulkService groups the results into bulk
+     * inserts.
+     */
+    public Mono<Transaction> scoreTransaction(TransactionRequest request, String ja3) {
 
+        return metrics.timeStage(PipelineMetrics.VALIDATION, validationService.validate(request))
+                .then(Mono.defer(() -> {
+
+                    Transaction tx = Transaction.from(request);
+                    long[] nodeIds;
                     try {
-                        sourceNodeId = Long.parseLong(tx.getSourceAccount());
-                        targetNodeId = Long.parseLong(tx.getTargetAccount());
-                    } catch (Exception e) {
-                        return Mono.error(new IllegalArgumentException(
-                                "sourceAccount and targetAccount must be numeric node IDs. Got: "
-                                + tx.getSourceAccount() + " / " + tx.getTargetAccount(), e));
+                        nodeIds = parseNodeIds(tx);
+                    } catch (IllegalArgumentException e) {
+                        return Mono.error(e);
                     }
 
-                    double amount     = tx.getAmount().doubleValue();
-                    String sourceAcc  = tx.getSourceAccount();
-                    String targetAcc  = tx.getTargetAccount();
-
-                    return repository.save(tx)
-
-                            // Step 3 — Identity forensics
-                            .flatMap(savedTx ->
-                                    identityCollectorService.collect(
-                                            savedTx, ja3,
-                                            "device-" + savedTx.getSourceAccount(),
-                                            "127.0.0.1"
-                                    )
-                            )
-
-                            // Step 4 — Update aggregates + visual + node enrichment (parallel)
-                            .flatMap(savedTx ->
-                                    Mono.when(
-                                            aggregateUpdateService.update(
-                                                    sourceAcc, targetAcc, amount,
-                                                    savedTx.getTransactionId(),
-                                                    ja3,
-                                                    "device-" + sourceAcc,
-                                                    "127.0.0.1"
-                                            ),
-                                            nodeEnrichedService.handleOutgoing(sourceNodeId, amount),
-                                            nodeEnrichedService.handleIncoming(targetNodeId, amount),
-                                            visualAnalyticsService.triggerVisualMlPipeline(savedTx)
-                                    ).thenReturn(savedTx)
-                            )
-
-                            // Steps 5+6 — Behavioral + Graph features (parallel)
-                            .flatMap(savedTx ->
-                                    Mono.zip(
-                                            behaviorFeatureService.compute(sourceAcc, amount),
-                                            graphFeatureService.compute(sourceAcc)
-                                    ).flatMap(features -> {
-
-                                        BehaviorFeaturesDTO behavior = features.getT1();
-                                        GraphFeaturesDTO    graph    = features.getT2();
-
-                                        System.out.printf(
-                                                "📦 ML PAYLOAD: account=%s velocity=%.3f burst=%.3f suspiciousNeighbors=%d%n",
-                                                sourceAcc,
-                                                behavior.getTransactionVelocityScore(),
-                                                behavior.getBurstScore(),
-                                                graph.getSuspiciousNeighborCount());
-
-                                        // Step 7 — AI (GNN) + JA3 in parallel
-                                        return Mono.zip(
-                                                aiRiskService.analyzeTransaction(
-                                                        sourceNodeId, targetNodeId, amount,
-                                                        graph.getSuspiciousNeighborCount(),
-                                                        graph.getTwoHopFraudDensity(),
-                                                        graph.getConnectivityScore(),
-                                                        savedTx.getJa3ReuseCount() == null ? 0 : savedTx.getJa3ReuseCount(),
-                                                        savedTx.getDeviceReuseCount() == null ? 0 : savedTx.getDeviceReuseCount(),
-                                                        savedTx.getIpReuseCount() == null ? 0 : savedTx.getIpReuseCount(),
-                                                        behavior.getTransactionVelocityScore(),
-                                                        behavior.getBurstScore())
-                                                        .defaultIfEmpty(new AiRiskResult()),
-
-                                                ja3SecurityService.callJa3Risk(savedTx, ja3)
-                                                        .defaultIfEmpty(Map.of())
-
-                                        ).flatMap(results -> {
-
-                                            AiRiskResult        ai     = results.getT1();
-                                            Map<String, Object> ja3Map = results.getT2();
-
-                                            // Step 8 — EIF requires AI features, execute sequentially
-                                            return aiRiskService.scoreEif(
-                                                    behavior.getTransactionVelocityScore(),
-                                                    behavior.getBurstScore(),
-                                                    (double) graph.getSuspiciousNeighborCount(),
-                                                    savedTx.getIpReuseCount()  == null ? 0.0 : savedTx.getIpReuseCount().doubleValue(),
-                                                    savedTx.getJa3ReuseCount() == null ? 0.0 : savedTx.getJa3ReuseCount().doubleValue(),
-                                                    ai.getClusterRiskScore(),
-                                                    ai.isMuleRingMember() ? 1.0 : 0.0,
-                                                    ai.getCentralityScore()
-                                            ).map(eifMap -> {
-
-                                            // ── EIF scores ───────────────────────────────────
-                                            double eifScore = toDouble(eifMap.get("score"));
-                                            double eifConf  = toDouble(eifMap.get("confidence"));
-                                            savedTx.setUnsupervisedScore(Math.min(1.0, Math.max(0.0, eifScore)));
-                                            savedTx.setEifConfidence(eifConf);
-                                            savedTx.setEifExplanation(
-                                                    eifMap.getOrDefault("explanation", "") instanceof String s ? s : "");
-
-                                            // FIX: safe cast — EIF topFactors values come from
-                                            // Jackson as Double (JSON float) or Integer (JSON int 0).
-                                            // We normalise to Map<String,Double> here instead of
-                                            // blindly casting, which would cause ClassCastException
-                                            // when a zero value is deserialised as Integer.
-                                            Object rawFactors = eifMap.get("topFactors");
-                                            Map<String, Double> eifTopFactors = new LinkedHashMap<>();
-                                            if (rawFactors instanceof Map<?, ?> fm) {
-                                                fm.forEach((k, v) -> {
-                                                    if (k instanceof String ks && v instanceof Number nv) {
-                                                        eifTopFactors.put(ks, nv.doubleValue());
-                                                    }
-                                                });
-                                            }
-                                            savedTx.setEifTopFactors(eifTopFactors);
-
-                                            // ── GNN scores ───────────────────────────────────
-                                            savedTx.setGnnScore(ai.getGnnScore());
-                                            savedTx.setGnnConfidence(ai.getConfidence());
-                                            savedTx.setRiskLevel(ai.getRiskLevel());
-                                            savedTx.setVerdict(ai.getVerdict());
-                                            savedTx.setSuspectedFraud(ai.isSuspectedFraud());
-
-                                            savedTx.setSuspiciousNeighbors(ai.getSuspiciousNeighbors());
-                                            savedTx.setSharedDevices(ai.getSharedDevices());
-                                            savedTx.setSharedIPs(ai.getSharedIPs());
-
-                                            savedTx.setClusterId(ai.getClusterId());
-                                            savedTx.setClusterSize(ai.getClusterSize());
-
-                                            savedTx.setMuleRingMember(ai.isMuleRingMember());
-                                            savedTx.setRingShape(ai.getRingShape());
-                                            savedTx.setRingSize(ai.getRingSize());
-                                            savedTx.setRole(ai.getRole());
-                                            savedTx.setHubAccount(ai.getHubAccount());
-                                            savedTx.setRingAccounts(ai.getRingAccounts());
-
-                                            savedTx.setRiskFactors(ai.getRiskFactors());
-                                            savedTx.setEmbeddingNorm(ai.getEmbeddingNorm());
-
-                                            // ── JA3 scores ───────────────────────────────────
-                                            if (ja3Map.get("ja3Risk") instanceof Number n) {
-                                                savedTx.setJa3Risk(n.doubleValue());
-                                                savedTx.setJa3Detected(n.doubleValue() > 0.7);
+                    tx.setId(new ObjectId().toHexString());
+                    return runRiskPipeline(tx, ja3, nodeIds[0], nodeIds[1]);
+                }))
+                .as(metrics::timeTotal);
+    }
+
+    // ── Single-write persistence ──────────────────────────────────────────────
+
+    /**
+     * pipeline.persistence.mode=single: the outbox marker replaces the first
+     * full-document save, so the hot collection sees exactly one write per
+     * transaction. The marker is removed again if the pipeline fails — the
+     * caller gets the error and nothing is retried behind its back; only a
+     * crash leaves a marker for {@link #recoverPending} to finish.
+     *
+     * The request holds the marker's lease while it runs and gives up when
+     * the lease runs out, so a sweeper never re-scores a transaction whose
+     * request is still running.
+     *
+     * The marker is keyed by transactionId, so of two concurrent requests
+     * with the same transactionId the second fails at OUTBOX_WRITE, before
+     * runRiskPipeline applies any aggregate, identity or cluster side effect.
+     * Once the first request's marker is gone its document is saved, so the
+     * existence check after the insert catches a duplicate that arrives
+     * after the first request finished but validated before it saved.
+     *
+     * Note the transaction is not yet in transactions while its own graph
+     * features are counted (same as the bulk path).
+     */
+    private Mono<Transaction> persistOnce(Transaction tx, TransactionRequest request,
+                                          String ja3, long[] nodeIds) {
+
+        tx.setId(new ObjectId().toHexString());
+        String owner = new ObjectId().toHexString();
+        PendingTransaction marker = PendingTransaction.of(tx.getId(), request, ja3, owner, Instant.now().plus(lease));
+        String id    = marker.getId();
+
+        Mono<Void> claimed = pendingRepository.insert(marker)
+                .onErrorMap(DuplicateKeyException.class, e -> duplicate())
+                .then(repository.existsByTransactionId(request.getTransactionId()))
+                .flatMap(exists -> exists ? Mono.<Void>error(duplicate()) : Mono.<Void>empty());
+
+        return metrics.timeStage(PipelineMetrics.OUTBOX_WRITE, claimed)
+                .then(Mono.defer(() -> runRiskPipeline(tx, ja3, nodeIds[0], nodeIds[1])))
+                .flatMap(scored -> metrics.timeStage(PipelineMetrics.FINAL_SAVE, repository.save(scored)))
+                .timeout(lease)
+                .doOnNext(graphIndex::addTransaction)
+                .flatMap(saved -> clearPending(id, owner).thenReturn(saved))
+                .onErrorResume(e -> clearPending(id, owner).then(Mono.error(e)));
+    }
+
+    /**
+     * Finishes transactions whose marker lease has run out. Each marker is
+     * first claimed atomically (new owner and lease, attempts + 1), so only
+     * one sweeper on one instance handles it, and never while its request is
+     * still running. The claimed marker is dropped if the scored document made
+     * it to Mongo; otherwise the stored request is re-scored under the same
+     * id. Validation is skipped — the request already passed it, and its
+     * timestamp may have aged out since. Aggregates are at-least-once here:
+     * a crash after step 4 counts twice.
+     *
+     * A failed attempt keeps its claim until the lease runs out, which spaces
+     * out the retries. After pipeline.persistence.max-recovery-attempts the
+     * marker is moved to {@value #DEAD_LETTER_COLLECTION}.
+     */
+    public Mono<Long> recoverPending() {
+        Instant expired = Instant.now().minus(LEASE_GRACE);
+        Query stale = new Query(leaseExpired(expired));
+        stale.fields().include("_id");
+
+        return mongo.find(stale, PendingTransaction.class)
+                .concatMap(p -> claim(p.getId(), expired))
+                .concatMap(this::recover)
+                .count();
+    }
+
+    private Mono<PendingTransaction> claim(String id, Instant expired) {
+        Query unclaimed = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(id), leaseExpired(expired)));
+        Update take = new Update()
+                .set("owner", new ObjectId().toHexString())
+                .set("leaseUntil", Instant.now().plus(lease))
+                .inc("attempts", 1);
+
+        return mongo.findAndModify(unclaimed, take,
+                FindAndModifyOptions.options().returnNew(true), PendingTransaction.class);
+    }
+
+    private Criteria leaseExpired(Instant expired) {
+        return new Criteria().orOperator(
+                Criteria.where("leaseUntil").lt(expired),
+                // Markers written before leases existed.
+                Criteria.where("leaseUntil").exists(false).and("createdAt").lt(expired.minus(lease)));
+    }
+
+    private Mono<PendingTransaction> recover(PendingTransaction pending) {
+
+        return repository.existsById(pending.documentId())
+                .flatMap(exists -> exists ? Mono.<Void>empty() : rescore(pending))
+                .timeout(lease)
+                .then(clearPending(pending.getId(), pending.getOwner()))
+                .thenReturn(pending)
+                .onErrorResume(e -> {
+                    if (pending.getAttempts() >= maxRecoveryAttempts) {
+                        return deadLetter(pending, e).thenReturn(pending);
+                    }
+                    System.err.printf("⚠️ PENDING tx %s recovery attempt %d/%d failed: %s%n",
+                            pending.getId(), pending.getAttempts(), maxRecoveryAttempts, e.getMessage());
+                    return Mono.just(pending);
+                });
+    }
+
+    private Mono<Void> rescore(PendingTransaction pending) {
+
+        Transaction tx = Transaction.from(pending.getRequest());
+        long[] nodeIds;
+        try {
+            nodeIds = parseNodeIds(tx);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        tx.setId(pending.documentId());
+
+        return runRiskPipeline(tx, pending.getJa3(), nodeIds[0], nodeIds[1])
+                .flatMap(repository::save)
+                .doOnNext(graphIndex::addTransaction)
+                .doOnSuccess(v -> System.out.println("♻️ PENDING tx recovered: " + tx.getTransactionId()))
+                .then();
+    }
+
+    /**
+     * Copies the marker to the dead-letter collection, then drops it. If
+     * either write fails the marker stays claimed, and the next sweep after
+     * its lease retries the move.
+     */
+    private Mono<Void> deadLetter(PendingTransaction pending, Throwable e) {
+        pending.setLastError(e.getMessage());
+        pending.setAbandonedAt(Instant.now());
+
+        return mongo.save(pending, DEAD_LETTER_COLLECTION)
+                .then(mongo.remove(ownedBy(pending.getId(), pending.getOwner()), PendingTransaction.class))
+                .doOnSuccess(r -> {
+                    metrics.recordPendingDeadLettered();
+                    System.err.printf("❌ PENDING tx %s moved to %s after %d attempts: %s%n",
+                            pending.getId(), DEAD_LETTER_COLLECTION, pending.getAttempts(), e.getMessage());
+                })
+                .then()
+                .onErrorResume(err -> {
+                    System.err.println("⚠️ PENDING tx " + pending.getId() + " not dead-lettered: " + err.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /** Drops the marker only while {@code owner} still holds it. */
+    private Mono<Void> clearPending(String id, String owner) {
+        return mongo.remove(ownedBy(id, owner), PendingTransaction.class)
+                .then()
+                .onErrorResume(e -> {
+                    // Harmless: the sweep sees the saved document and drops the marker.
+                    System.err.println("⚠️ PENDING marker not cleared for " + id + ": " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private static Query ownedBy(String id, String owner) {
+        return new Query(Criteria.where("_id").is(id).and("owner").is(owner));
+    }
+
+    // Same error TransactionValidationService raises for a known transactionId.
+    private static IllegalArgumentException duplicate() {
+        return new IllegalArgumentException("Duplicate transactionId");
+    }
+
+    // ── Risk pipeline (steps 3–8) ─────────────────────────────────────────────
+
+    private Mono<Transaction> runRiskPipeline(Transaction tx, String ja3,
+                                              Long sourceNodeId, Long targetNodeId) {
+
+        double amount     = tx.getAmount().doubleValue();
+        String sourceAcc  = tx.getSourceAccount();
+        String targetAcc  = tx.getTargetAccount();
+
+        return Mono.just(tx)
+
+                // Step 3 — Identity forensics
+                .flatMap(savedTx ->
+                        metrics.timeStage(PipelineMetrics.IDENTITY_COLLECT,
+                                identityCollectorService.collect(
+                                        savedTx, ja3,
+                                        "device-" + savedTx.getSourceAccount(),
+                                        "127.0.0.1"
+                                ))
+                )
+
+                // Step 4 — Update aggregates + visual + node enrichment (parallel)
+                // Behavior features (step 5) read the aggregates, so that update
+                // always stays on the critical path; the rest may be deferred.
+                // The update emits the post-update source aggregate.
+                .flatMap(savedTx ->
+                        Mono.zip(
+                                metrics.timeStage(PipelineMetrics.AGGREGATE_UPDATE,
+                                        aggregateUpdateService.update(
+                                                sourceAcc, targetAcc, amount,
+                                                savedTx.getTransactionId(),
+                                                ja3,
+                                                "device-" + sourceAcc,
+                                                "127.0.0.1"
+                                        )),
+                                enrichSideEffects(savedTx, sourceNodeId, targetNodeId, amount)
+                                        .thenReturn(savedTx)
+                        )
+                )
+
+                // Steps 5+6 — Behavioral + Graph features (parallel)
+                .flatMap(step4 -> {
+
+                        AccountAggregate sourceAgg = step4.getT1();
+                        Transaction      savedTx   = step4.getT2();
+
+                        return Mono.zip(
+                                metrics.timeStage(PipelineMetrics.BEHAVIOR_FEATURES,
+                                        behaviorFeatureService.compute(sourceAgg, amount)),
+                                metrics.timeStage(PipelineMetrics.GRAPH_FEATURES,
+                                        graphFeatureService.compute(sourceAcc, savedTx.getId()))
+                        ).flatMap(features -> {
+
+                            BehaviorFeaturesDTO behavior = features.getT1();
+                            GraphFeaturesDTO    graph    = features.getT2();
+
+                            System.out.printf(
+                                    "📦 ML PAYLOAD: account=%s velocity=%.3f burst=%.3f suspiciousNeighbors=%d%n",
+                                    sourceAcc,
+                                    behavior.getTransactionVelocityScore(),
+                                    behavior.getBurstScore(),
+                                    graph.getSuspiciousNeighborCount());
+
+                            // Step 7 — AI (GNN) + JA3 in parallel
+                            return Mono.zip(
+                                    metrics.timeStage(PipelineMetrics.GNN_CALL, aiRiskService.analyzeTransaction(
+                                            sourceNodeId, targetNodeId, amount,
+                                            graph.getSuspiciousNeighborCount(),
+                                            graph.getTwoHopFraudDensity(),
+                                            graph.getConnectivityScore(),
+                                            savedTx.getJa3ReuseCount() == null ? 0 : savedTx.getJa3ReuseCount(),
+                                            savedTx.getDeviceReuseCount() == null ? 0 : savedTx.getDeviceReuseCount(),
+                                            savedTx.getIpReuseCount() == null ? 0 : savedTx.getIpReuseCount(),
+                                            savedTx.getIdentityClusterSize() == null ? 0 : savedTx.getIdentityClusterSize(),
+                                            behavior.getTransactionVelocityScore(),
+                                            behavior.getBurstScore()))
+                                            .defaultIfEmpty(new AiRiskResult()),
+
+                                    metrics.timeStage(PipelineMetrics.JA3_CALL, ja3SecurityService.callJa3Risk(savedTx, ja3))
+                                            .defaultIfEmpty(Map.of())
+
+                            ).flatMap(results -> {
+
+                                AiRiskResult        ai     = results.getT1();
+                                Map<String, Object> ja3Map = results.getT2();
+
+                                // Step 8 — EIF requires AI features, execute sequentially
+                                return metrics.timeStage(PipelineMetrics.EIF_CALL, aiRiskService.scoreEif(
+                                        behavior.getTransactionVelocityScore(),
+                                        behavior.getBurstScore(),
+                                        (double) graph.getSuspiciousNeighborCount(),
+                                        savedTx.getIpReuseCount()  == null ? 0.0 : savedTx.getIpReuseCount().doubleValue(),
+                                        savedTx.getJa3ReuseCount() == null ? 0.0 : savedTx.getJa3ReuseCount().doubleValue(),
+                                        ai.getClusterRiskScore(),
+                                        ai.isMuleRingMember() ? 1.0 : 0.0,
+                                        ai.getCentralityScore()
+                                )).map(eifMap -> {
+
+                                    // ── EIF scores ───────────────────────────────────
+                                    double eifScore = toDouble(eifMap.get("score"));
+                                    double eifConf  = toDouble(eifMap.get("confidence"));
+                                    savedTx.setUnsupervisedScore(Math.min(1.0, Math.max(0.0, eifScore)));
+                                    savedTx.setEifConfidence(eifConf);
+                                    savedTx.setEifExplanation(
+                                            eifMap.getOrDefault("explanation", "") instanceof String s ? s : "");
+
+                                    // FIX: safe cast — EIF topFactors values come from
+                                    // Jackson as Double (JSON float) or Integer (JSON int 0).
+                                    // We normalise to Map<String,Double> here instead of
+                                    // blindly casting, which would cause ClassCastException
+                                    // when a zero value is deserialised as Integer.
+                                    Object rawFactors = eifMap.get("topFactors");
+                                    Map<String, Double> eifTopFactors = new LinkedHashMap<>();
+                                    if (rawFactors instanceof Map<?, ?> fm) {
+                                        fm.forEach((k, v) -> {
+                                            if (k instanceof String ks && v instanceof Number nv) {
+                                                eifTopFactors.put(ks, nv.doubleValue());
                                             }
-                                            if (ja3Map.get("velocity") instanceof Number n)
-                                                savedTx.setJa3Velocity(n.intValue());
-                                            if (ja3Map.get("fanout") instanceof Number n)
-                                                savedTx.setJa3Fanout(n.intValue());
-
-                                            // ── Risk fusion ───────────────────────────────────
-                                            combineRiskSignals(savedTx, behavior, graph, ai);
-
-                                            // ── Build nested response maps ────────────────────
-                                            // These are stored on Transaction so the controller
-                                            // can return them directly without re-assembling.
-                                            Map<String, Object> scores = new LinkedHashMap<>();
-                                            scores.put("gnn",            savedTx.getGnnScore());
-                                            scores.put("eif",            savedTx.getUnsupervisedScore());
-                                            scores.put("behavior",       savedTx.getBehaviorScore());
-                                            scores.put("graph",          savedTx.getGraphScore());
-                                            scores.put("ja3",            savedTx.getJa3Risk());
-                                            scores.put("confidence",     savedTx.getGnnConfidence());
-                                            scores.put("eifConfidence",  savedTx.getEifConfidence());
-                                            scores.put("eifExplanation", savedTx.getEifExplanation());
-                                            scores.put("eifTopFactors",  savedTx.getEifTopFactors());
-                                            savedTx.setModelScores(scores);
-
-                                            Map<String, Object> network = new LinkedHashMap<>();
-                                            network.put("suspiciousNeighbors", savedTx.getSuspiciousNeighbors());
-                                            network.put("sharedDevices",       savedTx.getSharedDevices());
-                                            network.put("sharedIPs",           savedTx.getSharedIPs());
-                                            network.put("centralityScore",     ai.getCentralityScore());
-                                            network.put("transactionLoops",    ai.isTransactionLoops());
-                                            savedTx.setNetworkMetrics(network);
-
-                                            Map<String, Object> cluster = new LinkedHashMap<>();
-                                            cluster.put("clusterId",        savedTx.getClusterId());
-                                            cluster.put("clusterSize",      savedTx.getClusterSize());
-                                            cluster.put("clusterRiskScore", ai.getClusterRiskScore());
-                                            savedTx.setFraudCluster(cluster);
-
-                                            Map<String, Object> ring = new LinkedHashMap<>();
-                                            ring.put("isMuleRingMember", savedTx.getMuleRingMember());
-                                            ring.put("ringShape",        savedTx.getRingShape());
-                                            ring.put("ringSize",         savedTx.getRingSize());
-                                            ring.put("role",             savedTx.getRole());
-                                            ring.put("hubAccount",       savedTx.getHubAccount());
-                                            ring.put("ringAccounts",     savedTx.getRingAccounts());
-                                            savedTx.setMuleRingDetection(ring);
-
-                                            Map<String, Object> ja3Sec = new LinkedHashMap<>();
-                                            ja3Sec.put("ja3Risk",     savedTx.getJa3Risk());
-                                            ja3Sec.put("ja3Detected", savedTx.getJa3Detected());
-                                            ja3Sec.put("velocity",    savedTx.getJa3Velocity());
-                                            ja3Sec.put("fanout",      savedTx.getJa3Fanout());
-                                            ja3Sec.put("isNewDevice", savedTx.getIsNewDevice());
-                                            ja3Sec.put("isNewJa3",    savedTx.getIsNewJa3());
-                                            savedTx.setJa3Security(ja3Sec);
-
-                                            return savedTx;
-                                            });
                                         });
-                                    })
-                            )
+                                    }
+                                    savedTx.setEifTopFactors(eifTopFactors);
+
+                                    // ── GNN scores ───────────────────────────────────
+                                    savedTx.setGnnScore(ai.getGnnScore());
+                                    savedTx.setGnnConfidence(ai.getConfidence());
+                                    savedTx.setRiskLevel(ai.getRiskLevel());
+                                    savedTx.setVerdict(ai.getVerdict());
+                                    savedTx.setSuspectedFraud(ai.isSuspectedFraud());
+
+                                    savedTx.setSuspiciousNeighbors(ai.getSuspiciousNeighbors());
+                                    savedTx.setSharedDevices(ai.getSharedDevices());
+                                    savedTx.setSharedIPs(ai.getSharedIPs());
+
+                                    savedTx.setClusterId(ai.getClusterId());
+                                    savedTx.setClusterSize(ai.getClusterSize());
+
+                                    savedTx.setMuleRingMember(ai.isMuleRingMember());
+                                    savedTx.setRingShape(ai.getRingShape());
+                                    savedTx.setRingSize(ai.getRingSize());
+                                    savedTx.setRole(ai.getRole());
+                                    savedTx.setHubAccount(ai.getHubAccount());
+                                    // ai may be a cached result shared with other transactions
+                                    savedTx.setRingAccounts(copyOf(ai.getRingAccounts()));
+
+                                    savedTx.setRiskFactors(copyOf(ai.getRiskFactors()));
+                                    savedTx.setEmbeddingNorm(ai.getEmbeddingNorm());
+
+                                    // ── JA3 scores ───────────────────────────────────
+                                    if (ja3Map.get("ja3Risk") instanceof Number n) {
+                                        savedTx.setJa3Risk(n.doubleValue());
+                                        savedTx.setJa3Detected(n.doubleValue() > 0.7);
+                                    }
+                                    if (ja3Map.get("velocity") instanceof Number n)
+                                        savedTx.setJa3Velocity(n.intValue());
+                                    if (ja3Map.get("fanout") instanceof Number n)
+                                        savedTx.setJa3Fanout(n.intValue());
+
+                                    // ── Risk fusion ───────────────────────────────────
+                                    combineRiskSignals(savedTx, behavior, graph, ai);
+
+                                    // ── Build nested response maps ────────────────────
+                                    // These are stored on Transaction so the controller
+                                    // can return them directly without re-assembling.
+                                    Map<String, Object> scores = new LinkedHashMap<>();
+                                    scores.put("gnn",            savedTx.getGnnScore());
+                                    scores.put("eif",            savedTx.getUnsupervisedScore());
+                                    scores.put("behavior",       savedTx.getBehaviorScore());
+                                    scores.put("graph",          savedTx.getGraphScore());
+                                    scores.put("ja3",            savedTx.getJa3Risk());
+                                    scores.put("confidence",     savedTx.getGnnConfidence());
+                                    scores.put("eifConfidence",  savedTx.getEifConfidence());
+                                    scores.put("eifExplanation", savedTx.getEifExplanation());
+                                    scores.put("eifTopFactors",  savedTx.getEifTopFactors());
+                                    savedTx.setModelScores(scores);
+
+                                    Map<String, Object> network = new LinkedHashMap<>();
+                                    network.put("suspiciousNeighbors", savedTx.getSuspiciousNeighbors());
+                                    network.put("sharedDevices",       savedTx.getSharedDevices());
+                                    network.put("sharedIPs",           savedTx.getSharedIPs());
+                                    network.put("centralityScore",     ai.getCentralityScore());
+                                    network.put("transactionLoops",    ai.isTransactionLoops());
+                                    savedTx.setNetworkMetrics(network);
+
+                                    Map<String, Object> cluster = new LinkedHashMap<>();
+                                    cluster.put("clusterId",        savedTx.getClusterId());
+                                    cluster.put("clusterSize",      savedTx.getClusterSize());
+                                    cluster.put("clusterRiskScore", ai.getClusterRiskScore());
+                                    savedTx.setFraudCluster(cluster);
+
+                                    Map<String, Object> ring = new LinkedHashMap<>();
+                                    ring.put("isMuleRingMember", savedTx.getMuleRingMember());
+                                    ring.put("ringShape",        savedTx.getRingShape());
+                                    ring.put("ringSize",         savedTx.getRingSize());
+                                    ring.put("role",             savedTx.getRole());
+                                    ring.put("hubAccount",       savedTx.getHubAccount());
+                                    ring.put("ringAccounts",     savedTx.getRingAccounts());
+                                    savedTx.setMuleRingDetection(ring);
+
+                                    Map<String, Object> ja3Sec = new LinkedHashMap<>();
+                                    ja3Sec.put("ja3Risk",     savedTx.getJa3Risk());
+                                    ja3Sec.put("ja3Detected", savedTx.getJa3Detected());
+                                    ja3Sec.put("velocity",    savedTx.getJa3Velocity());
+                                    ja3Sec.put("fanout",      savedTx.getJa3Fanout());
+                                    ja3Sec.put("isNewDevice", savedTx.getIsNewDevice());
+                                    ja3Sec.put("isNewJa3",    savedTx.getIsNewJa3());
+                                    savedTx.setJa3Security(ja3Sec);
+
+                                    return savedTx;
+                                });
+                            });
+                        });
+                });
+    }
 
-                            .flatMap(repository::save);
-                }));
+    /**
+     * Node enrichment + visual trigger. Nothing in the decision reads their
+     * results; in async mode this only waits for the durable task write.
+     */
+    private Mono<Void> enrichSideEffects(Transaction tx, Long sourceNodeId,
+                                         Long targetNodeId, double amount) {
+        if (asyncEnrichment) {
+            return enrichmentQueueService.submit(tx.getId(), sourceNodeId, targetNodeId, amount);
+        }
+        return Mono.when(
+                nodeEnrichedService.handleOutgoing(sourceNodeId, amount),
+                nodeEnrichedService.handleIncoming(targetNodeId, amount),
+                visualAnalyticsService.triggerVisualMlPipeline(tx)
+        );
     }
 
     // ── Risk fusion ───────────────────────────────────────────────────────────
@@ -312,6 +599,23 @@ public class TransactionService {
 
     // ── Helpers ───────────────────────────────────────────────────────────────
 
+    /**
+     * Returns [sourceNodeId, targetNodeId]; the GNN and node-enrichment steps
+     * key on numeric node IDs.
+     */
+    private static long[] parseNodeIds(Transaction tx) {
+        try {
+            return new long[] {
+                    Long.parseLong(tx.getSourceAccount()),
+                    Long.parseLong(tx.getTargetAccount())
+            };
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    "sourceAccount and targetAccount must be numeric node IDs. Got: "
+                    + tx.getSourceAccount() + " / " + tx.getTargetAccount(), e);
+        }
+    }
+
     /**
      * Safely converts any Number-compatible Object to double.
      * Handles Integer, Double, Long, Float without ClassCastException.
@@ -320,4 +624,8 @@ public class TransactionService {
         if (o instanceof Number n) return n.doubleValue();
         return 0.0;
     }
-}
\ No newline at end of file
+
+    private static List<String> copyOf(List<String> list) {
+        return list == null ? null : new ArrayList<>(list);
+    }
+}
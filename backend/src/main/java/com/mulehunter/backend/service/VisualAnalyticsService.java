@@ -1,5 +1,7 @@
 package com.mulehunter.backend.service;
 
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.metrics.PipelineMetrics;
 import com.mulehunter.backend.model.Transaction;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -13,19 +15,21 @@ import java.util.Map;
 public class VisualAnalyticsService {
 
     private final WebClient visualWebClient;
+    private final PipelineMetrics metrics;
 
     @Value("${visual.internal-api-key}")
     private String visualInternalApiKey;
 
     public VisualAnalyticsService(
-            @Value("${visual.analytics.url:http://localhost:8000}") String visualServiceUrl
+            @Value("${visual.analytics.url:http://localhost:8000}") String visualServiceUrl,
+            PipelineMetrics metrics,
+            DownstreamClientFactory clients
     ) {
 
         System.out.println("🔌 CONNECTING VISUALS TO: " + visualServiceUrl);
 
-        this.visualWebClient = WebClient.builder()
-                .baseUrl(visualServiceUrl)
-                .build();
+        this.visualWebClient = clients.create(DownstreamClientFactory.VISUAL, visualServiceUrl);
+        this.metrics = metrics;
     }
 
     public Mono<Void> triggerVisualMlPipeline(Transaction tx) {
@@ -42,9 +46,23 @@ public class VisualAnalyticsService {
             return Mono.empty();
         }
 
+        return reanalyzeNodes(tx.getId(), srcId, tgtId)
+                .onErrorResume(e -> {
+                System.err.println("⚠️ VISUAL SERVICE skipped: " + e.getMessage());
+                metrics.recordFallback(PipelineMetrics.VISUAL);
+                return Mono.empty();
+                });
+    }
+
+    /**
+     * Raw re-analysis call. Unlike {@link #triggerVisualMlPipeline} errors are
+     * propagated, so the enrichment queue can retry them.
+     */
+    public Mono<Void> reanalyzeNodes(String transactionId, long srcId, long tgtId) {
+
         Map<String, Object> payload = Map.of(
                 "trigger", "TRANSACTION_EVENT",
-                "transactionId", tx.getId(),
+                "transactionId", transactionId,
                 "nodes", List.of(
                         Map.of("nodeId", srcId, "role", "SOURCE"),
                         Map.of("nodeId", tgtId, "role", "TARGET")
@@ -57,10 +75,6 @@ public class VisualAnalyticsService {
                 .bodyValue(payload)
                 .retrieve()
                 .bodyToMono(Void.class)
-                .timeout(java.time.Duration.ofSeconds(3))
-                .onErrorResume(e -> {
-                System.err.println("⚠️ VISUAL SERVICE skipped: " + e.getMessage());
-                return Mono.empty();
-                });
-                }
-                }
\ No newline at end of file
+                .timeout(java.time.Duration.ofSeconds(3));
+    }
+}
@@ -0,0 +1,298 @@
+package com.mulehunter.backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Minimal CBOR (RFC 8949) codec for the backend ↔ model-service wire format.
+ *
+ * {@link #encode} writes the request payloads the services build —
+ * Map / Collection / Object[] / double[] / int[] / long[], String, Number,
+ * Boolean, null — as definite-length items; integers as major types 0/1,
+ * every other number as a float64 (so doubles round-trip bit-exact, with
+ * none of the text formatting JSON needs).
+ *
+ * {@link #decode} reads a full data item into a Jackson tree, so responses
+ * reach the same JsonParser-based readers as JSON bodies via
+ * {@code node.traverse(codec)}. It accepts everything cbor2 emits by
+ * default, plus half/single floats and indefinite-length items; tags are
+ * dropped except bignums (2/3).
+ */
+public final class Cbor {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private Cbor() {}
+
+    public static byte[] encode(Object value) {
+        Writer w = new Writer();
+        w.write(value);
+        return w.toByteArray();
+    }
+
+    public static JsonNode decode(byte[] bytes) {
+        Reader r = new Reader(bytes);
+        JsonNode node = r.item();
+        if (node == BREAK) throw new IllegalArgumentException("CBOR: unexpected break");
+        if (r.pos != bytes.length) {
+            throw new IllegalArgumentException("CBOR: " + (bytes.length - r.pos) + " trailing bytes");
+        }
+        return node;
+    }
+
+    // ── Encoder ───────────────────────────────────────────────────────────────
+
+    private static final class Writer {
+
+        private byte[] buf = new byte[256];
+        private int len;
+
+        void write(Object v) {
+            if (v == null)                     { put(0xf6); }
+            else if (v instanceof Boolean b)   { put(b ? 0xf5 : 0xf4); }
+            else if (v instanceof String s)    { text(s); }
+            else if (v instanceof Integer
+                    || v instanceof Long
+                    || v instanceof Short
+                    || v instanceof Byte)      { integer(((Number) v).longValue()); }
+            else if (v instanceof Number n)    { float64(n.doubleValue()); }
+            else if (v instanceof double[] a)  { head(4, a.length); for (double d : a) float64(d); }
+            else if (v instanceof int[] a)     { head(4, a.length); for (int i : a) integer(i); }
+            else if (v instanceof long[] a)    { head(4, a.length); for (long l : a) integer(l); }
+            else if (v instanceof Object[] a)  { head(4, a.length); for (Object o : a) write(o); }
+            else if (v instanceof Collection<?> c) {
+                head(4, c.size());
+                for (Object o : c) write(o);
+            }
+            else if (v instanceof Map<?, ?> m) {
+                head(5, m.size());
+                for (Map.Entry<?, ?> e : m.entrySet()) {
+                    text(String.valueOf(e.getKey()));
+                    write(e.getValue());
+                }
+            }
+            else throw new IllegalArgumentException("CBOR: cannot encode " + v.getClass().getName());
+        }
+
+        private void integer(long v) {
+            if (v >= 0) head(0, v);
+            else head(1, -1 - v);
+        }
+
+        private void float64(double d) {
+            ensure(9);
+            buf[len++] = (byte) 0xfb;
+            long bits = Double.doubleToLongBits(d);
+            for (int shift = 56; shift >= 0; shift -= 8) buf[len++] = (byte) (bits >>> shift);
+        }
+
+        private void text(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            head(3, utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buf, len, utf8.length);
+            len += utf8.length;
+        }
+
+        /** Major type plus argument, in the shortest form. */
+        private void head(int major, long arg) {
+            int mt = major << 5;
+            ensure(9);
+            if (arg < 24) {
+                buf[len++] = (byte) (mt | arg);
+            } else if (arg < 0x100) {
+                buf[len++] = (byte) (mt | 24);
+                buf[len++] = (byte) arg;
+            } else if (arg < 0x10000) {
+                buf[len++] = (byte) (mt | 25);
+                buf[len++] = (byte) (arg >>> 8);
+                buf[len++] = (byte) arg;
+            } else if (arg < 0x100000000L) {
+                buf[len++] = (byte) (mt | 26);
+                for (int shift = 24; shift >= 0; shift -= 8) buf[len++] = (byte) (arg >>> shift);
+            } else {
+                buf[len++] = (byte) (mt | 27);
+                for (int shift = 56; shift >= 0; shift -= 8) buf[len++] = (byte) (arg >>> shift);
+            }
+        }
+
+        private void put(int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        private void ensure(int n) {
+            if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+    }
+
+    // ── Decoder ───────────────────────────────────────────────────────────────
+
+    /** Sentinel for the 0xff "break" that closes an indefinite-length item. */
+    private static final JsonNode BREAK = NODES.missingNode();
+
+    private static final class Reader {
+
+        private final byte[] in;
+        private int pos;
+
+        Reader(byte[] in) {
+            this.in = in;
+        }
+
+        JsonNode item() {
+            int ib    = u8();
+            int major = ib >>> 5;
+            int info  = ib & 0x1f;
+
+            if (major == 7) return simple(info);
+            if (info == 31) return indefinite(major);
+
+            long arg = argument(info);
+            return switch (major) {
+                case 0 -> arg >= 0 ? number(arg) : NODES.numberNode(unsigned(arg));
+                case 1 -> arg >= 0 ? number(-1 - arg) : NODES.numberNode(unsigned(arg).not());
+                case 2 -> NODES.binaryNode(bytes(arg));
+                case 3 -> NODES.textNode(new String(bytes(arg), StandardCharsets.UTF_8));
+                case 4 -> {
+                    ArrayNode a = NODES.arrayNode(length(arg));
+                    for (long i = 0; i < arg; i++) a.add(value());
+                    yield a;
+                }
+                case 5 -> {
+                    ObjectNode o = NODES.objectNode();
+                    for (long i = 0; i < arg; i++) o.set(key(), value());
+                    yield o;
+                }
+                case 6 -> tagged(arg);
+                default -> throw new IllegalStateException("unreachable");
+            };
+        }
+
+        private JsonNode simple(int info) {
+            return switch (info) {
+                case 20 -> NODES.booleanNode(false);
+                case 21 -> NODES.booleanNode(true);
+                case 22, 23 -> NODES.nullNode();
+                case 25 -> NODES.numberNode(half((int) be(2)));
+                case 26 -> NODES.numberNode((double) Float.intBitsToFloat((int) be(4)));
+                case 27 -> NODES.numberNode(Double.longBitsToDouble(be(8)));
+                case 31 -> BREAK;
+                default -> throw new IllegalArgumentException("CBOR: unsupported simple value " + info);
+            };
+        }
+
+        private JsonNode indefinite(int major) {
+            switch (major) {
+                case 2, 3 -> {
+                    StringBuilder text = new StringBuilder();
+                    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                    for (JsonNode chunk; (chunk = item()) != BREAK; ) {
+                        if (major == 3) text.append(chunk.textValue());
+                        else raw.writeBytes(((BinaryNode) chunk).binaryValue());
+                    }
+                    return major == 3 ? NODES.textNode(text.toString()) : NODES.binaryNode(raw.toByteArray());
+                }
+                case 4 -> {
+                    ArrayNode a = NODES.arrayNode();
+                    for (JsonNode v; (v = item()) != BREAK; ) a.add(v);
+                    return a;
+                }
+                case 5 -> {
+                    ObjectNode o = NODES.objectNode();
+                    for (JsonNode k; (k = item()) != BREAK; ) o.set(k.asText(), value());
+                    return o;
+                }
+                default -> throw new IllegalArgumentException("CBOR: indefinite length on major type " + major);
+            }
+        }
+
+        private JsonNode tagged(long tag) {
+            JsonNode content = value();
+            if ((tag == 2 || tag == 3) && content instanceof BinaryNode b) {
+                BigInteger n = new BigInteger(1, b.binaryValue());
+                return NODES.numberNode(tag == 2 ? n : n.not());
+            }
+            return content;
+        }
+
+        private JsonNode value() {
+            JsonNode v = item();
+            if (v == BREAK) throw new IllegalArgumentException("CBOR: unexpected break");
+            return v;
+        }
+
+        private String key() {
+            return value().asText();
+        }
+
+        private long argument(int info) {
+            if (info < 24) return info;
+            return switch (info) {
+                case 24 -> be(1);
+                case 25 -> be(2);
+                case 26 -> be(4);
+                case 27 -> be(8);
+                default -> throw new IllegalArgumentException("CBOR: reserved additional info " + info);
+            };
+        }
+
+        private byte[] bytes(long n) {
+            int len = length(n);
+            if (len > in.length - pos) throw new IllegalArgumentException("CBOR: truncated input");
+            byte[] out = Arrays.copyOfRange(in, pos, pos + len);
+            pos += len;
+            return out;
+        }
+
+        private int length(long n) {
+            if (n < 0 || n > in.length - pos) throw new IllegalArgumentException("CBOR: length " + n + " exceeds input");
+            return (int) n;
+        }
+
+        private long be(int n) {
+            if (n > in.length - pos) throw new IllegalArgumentException("CBOR: truncated input");
+            long v = 0;
+            for (int i = 0; i < n; i++) v = (v << 8) | (in[pos++] & 0xff);
+            return v;
+        }
+
+        private int u8() {
+            if (pos >= in.length) throw new IllegalArgumentException("CBOR: truncated input");
+            return in[pos++] & 0xff;
+        }
+
+        private static JsonNode number(long v) {
+            return v == (int) v ? NODES.numberNode((int) v) : NODES.numberNode(v);
+        }
+
+        /** IEEE 754 binary16, as in RFC 8949 appendix D. */
+        private static double half(int h) {
+            int exp  = (h >>> 10) & 0x1f;
+            int mant = h & 0x3ff;
+            double v = exp == 0  ? Math.scalb((double) mant, -24)
+                     : exp != 31 ? Math.scalb((double) (mant + 1024), exp - 25)
+                     : mant == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+            return (h & 0x8000) != 0 ? -v : v;
+        }
+
+        /** A uint64 argument above Long.MAX_VALUE, read back as unsigned. */
+        private static BigInteger unsigned(long v) {
+            return new BigInteger(Long.toUnsignedString(v));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.mulehunter.backend.util;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Circuit breaker plus concurrency bulkhead for one downstream.
+ *
+ * CLOSED: calls pass while fewer than maxConcurrent are in flight; outcomes
+ * go into a sliding window of the last windowSize calls. Once at least
+ * minCalls are buffered and the failure rate reaches failureRateThreshold
+ * the breaker OPENs.
+ *
+ * OPEN: every call is rejected with {@link RejectedException} before it is
+ * subscribed — no connection is acquired — until openDuration has passed.
+ *
+ * HALF_OPEN: up to halfOpenProbes calls are let through. One failure
+ * re-opens the breaker; halfOpenProbes successes close it with an empty
+ * window.
+ *
+ * Errors for which isFailure is false (e.g. 4xx) count as successes;
+ * cancelled calls only release their permit.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Fast-fail signal; callers map it onto their normal fallback. */
+    public static final class RejectedException extends RuntimeException {
+        RejectedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    public record Snapshot(State state, double failureRate, int bufferedCalls, int inFlight,
+                           long rejectedOpen, long rejectedFull) {}
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final int maxConcurrent;
+    private final Predicate<Throwable> isFailure;
+
+    // ── Guarded by this ───────────────────────────────────────────────────────
+    private State state = State.CLOSED;
+    private final boolean[] window;        // true = failure
+    private int windowPos, windowCount, windowFailures;
+    private long openedAt;
+    private long generation;               // bumped on every transition
+    private int probesInFlight, probeSuccesses;
+    private int inFlight;
+
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenProbes, int maxConcurrent,
+                          Predicate<Throwable> isFailure) {
+        this.name                 = name;
+        this.window               = new boolean[Math.max(1, windowSize)];
+        this.minCalls             = Math.max(1, Math.min(minCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos            = openDuration.toNanos();
+        this.halfOpenProbes       = Math.max(1, halfOpenProbes);
+        this.maxConcurrent        = Math.max(1, maxConcurrent);
+        this.isFailure            = isFailure;
+    }
+
+    /** Runs call under the breaker, or fails fast with {@link RejectedException}. */
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            Permit permit = acquire();
+            if (permit == REJECT_OPEN) {
+                rejectedOpen.increment();
+                return Mono.error(new RejectedException(name + " circuit open"));
+            }
+            if (permit == REJECT_FULL) {
+                rejectedFull.increment();
+                return Mono.error(new RejectedException(name + " bulkhead full (" + maxConcurrent + " in flight)"));
+            }
+            Throwable[] error = new Throwable[1];
+            return call
+                    .doOnError(e -> error[0] = e)
+                    .doFinally(signal -> release(permit, signal == SignalType.CANCEL ? null
+                            : !(signal == SignalType.ON_ERROR && isFailure.test(error[0]))));
+        });
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(state,
+                windowCount == 0 ? 0.0 : (double) windowFailures / windowCount,
+                windowCount, inFlight, rejectedOpen.sum(), rejectedFull.sum());
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    /** An admitted call; generation ties its outcome to the state it was admitted in. */
+    private record Permit(boolean probe, long generation) {}
+
+    private static final Permit REJECT_OPEN = new Permit(false, -1);
+    private static final Permit REJECT_FULL = new Permit(false, -1);
+
+    private synchronized Permit acquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) return REJECT_OPEN;
+            transition(State.HALF_OPEN);
+        }
+        boolean probe = state == State.HALF_OPEN;
+        if (probe && probesInFlight >= halfOpenProbes) return REJECT_OPEN;
+        if (inFlight >= maxConcurrent) return REJECT_FULL;
+
+        inFlight++;
+        if (probe) probesInFlight++;
+        return new Permit(probe, generation);
+    }
+
+    /** success == null → cancelled, outcome unknown. */
+    private synchronized void release(Permit permit, Boolean success) {
+        inFlight--;
+        if (permit.probe()) probesInFlight--;
+
+        // Outcomes of calls admitted before the last transition are stale
+        if (permit.generation() != generation || success == null) return;
+
+        if (permit.probe()) {
+            if (!success) {
+                transition(State.OPEN);
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowPos]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowPos] = !success;
+        if (!success) windowFailures++;
+        windowPos = (windowPos + 1) % window.length;
+
+        if (windowCount >= minCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State next) {
+        System.out.printf("🧯 BREAKER %s %s → %s%n", name, state, next);
+        state = next;
+        generation++;
+        switch (next) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> probeSuccesses = 0;
+            case CLOSED -> {
+                windowPos = 0;
+                windowCount = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.mulehunter.backend.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process Extended Isolation Forest, loaded from the eif_forest.json
+ * artefact written by visual-analytics/eif_v_2/train/export_eif_forest.py.
+ *
+ * All trees live in one set of parallel arrays indexed by global node id —
+ * children, k sparse normal coefficients, intercept n·p, and the leaf path
+ * constant depth + c(size) — so a traversal touches only primitive arrays.
+ * x goes left at a node when x·n &lt; n·p.
+ *
+ * {@link #score} reproduces the service's pipeline: expand 8 raw features to
+ * 14, standard-scale, average leaf path length E, anomaly score
+ * s = 2^(-E / c(sample_size)), then sigmoid(k · (s − threshold)).
+ * {@link #explain} adds the service's top-3 factors (change in s when a
+ * scaled feature is zeroed) and explanation text.
+ *
+ * Immutable and thread-safe.
+ */
+public final class EifModel {
+
+    public static final int RAW_DIM      = 8;
+    public static final int EXPANDED_DIM = 14;
+
+    // Truncated the way eif and export_eif_forest.py truncate it.
+    private static final double EULER_GAMMA = 0.5772156649;
+
+    /** Score plus the service's explanation fields. */
+    public record Result(double score, double confidence, String explanation, Map<String, Double> topFactors) {}
+
+    private final String version;
+    private final int dim;
+    private final int k;
+    private final double cNorm;
+    private final double threshold;
+    private final double sigmoidK;
+    private final double[] mean;
+    private final double[] scale;
+    private final String[] features;
+    private final Map<String, String> explanations;
+
+    private final int[] roots;
+    private final int[] left;
+    private final int[] right;
+    private final int[] coefIdx;
+    private final double[] coef;
+    private final double[] intercept;
+    private final double[] path;
+
+    private EifModel(JsonNode json) {
+        if (!"eif-forest/1".equals(json.path("format").asText())) {
+            throw new IllegalArgumentException("unsupported EIF artefact format: " + json.path("format").asText());
+        }
+        if (json.path("rawDim").asInt() != RAW_DIM) {
+            throw new IllegalArgumentException("EIF artefact rawDim " + json.path("rawDim").asInt() + " != " + RAW_DIM);
+        }
+        this.version   = json.path("version").asText("unknown");
+        this.dim       = json.path("dim").asInt();
+        this.k         = json.path("k").asInt();
+        this.cNorm     = json.path("cNorm").asDouble();
+        this.threshold = json.path("threshold").asDouble();
+        this.sigmoidK  = json.path("sigmoidK").asDouble();
+        this.mean      = doubles(json.path("scalerMean"));
+        this.scale     = doubles(json.path("scalerScale"));
+        if (dim != EXPANDED_DIM || mean.length != dim || scale.length != dim) {
+            throw new IllegalArgumentException("EIF artefact dim/scaler mismatch: dim=" + dim);
+        }
+        if (json.has("sampleSize") && Math.abs(cNorm - c(json.path("sampleSize").asInt())) > 1e-9) {
+            throw new IllegalArgumentException("EIF artefact cNorm " + cNorm
+                    + " != c(" + json.path("sampleSize").asInt() + ")");
+        }
+
+        this.features = new String[dim];
+        for (int i = 0; i < dim; i++) features[i] = json.path("features").path(i).asText("f" + i);
+        this.explanations = new HashMap<>();
+        json.path("explanations").fields().forEachRemaining(e -> explanations.put(e.getKey(), e.getValue().asText()));
+
+        JsonNode trees = json.path("trees");
+        int nodes = 0;
+        for (JsonNode t : trees) nodes += t.path("left").size();
+
+        this.roots     = new int[trees.size()];
+        this.left      = new int[nodes];
+        this.right     = new int[nodes];
+        this.coefIdx   = new int[nodes * k];
+        this.coef      = new double[nodes * k];
+        this.intercept = new double[nodes];
+        this.path      = new double[nodes];
+
+        int base = 0;
+        for (int t = 0; t < roots.length; t++) {
+            JsonNode tree = trees.get(t);
+            int n = tree.path("left").size();
+            roots[t] = base;
+            for (int i = 0; i < n; i++) {
+                int l = tree.path("left").get(i).asInt();
+                int r = tree.path("right").get(i).asInt();
+                left[base + i]      = l < 0 ? -1 : base + l;
+                right[base + i]     = r < 0 ? -1 : base + r;
+                intercept[base + i] = tree.path("intercepts").get(i).asDouble();
+                path[base + i]      = tree.path("paths").get(i).asDouble();
+                for (int j = 0; j < k; j++) {
+                    int f = tree.path("coefIdx").get(i * k + j).asInt();
+                    if (f < 0 || f >= dim) throw new IllegalArgumentException("EIF feature index out of range: " + f);
+                    coefIdx[(base + i) * k + j] = f;
+                    coef[(base + i) * k + j]    = tree.path("coef").get(i * k + j).asDouble();
+                }
+            }
+            base += n;
+        }
+        if (roots.length == 0) throw new IllegalArgumentException("EIF artefact has no trees");
+    }
+
+    /**
+     * Parses the artefact and re-scores its golden rows; a model that would
+     * disagree with the exporter beyond 1e-9 is rejected.
+     */
+    public static EifModel parse(JsonNode json) {
+        EifModel model = new EifModel(json);
+        for (JsonNode check : json.path("checks")) {
+            double[] raw = doubles(check.path("features"));
+            double expected = check.path("score").asDouble();
+            double actual = model.score(raw);
+            if (Math.abs(actual - expected) > 1e-9) {
+                throw new IllegalArgumentException("EIF artefact check failed: expected "
+                        + expected + ", scored " + actual + " for " + Arrays.toString(raw));
+            }
+        }
+        return model;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    public int trees() {
+        return roots.length;
+    }
+
+    public int nodes() {
+        return left.length;
+    }
+
+    /**
+     * c(n): average path length of an unsuccessful search in a binary search
+     * tree of n points, 2(ln(n − 1) + γ) − 2(n − 1)/n, and 0 for n ≤ 1.
+     */
+    public static double c(int n) {
+        if (n <= 1) return 0.0;
+        return 2.0 * (Math.log(n - 1) + EULER_GAMMA) - (2.0 * (n - 1.0) / n);
+    }
+
+    /** Calibrated fraud score in [0, 1] for one 8-feature row. */
+    public double score(double[] raw) {
+        return calibrate(anomaly(scaled(raw, 0)));
+    }
+
+    /** Scores rows.length / RAW_DIM row-major rows. */
+    public double[] scoreRows(double[] rows) {
+        double[] out = new double[rows.length / RAW_DIM];
+        for (int r = 0; r < out.length; r++) out[r] = calibrate(anomaly(scaled(rows, r * RAW_DIM)));
+        return out;
+    }
+
+    /** Score, confidence and the top-3 zeroed-feature impacts, as the service reports them. */
+    public Result explain(double[] raw) {
+        double[] x = scaled(raw, 0);
+        double base = anomaly(x);
+
+        double[] impacts = new double[dim];
+        for (int i = 0; i < dim; i++) {
+            double saved = x[i];
+            x[i] = 0.0;
+            impacts[i] = anomaly(x) - base;
+            x[i] = saved;
+        }
+
+        Integer[] order = new Integer[dim];
+        for (int i = 0; i < dim; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(Math.abs(impacts[b]), Math.abs(impacts[a])));
+
+        Map<String, Double> top = new LinkedHashMap<>();
+        StringBuilder reasons = new StringBuilder();
+        for (int i = 0; i < Math.min(3, dim); i++) {
+            String name = features[order[i]];
+            top.put(name, impacts[order[i]]);
+            String text = explanations.get(name);
+            if (text != null) reasons.append(reasons.length() == 0 ? "" : ", ").append(text);
+        }
+
+        double score = calibrate(base);
+        return new Result(score,
+                Math.round(Math.abs(score - 0.5) * 2 * 1000) / 1000.0,
+                reasons.length() == 0 ? "No strong anomaly signals detected." : reasons + ".",
+                top);
+    }
+
+    /** Uncalibrated anomaly score s = 2^(-E / c(sample_size)) for one 8-feature row. */
+    double anomalyScore(double[] raw) {
+        return anomaly(scaled(raw, 0));
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private double[] scaled(double[] raw, int off) {
+        double velocity  = raw[off],     burst     = raw[off + 1], neighbors = raw[off + 2];
+        double ip        = raw[off + 3], ja3       = raw[off + 4], commFraud = raw[off + 5];
+        double ring      = raw[off + 6], netRisk   = raw[off + 7];
+
+        double[] x = {
+                velocity, burst, neighbors,
+                ip, ja3,
+                commFraud, ring, netRisk,
+                commFraud * ring, commFraud * burst, commFraud * velocity,
+                neighbors * commFraud, ip * commFraud, velocity * burst,
+        };
+        for (int i = 0; i < x.length; i++) x[i] = (x[i] - mean[i]) / scale[i];
+        return x;
+    }
+
+    private double anomaly(double[] x) {
+        double total = 0.0;
+        for (int root : roots) {
+            int n = root;
+            while (left[n] >= 0) {
+                double dot = 0.0;
+                for (int j = n * k, end = j + k; j < end; j++) dot += coef[j] * x[coefIdx[j]];
+                n = dot < intercept[n] ? left[n] : right[n];
+            }
+            total += path[n];
+        }
+        return Math.pow(2.0, -(total / roots.length) / cNorm);
+    }
+
+    private double calibrate(double s) {
+        return 1.0 / (1.0 + Math.exp(-sigmoidK * (s - threshold)));
+    }
+
+    private static double[] doubles(JsonNode array) {
+        double[] out = new double[array.size()];
+        for (int i = 0; i < out.length; i++) out[i] = array.get(i).asDouble();
+        return out;
+    }
+}
@@ -0,0 +1,139 @@
+package com.mulehunter.backend.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for idempotent calls.
+ *
+ * {@link #hedge} subscribes the call once and, if it has not answered
+ * within the current hedge delay, subscribes it a second time; whichever
+ * returns a value first is used and the other is cancelled. An error from one
+ * attempt does not cancel the other, so a hedge that fails fast (pool
+ * rejection, connection reset, full batch queue) cannot fail a healthy
+ * primary; the call only fails when both attempts do (or the primary fails
+ * and no hedge is sent), with the primary's error.
+ *
+ * The delay is the given percentile of the last WINDOW primary latencies
+ * (failed primaries are not sampled, so fast errors cannot pull it down),
+ * recomputed every RECOMPUTE_EVERY calls and never below minDelay. No hedge
+ * is sent until WINDOW / 4 samples exist. Extra load is capped by a token
+ * bucket: every primary call adds budget tokens (e.g. 0.05 = at most 5 %
+ * extra calls), a hedge spends one, and at most BURST tokens are saved up
+ * so a quiet period cannot fund a hedge storm.
+ *
+ * Exports &lt;name&gt;.hedge.sent, &lt;name&gt;.hedge.won (the hedge answered
+ * first) and &lt;name&gt;.hedge.delay (ms).
+ */
+public final class Hedger {
+
+    private static final int    WINDOW          = 1024;
+    private static final int    RECOMPUTE_EVERY = 64;
+    private static final double BURST           = 10.0;
+
+    private record Tagged<T>(T value, boolean hedge) {}
+
+    private final double percentile;
+    private final double budget;
+    private final long minDelayNanos;
+
+    // ── Guarded by this ───────────────────────────────────────────────────────
+    private final long[] latencies = new long[WINDOW];
+    private long samples;
+    private double tokens;
+
+    private volatile long delayNanos = Long.MAX_VALUE;
+
+    private final Counter sent;
+    private final Counter won;
+
+    public Hedger(String name, double percentile, double budget, Duration minDelay, MeterRegistry meterRegistry) {
+        this.percentile    = Math.min(0.999, Math.max(0.5, percentile));
+        this.budget        = Math.max(0.0, budget);
+        this.minDelayNanos = minDelay.toNanos();
+
+        this.sent = Counter.builder(name + ".hedge.sent")
+                .description("Duplicate requests sent after the hedge delay")
+                .register(meterRegistry);
+        this.won = Counter.builder(name + ".hedge.won")
+                .description("Hedged requests that answered before the original")
+                .register(meterRegistry);
+        Gauge.builder(name + ".hedge.delay", this,
+                        h -> h.delayNanos == Long.MAX_VALUE ? Double.NaN : h.delayNanos / 1e6)
+                .description("Current hedge delay (rolling percentile of primary latency), ms")
+                .register(meterRegistry);
+    }
+
+    /** call must build a fresh, idempotent request on every invocation. */
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            deposit();
+            long start = System.nanoTime();
+            long delay = delayNanos;
+
+            Throwable[] primaryError = new Throwable[1];
+
+            Mono<Tagged<T>> primary = call.get()
+                    .doOnError(e -> primaryError[0] = e)
+                    .doFinally(signal -> {
+                        if (signal != SignalType.ON_ERROR) record(System.nanoTime() - start);
+                    })
+                    .map(v -> new Tagged<>(v, false));
+            if (delay == Long.MAX_VALUE) {
+                return primary.map(Tagged::value);
+            }
+
+            Mono<Tagged<T>> backup = Mono.delay(Duration.ofNanos(delay))
+                    .flatMap(t -> {
+                        if (!withdraw()) return Mono.empty();
+                        sent.increment();
+                        return call.get().map(v -> new Tagged<>(v, true));
+                    });
+
+            // firstWithValue fails with NoSuchElementException once neither
+            // attempt produced a value; surface the primary's own error (or
+            // its empty completion) so callers' fallbacks see what they did
+            // before hedging.
+            return Mono.firstWithValue(primary, backup)
+                    .onErrorResume(NoSuchElementException.class, e -> primaryError[0] != null
+                            ? Mono.error(primaryError[0]) : Mono.empty())
+                    .doOnNext(t -> {
+                        if (t.hedge()) won.increment();
+                    })
+                    .map(Tagged::value);
+        });
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private synchronized void deposit() {
+        tokens = Math.min(BURST, tokens + budget);
+    }
+
+    private synchronized boolean withdraw() {
+        if (tokens < 1.0) return false;
+        tokens -= 1.0;
+        return true;
+    }
+
+    // A cancelled primary (the hedge won) is recorded with its elapsed time,
+    // a lower bound that keeps slow calls from dropping out of the window.
+    // Failed primaries are not recorded at all.
+    private synchronized void record(long nanos) {
+        latencies[(int) (samples++ % WINDOW)] = nanos;
+        if (samples >= WINDOW / 4 && samples % RECOMPUTE_EVERY == 0) {
+            int n = (int) Math.min(samples, WINDOW);
+            long[] sorted = Arrays.copyOf(latencies, n);
+            Arrays.sort(sorted);
+            delayNanos = Math.max(minDelayNanos, sorted[(int) Math.min(n - 1, Math.floor(percentile * n))]);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.mulehunter.backend.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent single-item calls into batch calls.
+ *
+ * {@link #submit} queues an item; a batch is handed to the sender as soon as
+ * maxSize items are waiting or the oldest has waited maxWait, with at most
+ * maxInFlight batches outstanding. The sender's i-th result completes the
+ * i-th caller; a failed batch (or a missing result) fails every caller it
+ * covers. Per-item failures inside a successful batch are the caller's to
+ * decode from its result.
+ *
+ * Exports &lt;name&gt;.batch.size and &lt;name&gt;.batch.calls.
+ */
+public final class MicroBatcher<T, R> {
+
+    private record Pending<T, R>(T item, Sinks.One<R> result) {}
+
+    private final Function<List<T>, Mono<List<R>>> sender;
+    private final Sinks.Many<Pending<T, R>> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private final Disposable pipeline;
+
+    private final DistributionSummary batchSize;
+    private final Counter batches;
+
+    public MicroBatcher(String name, int maxSize, Duration maxWait, int maxInFlight,
+                        Function<List<T>, Mono<List<R>>> sender, MeterRegistry meterRegistry) {
+        this.sender = sender;
+
+        this.batchSize = DistributionSummary.builder(name + ".batch.size")
+                .description("Items per batch call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.batches = Counter.builder(name + ".batch.calls")
+                .description("Batch calls sent")
+                .register(meterRegistry);
+
+        this.pipeline = queue.asFlux()
+                .bufferTimeout(Math.max(1, maxSize), maxWait, true)
+                .flatMap(this::send, Math.max(1, maxInFlight))
+                .subscribe();
+    }
+
+    /** Queues one item and emits its result. */
+    public Mono<R> submit(T item) {
+        return Mono.defer(() -> {
+            Sinks.One<R> result = Sinks.one();
+            synchronized (queue) {
+                Sinks.EmitResult emitted = queue.tryEmitNext(new Pending<>(item, result));
+                if (emitted.isFailure()) {
+                    return Mono.error(new IllegalStateException("batch queue rejected item: " + emitted));
+                }
+            }
+            return result.asMono();
+        });
+    }
+
+    public void shutdown() {
+        synchronized (queue) {
+            queue.tryEmitComplete();
+        }
+        pipeline.dispose();
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private Mono<Void> send(List<Pending<T, R>> batch) {
+
+        List<T> items = new ArrayList<>(batch.size());
+        for (Pending<T, R> p : batch) items.add(p.item());
+
+        batchSize.record(batch.size());
+        batches.increment();
+
+        return Mono.defer(() -> sender.apply(items))
+                .doOnNext(results -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        R r = i < results.size() ? results.get(i) : null;
+                        if (r == null) {
+                            batch.get(i).result().tryEmitError(
+                                    new IllegalStateException("batch returned no result for item " + i));
+                        } else {
+                            batch.get(i).result().tryEmitValue(r);
+                        }
+                    }
+                })
+                .doOnError(e -> batch.forEach(p -> p.result().tryEmitError(e)))
+                // Callers that got nothing (empty response) must not hang
+                .doFinally(signal -> batch.forEach(p -> p.result().tryEmitEmpty()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
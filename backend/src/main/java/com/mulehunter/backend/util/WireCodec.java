@@ -0,0 +1,102 @@
+package com.mulehunter.backend.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Negotiated request/response encoding for one downstream: CBOR when
+ * preferred and the service accepts it, JSON otherwise.
+ *
+ * With CBOR preferred, requests go out as application/cbor with
+ * Accept: application/cbor, application/json, and each response is read
+ * according to its own Content-Type — a service that still answers JSON
+ * keeps working. A 415 means the service cannot read CBOR (e.g. cbor2 not
+ * installed there): the codec switches this downstream to JSON for the rest
+ * of the process and resends the request as JSON.
+ *
+ * Either way the body reaches the caller's {@link BodyReader} as a
+ * JsonParser bound to the application ObjectMapper, so readers are written
+ * once against the streaming API.
+ */
+public final class WireCodec {
+
+    /** Reads one response body; the parser is closed by the codec. */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+        T read(JsonParser p) throws IOException;
+    }
+
+    private final String name;
+    private final ObjectMapper mapper;
+    private volatile boolean cbor;
+
+    public WireCodec(String name, boolean preferCbor, ObjectMapper mapper) {
+        this.name   = name;
+        this.cbor   = preferCbor;
+        this.mapper = mapper;
+    }
+
+    /** True while requests are sent as CBOR. */
+    public boolean isCbor() {
+        return cbor;
+    }
+
+    /** POSTs payload (maps, lists, primitives, double[]) and reads the response. */
+    public <T> Mono<T> post(WebClient client, String uri, Object payload, BodyReader<T> reader) {
+        if (!cbor) return postJson(client, uri, payload, reader);
+
+        return Mono.defer(() -> client.post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON)
+                .bodyValue(Cbor.encode(payload))
+                .exchangeToMono(res -> {
+                    if (res.statusCode().value() == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value()) {
+                        downgrade();
+                        return res.releaseBody().then(postJson(client, uri, payload, reader));
+                    }
+                    if (res.statusCode().isError()) {
+                        return res.createException().flatMap(Mono::error);
+                    }
+                    boolean cborBody = res.headers().contentType()
+                            .map(MediaType.APPLICATION_CBOR::isCompatibleWith)
+                            .orElse(false);
+                    return res.bodyToMono(byte[].class).map(body -> read(body, cborBody, reader));
+                }));
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private <T> Mono<T> postJson(WebClient client, String uri, Object payload, BodyReader<T> reader) {
+        return client.post()
+                .uri(uri)
+                .bodyValue(payload)
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .map(body -> read(body, false, reader));
+    }
+
+    private <T> T read(byte[] body, boolean cborBody, BodyReader<T> reader) {
+        try (JsonParser p = cborBody
+                ? Cbor.decode(body).traverse(mapper)
+                : mapper.getFactory().createParser(body)) {
+            return reader.read(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void downgrade() {
+        if (cbor) {
+            cbor = false;
+            System.err.println("⚠️ WIRE " + name + " → service rejected application/cbor (415), falling back to JSON");
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.mulehunter.backend.model;
+
+import com.mulehunter.sketch.HyperLogLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * The in-memory ring buffers: sliding 24h / 7d windows, bucket recycling,
+ * late contributions and the per-day counterparty sketch slots.
+ */
+class AccountAggregateTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-02T10:15:00Z");
+    private static final long    H0 = AccountAggregate.epochHour(T0);
+    private static final long    D0 = AccountAggregate.epochDay(T0);
+
+    @Test
+    void hourlyWindowSlidesBucketByBucket() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        agg.addToHour(H0,      10.0, 1.0, 1);
+        agg.addToHour(H0 + 12, 20.0, 2.0, 2);
+        agg.addToHour(H0 + 23, 30.0, 3.0, 3);
+
+        Instant last = hours(23);
+        assertEquals(60.0, agg.outLast24h(last), 1e-9);
+        assertEquals(6.0,  agg.inLast24h(last), 1e-9);
+        assertEquals(6,    agg.countLast24h(last));
+
+        // One hour later the first bucket is out of (current - 24, current].
+        assertEquals(50.0, agg.outLast24h(hours(24)), 1e-9);
+        assertEquals(5,    agg.countLast24h(hours(24)));
+        assertEquals(0,    agg.countLast24h(hours(47)));
+    }
+
+    @Test
+    void bucketsAheadOfTheReadAreNotCounted() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        agg.addToHour(H0,     1.0, 0.0, 1);
+        agg.addToHour(H0 + 5, 1.0, 0.0, 1);
+
+        assertEquals(1, agg.countLast24h(T0));
+        assertEquals(2, agg.countLast24h(hours(5)));
+    }
+
+    @Test
+    void aWrappedBucketIsOverwrittenNotAddedTo() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        agg.addToHour(H0, 10.0, 0.0, 4);
+        agg.addToHour(H0, 5.0,  0.0, 1);
+        assertEquals(5, agg.countLast24h(T0));
+
+        // Same index 24 hours on: the old period is replaced.
+        agg.addToHour(H0 + 24, 7.0, 0.0, 1);
+        assertEquals(7.0, agg.outLast24h(hours(24)), 1e-9);
+        assertEquals(1,   agg.countLast24h(hours(24)));
+    }
+
+    @Test
+    void aLateContributionForAnOlderPeriodIsDropped() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        agg.addToHour(H0 + 24, 7.0, 0.0, 1);
+        agg.addToDay(D0 + 7,   7.0, 0.0, 1);
+
+        agg.addToHour(H0, 100.0, 0.0, 9);
+        agg.addToDay(D0,  100.0, 0.0, 9);
+
+        assertEquals(H0 + 24, agg.getHourStamps()[(int) Math.floorMod(H0, (long) AccountAggregate.HOURS)]);
+        assertEquals(7.0, agg.outLast24h(hours(24)), 1e-9);
+        assertEquals(1,   agg.countLast24h(hours(24)));
+        assertEquals(7.0, agg.outLast7d(days(7)), 1e-9);
+        assertEquals(1,   agg.countLast7d(days(7)));
+    }
+
+    @Test
+    void dailyWindowCoversSevenDays() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        for (int d = 0; d < 7; d++) agg.addToDay(D0 + d, 1.0, 2.0, 1);
+
+        assertEquals(7.0,  agg.outLast7d(days(6)), 1e-9);
+        assertEquals(14.0, agg.inLast7d(days(6)), 1e-9);
+        assertEquals(7,    agg.countLast7d(days(6)));
+        assertEquals(6,    agg.countLast7d(days(7)));
+        assertEquals(1,    agg.countLast7d(days(12)));
+    }
+
+    @Test
+    void refreshSnapshotsMatchesTheWindows() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        agg.addToHour(H0, 3.0, 4.0, 2);
+        agg.addToDay(D0,  3.0, 4.0, 2);
+        agg.offerCounterparty("B", T0);
+        agg.offerCounterparty("C", T0);
+
+        agg.refreshSnapshots(T0);
+        assertEquals(3.0, agg.getTotalOut24h(), 1e-9);
+        assertEquals(4.0, agg.getTotalIn24h(), 1e-9);
+        assertEquals(2,   agg.getTxnCount24h());
+        assertEquals(3.0, agg.getTotalOut7d(), 1e-9);
+        assertEquals(2,   agg.getTxnCount7d());
+        assertEquals(2,   agg.getUniqueCounterparties7d());
+    }
+
+    @Test
+    void legacyDocumentsWithoutArraysReadAsEmpty() {
+        AccountAggregate agg = new AccountAggregate();
+        agg.setHourStamps(null);
+        agg.setDailyCount(new int[3]);
+
+        assertEquals(0, agg.countLast24h(T0));
+        assertEquals(0, agg.countLast7d(T0));
+        agg.addToDay(D0, 1.0, 0.0, 1);
+        assertEquals(1, agg.countLast7d(T0));
+    }
+
+    // ── Counterparty sketch ───────────────────────────────────────────────────
+
+    @Test
+    void counterpartiesAreDistinctAcrossTheLiveDaySlots() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        for (int d = 0; d < 3; d++) {
+            for (int i = 0; i < 50; i++) agg.offerCounterparty("cp-" + i, days(d));
+        }
+        for (int i = 50; i < 80; i++) agg.offerCounterparty("cp-" + i, days(3));
+
+        // Linear counting at this size is within a couple of the true count.
+        assertEquals(80, agg.counterpartiesLast7d(days(3)), 2);
+        // Days 0-2 expire; only day 3's 30 remain.
+        assertEquals(30, agg.counterpartiesLast7d(days(9)), 2);
+        assertEquals(0,  agg.counterpartiesLast7d(days(10)));
+    }
+
+    @Test
+    void aRecycledSlotForgetsItsOldDay() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        for (int i = 0; i < 40; i++) agg.offerCounterparty("old-" + i, T0);
+        agg.offerCounterparty("new", days(7));
+
+        assertEquals(1, agg.counterpartiesLast7d(days(7)));
+    }
+
+    @Test
+    void aMergeForADayTheSlotHasPassedIsIgnored() {
+        AccountAggregate agg = AccountAggregate.newFor("A");
+        agg.offerCounterparty("new", days(7));
+
+        byte[] late = new byte[HyperLogLog.M];
+        HyperLogLog.offer(late, 0, HyperLogLog.hash("late"));
+        assertFalse(agg.mergeCounterparties(D0, late));
+        assertEquals(1, agg.counterpartiesLast7d(days(7)));
+    }
+
+    private static Instant hours(int h) { return T0.plus(Duration.ofHours(h)); }
+    private static Instant days(int d)  { return T0.plus(Duration.ofDays(d)); }
+}
@@ -0,0 +1,66 @@
+package com.mulehunter.backend.service;
+
+import com.mulehunter.backend.model.AccountAggregate;
+import com.mulehunter.backend.repository.AccountAggregateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * AccountAggregateCache against an in-memory "Mongo" document: a flush that
+ * starts while an entry is being loaded must not be lost from the view.
+ */
+class AccountAggregateCacheTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void reloadsWhenAFlushStartsDuringTheLoad() {
+        Instant now = Instant.now();
+        AtomicReference<AccountAggregate> stored = new AtomicReference<>(AccountAggregate.newFor("A"));
+
+        AccountAggregateWriter writer = new AccountAggregateWriter(null) {
+            @Override
+            Mono<AccountAggregate> apply(String accountId, AggregateDelta delta) {
+                return Mono.fromCallable(() -> {
+                    AccountAggregate next = stored.get().snapshot();
+                    delta.applyTo(next);
+                    stored.set(next);
+                    return next;
+                });
+            }
+        };
+
+        AccountAggregateRepository repo = mock(AccountAggregateRepository.class);
+        // Zero reload-after: every apply loads, so the second one races.
+        AccountAggregateCache cache = new AccountAggregateCache(
+                writer, repo, new SimpleMeterRegistry(), 100, 0, 1000, 1, 1000);
+
+        AtomicInteger loads = new AtomicInteger();
+        when(repo.findByAccountId("A")).thenAnswer(inv -> Mono.fromCallable(() -> {
+            AccountAggregate read = stored.get().snapshot();
+            // Second load: the periodic flush takes the pending delta and
+            // lands it after the document was read.
+            if (loads.incrementAndGet() == 2) cache.flushPending();
+            return read;
+        }));
+
+        cache.apply("A", AggregateDelta.of(now, 10.0, true, null, null, null, "B")).block(TIMEOUT);
+        AccountAggregate view = cache.apply("A", AggregateDelta.of(now, 5.0, true, null, null, null, "C"))
+                .block(TIMEOUT);
+
+        assertEquals(3, loads.get());
+        assertEquals(2, view.countLast24h(now));
+        assertEquals(15.0, view.outLast24h(now), 1e-9);
+        assertEquals(1, stored.get().countLast24h(now));
+    }
+}
@@ -0,0 +1,135 @@
+package com.mulehunter.backend.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.mulehunter.backend.model.AccountAggregate;
+import com.mulehunter.sketch.HyperLogLog;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The counterparty sketch path of AccountAggregateWriter against a mocked
+ * template: slots are written back only when a register grows, conditioned
+ * on what was read, and a lost race re-reads the slot and merges again.
+ */
+class AccountAggregateWriterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final Instant  NOW     = Instant.parse("2026-03-02T10:15:00Z");
+    private static final long     DAY     = AccountAggregate.epochDay(NOW);
+    private static final int      SLOT    = (int) Math.floorMod(DAY, (long) AccountAggregate.DAYS);
+    private static final String   FIELD   = "counterpartySlots." + AccountAggregate.slotKey(SLOT);
+
+    private final ReactiveMongoTemplate mongo  = mock(ReactiveMongoTemplate.class);
+    private final AccountAggregateWriter writer = new AccountAggregateWriter(mongo);
+
+    @Test
+    void anUnchangedSlotIsNotWrittenBack() {
+        AccountAggregate stored = AccountAggregate.newFor("A");
+        stored.offerCounterparty("B", NOW);
+        stored.offerCounterparty("C", NOW);
+        returnsFromPipeline(stored);
+
+        AccountAggregate agg = writer.apply("A", delta("B")).block(TIMEOUT);
+
+        assertEquals(2, agg.getUniqueCounterparties7d());
+        verify(mongo, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), anyString());
+    }
+
+    @Test
+    void aGrownSlotIsWrittenOnlyIfStillAsRead() {
+        returnsFromPipeline(AccountAggregate.newFor("A"));
+        when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq("account_aggregates")))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        AccountAggregate agg = writer.apply("A", delta("B")).block(TIMEOUT);
+
+        ArgumentCaptor<Query>            query  = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongo).updateFirst(query.capture(), update.capture(), eq("account_aggregates"));
+
+        Document cond = query.getValue().getQueryObject();
+        assertEquals(0L, cond.get("sketchDayStamps." + SLOT));
+        assertNull(cond.get(FIELD));
+        assertEquals(true, cond.containsKey(FIELD));
+
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertArrayEquals(registers("B"), (byte[]) set.get(FIELD));
+        assertEquals(DAY, set.get("sketchDayStamps." + SLOT));
+        assertEquals(1, agg.getUniqueCounterparties7d());
+    }
+
+    @Test
+    void aLostRaceRereadsTheSlotAndMergesAgain() {
+        returnsFromPipeline(AccountAggregate.newFor("A"));
+        when(mongo.updateFirst(any(Query.class), any(UpdateDefinition.class), eq("account_aggregates")))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 0L, null)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        // Another writer recorded C in the same day's slot meanwhile.
+        List<Long> stamps = new ArrayList<>(Collections.nCopies(AccountAggregate.DAYS, 0L));
+        stamps.set(SLOT, DAY);
+        Document fresh = new Document("sketchDayStamps", stamps)
+                .append("counterpartySlots", new Document(AccountAggregate.slotKey(SLOT), new Binary(registers("C"))));
+        when(mongo.findOne(any(Query.class), eq(Document.class), eq("account_aggregates")))
+                .thenReturn(Mono.just(fresh));
+
+        AccountAggregate agg = writer.apply("A", delta("B")).block(TIMEOUT);
+
+        ArgumentCaptor<Query>            query  = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongo, times(2)).updateFirst(query.capture(), update.capture(), eq("account_aggregates"));
+
+        // The retry is conditioned on the re-read slot and writes B and C.
+        Document cond = query.getAllValues().get(1).getQueryObject();
+        assertEquals(DAY, cond.get("sketchDayStamps." + SLOT));
+        assertArrayEquals(registers("C"), (byte[]) cond.get(FIELD));
+
+        byte[] both = registers("C");
+        HyperLogLog.mergeAt(both, 0, registers("B"));
+        Document set = update.getAllValues().get(1).getUpdateObject().get("$set", Document.class);
+        assertArrayEquals(both, (byte[]) set.get(FIELD));
+        assertEquals(2, agg.getUniqueCounterparties7d());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private void returnsFromPipeline(AccountAggregate agg) {
+        when(mongo.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(AccountAggregate.class)))
+                .thenReturn(Mono.just(agg));
+    }
+
+    private static AggregateDelta delta(String counterpartyId) {
+        return AggregateDelta.of(NOW, 10.0, true, null, null, null, counterpartyId);
+    }
+
+    private static byte[] registers(String counterpartyId) {
+        byte[] regs = new byte[HyperLogLog.M];
+        HyperLogLog.offer(regs, 0, HyperLogLog.hash(counterpartyId));
+        return regs;
+    }
+}
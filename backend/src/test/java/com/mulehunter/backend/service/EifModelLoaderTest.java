@@ -0,0 +1,47 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * EifModelLoader: a file that failed to load is retried even when its mtime
+ * has not changed (e.g. a copy that was still being written).
+ */
+class EifModelLoaderTest {
+
+    private static final String FOREST = """
+            {"format":"eif-forest/1","version":"v-test","rawDim":8,"dim":14,"k":1,
+             "cNorm":1.0,"threshold":0.5,"sigmoidK":6.0,
+             "scalerMean":[0,0,0,0,0,0,0,0,0,0,0,0,0,0],
+             "scalerScale":[1,1,1,1,1,1,1,1,1,1,1,1,1,1],
+             "trees":[{"left":[-1],"right":[-1],"coefIdx":[0],"coef":[0],
+                       "intercepts":[0],"paths":[1.0]}]}
+            """;
+
+    @Test
+    void retriesAFailedLoadWithTheSameMtime(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("eif_forest.json");
+        FileTime mtime = FileTime.fromMillis(1_700_000_000_000L);
+
+        Files.writeString(file, FOREST.substring(0, FOREST.length() / 2));
+        Files.setLastModifiedTime(file, mtime);
+        EifModelLoader loader = new EifModelLoader(new ObjectMapper(), true, file.toString());
+        loader.reload();
+        assertNull(loader.current());
+
+        Files.writeString(file, FOREST);
+        Files.setLastModifiedTime(file, mtime);
+        loader.reload();
+        assertNotNull(loader.current());
+        assertEquals("v-test", loader.current().version());
+    }
+}
@@ -0,0 +1,106 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.config.DownstreamCodecs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GnnBatchClient against a local stub of /v1/gnn/score-batch that scores
+ * each item as transactionAmount / 1000 and fails items with amount < 0.
+ */
+class GnnBatchClientTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private DisposableServer stub;
+    private GnnBatchClient client;
+
+    @BeforeEach
+    void start() {
+        stub = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.post("/v1/gnn/score-batch", (req, res) ->
+                        res.header("Content-Type", "application/json")
+                                .sendString(req.receive().aggregate().asString().map(this::scoreBatch))))
+                .bindNow();
+
+        client = new GnnBatchClient(
+                "http://localhost:" + stub.port(), 16, 20_000, 4,
+                new DownstreamClientFactory(new MockEnvironment()),
+                new DownstreamCodecs(new MockEnvironment(), JSON, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void stop() {
+        client.shutdown();
+        stub.disposeNow();
+    }
+
+    @Test
+    void coalescesConcurrentRequestsAndFansResultsBack() {
+        List<Double> scores = Flux.range(1, 64)
+                .flatMapSequential(i -> client.score(Map.of("transactionAmount", i * 10.0))
+                        .map(r -> r.get("gnnScore").asDouble()), 64)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(64, scores.size());
+        for (int i = 0; i < scores.size(); i++) {
+            assertEquals((i + 1) * 10.0 / 1000, scores.get(i), 1e-9);
+        }
+        assertTrue(batchCalls.get() < 64, "expected coalescing, got " + batchCalls.get() + " calls");
+    }
+
+    @Test
+    void failsOnlyTheItemThatFailed() {
+        Mono<JsonNode> bad  = client.score(Map.of("transactionAmount", -1.0));
+        Mono<JsonNode> good = client.score(Map.of("transactionAmount", 500.0));
+
+        List<String> outcomes = Flux.merge(
+                        bad.map(r -> "bad-ok").onErrorReturn("bad-failed"),
+                        good.map(r -> "good-ok").onErrorReturn("good-failed"))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertTrue(outcomes.contains("bad-failed"));
+        assertTrue(outcomes.contains("good-ok"));
+    }
+
+    private String scoreBatch(String body) {
+        batchCalls.incrementAndGet();
+        try {
+            ArrayNode results = JSON.createArrayNode();
+            for (JsonNode item : JSON.readTree(body).path("requests")) {
+                double amount = item.path("transactionAmount").asDouble();
+                ObjectNode r = results.addObject();
+                if (amount < 0) r.put("error", "transactionAmount must be >= 0");
+                else r.put("gnnScore", amount / 1000);
+            }
+            return JSON.createObjectNode().set("results", results).toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.model.AiRiskResult;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * GnnResponseDecoder against the tree mapping it replaced
+ * ({@link GnnTreeMapping}): every AiRiskResult property must match, for
+ * both the byte[] and the JsonNode entry points, on alias-only, null-valued
+ * and non-object variants of a /v1/gnn/score response.
+ */
+class GnnResponseDecoderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String FULL = """
+            {"model":"GNN","version":"v3.1",
+             "entity":{"type":"ACCOUNT","sourceAccountId":"1042","targetAccountId":"2211"},
+             "scores":{"gnnScore":0.8731,"confidence":0.7462,"riskLevel":"HIGH"},
+             "fraudCluster":{"clusterId":17,"clusterSize":42,"clusterRiskScore":0.64},
+             "networkMetrics":{"suspiciousNeighbors":6,"sharedDevices":2,"sharedIPs":3,
+                               "centralityScore":0.0137,"transactionLoops":true},
+             "muleRingDetection":{"isMuleRingMember":true,"ringId":5,"ringShape":"STAR","ringSize":6,
+                                  "role":"HUB","hubAccount":"1042","ringAccounts":["1042","2211","3301"]},
+             "riskFactors":["High fan-out","Circular flows detected"],
+             "embedding":{"embeddingNorm":4.2871},
+             "gnnScore":0.8731,"confidence":0.7462,"fraudClusterId":17,"embeddingNorm":4.2871}
+            """;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            FULL,
+            "{}",
+            // gnnScore: flat → scores.gnnScore → risk_score
+            "{\"risk_score\":0.7}",
+            "{\"scores\":{\"gnnScore\":0.6},\"risk_score\":0.9}",
+            "{\"risk_score\":0.9,\"scores\":{\"gnnScore\":0.6},\"gnnScore\":0.3}",
+            // confidence: flat → scores.confidence
+            "{\"scores\":{\"confidence\":0.4}}",
+            "{\"confidence\":0.2,\"scores\":{\"confidence\":0.4}}",
+            // riskLevel: scores.riskLevel first, in either field order
+            "{\"riskLevel\":\"LOW\"}",
+            "{\"riskLevel\":\"LOW\",\"scores\":{\"riskLevel\":\"HIGH\"}}",
+            "{\"scores\":{\"riskLevel\":\"HIGH\"},\"riskLevel\":\"LOW\"}",
+            // modelVersion: version → model_version → "GNN"
+            "{\"model_version\":\"v2\"}",
+            "{\"model_version\":\"v2\",\"version\":\"v3.1\"}",
+            // clusterId: fraudCluster.clusterId, flat fraudClusterId only without the block
+            "{\"fraudClusterId\":9}",
+            "{\"fraudClusterId\":9,\"fraudCluster\":{\"clusterSize\":3}}",
+            "{\"fraudCluster\":{\"clusterId\":4},\"fraudClusterId\":9}",
+            // embeddingNorm: flat → embedding.embeddingNorm
+            "{\"embedding\":{\"embeddingNorm\":1.5}}",
+            "{\"embeddingNorm\":2.5,\"embedding\":{\"embeddingNorm\":1.5}}",
+            // unsupervised_score defaults to the resolved gnnScore
+            "{\"scores\":{\"gnnScore\":0.6},\"unsupervised_score\":0.1}",
+            "{\"risk_score\":0.7,\"out_degree\":12,\"risk_ratio\":0.25,\"population_size\":\"1.2M\","
+                    + "\"linked_accounts\":[\"a\",\"b\"],\"verdict\":\"SUSPICIOUS\"}"
+    })
+    void aliasesResolveAsTheTreeMappingDid(String json) throws Exception {
+        assertSameAsTreeMapping(json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"gnnScore\":null,\"scores\":{\"gnnScore\":0.6}}",
+            "{\"gnnScore\":null,\"risk_score\":0.8}",
+            "{\"scores\":{\"gnnScore\":null},\"risk_score\":0.9}",
+            "{\"risk_score\":null}",
+            "{\"confidence\":null,\"scores\":{\"confidence\":0.4}}",
+            "{\"scores\":{\"confidence\":null},\"confidence\":null}",
+            "{\"riskLevel\":null}",
+            "{\"scores\":{\"riskLevel\":null},\"riskLevel\":\"LOW\"}",
+            "{\"version\":null,\"model_version\":\"v2\"}",
+            "{\"version\":null,\"model_version\":null}",
+            "{\"fraudClusterId\":null}",
+            "{\"fraudCluster\":null,\"fraudClusterId\":5}",
+            "{\"embeddingNorm\":null,\"embedding\":{\"embeddingNorm\":2.0}}",
+            "{\"gnnScore\":0.7,\"unsupervised_score\":null}",
+            "{\"verdict\":null,\"population_size\":null,\"out_degree\":null,\"risk_ratio\":null}",
+            "{\"riskFactors\":null,\"linked_accounts\":null}",
+            "{\"riskFactors\":[\"x\",null,1,{\"a\":1}]}",
+            "{\"muleRingDetection\":null}",
+            "{\"muleRingDetection\":{\"ringShape\":null,\"role\":null,\"hubAccount\":null,\"ringAccounts\":null}}",
+            "{\"networkMetrics\":{\"suspiciousNeighbors\":null,\"centralityScore\":null,\"transactionLoops\":null}}",
+            "null"
+    })
+    void nullsResolveAsTheTreeMappingDid(String json) throws Exception {
+        assertSameAsTreeMapping(json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"scores\":0.9,\"risk_score\":0.4}",
+            "{\"scores\":\"HIGH\",\"riskLevel\":\"LOW\"}",
+            "{\"scores\":[1,2],\"gnnScore\":null,\"risk_score\":0.3}",
+            "{\"scores\":{\"gnnScore\":{\"v\":1},\"riskLevel\":[\"HIGH\"]}}",
+            "{\"gnnScore\":{\"v\":1},\"risk_score\":0.9}",
+            "{\"gnnScore\":\"0.8\",\"confidence\":\"0.5\"}",
+            "{\"version\":{\"a\":1},\"model_version\":\"v2\"}",
+            "{\"networkMetrics\":\"n/a\"}",
+            "{\"networkMetrics\":{\"sharedIPs\":2.9,\"transactionLoops\":\"true\",\"sharedDevices\":[1]}}",
+            "{\"fraudCluster\":[1],\"fraudClusterId\":4}",
+            "{\"fraudClusterId\":\"7\"}",
+            "{\"muleRingDetection\":true}",
+            "{\"muleRingDetection\":{\"ringAccounts\":\"1042\",\"ringId\":\"3\"}}",
+            "{\"embedding\":7,\"embeddingNorm\":null}",
+            "{\"riskFactors\":\"one\",\"linked_accounts\":{\"a\":\"b\"}}",
+            "{\"riskFactors\":{\"a\":\"x\",\"b\":null,\"c\":[1],\"d\":2.50}}",
+            "{\"riskFactors\":[1.50,1e2,-0.0,7],\"version\":2.50,\"riskLevel\":1E1}",
+            "{\"unsupervised_score\":[0.1],\"gnnScore\":0.6}",
+            "[]",
+            "42",
+            "\"GNN\""
+    })
+    void nonObjectsResolveAsTheTreeMappingDid(String json) throws Exception {
+        assertSameAsTreeMapping(json);
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static void assertSameAsTreeMapping(String json) throws Exception {
+        byte[]   body = json.getBytes(StandardCharsets.UTF_8);
+        JsonNode tree = MAPPER.readTree(body);
+
+        JsonNode expected = properties(GnnTreeMapping.map(tree));
+        assertEquals(expected, properties(GnnResponseDecoder.decode(body)), "decode(byte[]) of " + json);
+        assertEquals(expected, properties(GnnResponseDecoder.decode(tree)), "decode(JsonNode) of " + json);
+    }
+
+    // Every getter of the result, so a new AiRiskResult field is compared too.
+    private static JsonNode properties(AiRiskResult result) {
+        return MAPPER.valueToTree(result);
+    }
+}
@@ -0,0 +1,139 @@
+package com.mulehunter.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mulehunter.backend.model.AiRiskResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AiRiskService.mapAiResponse as it was before GnnResponseDecoder: the
+ * reference the decoder must agree with (GnnResponseDecoderTest) and the
+ * baseline GnnResponseDecoderBenchmark measures it against.
+ */
+final class GnnTreeMapping {
+
+    private GnnTreeMapping() {}
+
+    static AiRiskResult map(JsonNode r) {
+        if (r == null) return new AiRiskResult();
+
+        AiRiskResult result = new AiRiskResult();
+
+        // ── Core risk score ───────────────────────────────────────
+        // Response shape from /v1/gnn/score (inference_service.py v3.1):
+        //   { gnnScore, confidence, scores: { gnnScore, confidence, riskLevel }, ... }
+        //
+        // FIX: was only checking nested path; now checks flat mirrors first
+        // because GnnScoreResponse exposes both flat mirrors AND nested blocks.
+        double gnnScore = 0.0;
+        if (r.has("gnnScore") && !r.get("gnnScore").isNull()) {
+            // Flat mirror field (top-level) — most reliable
+            gnnScore = r.get("gnnScore").asDouble();
+        } else if (r.has("scores") && r.get("scores").has("gnnScore")) {
+            gnnScore = r.get("scores").get("gnnScore").asDouble();
+        } else if (r.has("risk_score")) {
+            gnnScore = r.get("risk_score").asDouble();
+        }
+        result.setGnnScore(gnnScore);
+        result.setRiskScore(gnnScore);
+        result.setSuspectedFraud(gnnScore > 0.5);
+
+        // ── Confidence ────────────────────────────────────────────
+        // FIX: "confidence" is inside the "scores" block in the response,
+        //      but also exposed as a flat top-level mirror field.
+        //      Old code: r.path("confidence") which misses it when it's nested.
+        double confidence = 0.0;
+        if (r.has("confidence") && !r.get("confidence").isNull()) {
+            // Flat mirror
+            confidence = r.get("confidence").asDouble();
+        } else if (r.has("scores") && r.get("scores").has("confidence")) {
+            confidence = r.get("scores").get("confidence").asDouble();
+        }
+        result.setConfidence(confidence);
+
+        // ── Risk level ────────────────────────────────────────────
+        // FIX: riskLevel lives inside scores{} block; old code only partially handled it
+        String riskLevel = "UNKNOWN";
+        if (r.has("scores") && r.get("scores").has("riskLevel")) {
+            riskLevel = r.get("scores").get("riskLevel").asText("UNKNOWN");
+        } else if (r.has("riskLevel") && !r.get("riskLevel").isNull()) {
+            riskLevel = r.get("riskLevel").asText("UNKNOWN");
+        }
+        result.setRiskLevel(riskLevel);
+
+        // ── Model info ────────────────────────────────────────────
+        result.setModelVersion(r.path("version").asText(
+                r.path("model_version").asText("GNN")));
+        result.setVerdict(r.path("verdict").asText(""));
+
+        // ── Network metrics ───────────────────────────────────────
+        if (r.has("networkMetrics")) {
+            JsonNode nm = r.get("networkMetrics");
+            result.setSuspiciousNeighbors(nm.path("suspiciousNeighbors").asInt(0));
+            result.setSharedDevices(nm.path("sharedDevices").asInt(0));
+            result.setSharedIPs(nm.path("sharedIPs").asInt(0));
+            result.setCentralityScore(nm.path("centralityScore").asDouble(0.0));
+            result.setTransactionLoops(nm.path("transactionLoops").asBoolean(false));
+        }
+
+        // ── Fraud cluster ─────────────────────────────────────────
+        if (r.has("fraudCluster")) {
+            JsonNode fc = r.get("fraudCluster");
+            result.setClusterId(fc.path("clusterId").asInt(0));
+            result.setClusterSize(fc.path("clusterSize").asInt(0));
+            result.setClusterRiskScore(fc.path("clusterRiskScore").asDouble(0.0));
+        } else {
+            // flat mirror
+            result.setClusterId(r.path("fraudClusterId").asInt(0));
+        }
+
+        // ── Mule ring detection ───────────────────────────────────
+        if (r.has("muleRingDetection")) {
+            JsonNode mrd = r.get("muleRingDetection");
+            result.setMuleRingMember(mrd.path("isMuleRingMember").asBoolean(false));
+            result.setRingId(mrd.path("ringId").asInt(0));
+            result.setRingShape(mrd.path("ringShape").asText("UNKNOWN"));
+            result.setRingSize(mrd.path("ringSize").asInt(0));
+            result.setRole(mrd.path("role").asText("UNKNOWN"));
+            result.setHubAccount(mrd.path("hubAccount").asText(""));
+
+            List<String> ringAccounts = new ArrayList<>();
+            if (mrd.has("ringAccounts")) {
+                mrd.get("ringAccounts").forEach(n -> ringAccounts.add(n.asText()));
+            }
+            result.setRingAccounts(ringAccounts);
+        }
+
+        // ── Risk factors ──────────────────────────────────────────
+        List<String> riskFactors = new ArrayList<>();
+        if (r.has("riskFactors")) {
+            r.get("riskFactors").forEach(n -> riskFactors.add(n.asText()));
+        }
+        result.setRiskFactors(riskFactors);
+
+        // ── Embedding ─────────────────────────────────────────────
+        // flat mirror: embeddingNorm
+        double embNorm = 0.0;
+        if (r.has("embeddingNorm") && !r.get("embeddingNorm").isNull()) {
+            embNorm = r.get("embeddingNorm").asDouble(0.0);
+        } else if (r.has("embedding")) {
+            embNorm = r.get("embedding").path("embeddingNorm").asDouble(0.0);
+        }
+        result.setEmbeddingNorm(embNorm);
+
+        // ── Old fields (backward compat) ──────────────────────────
+        result.setOutDegree(r.path("out_degree").asInt(0));
+        result.setRiskRatio(r.path("risk_ratio").asDouble(0.0));
+        result.setPopulationSize(r.path("population_size").asText("Unknown"));
+        result.setUnsupervisedScore(r.path("unsupervised_score").asDouble(gnnScore));
+
+        List<String> linked = new ArrayList<>();
+        if (r.has("linked_accounts")) {
+            r.get("linked_accounts").forEach(n -> linked.add(n.asText()));
+        }
+        result.setLinkedAccounts(linked);
+
+        return result;
+    }
+}
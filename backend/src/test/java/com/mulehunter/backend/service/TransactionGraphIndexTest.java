@@ -0,0 +1,248 @@
+package com.mulehunter.backend.service;
+
+import com.mulehunter.backend.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TransactionGraphIndex bootstrapped from CSVs: two-hop density, cached
+ * densities going stale on a neighbourhood edge or a new fraud flag, the
+ * bounded bootstrap buffer, the append-list adjacency storage and ego
+ * truncation.
+ *
+ *   A ─ B ─ C        D is fraud-flagged in nodes.csv
+ *   │   └── D
+ *   E ─ F
+ */
+class TransactionGraphIndexTest {
+
+    private static final String EDGES = """
+            source,target,amount,is_fraud_edge
+            A,B,100,0
+            B,C,50,0
+            B,D,10,0
+            A,E,100,0
+            E,F,5,0
+            """;
+
+    private static final String NODES = """
+            node_id,is_fraud
+            A,0
+            D,1
+            """;
+
+    @Test
+    void twoHopCountsOnlyAccountsExactlyTwoHopsAway(@TempDir Path dir) throws Exception {
+        TransactionGraphIndex index = ready(dir);
+
+        // 2-hop set of A is {C, D, F}; D is flagged.
+        assertEquals(1.0 / 3, index.twoHopFraudDensity("A"), 1e-12);
+        // C's 2-hop set is {A, D}.
+        assertEquals(0.5, index.twoHopFraudDensity("C"), 1e-12);
+        assertEquals(0.0, index.twoHopFraudDensity("nobody"), 0.0);
+
+        // A direct A─C edge makes C a 1-hop neighbour; it must leave the 2-hop set.
+        index.addTransaction(tx("A", "C", false));
+        assertEquals(0.5, index.twoHopFraudDensity("A"), 1e-12);
+    }
+
+    @Test
+    void cachedDensityGoesStaleOnANeighbourEdge(@TempDir Path dir) throws Exception {
+        TransactionGraphIndex index = ready(dir);
+        assertEquals(1.0 / 3, index.twoHopFraudDensity("A"), 1e-12);
+
+        // The edge is on B, not on A: only the neighbourhood check catches it.
+        index.addTransaction(tx("B", "H", false));
+        assertEquals(0.25, index.twoHopFraudDensity("A"), 1e-12);
+
+        // An edge outside the closed neighbourhood keeps the cached value current.
+        index.addTransaction(tx("C", "X", false));
+        assertEquals(0.25, index.twoHopFraudDensity("A"), 1e-12);
+    }
+
+    @Test
+    void cachedDensityGoesStaleOnANewFraudFlag(@TempDir Path dir) throws Exception {
+        TransactionGraphIndex index = ready(dir);
+        assertEquals(1.0 / 3, index.twoHopFraudDensity("A"), 1e-12);
+
+        // F is flagged by an edge two hops from A, with no edge near A.
+        index.addTransaction(tx("F", "Y", true));
+        assertEquals(2.0 / 3, index.twoHopFraudDensity("A"), 1e-12);
+    }
+
+    @Test
+    void liveEdgesBeforeTheSwapAreReplayed(@TempDir Path dir) throws Exception {
+        TransactionGraphIndex index = index(dir);
+        index.addTransaction(tx("A", "Z", true));
+        index.bootstrap();
+        awaitReady(index);
+
+        assertEquals(3, index.stats("A").degree());
+        assertEquals(1, index.stats("A").suspiciousEdges());
+        assertEquals(1, index.stats("Z").degree());
+    }
+
+    @Test
+    void aFailedBootstrapStopsBuffering(@TempDir Path dir) throws Exception {
+        // No transactions.csv: the CSV load fails.
+        TransactionGraphIndex index = index(dir, 100);
+        index.addTransaction(tx("A", "B", false));
+        assertEquals(1, index.bufferedDuringBootstrap());
+
+        index.bootstrap();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (index.bufferedDuringBootstrap() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(0, index.bufferedDuringBootstrap());
+
+        index.addTransaction(tx("A", "C", false));
+        assertEquals(0, index.bufferedDuringBootstrap());
+        assertFalse(index.isReady());
+        assertNull(index.stats("A"));
+    }
+
+    @Test
+    void anOverflowingBufferAbandonsTheBootstrap(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("transactions.csv"), EDGES);
+        TransactionGraphIndex index = index(dir, 2);
+        index.addTransaction(tx("A", "X", false));
+        index.addTransaction(tx("A", "Y", false));
+        assertEquals(2, index.bufferedDuringBootstrap());
+
+        index.addTransaction(tx("A", "Z", false));
+        assertEquals(0, index.bufferedDuringBootstrap());
+
+        // A graph built without the dropped edges is never swapped in.
+        index.bootstrap();
+        Thread.sleep(200);
+        assertFalse(index.isReady());
+        assertNull(index.stats("A"));
+    }
+
+    // ── Storage ───────────────────────────────────────────────────────────────
+
+    @Test
+    void degreeAndSuspiciousCountsPerNode(@TempDir Path dir) throws Exception {
+        TransactionGraphIndex index = ready(dir);
+        assertEquals(3, index.stats("B").degree());
+        assertEquals(0, index.stats("B").suspiciousEdges());
+        assertNull(index.stats("nobody"));
+
+        index.addTransaction(tx("B", "G", true));
+        index.addTransaction(tx("G", "G", true));   // self-loop: one incident entry
+        assertEquals(4, index.stats("B").degree());
+        assertEquals(1, index.stats("B").suspiciousEdges());
+        assertEquals(2, index.stats("G").degree());
+        assertEquals(2, index.stats("G").suspiciousEdges());
+    }
+
+    @Test
+    void incidentListsAndNodeArraysGrow() {
+        TransactionGraphIndex.Graph g = new TransactionGraphIndex.Graph();
+        int hubEdges = 5000;   // past the 4-slot incident list, 1024 nodes and 4096 edges
+        for (int i = 0; i < hubEdges; i++) g.addEdge("hub", "leaf-" + i, i, i % 10 == 0);
+
+        int hub = g.ids.get("hub");
+        assertEquals(hubEdges + 1, g.nodeCount);
+        assertEquals(hubEdges, g.edgeCount);
+        assertEquals(hubEdges, g.degree[hub]);
+        assertEquals(hubEdges / 10, g.suspiciousEdges[hub]);
+        assertEquals(hubEdges - 1, g.newestEdge(hub));
+
+        // Incident lists hold edge ids in insertion order.
+        for (int j = 0; j < hubEdges; j++) {
+            int e = g.incident[hub][j];
+            assertEquals(j, e);
+            assertEquals("leaf-" + j, g.names[g.other(e, hub)]);
+        }
+        int leaf = g.ids.get("leaf-4999");
+        assertEquals(1, g.degree[leaf]);
+        assertEquals(-1, g.newestEdge(g.intern("isolated")));
+    }
+
+    @Test
+    void flaggingANodeBumpsTheFraudEpochOnce() {
+        TransactionGraphIndex.Graph g = new TransactionGraphIndex.Graph();
+        g.addEdge("A", "B", 1, false);
+        int epoch = g.fraudEpoch;
+
+        g.markFraud("A");
+        g.markFraud("A");
+        g.markFraud("unknown");
+        assertEquals(epoch + 1, g.fraudEpoch);
+
+        g.addEdge("A", "B", 1, true);   // A already flagged, B newly flagged
+        assertEquals(epoch + 2, g.fraudEpoch);
+    }
+
+    // ── Ego ───────────────────────────────────────────────────────────────────
+
+    @Test
+    void egoWalksLevelsAndStopsAtMaxNodes(@TempDir Path dir) throws Exception {
+        TransactionGraphIndex index = ready(dir);
+
+        TransactionGraphIndex.EgoGraph full = index.ego("A", 2, 100, 100, 0);
+        assertEquals(6, full.nodes().size());
+        assertEquals(5, full.links().size());
+        assertFalse(full.truncated());
+        assertEquals(0, full.nodes().get(0).hop());
+        assertTrue(full.nodes().stream().anyMatch(n -> n.id().equals("D") && n.hop() == 2 && n.fraud()));
+
+        TransactionGraphIndex.EgoGraph capped = index.ego("A", 2, 3, 100, 0);
+        assertEquals(3, capped.nodes().size());
+        assertTrue(capped.truncated());
+
+        // minAmount drops B─D (10) and E─F (5).
+        TransactionGraphIndex.EgoGraph big = index.ego("A", 2, 100, 100, 50);
+        assertEquals(4, big.nodes().size());
+        assertFalse(big.truncated());
+
+        assertTrue(index.ego("A", 2, 100, 2, 0).truncated());
+        assertNull(index.ego("nobody", 2, 100, 100, 0));
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static TransactionGraphIndex index(Path dir) throws Exception {
+        Files.writeString(dir.resolve("transactions.csv"), EDGES);
+        Files.writeString(dir.resolve("nodes.csv"), NODES);
+        return index(dir, 100);
+    }
+
+    private static TransactionGraphIndex index(Path dir, int bootstrapBuffer) {
+        return new TransactionGraphIndex(null, true, "csv", dir.toString(), 256, 256, true, 1000, bootstrapBuffer);
+    }
+
+    private static TransactionGraphIndex ready(Path dir) throws Exception {
+        TransactionGraphIndex index = index(dir);
+        index.bootstrap();
+        awaitReady(index);
+        return index;
+    }
+
+    private static void awaitReady(TransactionGraphIndex index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!index.isReady() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(index.isReady(), "CSV bootstrap did not complete");
+    }
+
+    private static int seq = 0;
+
+    private static Transaction tx(String source, String target, boolean fraud) {
+        Transaction tx = new Transaction();
+        tx.setId("live-" + (++seq));
+        tx.setSourceAccount(source);
+        tx.setTargetAccount(target);
+        tx.setAmount(BigDecimal.valueOf(25));
+        tx.setSuspectedFraud(fraud);
+        return tx;
+    }
+}
@@ -0,0 +1,369 @@
+package com.mulehunter.backend.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.util.Cbor;
+import io.netty.handler.codec.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Local stand-in for the backend's downstream services, on one port:
+ *
+ *   AI        /v1/gnn/score, /v1/gnn/score-batch
+ *   EIF       /v1/eif/score, /v1/eif/score-batch
+ *   SECURITY  /api/security/ja3-risk
+ *   VISUAL    /visual-analytics/api/visual/reanalyze/nodes
+ *
+ * Each served service answers per its {@link LatencyProfile} — delay,
+ * injected error status, or no answer at all.
+ *
+ * AI and EIF speak both wire formats the way the real services do: CBOR
+ * request bodies are read when Content-Type is application/cbor (or rejected
+ * with 415 when readsCbor=false, like a service without cbor2), and
+ * responses are CBOR when Accept allows it and answersCbor=true, JSON
+ * otherwise.
+ *
+ * Answers are deterministic functions of the request so results can be
+ * compared across runs and encodings: GNN gnnScore = transactionAmount /
+ * 100000 (capped at 1), EIF score = sigmoid(mean(features) - 1), ja3Risk
+ * from the fingerprint's hash. Responses carry the real services' full
+ * field sets, so decoding cost is representative.
+ */
+public final class DownstreamStandIn implements AutoCloseable {
+
+    public enum Service {
+        AI("/v1/gnn/score", "/v1/gnn/score-batch"),
+        EIF("/v1/eif/score", "/v1/eif/score-batch"),
+        SECURITY("/api/security/ja3-risk"),
+        VISUAL("/visual-analytics/api/visual/reanalyze/nodes");
+
+        private final List<String> paths;
+
+        Service(String... paths) {
+            this.paths = List.of(paths);
+        }
+
+        public List<String> paths() {
+            return paths;
+        }
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String CBOR_TYPE = "application/cbor";
+    private static final String JSON_TYPE = "application/json";
+
+    private final boolean readsCbor;
+    private final boolean answersCbor;
+    private final Map<Service, LatencyProfile> profiles;
+    private final Map<Service, AtomicLong[]> counts = new EnumMap<>(Service.class);
+    private final AtomicInteger cborRequests = new AtomicInteger();
+    private final AtomicInteger jsonRequests = new AtomicInteger();
+    private final DisposableServer server;
+
+    private DownstreamStandIn(Builder b) {
+        this.readsCbor   = b.readsCbor;
+        this.answersCbor = b.answersCbor;
+        this.profiles    = new EnumMap<>(b.profiles);
+        for (Service s : profiles.keySet()) {
+            counts.put(s, new AtomicLong[] {new AtomicLong(), new AtomicLong(), new AtomicLong()});
+        }
+
+        this.server = HttpServer.create()
+                .port(b.port)
+                .route(routes -> {
+                    if (profiles.containsKey(Service.AI)) routes
+                            .post("/v1/gnn/score",       (req, res) -> handle(req, res, Service.AI, this::gnn))
+                            .post("/v1/gnn/score-batch", (req, res) -> handle(req, res, Service.AI, this::gnnBatch));
+                    if (profiles.containsKey(Service.EIF)) routes
+                            .post("/v1/eif/score",       (req, res) -> handle(req, res, Service.EIF, this::eif))
+                            .post("/v1/eif/score-batch", (req, res) -> handle(req, res, Service.EIF, this::eifBatch));
+                    if (profiles.containsKey(Service.SECURITY)) routes
+                            .post("/api/security/ja3-risk", (req, res) -> handle(req, res, Service.SECURITY, this::ja3));
+                    if (profiles.containsKey(Service.VISUAL)) routes
+                            .post("/visual-analytics/api/visual/reanalyze/nodes",
+                                    (req, res) -> handle(req, res, Service.VISUAL, this::reanalyze));
+                })
+                .bindNow();
+    }
+
+    /** Every service, no added latency, both wire formats. */
+    public static DownstreamStandIn start() {
+        return builder().serveAll(LatencyProfile.NONE).start();
+    }
+
+    public static DownstreamStandIn start(boolean readsCbor, boolean answersCbor) {
+        return builder().serveAll(LatencyProfile.NONE).readsCbor(readsCbor).answersCbor(answersCbor).start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    public int port() {
+        return server.port();
+    }
+
+    /** Requests received with a CBOR body, including ones rejected with 415. */
+    public int cborRequests() {
+        return cborRequests.get();
+    }
+
+    public int jsonRequests() {
+        return jsonRequests.get();
+    }
+
+    public long requests(Service s) {
+        return counts.get(s)[0].get();
+    }
+
+    public long injectedErrors(Service s) {
+        return counts.get(s)[1].get();
+    }
+
+    public long injectedTimeouts(Service s) {
+        return counts.get(s)[2].get();
+    }
+
+    public Map<Service, LatencyProfile> profiles() {
+        return profiles;
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    public static final class Builder {
+
+        private int port;
+        private boolean readsCbor   = true;
+        private boolean answersCbor = true;
+        private final Map<Service, LatencyProfile> profiles = new EnumMap<>(Service.class);
+
+        private Builder() {}
+
+        /** 0 (the default) picks a free port. */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder serve(Service service, LatencyProfile profile) {
+            profiles.put(service, profile);
+            return this;
+        }
+
+        public Builder serveAll(LatencyProfile profile) {
+            for (Service s : Service.values()) profiles.put(s, profile);
+            return this;
+        }
+
+        public Builder readsCbor(boolean readsCbor) {
+            this.readsCbor = readsCbor;
+            return this;
+        }
+
+        public Builder answersCbor(boolean answersCbor) {
+            this.answersCbor = answersCbor;
+            return this;
+        }
+
+        public DownstreamStandIn start() {
+            if (profiles.isEmpty()) throw new IllegalStateException("no services to serve");
+            return new DownstreamStandIn(this);
+        }
+    }
+
+    // ── Request handling ──────────────────────────────────────────────────────
+
+    private Mono<Void> handle(HttpServerRequest req, HttpServerResponse res, Service service,
+                              BiFunction<JsonNode, HttpHeaders, Object> endpoint) {
+
+        AtomicLong[] count = counts.get(service);
+        count[0].incrementAndGet();
+
+        String contentType = req.requestHeaders().get("Content-Type", JSON_TYPE);
+        String accept      = req.requestHeaders().get("Accept", JSON_TYPE);
+        boolean cborIn     = contentType.startsWith(CBOR_TYPE);
+        boolean cborOut    = answersCbor && accept.contains(CBOR_TYPE);
+
+        (cborIn ? cborRequests : jsonRequests).incrementAndGet();
+        if (cborIn && !readsCbor) {
+            return res.status(415).header("Content-Type", JSON_TYPE)
+                    .sendString(Mono.just("{\"detail\":\"application/cbor not supported\"}")).then();
+        }
+
+        LatencyProfile.Outcome outcome = profiles.get(service).next();
+
+        return req.receive().aggregate().asByteArray()
+                .defaultIfEmpty(new byte[0])
+                .flatMap(body -> {
+                    if (outcome.hang()) {
+                        count[2].incrementAndGet();
+                        return Mono.<Void>never();
+                    }
+
+                    Mono<Void> reply;
+                    if (outcome.status() != 200) {
+                        count[1].incrementAndGet();
+                        reply = res.status(outcome.status()).header("Content-Type", JSON_TYPE)
+                                .sendString(Mono.just("{\"detail\":\"injected failure\"}")).then();
+                    } else {
+                        byte[] bytes;
+                        try {
+                            JsonNode request = cborIn ? Cbor.decode(body) : JSON.readTree(body);
+                            Object response  = endpoint.apply(request, req.requestHeaders());
+                            bytes = cborOut ? Cbor.encode(response) : JSON.writeValueAsBytes(response);
+                        } catch (Exception e) {
+                            return Mono.error(new IllegalStateException(e));
+                        }
+                        reply = res.header("Content-Type", cborOut ? CBOR_TYPE : JSON_TYPE)
+                                .sendByteArray(Mono.just(bytes)).then();
+                    }
+                    return outcome.delay().isZero() ? reply : Mono.delay(outcome.delay()).then(reply);
+                });
+    }
+
+    // ── Endpoints ─────────────────────────────────────────────────────────────
+
+    private Object gnn(JsonNode req, HttpHeaders headers) {
+        double amount = req.path("transactionAmount").asDouble();
+        double score  = Math.min(1.0, amount / 100_000);
+        String level  = score >= 0.7 ? "HIGH" : score >= 0.4 ? "MEDIUM" : "LOW";
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("model",   "MuleHunter-GNN");
+        r.put("version", "v3.1");
+        r.put("entity",  Map.of("type", "account", "id", req.path("sourceAccountId").asText()));
+        r.put("scores",  Map.of("gnnScore", score, "confidence", 0.82, "riskLevel", level));
+        r.put("fraudCluster", Map.of("clusterId", 17, "clusterSize", 42, "clusterRiskScore", 0.61));
+        r.put("networkMetrics", Map.of(
+                "suspiciousNeighbors", req.path("graphFeatures").path("suspiciousNeighborCount").asInt(),
+                "sharedDevices",       req.path("identityFeatures").path("deviceReuse").asInt(),
+                "sharedIPs",           req.path("identityFeatures").path("ipReuse").asInt(),
+                "centralityScore",     0.0123,
+                "transactionLoops",    false));
+        r.put("muleRingDetection", Map.of(
+                "isMuleRingMember", score > 0.5,
+                "ringId",           3,
+                "ringShape",        "STAR",
+                "ringSize",         5,
+                "role",             "MULE",
+                "hubAccount",       "acc_100",
+                "ringAccounts",     List.of("acc_100", "acc_101", "acc_102", "acc_103", "acc_104")));
+        r.put("riskFactors", List.of("High fan-out: distributing funds to many accounts",
+                "Burst activity: unusually high recent transaction volume"));
+        r.put("embedding",       Map.of("embeddingNorm", 3.1415));
+        r.put("timestamp",       "2026-01-01T00:00:00Z");
+        r.put("gnnScore",        score);
+        r.put("confidence",      0.82);
+        r.put("fraudClusterId",  17);
+        r.put("embeddingNorm",   3.1415);
+        r.put("sourceAccountId", req.path("sourceAccountId").asText());
+        r.put("targetAccountId", req.path("targetAccountId").asText());
+        return r;
+    }
+
+    private Object gnnBatch(JsonNode req, HttpHeaders headers) {
+        List<Object> results = new ArrayList<>();
+        for (JsonNode item : req.path("requests")) results.add(gnn(item, headers));
+        return Map.of("results", results);
+    }
+
+    private Object eif(JsonNode req, HttpHeaders headers) {
+        double[] row = new double[req.path("features").size()];
+        for (int i = 0; i < row.length; i++) row[i] = req.path("features").get(i).asDouble();
+        double score = eifScore(row, 0, row.length);
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("model",       "EIF");
+        r.put("version",     "v2.1");
+        r.put("score",       score);
+        r.put("isAnomalous", score >= 0.5 ? 1 : 0);
+        r.put("confidence",  Math.round(Math.abs(score - 0.5) * 2 * 1000) / 1000.0);
+        r.put("topFactors",  topFactors());
+        r.put("explanation", "High transaction velocity within a fraudulent community.");
+        return r;
+    }
+
+    private Object eifBatch(JsonNode req, HttpHeaders headers) {
+        int dim = req.path("dim").asInt(8);
+        JsonNode features = req.path("features");
+        double[] flat = new double[features.size()];
+        for (int i = 0; i < flat.length; i++) flat[i] = features.get(i).asDouble();
+
+        int rows = flat.length / dim;
+        double[] scores = new double[rows];
+        double[] confidence = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            scores[r]     = eifScore(flat, r * dim, dim);
+            confidence[r] = Math.round(Math.abs(scores[r] - 0.5) * 2 * 1000) / 1000.0;
+        }
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("scores",     scores);
+        r.put("confidence", confidence);
+        if (req.path("explain").asBoolean()) {
+            List<Object> factors = new ArrayList<>(rows);
+            List<Object> texts   = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                factors.add(topFactors());
+                texts.add("High transaction velocity within a fraudulent community.");
+            }
+            r.put("topFactors",  factors);
+            r.put("explanation", texts);
+        }
+        return r;
+    }
+
+    /** security-forensics SecurityController.evaluateJA3 response shape. */
+    private Object ja3(JsonNode req, HttpHeaders headers) {
+        String ja3  = headers.get("X-JA3-Fingerprint", req.path("ja3Fingerprint").asText(""));
+        int h       = ja3.hashCode();
+        double risk = (h & 0xffff) / 65535.0;
+
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("ja3",      ja3);
+        r.put("ja3Risk",  risk);
+        r.put("velocity", (h >>> 16) % 20);
+        r.put("fanout",   (h >>> 8) % 10);
+        r.put("blocked",  risk > 0.8);
+        r.put("action",   risk > 0.8 ? "BLOCK_REQUEST" : "ALLOW");
+        return r;
+    }
+
+    private Object reanalyze(JsonNode req, HttpHeaders headers) {
+        return Map.of("status", "accepted", "nodes", req.path("nodes").size());
+    }
+
+    private static double eifScore(double[] x, int off, int len) {
+        double sum = 0.0;
+        for (int i = off; i < off + len; i++) sum += x[i];
+        return 1.0 / (1.0 + Math.exp(-(sum / Math.max(1, len) - 1.0)));
+    }
+
+    private static Map<String, Object> topFactors() {
+        Map<String, Object> top = new LinkedHashMap<>();
+        top.put("comm_velocity",  0.0412);
+        top.put("velocity_burst", 0.0213);
+        top.put("ip_comm",        -0.0087);
+        return top;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mulehunter.backend.stub;
+
+import com.mulehunter.backend.config.DownstreamBreakers;
+import com.mulehunter.backend.config.DownstreamClientFactory;
+import com.mulehunter.backend.metrics.PipelineMetrics;
+import com.mulehunter.backend.model.Transaction;
+import com.mulehunter.backend.service.Ja3SecurityService;
+import com.mulehunter.backend.stub.DownstreamStandIn.Service;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LatencyProfile sampling and DownstreamStandIn's failure injection, plus
+ * the JA3 stand-in against the real Ja3SecurityService client.
+ */
+class DownstreamStandInTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void profileSamplesItsSpec() {
+        LatencyProfile p = LatencyProfile.parse("lognormal:median=8ms,p99=40ms;error=0.02;timeout=0.01");
+        assertEquals("lognormal:median=8ms,p99=40ms;error=0.02;timeout=0.01", p.toString());
+
+        int n = 100_000, errors = 0, hangs = 0;
+        double[] delays = new double[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            LatencyProfile.Outcome o = p.next();
+            if (o.hang()) { hangs++; continue; }
+            if (o.status() != 200) errors++;
+            delays[m++] = o.delay().toNanos() / 1e6;
+        }
+        Arrays.sort(delays, 0, m);
+
+        assertEquals(8.0,  delays[m / 2], 0.5);
+        assertEquals(40.0, delays[(int) (m * 0.99)], 4.0);
+        assertEquals(0.02, errors / (double) n, 0.003);
+        assertEquals(0.01, hangs / (double) n, 0.002);
+
+        LatencyProfile u = LatencyProfile.parse("uniform:2ms..4ms;error=1;status=503");
+        LatencyProfile.Outcome o = u.next();
+        assertEquals(503, o.status());
+        assertTrue(o.delay().toMillis() >= 2 && o.delay().toMillis() <= 4);
+        assertEquals(Duration.ofMillis(5), LatencyProfile.parse("fixed:5ms").next().delay());
+        assertThrows(IllegalArgumentException.class, () -> LatencyProfile.parse("fixed:5"));
+    }
+
+    @Test
+    void injectsErrorsTimeoutsAndDelay() {
+        try (DownstreamStandIn stub = DownstreamStandIn.builder()
+                .serve(Service.AI,     LatencyProfile.NONE.withErrors(1.0, 503))
+                .serve(Service.EIF,    LatencyProfile.NONE.withTimeouts(1.0))
+                .serve(Service.VISUAL, LatencyProfile.fixed(Duration.ofMillis(150)))
+                .start()) {
+
+            WebClient client = WebClient.create(stub.baseUrl());
+
+            Throwable error = assertThrows(RuntimeException.class, () -> post(client, "/v1/gnn/score",
+                    Map.of("transactionAmount", 10.0)).block(TIMEOUT));
+            assertInstanceOf(WebClientResponseException.class, error);
+            assertEquals(503, ((WebClientResponseException) error).getStatusCode().value());
+
+            Throwable timeout = assertThrows(RuntimeException.class, () -> post(client, "/v1/eif/score",
+                    Map.of("features", List.of(1.0))).timeout(Duration.ofMillis(300)).block(TIMEOUT));
+            assertInstanceOf(TimeoutException.class, timeout.getCause());
+
+            long start = System.nanoTime();
+            Map<?, ?> visual = post(client, "/visual-analytics/api/visual/reanalyze/nodes",
+                    Map.of("nodes", List.of(Map.of("nodeId", 1), Map.of("nodeId", 2)))).block(TIMEOUT);
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(150).toNanos());
+            assertEquals(2, visual.get("nodes"));
+
+            assertEquals(1, stub.injectedErrors(Service.AI));
+            assertEquals(1, stub.injectedTimeouts(Service.EIF));
+            assertEquals(1, stub.requests(Service.VISUAL));
+        }
+    }
+
+    @Test
+    void servesJa3RiskToTheRealClient() {
+        try (DownstreamStandIn stub = DownstreamStandIn.builder()
+                .serve(Service.SECURITY, LatencyProfile.NONE)
+                .start()) {
+
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            Ja3SecurityService ja3 = new Ja3SecurityService(stub.baseUrl(),
+                    new PipelineMetrics(registry),
+                    new DownstreamClientFactory(new MockEnvironment()),
+                    new DownstreamBreakers(new MockEnvironment(), registry));
+
+            Transaction tx = new Transaction();
+            tx.setId("tx-1");
+            tx.setSourceAccount("1001");
+            Map<?, ?> r = ja3.callJa3Risk(tx, "771,4865-4866-4867,0-23-65281,29-23-24,0").block(TIMEOUT);
+
+            assertInstanceOf(Number.class, r.get("ja3Risk"));
+            assertInstanceOf(Number.class, r.get("velocity"));
+            assertInstanceOf(Number.class, r.get("fanout"));
+            assertEquals(1, stub.requests(Service.SECURITY));
+        }
+    }
+
+    private static Mono<Map> post(WebClient client, String uri, Object body) {
+        return client.post().uri(uri).bodyValue(body).retrieve().bodyToMono(Map.class);
+    }
+}
@@ -0,0 +1,183 @@
+package com.mulehunter.backend.stub;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How a stubbed downstream answers: a latency distribution plus injected
+ * failures, parsed from a spec such as
+ *
+ *   lognormal:median=8ms,p99=40ms;error=0.01;timeout=0.001
+ *
+ * Latency (first part):
+ *   none                              answer immediately
+ *   fixed:5ms
+ *   uniform:2ms..10ms
+ *   lognormal:median=8ms,p99=40ms     heavy right tail, like a model under load
+ *
+ * Options (";"-separated):
+ *   error=p      answer HTTP status (default 500) after the delay, with probability p
+ *   status=503   status used for injected errors
+ *   timeout=p    never answer, with probability p — the caller's own timeout fires
+ *
+ * Durations take ns, us, ms or s. Immutable and thread-safe.
+ */
+public final class LatencyProfile {
+
+    /** What one request gets: wait delay, then answer status — or hang. */
+    public record Outcome(Duration delay, int status, boolean hang) {}
+
+    public static final LatencyProfile NONE = new LatencyProfile(Kind.NONE, 0, 0, 0.0, 500, 0.0);
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(ns|us|ms|s)");
+    private static final double Z99 = 2.3263478740408408;
+    private static final long MAX_DELAY_NANOS = Duration.ofSeconds(60).toNanos();
+
+    private enum Kind { NONE, FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final long a;            // fixed / uniform low / lognormal median, in ns
+    private final long b;            // uniform high / lognormal p99, in ns
+    private final double errorRate;
+    private final int errorStatus;
+    private final double timeoutRate;
+
+    private LatencyProfile(Kind kind, long a, long b, double errorRate, int errorStatus, double timeoutRate) {
+        if (errorRate < 0 || timeoutRate < 0 || errorRate + timeoutRate > 1) {
+            throw new IllegalArgumentException("error + timeout rates must be within [0, 1]");
+        }
+        if (kind == Kind.UNIFORM && b < a) throw new IllegalArgumentException("uniform upper bound below lower");
+        if (kind == Kind.LOGNORMAL && (a <= 0 || b < a)) throw new IllegalArgumentException("lognormal needs 0 < median <= p99");
+        this.kind        = kind;
+        this.a           = a;
+        this.b           = b;
+        this.errorRate   = errorRate;
+        this.errorStatus = errorStatus;
+        this.timeoutRate = timeoutRate;
+    }
+
+    public static LatencyProfile fixed(Duration delay) {
+        return new LatencyProfile(Kind.FIXED, delay.toNanos(), 0, 0.0, 500, 0.0);
+    }
+
+    public static LatencyProfile uniform(Duration min, Duration max) {
+        return new LatencyProfile(Kind.UNIFORM, min.toNanos(), max.toNanos(), 0.0, 500, 0.0);
+    }
+
+    public static LatencyProfile lognormal(Duration median, Duration p99) {
+        return new LatencyProfile(Kind.LOGNORMAL, median.toNanos(), p99.toNanos(), 0.0, 500, 0.0);
+    }
+
+    public LatencyProfile withErrors(double rate, int status) {
+        return new LatencyProfile(kind, a, b, rate, status, timeoutRate);
+    }
+
+    public LatencyProfile withTimeouts(double rate) {
+        return new LatencyProfile(kind, a, b, errorRate, errorStatus, rate);
+    }
+
+    public static LatencyProfile parse(String spec) {
+        if (spec == null || spec.isBlank()) return NONE;
+
+        String[] parts = spec.trim().split("\\s*;\\s*");
+        String latency = parts[0].toLowerCase(Locale.ROOT);
+        String name    = latency.contains(":") ? latency.substring(0, latency.indexOf(':')) : latency;
+        String args    = latency.contains(":") ? latency.substring(latency.indexOf(':') + 1) : "";
+
+        LatencyProfile p = switch (name) {
+            case "none"    -> NONE;
+            case "fixed"   -> fixed(duration(args));
+            case "uniform" -> {
+                String[] range = args.split("\\.\\.");
+                if (range.length != 2) throw new IllegalArgumentException("uniform needs min..max: " + args);
+                yield uniform(duration(range[0]), duration(range[1]));
+            }
+            case "lognormal" -> {
+                Duration median = null, p99 = null;
+                for (String kv : args.split(",")) {
+                    String[] e = kv.split("=", 2);
+                    if (e.length != 2) throw new IllegalArgumentException("lognormal needs median=..,p99=..: " + args);
+                    switch (e[0].trim()) {
+                        case "median" -> median = duration(e[1]);
+                        case "p99"    -> p99 = duration(e[1]);
+                        default -> throw new IllegalArgumentException("unknown lognormal parameter: " + e[0]);
+                    }
+                }
+                if (median == null || p99 == null) throw new IllegalArgumentException("lognormal needs median and p99");
+                yield lognormal(median, p99);
+            }
+            default -> throw new IllegalArgumentException("unknown latency distribution: " + name);
+        };
+
+        double error = 0.0, timeout = 0.0;
+        int status = 500;
+        for (int i = 1; i < parts.length; i++) {
+            String[] e = parts[i].split("=", 2);
+            if (e.length != 2) throw new IllegalArgumentException("expected key=value: " + parts[i]);
+            switch (e[0].trim().toLowerCase(Locale.ROOT)) {
+                case "error"   -> error = Double.parseDouble(e[1].trim());
+                case "status"  -> status = Integer.parseInt(e[1].trim());
+                case "timeout" -> timeout = Double.parseDouble(e[1].trim());
+                default -> throw new IllegalArgumentException("unknown option: " + e[0]);
+            }
+        }
+        return new LatencyProfile(p.kind, p.a, p.b, error, status, timeout);
+    }
+
+    /** Draws the behaviour for one request. */
+    public Outcome next() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        double roll = rnd.nextDouble();
+        if (roll < timeoutRate) return new Outcome(Duration.ZERO, 0, true);
+
+        long nanos = switch (kind) {
+            case NONE      -> 0;
+            case FIXED     -> a;
+            case UNIFORM   -> a == b ? a : rnd.nextLong(a, b + 1);
+            case LOGNORMAL -> {
+                double sigma = Math.log((double) b / a) / Z99;
+                yield (long) Math.min(MAX_DELAY_NANOS, a * Math.exp(sigma * rnd.nextGaussian()));
+            }
+        };
+        int status = roll < timeoutRate + errorRate ? errorStatus : 200;
+        return new Outcome(Duration.ofNanos(nanos), status, false);
+    }
+
+    @Override
+    public String toString() {
+        String latency = switch (kind) {
+            case NONE      -> "none";
+            case FIXED     -> "fixed:" + format(a);
+            case UNIFORM   -> "uniform:" + format(a) + ".." + format(b);
+            case LOGNORMAL -> "lognormal:median=" + format(a) + ",p99=" + format(b);
+        };
+        return latency
+                + (errorRate > 0 ? ";error=" + errorRate + (errorStatus != 500 ? ";status=" + errorStatus : "") : "")
+                + (timeoutRate > 0 ? ";timeout=" + timeoutRate : "");
+    }
+
+    // ── Private helpers ───────────────────────────────────────────────────────
+
+    private static Duration duration(String text) {
+        Matcher m = DURATION.matcher(text.trim().toLowerCase(Locale.ROOT));
+        if (!m.matches()) throw new IllegalArgumentException("bad duration (use ns, us, ms or s): " + text);
+        double v = Double.parseDouble(m.group(1));
+        double scale = switch (m.group(2)) {
+            case "ns" -> 1;
+            case "us" -> 1e3;
+            case "ms" -> 1e6;
+            default   -> 1e9;
+        };
+        return Duration.ofNanos(Math.round(v * scale));
+    }
+
+    private static String format(long nanos) {
+        if (nanos % 1_000_000_000L == 0 && nanos > 0) return nanos / 1_000_000_000L + "s";
+        if (nanos % 1_000_000L == 0) return nanos / 1_000_000L + "ms";
+        if (nanos % 1_000L == 0) return nanos / 1_000L + "us";
+        return nanos + "ns";
+    }
+}
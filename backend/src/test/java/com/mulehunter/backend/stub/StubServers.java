@@ -0,0 +1,86 @@
+package com.mulehunter.backend.stub;
+
+import com.mulehunter.backend.stub.DownstreamStandIn.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs {@link DownstreamStandIn}s for every downstream on the ports the
+ * backend uses by default, so TransactionService can be load-tested on one
+ * box without the Python models or security-forensics running:
+ *
+ *   ai        8001   (ai.service.url)
+ *   eif       8000   (eif.service.url)
+ *   visual    8000   (visual.analytics.url)
+ *   security  8081   (security.service.url)
+ *
+ * Per service, -Dstub.&lt;name&gt;.port and -Dstub.&lt;name&gt;.profile (a
+ * {@link LatencyProfile} spec, default "none") override the defaults;
+ * services on the same port share one server. Request, error and timeout
+ * counts are printed every -Dstub.report-seconds (default 10).
+ *
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.mulehunter.backend.stub.StubServers \
+ *       -Dstub.ai.profile="lognormal:median=15ms,p99=80ms;error=0.01;timeout=0.002" \
+ *       -Dstub.eif.profile="fixed:3ms"
+ */
+public final class StubServers {
+
+    private static final Map<Service, Integer> DEFAULT_PORTS = Map.of(
+            Service.AI,       8001,
+            Service.EIF,      8000,
+            Service.VISUAL,   8000,
+            Service.SECURITY, 8081);
+
+    private StubServers() {}
+
+    public static void main(String[] args) throws InterruptedException {
+
+        Map<Integer, DownstreamStandIn.Builder> byPort = new TreeMap<>();
+        for (Service s : Service.values()) {
+            String name = s.name().toLowerCase(Locale.ROOT);
+            int port = Integer.getInteger("stub." + name + ".port", DEFAULT_PORTS.get(s));
+            LatencyProfile profile = LatencyProfile.parse(System.getProperty("stub." + name + ".profile", "none"));
+            byPort.computeIfAbsent(port, p -> DownstreamStandIn.builder().port(p)).serve(s, profile);
+        }
+
+        List<DownstreamStandIn> servers = new ArrayList<>();
+        for (DownstreamStandIn.Builder b : byPort.values()) servers.add(b.start());
+
+        for (DownstreamStandIn server : servers) {
+            server.profiles().forEach((s, p) -> System.out.printf("🧪 STUB %-8s :%d %s → %s%n",
+                    s.name().toLowerCase(Locale.ROOT), server.port(), s.paths(), p));
+        }
+
+        long reportSeconds = Long.getLong("stub.report-seconds", 10);
+        Disposable reporter = Flux.interval(Duration.ofSeconds(reportSeconds))
+                .subscribe(t -> report(servers));
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            reporter.dispose();
+            report(servers);
+            servers.forEach(DownstreamStandIn::close);
+            stopped.countDown();
+        }));
+        stopped.await();
+    }
+
+    private static void report(List<DownstreamStandIn> servers) {
+        for (DownstreamStandIn server : servers) {
+            for (Service s : server.profiles().keySet()) {
+                System.out.printf("🧪 STUB %-8s requests=%d errors=%d timeouts=%d%n",
+                        s.name().toLowerCase(Locale.ROOT),
+                        server.requests(s), server.injectedErrors(s), server.injectedTimeouts(s));
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.mulehunter.backend.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CircuitBreaker state machine: the sliding failure window, OPEN fast-fail,
+ * HALF_OPEN probing, the bulkhead and dropping outcomes of calls admitted
+ * before the last transition. Calls held open with a Sinks.One stand in for
+ * slow downstream requests.
+ */
+class CircuitBreakerTest {
+
+    private static final Duration LONG = Duration.ofHours(1);
+
+    @Test
+    void opensOnceMinCallsAreBufferedAndTheRateIsReached() {
+        CircuitBreaker cb = breaker(4, 4, 0.5, LONG, 1, 10);
+        ok(cb);
+        fail(cb);
+        ok(cb);
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());   // 1/3 buffered, below minCalls
+
+        fail(cb);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());     // 2/4
+    }
+
+    @Test
+    void windowSlidesOverTheLastCalls() {
+        CircuitBreaker cb = breaker(4, 4, 0.75, LONG, 1, 10);
+        fail(cb);
+        fail(cb);
+        ok(cb);
+        ok(cb);
+        ok(cb);                                   // evicts the first failure
+        assertEquals(0.25, cb.snapshot().failureRate(), 1e-12);
+        assertEquals(4, cb.snapshot().bufferedCalls());
+
+        fail(cb);                                 // replaces a failure: still 1/4
+        fail(cb);
+        assertEquals(0.5, cb.snapshot().failureRate(), 1e-12);
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+
+        fail(cb);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+    }
+
+    @Test
+    void nonFailureErrorsCountAsSuccesses() {
+        CircuitBreaker cb = new CircuitBreaker("test", 2, 2, 0.5, LONG, 1, 10,
+                e -> !(e instanceof IllegalArgumentException));
+        for (int i = 0; i < 4; i++) {
+            assertInstanceOf(IllegalArgumentException.class,
+                    outcome(cb, Mono.error(new IllegalArgumentException("4xx"))));
+        }
+        assertEquals(0.0, cb.snapshot().failureRate(), 0.0);
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+    }
+
+    @Test
+    void openRejectsWithoutSubscribing() {
+        CircuitBreaker cb = breaker(1, 1, 1.0, LONG, 1, 10);
+        fail(cb);
+
+        AtomicBoolean subscribed = new AtomicBoolean();
+        Throwable e = outcome(cb, Mono.fromCallable(() -> {
+            subscribed.set(true);
+            return "x";
+        }));
+        assertInstanceOf(CircuitBreaker.RejectedException.class, e);
+        assertFalse(subscribed.get());
+        assertEquals(1, cb.snapshot().rejectedOpen());
+    }
+
+    // ── Half-open ─────────────────────────────────────────────────────────────
+
+    @Test
+    void halfOpenAdmitsOnlyTheProbesAndClosesOnTheirSuccess() {
+        CircuitBreaker cb = breaker(2, 2, 0.5, Duration.ZERO, 2, 10);
+        fail(cb);
+        fail(cb);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+
+        Sinks.One<String> p1 = Sinks.one();
+        Sinks.One<String> p2 = Sinks.one();
+        AtomicReference<Throwable> r1 = pending(cb, p1);
+        pending(cb, p2);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.state());
+        assertInstanceOf(CircuitBreaker.RejectedException.class, outcome(cb, Mono.just("x")));
+
+        p1.tryEmitValue("ok");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.state());
+        p2.tryEmitValue("ok");
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+        assertEquals(0, cb.snapshot().bufferedCalls());
+        assertEquals(0, cb.snapshot().inFlight());
+        assertNull(r1.get());
+    }
+
+    @Test
+    void aFailedProbeReopens() {
+        CircuitBreaker cb = breaker(1, 1, 1.0, Duration.ZERO, 2, 10);
+        fail(cb);
+        ok(cb);                                   // probe 1 of 2
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.state());
+
+        fail(cb);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+    }
+
+    // ── Generations ───────────────────────────────────────────────────────────
+
+    @Test
+    void aLateOutcomeFromBeforeATransitionIsIgnored() {
+        CircuitBreaker cb = breaker(2, 2, 0.5, Duration.ZERO, 1, 10);
+
+        Sinks.One<String> slow = Sinks.one();
+        pending(cb, slow);                        // admitted while CLOSED
+        fail(cb);
+        fail(cb);
+        assertEquals(CircuitBreaker.State.OPEN, cb.state());
+
+        Sinks.One<String> probe = Sinks.one();
+        pending(cb, probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.state());
+
+        // The CLOSED-era call failing now must not re-open the half-open breaker.
+        slow.tryEmitError(new RuntimeException("late 5xx"));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, cb.state());
+        assertEquals(1, cb.snapshot().inFlight());
+
+        probe.tryEmitValue("ok");
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+        assertEquals(0, cb.snapshot().bufferedCalls());
+    }
+
+    @Test
+    void aLateSuccessDoesNotCountInTheFreshWindow() {
+        CircuitBreaker cb = breaker(2, 2, 0.5, Duration.ZERO, 1, 10);
+        Sinks.One<String> slow = Sinks.one();
+        pending(cb, slow);
+        fail(cb);
+        fail(cb);
+        ok(cb);                                   // probe closes the breaker
+
+        slow.tryEmitValue("ok");
+        assertEquals(0, cb.snapshot().bufferedCalls());
+    }
+
+    // ── Bulkhead ──────────────────────────────────────────────────────────────
+
+    @Test
+    void bulkheadRejectsPastMaxConcurrentAndFreesOnCompletionOrCancel() {
+        CircuitBreaker cb = breaker(4, 4, 0.5, LONG, 1, 2);
+        Sinks.One<String> a = Sinks.one();
+        Disposable b = cb.protect(Sinks.<String>one().asMono()).subscribe(v -> {}, e -> {});
+        pending(cb, a);
+
+        Throwable e = outcome(cb, Mono.just("x"));
+        assertInstanceOf(CircuitBreaker.RejectedException.class, e);
+        assertTrue(e.getMessage().contains("bulkhead full"));
+        assertEquals(1, cb.snapshot().rejectedFull());
+
+        a.tryEmitValue("ok");
+        assertNull(outcome(cb, Mono.just("x")));
+
+        // A cancelled call frees its permit but records no outcome.
+        b.dispose();
+        assertEquals(0, cb.snapshot().inFlight());
+        assertEquals(2, cb.snapshot().bufferedCalls());
+        assertEquals(CircuitBreaker.State.CLOSED, cb.state());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static CircuitBreaker breaker(int window, int minCalls, double rate, Duration open,
+                                          int probes, int maxConcurrent) {
+        return new CircuitBreaker("test", window, minCalls, rate, open, probes, maxConcurrent, e -> true);
+    }
+
+    private static void ok(CircuitBreaker cb) {
+        assertNull(outcome(cb, Mono.just("ok")));
+    }
+
+    private static void fail(CircuitBreaker cb) {
+        outcome(cb, Mono.error(new RuntimeException("5xx")));
+    }
+
+    /** Error of a synchronous call, null on success. */
+    private static Throwable outcome(CircuitBreaker cb, Mono<String> call) {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        cb.protect(call).subscribe(v -> {}, error::set);
+        return error.get();
+    }
+
+    /** Subscribes a call that completes when the sink is emitted to. */
+    private static AtomicReference<Throwable> pending(CircuitBreaker cb, Sinks.One<String> sink) {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        cb.protect(sink.asMono()).subscribe(v -> {}, error::set);
+        return error;
+    }
+}
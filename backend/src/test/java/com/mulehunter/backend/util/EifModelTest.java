@@ -0,0 +1,142 @@
+package com.mulehunter.backend.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * EifModel on hand-built artefacts: c(n), the hyperplane split, path-length
+ * averaging and the loader-side artefact checks.
+ */
+class EifModelTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int SAMPLE = 256;
+
+    @Test
+    void cMatchesTheBstAveragePathLength() {
+        assertEquals(0.0, EifModel.c(0), 0.0);
+        assertEquals(0.0, EifModel.c(1), 0.0);
+        assertEquals(2 * 0.5772156649 - 1.0, EifModel.c(2), 1e-12);
+        assertEquals(10.244770920, EifModel.c(256), 1e-9);
+    }
+
+    @Test
+    void splitsOnTheHyperplaneAndGoesRightOnIt() {
+        // x·n = velocity + 2·burst against n·p = 3: left leaf at depth 2, right at 4.
+        EifModel model = EifModel.parse(artefact(splitTree(2.0, 4.0)));
+
+        assertEquals(anomaly(2.0), model.anomalyScore(raw(1.0, 0.5)), 1e-15);   // 2 < 3
+        assertEquals(anomaly(4.0), model.anomalyScore(raw(1.0, 1.0)), 1e-15);   // 3 = 3
+        assertEquals(anomaly(4.0), model.anomalyScore(raw(3.0, 0.5)), 1e-15);   // 4 > 3
+    }
+
+    @Test
+    void scalesBeforeSplitting() {
+        ObjectNode json = artefact(splitTree(2.0, 4.0));
+        ((ArrayNode) json.get("scalerMean")).set(0, 10.0);
+        ((ArrayNode) json.get("scalerScale")).set(0, 2.0);
+        EifModel model = EifModel.parse(json);
+
+        // (12 - 10) / 2 = 1 → 1 + 2·0.5 = 2 < 3
+        assertEquals(anomaly(2.0), model.anomalyScore(raw(12.0, 0.5)), 1e-15);
+        // (14 - 10) / 2 = 2 → 2 + 2·0.5 = 3, not < 3
+        assertEquals(anomaly(4.0), model.anomalyScore(raw(14.0, 0.5)), 1e-15);
+    }
+
+    @Test
+    void averagesPathLengthOverTrees() {
+        EifModel model = EifModel.parse(artefact(splitTree(2.0, 4.0), leafTree(7.0)));
+
+        assertEquals(2, model.trees());
+        assertEquals(4, model.nodes());
+        assertEquals(anomaly((2.0 + 7.0) / 2), model.anomalyScore(raw(0.0, 0.0)), 1e-15);
+        assertEquals(anomaly((4.0 + 7.0) / 2), model.anomalyScore(raw(5.0, 0.0)), 1e-15);
+    }
+
+    @Test
+    void calibratesAroundTheThreshold() {
+        ObjectNode json = artefact(leafTree(5.0));
+        json.put("threshold", anomaly(5.0));
+        EifModel model = EifModel.parse(json);
+
+        assertEquals(0.5, model.score(raw(0.0, 0.0)), 1e-15);
+    }
+
+    @Test
+    void rejectsAFailedGoldenCheckOrAMismatchedCNorm() {
+        ObjectNode bad = artefact(leafTree(5.0));
+        ObjectNode check = bad.putArray("checks").addObject();
+        check.set("features", JSON.valueToTree(new double[EifModel.RAW_DIM]));
+        check.put("score", 0.9);
+        assertThrows(IllegalArgumentException.class, () -> EifModel.parse(bad));
+
+        ObjectNode cNorm = artefact(leafTree(5.0));
+        cNorm.put("cNorm", EifModel.c(SAMPLE) + 1e-3);
+        assertThrows(IllegalArgumentException.class, () -> EifModel.parse(cNorm));
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static double anomaly(double pathLength) {
+        return Math.pow(2.0, -pathLength / EifModel.c(SAMPLE));
+    }
+
+    private static double[] raw(double velocity, double burst) {
+        double[] raw = new double[EifModel.RAW_DIM];
+        raw[0] = velocity;
+        raw[1] = burst;
+        return raw;
+    }
+
+    /** Root splits on velocity·1 + burst·2 < 3 (k = 2); both children are leaves. */
+    private static ObjectNode splitTree(double leftPath, double rightPath) {
+        ObjectNode t = JSON.createObjectNode();
+        t.set("left",       JSON.valueToTree(new int[]    {1, -1, -1}));
+        t.set("right",      JSON.valueToTree(new int[]    {2, -1, -1}));
+        t.set("coefIdx",    JSON.valueToTree(new int[]    {0, 1, 0, 0, 0, 0}));
+        t.set("coef",       JSON.valueToTree(new double[] {1.0, 2.0, 0, 0, 0, 0}));
+        t.set("intercepts", JSON.valueToTree(new double[] {3.0, 0, 0}));
+        t.set("paths",      JSON.valueToTree(new double[] {0, leftPath, rightPath}));
+        return t;
+    }
+
+    private static ObjectNode leafTree(double path) {
+        ObjectNode t = JSON.createObjectNode();
+        t.set("left",       JSON.valueToTree(new int[]    {-1}));
+        t.set("right",      JSON.valueToTree(new int[]    {-1}));
+        t.set("coefIdx",    JSON.valueToTree(new int[]    {0, 0}));
+        t.set("coef",       JSON.valueToTree(new double[] {0, 0}));
+        t.set("intercepts", JSON.valueToTree(new double[] {0}));
+        t.set("paths",      JSON.valueToTree(new double[] {path}));
+        return t;
+    }
+
+    private static ObjectNode artefact(ObjectNode... trees) {
+        double[] mean  = new double[EifModel.EXPANDED_DIM];
+        double[] scale = new double[EifModel.EXPANDED_DIM];
+        Arrays.fill(scale, 1.0);
+
+        ObjectNode json = JSON.createObjectNode()
+                .put("format", "eif-forest/1")
+                .put("version", "test")
+                .put("rawDim", EifModel.RAW_DIM)
+                .put("dim", EifModel.EXPANDED_DIM)
+                .put("k", 2)
+                .put("sampleSize", SAMPLE)
+                .put("cNorm", EifModel.c(SAMPLE))
+                .put("threshold", 0.5)
+                .put("sigmoidK", 6.0);
+        json.set("scalerMean", JSON.valueToTree(mean));
+        json.set("scalerScale", JSON.valueToTree(scale));
+        json.putArray("trees").addAll(List.of(trees));
+        return json;
+    }
+}
@@ -0,0 +1,171 @@
+package com.mulehunter.backend.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hedger: no hedging before the warm-up, the rolling-percentile delay and
+ * when it is recomputed, the token bucket that caps extra load, and errors
+ * from one attempt never cancelling the other.
+ * Slow primaries are a Mono.delay, cancelled as soon as a hedge answers.
+ */
+class HedgerTest {
+
+    private static final Duration MIN_DELAY = Duration.ofMillis(2);
+    private static final int      WARM_UP   = 256;   // WINDOW / 4
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void noDelayUntilAQuarterWindowOfSamples() {
+        Hedger hedger = hedger(0.9, 1.0);
+        fast(hedger, WARM_UP - 1);
+        assertTrue(Double.isNaN(delayMs()));
+
+        fast(hedger, 1);
+        assertEquals(MIN_DELAY.toMillis(), delayMs(), 0.0);   // fast calls clamp to minDelay
+    }
+
+    @Test
+    void delayIsRecomputedEverySixtyFourCallsFromThePercentile() throws InterruptedException {
+        Hedger hedger = hedger(0.9, 0.0);   // no budget: slow calls are never hedged
+        fast(hedger, WARM_UP);
+
+        slow(hedger, 63, Duration.ofMillis(30));
+        Thread.sleep(50);
+        assertEquals(MIN_DELAY.toMillis(), delayMs(), 0.0);
+
+        // 320 samples, 64 of them slow: p90 is index 288, a slow one.
+        slow(hedger, 1, Duration.ofMillis(30));
+        double delay = awaitDelayMs(30);
+        assertTrue(delay >= 30, "delay " + delay);
+        assertEquals(0.0, sent(), 0.0);
+    }
+
+    @Test
+    void tokenBucketCapsHedgesAtBurstPlusBudget() {
+        Hedger hedger = hedger(0.9, 0.5);
+        fast(hedger, WARM_UP);   // tokens saturate at BURST = 10
+
+        for (int i = 0; i < 30; i++) {
+            assertEquals("v", hedger.hedge(slowThenFast()).block(Duration.ofSeconds(5)));
+        }
+        // 10 saved + 0.5 per call: hedges 1-19 drain the burst, then every
+        // second call has a whole token (calls 21, 23, ... 29).
+        assertEquals(24.0, sent(), 0.0);
+        assertEquals(24.0, registry.counter("test.hedge.won").count(), 0.0);
+    }
+
+    @Test
+    void aPrimaryThatAnswersFirstWins() {
+        Hedger hedger = hedger(0.9, 1.0);
+        fast(hedger, WARM_UP);
+
+        AtomicInteger calls = new AtomicInteger();
+        String v = hedger.hedge(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(20)).map(t -> "primary")
+                : Mono.<String>never()).block(Duration.ofSeconds(5));
+        assertEquals("primary", v);
+        assertEquals(1.0, sent(), 0.0);
+        assertEquals(0.0, registry.counter("test.hedge.won").count(), 0.0);
+    }
+
+    @Test
+    void aFastFailingHedgeDoesNotCancelASlowPrimary() {
+        Hedger hedger = hedger(0.9, 1.0);
+        fast(hedger, WARM_UP);
+
+        AtomicInteger calls = new AtomicInteger();
+        String v = hedger.hedge(() -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(50)).map(t -> "primary")
+                : Mono.<String>error(new IllegalStateException("pool full"))).block(Duration.ofSeconds(5));
+        assertEquals("primary", v);
+        assertEquals(2, calls.get());
+        assertEquals(1.0, sent(), 0.0);
+        assertEquals(0.0, registry.counter("test.hedge.won").count(), 0.0);
+    }
+
+    @Test
+    void aFailedPrimaryIsRescuedByTheHedgeOrSurfacesItsOwnError() {
+        Hedger hedger = hedger(0.9, 1.0);
+        fast(hedger, WARM_UP);
+
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals("hedge", hedger.hedge(() -> calls.incrementAndGet() == 1
+                ? Mono.<String>error(new IllegalStateException("reset"))
+                : Mono.just("hedge")).block(Duration.ofSeconds(5)));
+
+        AtomicInteger both = new AtomicInteger();
+        IllegalStateException primary = new IllegalStateException("primary");
+        Throwable e = assertThrows(IllegalStateException.class, () -> hedger.hedge(() -> both.incrementAndGet() == 1
+                ? Mono.<String>error(primary)
+                : Mono.<String>error(new IllegalArgumentException("hedge"))).block(Duration.ofSeconds(5)));
+        assertSame(primary, e);
+    }
+
+    @Test
+    void failedPrimariesAreNotLatencySamples() throws InterruptedException {
+        Hedger hedger = hedger(0.5, 0.0);
+        slow(hedger, WARM_UP, Duration.ofMillis(30));
+        assertTrue(awaitDelayMs(30) >= 30);
+
+        // Sampled, 320 fast errors would make the median (index 288 of 576) ~0 ms.
+        Flux.range(0, 320)
+                .flatMap(i -> hedger.hedge(() -> Mono.<String>error(new IllegalStateException("reset")))
+                        .onErrorResume(err -> Mono.empty()))
+                .blockLast(Duration.ofSeconds(5));
+        Thread.sleep(50);
+        assertTrue(delayMs() >= 30, "delay " + delayMs());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private Hedger hedger(double percentile, double budget) {
+        return new Hedger("test", percentile, budget, MIN_DELAY, registry);
+    }
+
+    private static void fast(Hedger hedger, int n) {
+        for (int i = 0; i < n; i++) hedger.hedge(() -> Mono.just("v")).block();
+    }
+
+    private static void slow(Hedger hedger, int n, Duration latency) {
+        Flux.range(0, n)
+                .flatMap(i -> hedger.hedge(() -> Mono.delay(latency).map(t -> "v")))
+                .blockLast(Duration.ofSeconds(5));
+    }
+
+    /** Primary takes 50 ms (cancelled if hedged), the hedge answers at once. */
+    private static Supplier<Mono<String>> slowThenFast() {
+        AtomicInteger calls = new AtomicInteger();
+        return () -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(50)).map(t -> "v")
+                : Mono.just("v");
+    }
+
+    // The primary's latency is recorded in doFinally, which can run just
+    // after the blocked-on result is delivered.
+    private double awaitDelayMs(double atLeast) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1_000;
+        while (!(delayMs() >= atLeast) && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        return delayMs();
+    }
+
+    private double delayMs() {
+        return registry.get("test.hedge.delay").gauge().value();
+    }
+
+    private double sent() {
+        return registry.counter("test.hedge.sent").count();
+    }
+}
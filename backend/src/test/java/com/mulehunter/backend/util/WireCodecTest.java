@@ -0,0 +1,102 @@
+package com.mulehunter.backend.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mulehunter.backend.DTO.EifBatchResponse;
+import com.mulehunter.backend.stub.DownstreamStandIn;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WireCodec against {@link DownstreamStandIn}: CBOR and JSON give the same
+ * results, and a service that cannot read CBOR is fallen back from.
+ */
+class WireCodecTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void cborAndJsonScoreIdentically() {
+        double[] rows = new double[250 * 8];
+        for (int i = 0; i < rows.length; i++) rows[i] = (i % 13) / 3.0 + (i % 2 == 0 ? 1e-300 : 1e12);
+        Map<String, Object> eifBatch = Map.of("dim", 8, "features", rows, "explain", true);
+        Map<String, Object> gnn = Map.of(
+                "sourceAccountId",   "1001",
+                "targetAccountId",   "2002",
+                "transactionAmount", 12_345.67,
+                "graphFeatures",     Map.of("suspiciousNeighborCount", 4),
+                "identityFeatures",  Map.of("deviceReuse", 2, "ipReuse", 3));
+
+        try (DownstreamStandIn service = DownstreamStandIn.start()) {
+            WebClient client = WebClient.create(service.baseUrl());
+            WireCodec json = new WireCodec("test", false, JSON);
+            WireCodec cbor = new WireCodec("test", true, JSON);
+
+            EifBatchResponse a = json.post(client, "/v1/eif/score-batch", eifBatch,
+                    p -> p.readValueAs(EifBatchResponse.class)).block(TIMEOUT);
+            EifBatchResponse b = cbor.post(client, "/v1/eif/score-batch", eifBatch,
+                    p -> p.readValueAs(EifBatchResponse.class)).block(TIMEOUT);
+
+            assertEquals(250, b.getScores().length);
+            assertArrayEquals(a.getScores(), b.getScores());
+            assertArrayEquals(a.getConfidence(), b.getConfidence());
+            assertEquals(a.getTopFactors(), b.getTopFactors());
+            assertEquals(a.getExplanation(), b.getExplanation());
+
+            JsonNode x = json.<JsonNode>post(client, "/v1/gnn/score", gnn, JsonParser::readValueAsTree).block(TIMEOUT);
+            JsonNode y = cbor.<JsonNode>post(client, "/v1/gnn/score", gnn, JsonParser::readValueAsTree).block(TIMEOUT);
+            assertEquals(x, y);
+            assertEquals(0.1234567, y.path("gnnScore").asDouble(), 1e-12);
+
+            assertEquals(2, service.cborRequests());
+            assertEquals(2, service.jsonRequests());
+            assertTrue(cbor.isCbor());
+        }
+    }
+
+    @Test
+    void fallsBackToJsonWhenServiceRejectsCbor() {
+        try (DownstreamStandIn service = DownstreamStandIn.start(false, false)) {
+            WebClient client = WebClient.create(service.baseUrl());
+            WireCodec codec = new WireCodec("test", true, JSON);
+            Map<String, Object> payload = Map.of("features", new double[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+            for (int i = 0; i < 3; i++) {
+                JsonNode r = codec.<JsonNode>post(client, "/v1/eif/score", payload, JsonParser::readValueAsTree)
+                        .block(TIMEOUT);
+                assertEquals(1.0 / (1.0 + Math.exp(-3.5)), r.path("score").asDouble(), 1e-12);
+            }
+
+            assertFalse(codec.isCbor());
+            assertEquals(1, service.cborRequests());
+            assertEquals(3, service.jsonRequests());
+        }
+    }
+
+    @Test
+    void readsJsonAnswerToCborRequest() {
+        try (DownstreamStandIn service = DownstreamStandIn.start(true, false)) {
+            WebClient client = WebClient.create(service.baseUrl());
+            WireCodec codec = new WireCodec("test", true, JSON);
+
+            EifBatchResponse r = codec.post(client, "/v1/eif/score-batch",
+                    Map.of("dim", 8, "features", new double[16], "explain", false),
+                    p -> p.readValueAs(EifBatchResponse.class)).block(TIMEOUT);
+
+            assertEquals(2, r.getScores().length);
+            assertEquals(1.0 / (1.0 + Math.E), r.getScores()[0], 1e-12);
+            assertTrue(codec.isCbor());
+            assertEquals(1, service.cborRequests());
+        }
+    }
+}
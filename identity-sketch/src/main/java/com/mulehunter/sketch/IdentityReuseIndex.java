@@ -0,0 +1,104 @@
+package com.mulehunter.sketch;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded identity-reuse index: per kind (JA3 / device / IP), an LRU map of
+ * key → {@link IdentityReuseSketch}. At most {@code maxKeysPerKind} keys are
+ * tracked per kind, so a botnet rotating millions of IPs evicts the least
+ * recently seen keys instead of growing the heap; worst case is
+ * maxKeysPerKind × 1 KiB per kind. An evicted key that comes back starts
+ * over and reports itself as new.
+ */
+public final class IdentityReuseIndex {
+
+    public enum Kind { JA3, DEVICE, IP }
+
+    /** distinctAccounts includes the recorded account; isNew = key not tracked before. */
+    public record Reuse(int distinctAccounts, boolean isNew) {
+        public static final Reuse NONE = new Reuse(0, false);
+    }
+
+    private final int exactLimit;
+    private final Map<Kind, LinkedHashMap<String, IdentityReuseSketch>> keys = new EnumMap<>(Kind.class);
+
+    public IdentityReuseIndex(int maxKeysPerKind, int exactLimit) {
+        this.exactLimit = exactLimit;
+        for (Kind kind : Kind.values()) {
+            keys.put(kind, new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IdentityReuseSketch> eldest) {
+                    return size() > maxKeysPerKind;
+                }
+            });
+        }
+    }
+
+    /** Records that {@code accountId} used {@code key}; Reuse.NONE for a null key. */
+    public Reuse record(Kind kind, String key, String accountId) {
+        if (key == null) return Reuse.NONE;
+
+        IdentityReuseSketch sketch;
+        boolean isNew;
+        LinkedHashMap<String, IdentityReuseSketch> map = keys.get(kind);
+        synchronized (map) {
+            sketch = map.get(key);
+            isNew  = sketch == null;
+            if (isNew) {
+                sketch = new IdentityReuseSketch(exactLimit);
+                map.put(key, sketch);
+            }
+        }
+        int distinct = accountId == null ? sketch.count() : sketch.add(accountId);
+        return new Reuse(distinct, isNew);
+    }
+
+    /** Distinct accounts seen for the key, 0 if it is not tracked. */
+    public int distinctAccounts(Kind kind, String key) {
+        if (key == null) return 0;
+        LinkedHashMap<String, IdentityReuseSketch> map = keys.get(kind);
+        IdentityReuseSketch sketch;
+        synchronized (map) {
+            sketch = map.get(key);
+        }
+        return sketch == null ? 0 : sketch.count();
+    }
+
+    /** Folds a sketch built elsewhere (another instance, a snapshot) into the key's sketch. */
+    public void merge(Kind kind, String key, IdentityReuseSketch other) {
+        LinkedHashMap<String, IdentityReuseSketch> map = keys.get(kind);
+        IdentityReuseSketch sketch;
+        synchronized (map) {
+            sketch = map.computeIfAbsent(key, k -> new IdentityReuseSketch(exactLimit));
+        }
+        sketch.merge(other);
+    }
+
+    /**
+     * Folds every key of {@code other} into this index, oldest first so the
+     * LRU order of the result follows {@code other}'s.
+     */
+    public void mergeAll(IdentityReuseIndex other) {
+        for (Kind kind : Kind.values()) {
+            List<Map.Entry<String, IdentityReuseSketch>> entries;
+            LinkedHashMap<String, IdentityReuseSketch> map = other.keys.get(kind);
+            synchronized (map) {
+                entries = new ArrayList<>(map.entrySet());
+            }
+            for (Map.Entry<String, IdentityReuseSketch> e : entries) {
+                merge(kind, e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    public int trackedKeys(Kind kind) {
+        LinkedHashMap<String, IdentityReuseSketch> map = keys.get(kind);
+        synchronized (map) {
+            return map.size();
+        }
+    }
+}
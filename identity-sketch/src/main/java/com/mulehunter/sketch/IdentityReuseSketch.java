@@ -0,0 +1,66 @@
+package com.mulehunter.sketch;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Distinct accounts seen for one identity key (a JA3, device hash or IP).
+ *
+ * Exact while at most {@code exactLimit} accounts have been seen — the
+ * common case, and a few strings at most — then promoted to a fixed 1 KiB
+ * HyperLogLog. Sketches of the same key from different sources merge
+ * losslessly (set union / register max).
+ */
+public final class IdentityReuseSketch {
+
+    private final int exactLimit;
+    private Set<String> exact = new HashSet<>();
+    private byte[] registers;
+
+    public IdentityReuseSketch(int exactLimit) {
+        this.exactLimit = exactLimit;
+    }
+
+    /** Adds the account and returns the distinct-account count including it. */
+    public synchronized int add(String accountId) {
+        if (registers != null) {
+            HyperLogLog.offer(registers, 0, HyperLogLog.hash(accountId));
+        } else if (exact.add(accountId) && exact.size() > exactLimit) {
+            promote();
+        }
+        return count();
+    }
+
+    public synchronized int count() {
+        return registers == null ? exact.size() : (int) Math.round(HyperLogLog.estimate(registers));
+    }
+
+    /** Folds {@code other} into this sketch. */
+    public void merge(IdentityReuseSketch other) {
+        Set<String> otherExact;
+        byte[] otherRegisters;
+        synchronized (other) {
+            otherExact     = other.exact == null ? null : new HashSet<>(other.exact);
+            otherRegisters = other.registers == null ? null : other.registers.clone();
+        }
+        synchronized (this) {
+            if (otherRegisters != null) {
+                if (registers == null) promote();
+                HyperLogLog.mergeAt(registers, 0, otherRegisters);
+            } else {
+                for (String account : otherExact) {
+                    if (registers != null) HyperLogLog.offer(registers, 0, HyperLogLog.hash(account));
+                    else if (exact.add(account) && exact.size() > exactLimit) promote();
+                }
+            }
+        }
+    }
+
+    private void promote() {
+        registers = new byte[HyperLogLog.M];
+        for (String account : exact) {
+            HyperLogLog.offer(registers, 0, HyperLogLog.hash(account));
+        }
+        exact = null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.mulehunter.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HyperLogLog registers: offer/merge semantics, slot addressing inside a
+ * shared byte[] and estimate accuracy on both sides of the linear-counting
+ * cut-over.
+ */
+class HyperLogLogTest {
+
+    @Test
+    void offerReportsOnlyRegisterGrowth() {
+        byte[] regs = new byte[HyperLogLog.M];
+        long h = HyperLogLog.hash("acct-1");
+
+        assertTrue(HyperLogLog.offer(regs, 0, h));
+        assertFalse(HyperLogLog.offer(regs, 0, h));
+        assertEquals(1.0, HyperLogLog.estimate(regs), 0.01);
+        assertEquals(0.0, HyperLogLog.estimate(new byte[HyperLogLog.M]), 0.0);
+    }
+
+    @Test
+    void estimatesWithinTheStandardError() {
+        for (int n : new int[] {100, 2_000, 50_000}) {
+            byte[] regs = new byte[HyperLogLog.M];
+            for (int i = 0; i < n; i++) HyperLogLog.offer(regs, 0, HyperLogLog.hash("acct-" + i));
+            // 3σ at ~3.25%
+            assertEquals(n, HyperLogLog.estimate(regs), n * 0.1, "n=" + n);
+        }
+    }
+
+    @Test
+    void mergeIsTheSketchOfTheUnion() {
+        byte[] a     = new byte[HyperLogLog.M];
+        byte[] b     = new byte[HyperLogLog.M];
+        byte[] union = new byte[HyperLogLog.M];
+        for (int i = 0; i < 3_000; i++) {
+            long h = HyperLogLog.hash("acct-" + i);
+            HyperLogLog.offer(i < 2_000 ? a : b, 0, h);
+            if (i >= 1_000 && i < 2_000) HyperLogLog.offer(b, 0, h);   // overlap
+            HyperLogLog.offer(union, 0, h);
+        }
+
+        byte[] merged = a.clone();
+        assertTrue(HyperLogLog.mergeAt(merged, 0, b));
+        assertArrayEquals(union, merged);
+        assertFalse(HyperLogLog.mergeAt(merged, 0, b));
+
+        byte[] into = b.clone();
+        HyperLogLog.mergeInto(into, a, 0);
+        assertArrayEquals(union, into);
+    }
+
+    @Test
+    void slotsInASharedArrayAreIndependent() {
+        byte[] ring = new byte[3 * HyperLogLog.M];
+        for (int i = 0; i < 500; i++) HyperLogLog.offer(ring, HyperLogLog.M, HyperLogLog.hash("acct-" + i));
+
+        byte[] slot0 = new byte[HyperLogLog.M];
+        byte[] slot1 = new byte[HyperLogLog.M];
+        HyperLogLog.mergeInto(slot0, ring, 0);
+        HyperLogLog.mergeInto(slot1, ring, HyperLogLog.M);
+        assertEquals(0.0, HyperLogLog.estimate(slot0), 0.0);
+        assertEquals(500, HyperLogLog.estimate(slot1), 50);
+
+        HyperLogLog.clear(ring, HyperLogLog.M);
+        assertArrayEquals(new byte[3 * HyperLogLog.M], ring);
+    }
+}
@@ -0,0 +1,132 @@
+package com.mulehunter.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * IdentityReuseSketch exact → HLL promotion and merges in every
+ * combination, plus the LRU-bounded IdentityReuseIndex built on it.
+ */
+class IdentityReuseSketchTest {
+
+    private static final int LIMIT = 8;
+
+    @Test
+    void staysExactUpToTheLimit() {
+        IdentityReuseSketch s = new IdentityReuseSketch(LIMIT);
+        for (int i = 0; i < LIMIT; i++) assertEquals(i + 1, s.add("acct-" + i));
+        assertEquals(LIMIT, s.add("acct-0"));
+        assertEquals(LIMIT, s.count());
+    }
+
+    @Test
+    void promotesPastTheLimitAndKeepsCounting() {
+        IdentityReuseSketch s = new IdentityReuseSketch(LIMIT);
+        for (int i = 0; i <= LIMIT; i++) s.add("acct-" + i);
+        assertEquals(LIMIT + 1, s.count());   // linear counting is exact this small
+
+        int promoted = s.count();
+        for (int i = 0; i <= LIMIT; i++) s.add("acct-" + i);
+        assertEquals(promoted, s.count());
+
+        for (int i = 0; i < 5_000; i++) s.add("acct-" + i);
+        assertEquals(5_000, s.count(), 500);
+    }
+
+    @Test
+    void exactMergesAreSetUnions() {
+        IdentityReuseSketch a = sketch(0, 3);
+        a.merge(sketch(2, 6));
+        assertEquals(6, a.count());
+
+        // Union past the limit promotes.
+        IdentityReuseSketch b = sketch(0, 5);
+        b.merge(sketch(5, 10));
+        assertEquals(10, b.count());
+        b.add("acct-0");
+        assertEquals(10, b.count());
+    }
+
+    @Test
+    void mergingAPromotedSketchPromotesTheTarget() {
+        IdentityReuseSketch big = sketch(0, 1_000);
+        IdentityReuseSketch small = sketch(900, 903);
+
+        small.merge(big);
+        IdentityReuseSketch reference = sketch(0, 1_000);
+        assertEquals(reference.count(), small.count());
+
+        // The other direction: exact accounts offered into the registers.
+        IdentityReuseSketch exact = sketch(1_000, 1_004);
+        big.merge(exact);
+        assertEquals(sketch(0, 1_004).count(), big.count());
+        assertEquals(4, exact.count());
+    }
+
+    @Test
+    void mergeIsRegisterExactAcrossPromotedSketches() {
+        IdentityReuseSketch a = sketch(0, 2_000);
+        a.merge(sketch(1_000, 3_000));
+        assertEquals(sketch(0, 3_000).count(), a.count());
+    }
+
+    // ── IdentityReuseIndex ────────────────────────────────────────────────────
+
+    @Test
+    void indexReportsNewKeysAndCountsPerKind() {
+        IdentityReuseIndex index = new IdentityReuseIndex(16, LIMIT);
+
+        assertEquals(new IdentityReuseIndex.Reuse(1, true),  index.record(IdentityReuseIndex.Kind.IP, "10.0.0.1", "a"));
+        assertEquals(new IdentityReuseIndex.Reuse(2, false), index.record(IdentityReuseIndex.Kind.IP, "10.0.0.1", "b"));
+        assertEquals(new IdentityReuseIndex.Reuse(2, false), index.record(IdentityReuseIndex.Kind.IP, "10.0.0.1", null));
+        assertEquals(IdentityReuseIndex.Reuse.NONE,          index.record(IdentityReuseIndex.Kind.IP, null, "a"));
+
+        assertEquals(0, index.distinctAccounts(IdentityReuseIndex.Kind.JA3, "10.0.0.1"));
+        assertEquals(2, index.distinctAccounts(IdentityReuseIndex.Kind.IP, "10.0.0.1"));
+    }
+
+    @Test
+    void indexEvictsTheLeastRecentlySeenKey() {
+        IdentityReuseIndex index = new IdentityReuseIndex(2, LIMIT);
+        index.record(IdentityReuseIndex.Kind.DEVICE, "d1", "a");
+        index.record(IdentityReuseIndex.Kind.DEVICE, "d2", "a");
+        index.record(IdentityReuseIndex.Kind.DEVICE, "d1", "b");   // d2 is now eldest
+        index.record(IdentityReuseIndex.Kind.DEVICE, "d3", "a");
+
+        assertEquals(2, index.trackedKeys(IdentityReuseIndex.Kind.DEVICE));
+        assertEquals(0, index.distinctAccounts(IdentityReuseIndex.Kind.DEVICE, "d2"));
+        assertEquals(2, index.distinctAccounts(IdentityReuseIndex.Kind.DEVICE, "d1"));
+        assertTrue(index.record(IdentityReuseIndex.Kind.DEVICE, "d2", "c").isNew());
+    }
+
+    @Test
+    void mergeAllUnionsEveryKeyAndFollowsTheSourceLruOrder() {
+        IdentityReuseIndex mine = new IdentityReuseIndex(2, LIMIT);
+        mine.record(IdentityReuseIndex.Kind.JA3, "j1", "a");
+
+        IdentityReuseIndex theirs = new IdentityReuseIndex(2, LIMIT);
+        theirs.record(IdentityReuseIndex.Kind.JA3, "j2", "x");
+        theirs.record(IdentityReuseIndex.Kind.JA3, "j1", "b");
+        theirs.record(IdentityReuseIndex.Kind.IP, "i1", "c");
+
+        mine.mergeAll(theirs);
+        // j2 then j1 were folded in, so j1 is the most recent and nothing was
+        // evicted. Reads count as accesses: j2 first keeps that order.
+        assertEquals(1, mine.distinctAccounts(IdentityReuseIndex.Kind.JA3, "j2"));
+        assertEquals(2, mine.distinctAccounts(IdentityReuseIndex.Kind.JA3, "j1"));
+        assertEquals(1, mine.distinctAccounts(IdentityReuseIndex.Kind.IP, "i1"));
+
+        mine.record(IdentityReuseIndex.Kind.JA3, "j3", "a");
+        assertEquals(0, mine.distinctAccounts(IdentityReuseIndex.Kind.JA3, "j2"));
+        assertFalse(mine.record(IdentityReuseIndex.Kind.JA3, "j1", "a").isNew());
+    }
+
+    private static IdentityReuseSketch sketch(int from, int to) {
+        IdentityReuseSketch s = new IdentityReuseSketch(LIMIT);
+        for (int i = from; i < to; i++) s.add("acct-" + i);
+        return s;
+    }
+}
@@ -1,32 +1,31 @@
 package securityforensics.ja3;
 
+import com.mulehunter.sketch.IdentityReuseIndex;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.Set;
 
 /**
  * Tracks identity reuse across accounts.
  * Answers: "How many different accounts have used this JA3 / device / IP?"
  *
+ * Backed by a bounded {@link IdentityReuseIndex}: exact account sets for
+ * small keys, HyperLogLog sketches above identity.reuse.exact-limit, and at
+ * most identity.reuse.max-keys keys per kind (LRU), so memory stays bounded
+ * when IPs are rotated. The sketch classes come from the identity-sketch
+ * module, which the backend uses too.
+ *
  * NOTE: In-memory only. On restart counts reset.
- * For production: replace with MongoDB/Redis persistence.
  */
 @Component
 public class IdentityProfileStore {
 
-    // ja3 → set of accountIds that used it
-    private final ConcurrentHashMap<String, Set<String>> ja3Accounts = new ConcurrentHashMap<>();
-
-    // deviceHash → set of accountIds
-    private final ConcurrentHashMap<String, Set<String>> deviceAccounts = new ConcurrentHashMap<>();
-
-    // ip → set of accountIds
-    private final ConcurrentHashMap<String, Set<String>> ipAccounts = new ConcurrentHashMap<>();
+    private final IdentityReuseIndex reuse;
 
-    // Track first-seen (for isNew flags)
-    private final Set<String> seenJa3     = ConcurrentHashMap.newKeySet();
-    private final Set<String> seenDevices = ConcurrentHashMap.newKeySet();
-    private final Set<String> seenIps     = ConcurrentHashMap.newKeySet();
+    public IdentityProfileStore(
+            @Value("${identity.reuse.max-keys:50000}") int maxKeys,
+            @Value("${identity.reuse.exact-limit:16}") int exactLimit) {
+        this.reuse = new IdentityReuseIndex(maxKeys, exactLimit);
+    }
 
     /**
      * Record an identity event and return forensic signals.
@@ -35,36 +34,21 @@ public class IdentityProfileStore {
                                          String deviceHash, String ip,
                                          String geoCountry, String accountGeoCountry) {
 
-        boolean isNewJa3    = ja3 != null && seenJa3.add(ja3);
-        boolean isNewDevice = deviceHash != null && seenDevices.add(deviceHash);
-        boolean isNewIp     = ip != null && seenIps.add(ip);
-
-        // Update profile sets
-        if (ja3 != null && accountId != null) {
-            ja3Accounts.computeIfAbsent(ja3, k -> ConcurrentHashMap.newKeySet()).add(accountId);
-        }
-        if (deviceHash != null && accountId != null) {
-            deviceAccounts.computeIfAbsent(deviceHash, k -> ConcurrentHashMap.newKeySet()).add(accountId);
-        }
-        if (ip != null && accountId != null) {
-            ipAccounts.computeIfAbsent(ip, k -> ConcurrentHashMap.newKeySet()).add(accountId);
-        }
-
-        int ja3ReuseCount    = ja3 != null ? ja3Accounts.getOrDefault(ja3, Set.of()).size() : 0;
-        int deviceReuseCount = deviceHash != null ? deviceAccounts.getOrDefault(deviceHash, Set.of()).size() : 0;
-        int ipReuseCount     = ip != null ? ipAccounts.getOrDefault(ip, Set.of()).size() : 0;
+        IdentityReuseIndex.Reuse ja3Reuse    = reuse.record(IdentityReuseIndex.Kind.JA3, ja3, accountId);
+        IdentityReuseIndex.Reuse deviceReuse = reuse.record(IdentityReuseIndex.Kind.DEVICE, deviceHash, accountId);
+        IdentityReuseIndex.Reuse ipReuse     = reuse.record(IdentityReuseIndex.Kind.IP, ip, accountId);
 
         // Geo mismatch: account's known country vs current request country
         boolean geoMismatch = accountGeoCountry != null && geoCountry != null
                 && !accountGeoCountry.equalsIgnoreCase(geoCountry);
 
         return new IdentityForensicResult(
-                ja3ReuseCount,
-                deviceReuseCount,
-                ipReuseCount,
+                ja3Reuse.distinctAccounts(),
+                deviceReuse.distinctAccounts(),
+                ipReuse.distinctAccounts(),
                 geoMismatch,
-                isNewDevice,
-                isNewJa3
+                deviceReuse.isNew(),
+                ja3Reuse.isNew()
         );
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@ MODEL_PATH       = MODEL_DIR / "eif_model.pkl"
 SCALER_PATH      = MODEL_DIR / "eif_scaler.pkl"
 METADATA_PATH    = MODEL_DIR / "model_metadata.json"
 EVAL_REPORT_PATH = MODEL_DIR / "eif_eval.json"
+FOREST_PATH      = MODEL_DIR / "eif_forest.json"   # train/export_eif_forest.py
 
 FEATURE_NAMES = [
     "velocity_score",
@@ -0,0 +1,67 @@
+"""
+Flat EIF forest scorer
+=======================
+
+Scores the models/eif_forest.json artefact written by
+train/export_eif_forest.py. The service and the exporter both score through
+this class, and the backend's EifModel reads the same file, so all three use
+one forest.
+
+compute_paths() has the same contract as eif.iForest.compute_paths(): it takes
+scaled rows and returns the anomaly score s = 2^(-E / c(sample_size)), where E
+is the mean leaf path length.
+
+Rows are vectorised, but the arithmetic follows EifModel.java step by step:
+each node's dot product adds its k terms in order, and the per-tree paths are
+summed tree by tree. numpy's pairwise sum would round differently.
+"""
+
+import json
+
+import numpy as np
+
+
+class FlatForest:
+
+    def __init__(self, forest):
+        if forest.get("format") != "eif-forest/1":
+            raise ValueError(f"unsupported EIF artefact format: {forest.get('format')}")
+        self.k         = int(forest["k"])
+        self.cNorm     = float(forest["cNorm"])
+        self.threshold = float(forest["threshold"])
+        self.version   = forest.get("version", "unknown")
+        self.trees = [
+            {
+                "left":       np.asarray(t["left"], dtype=np.int64),
+                "right":      np.asarray(t["right"], dtype=np.int64),
+                "coefIdx":    np.asarray(t["coefIdx"], dtype=np.int64).reshape(-1, self.k),
+                "coef":       np.asarray(t["coef"], dtype=np.float64).reshape(-1, self.k),
+                "intercepts": np.asarray(t["intercepts"], dtype=np.float64),
+                "paths":      np.asarray(t["paths"], dtype=np.float64),
+            }
+            for t in forest["trees"]
+        ]
+        if not self.trees:
+            raise ValueError("EIF artefact has no trees")
+
+    @classmethod
+    def load(cls, path):
+        with open(path) as f:
+            return cls(json.load(f))
+
+    def compute_paths(self, X_scaled):
+        X     = np.asarray(X_scaled, dtype=np.float64)
+        rows  = np.arange(len(X))
+        total = np.zeros(len(X))
+        for t in self.trees:
+            n = np.zeros(len(X), dtype=np.int64)
+            inner = t["left"][n] >= 0
+            while inner.any():
+                at  = n[inner]
+                dot = np.zeros(len(at))
+                for j in range(self.k):
+                    dot = dot + t["coef"][at, j] * X[rows[inner], t["coefIdx"][at, j]]
+                n[inner] = np.where(dot < t["intercepts"][at], t["left"][at], t["right"][at])
+                inner = t["left"][n] >= 0
+            total = total + t["paths"][n]
+        return np.power(2.0, -(total / len(self.trees)) / self.cNorm)
@@ -30,14 +30,14 @@ import json
 import numpy as np
 from pathlib import Path
 
-from eif import iForest
-
 from .config import (
     MODEL_DIR,          # [FIX 2] now exported from config so we can build absolute paths
     SCALER_PATH,
     METADATA_PATH,
+    FOREST_PATH,
     FEATURE_EXPLANATIONS,
 )
+from .forest import FlatForest
 
 FEATURE_NAMES = [
     "velocity", "burst", "neighbors",
@@ -82,17 +82,35 @@ print(f"✅ Threshold loaded: {threshold:.4f}  (score ≥ this → anomaly)")
 training_data = np.load(str(TRAIN_DATA_PATH))
 print(f"✅ Training data loaded: shape={training_data.shape}")
 
-# ── Rebuild EIF model ─────────────────────────────────────────────────────────
-model = iForest(
-    training_data,
-    ntrees=metadata.get("ntrees", 100),
-    sample_size=metadata.get("sample_size", min(256, len(training_data))),
-    ExtensionLevel=metadata.get("extension_level", 0),
-)
-print("✅ EIF model rebuilt from dynamic metadata")
+# ── EIF model ─────────────────────────────────────────────────────────────────
+# Score with the exported forest (train/export_eif_forest.py). The backend's
+# in-process EifModel reads the same file, so /v1/eif/score and local scoring
+# use one model. The threshold comes from the artefact because it was derived
+# on that forest. Without the artefact the service falls back to regrowing an
+# unseeded forest on every start; that forest differs from the backend's.
+if FOREST_PATH.exists():
+    model     = FlatForest.load(FOREST_PATH)
+    threshold = model.threshold
+    print(f"✅ EIF forest loaded: {FOREST_PATH.name}  version={model.version}  "
+          f"trees={len(model.trees)}  threshold={threshold:.4f}")
+else:
+    from eif import iForest
+
+    model = iForest(
+        training_data,
+        ntrees=metadata.get("ntrees", 100),
+        sample_size=metadata.get("sample_size", min(256, len(training_data))),
+        ExtensionLevel=metadata.get("extension_level", 0),
+    )
+    print(f"⚠️  {FOREST_PATH.name} not found — EIF model rebuilt unseeded; "
+          "run train/export_eif_forest.py so the backend scores the same forest")
 print("✅ Service ready\n")
 
 
+# Sigmoid steepness used to calibrate raw path scores around the threshold
+SIGMOID_K = 6.0
+
+
 # ── Feature expansion ─────────────────────────────────────────────────────────
 
 def expand_features(features):
@@ -199,8 +217,7 @@ def score_eif(features):
     #              raw_path << threshold  →  score → 0.0  (definitely normal)
     #
     #    Formula: sigmoid(+k * (raw_path - threshold))
-    k     = 6.0
-    score = float(1.0 / (1.0 + np.exp(-k * (raw_path - threshold))))
+    score = float(1.0 / (1.0 + np.exp(-SIGMOID_K * (raw_path - threshold))))
     print(f"Final score: {score:.4f}")
 
     # 5. Feature importance
@@ -215,4 +232,55 @@ def score_eif(features):
     print(f"Explanation: {explanation}")
     print("──────────────────────────────\n")
 
-    return score, top_factors, explanation
\ No newline at end of file
+    return score, top_factors, explanation
+
+
+# ── Batch scoring ─────────────────────────────────────────────────────────────
+
+def expand_features_batch(X_raw):
+    """Column-wise expand_features() for an (n, 8) matrix → (n, 14)."""
+    velocity, burst, neighbors, ip, ja3, comm_fraud, ring, net_risk = X_raw.T
+    return np.column_stack([
+        velocity, burst, neighbors,
+        ip, ja3,
+        comm_fraud, ring, net_risk,
+        comm_fraud * ring, comm_fraud * burst, comm_fraud * velocity,
+        neighbors * comm_fraud, ip * comm_fraud, velocity * burst,
+    ])
+
+
+def score_eif_batch(X_raw, explain=False):
+    """
+    Score n rows in one pass: one scaler.transform and one compute_paths call
+    for the whole matrix, plus one compute_paths per feature column when
+    explain=True (instead of 15 calls per row in score_eif).
+
+    Returns (scores, top_factors, explanations); the last two are None
+    unless explain=True.
+    """
+    X_raw = np.asarray(X_raw, dtype=np.float64)
+    if X_raw.ndim != 2 or X_raw.shape[1] != 8:
+        raise ValueError(f"Expected (n, 8) feature matrix, got {X_raw.shape}")
+
+    X_scaled  = scaler.transform(expand_features_batch(X_raw))
+    raw_paths = np.asarray(model.compute_paths(X_scaled), dtype=np.float64)
+    scores    = 1.0 / (1.0 + np.exp(-SIGMOID_K * (raw_paths - threshold)))
+
+    if not explain:
+        return scores, None, None
+
+    impacts = np.empty_like(X_scaled)
+    for i in range(len(FEATURE_NAMES)):
+        saved = X_scaled[:, i].copy()
+        X_scaled[:, i] = 0.0
+        impacts[:, i] = np.asarray(model.compute_paths(X_scaled)) - raw_paths
+        X_scaled[:, i] = saved
+
+    top_factors, explanations = [], []
+    for row in impacts:
+        top = np.argsort(-np.abs(row), kind="stable")[:3]
+        factors = {FEATURE_NAMES[j]: float(row[j]) for j in top}
+        top_factors.append(factors)
+        explanations.append(generate_explanation(factors))
+
+    return scores, top_factors, explanations
@@ -3,12 +3,17 @@ import os
 from fastapi import FastAPI, HTTPException
 from fastapi.responses import JSONResponse
 
-from .schemas import EIFRequest
-from .inference import score_eif
+import numpy as np
+
+from .schemas import EIFRequest, EIFBatchRequest
+from .inference import score_eif, score_eif_batch
 from .config import EVAL_REPORT_PATH
+from .wire import WireResponse, WireRoute
 from fastapi.middleware.cors import CORSMiddleware
 
-app = FastAPI()
+# Score endpoints answer CBOR or JSON as negotiated by the backend (see wire.py)
+app = FastAPI(default_response_class=WireResponse)
+app.router.route_class = WireRoute
 
 app.add_middleware(
     CORSMiddleware,
@@ -31,7 +36,7 @@ def score_endpoint(req: EIFRequest):
 
     is_anomalous = int(score >= 0.5)
 
-    return JSONResponse(
+    return WireResponse(
         content={
             "model": "EIF",
             "version": "v2.1",
@@ -46,6 +51,31 @@ def score_endpoint(req: EIFRequest):
     )
 
 
+@app.post("/v1/eif/score-batch")
+def score_batch_endpoint(req: EIFBatchRequest):
+    """
+    Scores len(features) / dim rows in one model pass. Used by the backend's
+    re-score job (explain=false) and its live micro-batcher (explain=true).
+    """
+    if req.dim != 8 or len(req.features) % req.dim != 0:
+        raise HTTPException(status_code=422,
+                            detail=f"features must be n x 8 row-major, got {len(req.features)} values, dim={req.dim}")
+    if not req.features:
+        return WireResponse(content={"scores": [], "confidence": []})
+
+    X = np.asarray(req.features, dtype=np.float64).reshape(-1, req.dim)
+    scores, top_factors, explanations = score_eif_batch(X, explain=req.explain)
+
+    content = {
+        "scores":     [float(s) for s in scores],
+        "confidence": [round(abs(float(s) - 0.5) * 2, 3) for s in scores],
+    }
+    if req.explain:
+        content["topFactors"]  = top_factors
+        content["explanation"] = explanations
+    return WireResponse(content=content)
+
+
 @app.get("/v1/eif/metrics")
 def metrics_endpoint():
     """Returns the training-time scientific evaluation report (F1, AUC, etc)."""
@@ -18,3 +18,10 @@ class ScoreResponse(BaseModel):
 class EIFRequest(BaseModel):
     features: List[float]
 
+
+
+class EIFBatchRequest(BaseModel):
+    # Row-major: len(features) == n_rows * dim
+    dim: int = 8
+    features: List[float]
+    explain: bool = False
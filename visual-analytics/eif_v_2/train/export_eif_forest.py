@@ -0,0 +1,209 @@
+"""
+EIF Forest Export
+==================
+
+Writes models/eif_forest.json — a flat, self-contained copy of the Extended
+Isolation Forest that the backend's EifModel scores in-process (no HTTP hop).
+
+Why the forest is re-grown here:
+  eif==2.0.2 keeps its trees inside the C++ extension; the Python wrapper
+  exposes compute_paths() but not the hyperplanes. So this script grows a
+  forest with the same algorithm (Hariri et al. — random sparse normal with
+  ExtensionLevel+1 non-zero coordinates, intercept drawn uniformly inside the
+  node's bounding box, height limit ceil(log2(sample_size))) on the same
+  scaled training matrix, scaler and hyperparameters train_eif.py used, with a
+  fixed seed so the artefact is reproducible. The service (app/inference.py)
+  then scores with this artefact too, so the service and the backend share one
+  forest instead of two forests grown separately.
+
+  The threshold is re-derived on the regrown forest, at the same training-score
+  percentile train_eif.py picked (metadata threshold_percentile). The
+  metadata threshold was measured on a forest that no longer scores anything.
+
+Artefact layout (one entry per tree, nodes in pre-order):
+  left / right  child index inside the tree, -1 for leaves
+  coefIdx/coef  ExtensionLevel+1 feature indices and normal weights per node
+  intercepts    n·p  — go left when x·n < n·p
+  paths         leaf path-length constant: depth + c(size)
+plus scalerMean/scalerScale, threshold, sigmoidK, cNorm = c(sample_size),
+feature names, explanations, and golden "checks" rows. The checks are scored
+with app/forest.FlatForest, and the Java loader re-scores them and refuses an
+artefact it would read differently.
+
+Usage:  python train/export_eif_forest.py [--seed 42] [--checks 32]
+"""
+
+import argparse
+import json
+import sys
+from pathlib import Path
+
+import joblib
+import numpy as np
+
+sys.path.insert(0, str(Path(__file__).resolve().parents[1]))
+
+from app.config import MODEL_DIR, SCALER_PATH, METADATA_PATH, FOREST_PATH   # noqa: E402
+from app.forest import FlatForest                                          # noqa: E402
+
+TRAIN_DATA_PATH = MODEL_DIR / "eif_training_data.npy"
+
+# Must match app/inference.py
+SIGMOID_K = 6.0
+FEATURE_NAMES = [
+    "velocity", "burst", "neighbors",
+    "ip", "ja3",
+    "comm_fraud", "ring", "net_risk",
+    "comm_ring", "comm_burst", "comm_velocity",
+    "neighbor_comm", "ip_comm", "velocity_burst",
+]
+EXPLANATIONS = {
+    "comm_ring":         "High community fraud combined with money laundering ring membership",
+    "comm_burst":        "Erratic transaction bursts in a high-risk network neighborhood",
+    "comm_velocity":     "High transaction velocity within a fraudulent community",
+    "neighbor_comm":     "Activity spread across risky peers within coordinated fraud rings",
+    "ip_comm":           "Infrastructure IP sharing detected within a fraud cluster",
+    "velocity_burst":    "High transaction velocity concurrent with account balance bursts",
+}
+
+
+def c_factor(n):
+    """Average unsuccessful-search path length in a BST of n points (eif's c(n))."""
+    if n <= 1:
+        return 0.0
+    return 2.0 * (np.log(n - 1) + 0.5772156649) - (2.0 * (n - 1.0) / n)
+
+
+def expand(raw):
+    velocity, burst, neighbors, ip, ja3, comm_fraud, ring, net_risk = raw
+    return [
+        velocity, burst, neighbors,
+        ip, ja3,
+        comm_fraud, ring, net_risk,
+        comm_fraud * ring, comm_fraud * burst, comm_fraud * velocity,
+        neighbors * comm_fraud, ip * comm_fraud, velocity * burst,
+    ]
+
+
+# ── Tree growth ───────────────────────────────────────────────────────────────
+
+def grow_tree(X, limit, k, rng):
+    tree = {"left": [], "right": [], "coefIdx": [], "coef": [], "intercepts": [], "paths": []}
+    dim = X.shape[1]
+
+    def node(X_node, depth):
+        i = len(tree["left"])
+        for key in ("left", "right", "intercepts", "paths"):
+            tree[key].append(0)
+
+        if depth >= limit or len(X_node) <= 1:
+            tree["left"][i]  = -1
+            tree["right"][i] = -1
+            tree["coefIdx"].extend([0] * k)
+            tree["coef"].extend([0.0] * k)
+            tree["intercepts"][i] = 0.0
+            tree["paths"][i]      = float(depth + c_factor(len(X_node)))
+            return i
+
+        idx = rng.choice(dim, size=k, replace=False)
+        w   = rng.normal(size=k)
+        lo  = X_node[:, idx].min(axis=0)
+        hi  = X_node[:, idx].max(axis=0)
+        p   = rng.uniform(lo, hi)
+        b   = float(np.dot(p, w))
+
+        tree["coefIdx"].extend(int(j) for j in idx)
+        tree["coef"].extend(float(v) for v in w)
+        tree["intercepts"][i] = b
+        tree["paths"][i]      = 0.0
+
+        go_left = X_node[:, idx] @ w < b
+        tree["left"][i]  = node(X_node[go_left], depth + 1)
+        tree["right"][i] = node(X_node[~go_left], depth + 1)
+        return i
+
+    node(X, 0)
+    return tree
+
+
+# ── Reference scorer ──────────────────────────────────────────────────────────
+
+def score(flat, forest, raw):
+    x = (np.asarray(expand(raw), dtype=np.float64) - forest["scalerMean"]) / forest["scalerScale"]
+    s = float(flat.compute_paths(x.reshape(1, -1))[0])
+    return float(1.0 / (1.0 + np.exp(-SIGMOID_K * (s - forest["threshold"]))))
+
+
+# ── Main ──────────────────────────────────────────────────────────────────────
+
+def main():
+    ap = argparse.ArgumentParser()
+    ap.add_argument("--seed", type=int, default=42)
+    ap.add_argument("--checks", type=int, default=32)
+    ap.add_argument("--out", type=Path, default=FOREST_PATH)
+    args = ap.parse_args()
+
+    rng      = np.random.default_rng(args.seed)
+    scaler   = joblib.load(SCALER_PATH)
+    X_scaled = np.load(str(TRAIN_DATA_PATH))
+    with open(METADATA_PATH) as f:
+        metadata = json.load(f)
+
+    ntrees      = int(metadata.get("ntrees", 100))
+    sample_size = int(metadata.get("sample_size", min(256, len(X_scaled))))
+    sample_size = min(sample_size, len(X_scaled))
+    k           = int(metadata.get("extension_level", 0)) + 1
+    limit       = int(np.ceil(np.log2(sample_size)))
+
+    print(f"🌲 Growing {ntrees} trees  sample={sample_size}  k={k}  limit={limit}")
+    trees = []
+    for _ in range(ntrees):
+        rows = rng.choice(len(X_scaled), size=sample_size, replace=False)
+        trees.append(grow_tree(X_scaled[rows], limit, k, rng))
+
+    forest = {
+        "format":      "eif-forest/1",
+        "version":     metadata.get("version", "unknown"),
+        "seed":        args.seed,
+        "rawDim":      8,
+        "dim":         len(FEATURE_NAMES),
+        "k":           k,
+        "sampleSize":  sample_size,
+        "cNorm":       float(c_factor(sample_size)),
+        "threshold":   0.0,
+        "sigmoidK":    SIGMOID_K,
+        "scalerMean":  [float(v) for v in scaler.mean_],
+        "scalerScale": [float(v) for v in scaler.scale_],
+        "features":    FEATURE_NAMES,
+        "explanations": EXPLANATIONS,
+        "trees":       trees,
+    }
+
+    flat = FlatForest(forest)
+    pct  = metadata.get("threshold_percentile")
+    if pct is not None:
+        forest["threshold"] = float(np.percentile(flat.compute_paths(X_scaled), pct))
+        print(f"🎯 Threshold re-derived at p{pct}: {forest['threshold']:.4f}  "
+              f"(metadata {float(metadata.get('threshold', 0.0)):.4f})")
+    else:
+        forest["threshold"] = float(metadata.get("threshold", 0.0))
+
+    # Golden rows: raw feature vectors spanning the training range
+    mean, scale = np.asarray(scaler.mean_), np.asarray(scaler.scale_)
+    checks = []
+    for row in X_scaled[rng.choice(len(X_scaled), size=min(args.checks, len(X_scaled)), replace=False)]:
+        raw = (row * scale + mean)[:8]
+        checks.append({"features": [float(v) for v in raw], "score": score(flat, forest, raw)})
+    forest["checks"] = checks
+
+    args.out.parent.mkdir(parents=True, exist_ok=True)
+    tmp = args.out.with_suffix(".json.tmp")
+    with open(tmp, "w") as f:
+        json.dump(forest, f, separators=(",", ":"))
+    tmp.replace(args.out)      # atomic swap — the backend hot-reloads on mtime
+
+    print(f"💾 Forest written: {args.out}  ({args.out.stat().st_size / 1024:.0f} KiB, {len(checks)} checks)")
+
+
+if __name__ == "__main__":
+    main()